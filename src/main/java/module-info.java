@@ -20,6 +20,10 @@ module net.darmo_creations.jenealogio2 {
   // are not exported because it’s not necessary
   exports net.darmo_creations.jenealogio2 to javafx.graphics;
 
+  // Map tiles are read from a local pack or cache before being downloaded
+  provides com.gluonhq.maps.tile.TileRetriever
+      with net.darmo_creations.jenealogio2.ui.components.map_view.LocalTileRetriever;
+
   // Open for TableView data fetching
   opens net.darmo_creations.jenealogio2.ui.components to javafx.base;
 
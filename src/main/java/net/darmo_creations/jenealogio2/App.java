@@ -4,6 +4,7 @@ import javafx.application.*;
 import javafx.stage.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.io.*;
+import net.darmo_creations.jenealogio2.ui.components.map_view.*;
 import net.darmo_creations.jenealogio2.utils.*;
 import org.apache.commons.cli.*;
 import org.jetbrains.annotations.*;
@@ -74,6 +75,15 @@ public class App extends Application {
     return treesMetadataManager;
   }
 
+  private static TaskScheduler taskScheduler;
+
+  /**
+   * The scheduler that runs the app’s long tasks in the background.
+   */
+  public static TaskScheduler taskScheduler() {
+    return taskScheduler;
+  }
+
   private static String treeName;
 
   /**
@@ -89,6 +99,11 @@ public class App extends Application {
     config.setDateFormat(localConfig.dateFormat());
     config.setTimeFormat(localConfig.timeFormat());
     config.setShouldShowDeceasedPersonsBirthdays(localConfig.shouldShowDeceasedPersonsBirthdays());
+    config.setUndoHistorySize(localConfig.undoHistorySize());
+    config.setGeoCodingStrategy(localConfig.geoCodingStrategy());
+    GeoCoder.setStrategy(config.geoCodingStrategy());
+    config.setMapTilePack(localConfig.mapTilePack().orElse(null));
+    LocalTileRetriever.setTilePack(config.mapTilePack().orElse(null));
     controller.onConfigUpdate();
   }
 
@@ -112,10 +127,20 @@ public class App extends Application {
     }
     hostServices = this.getHostServices();
     treesMetadataManager = new TreesMetadataManager();
+    taskScheduler = new TaskScheduler();
+    GeoCoder.setStrategy(config.geoCodingStrategy());
+    LocalTileRetriever.setTilePack(config.mapTilePack().orElse(null));
     controller = new AppController(stage, config);
     controller.show(treeName);
   }
 
+  @Override
+  public void stop() {
+    if (taskScheduler != null)
+      taskScheduler.shutdown();
+    GeoCoder.saveCache();
+  }
+
   public static void main(String[] args) {
     // For Gluon Maps
     System.setProperty("javafx.platform", "desktop");
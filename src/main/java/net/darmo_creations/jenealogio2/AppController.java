@@ -1,5 +1,6 @@
 package net.darmo_creations.jenealogio2;
 
+import javafx.application.*;
 import javafx.geometry.*;
 import javafx.scene.*;
 import javafx.scene.control.*;
@@ -10,6 +11,7 @@ import javafx.stage.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.config.theme.*;
 import net.darmo_creations.jenealogio2.io.*;
+import net.darmo_creations.jenealogio2.io.file_ops.*;
 import net.darmo_creations.jenealogio2.model.*;
 import net.darmo_creations.jenealogio2.ui.*;
 import net.darmo_creations.jenealogio2.ui.components.*;
@@ -21,6 +23,7 @@ import org.jetbrains.annotations.*;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 /**
@@ -69,11 +72,18 @@ public class AppController {
   private final FamilyMembersTreeView familyMembersTreeView;
   private final GeneticFamilyTreePane geneticFamilyTreePane;
   private final FamilyMemberFullViewPane familyMemberFullViewPane;
+  private Tab familyMemberFullViewTab;
 
   private final StatisticsPanel statisticsPanel;
+  private final PedigreePanel pedigreePanel;
 
   private final PersonDetailsView personDetailsView;
 
+  /**
+   * Holds the menu bar, toolbar and main content. Disabled while no tree is loaded.
+   */
+  private final VBox mainPane;
+
   private final List<Person> selectionHistory = new ArrayList<>();
   private int selectionIndex = -1;
 
@@ -82,9 +92,13 @@ public class AppController {
   private final RegistriesDialog editRegistriesDialog;
   private final EditPersonDialog editPersonDialog;
   private final ManageDocumentsDialog editDocumentsDialog;
+  private final PlacesDialog editPlacesDialog;
   private final ExportTreeAsImageDialog exportTreeAsImageDialog;
   private final BirthdaysDialog birthdaysDialog;
+  private final RelationshipsDialog relationshipsDialog;
   private final MapDialog mapDialog;
+  private final DuplicatesDialog duplicatesDialog;
+  private final MergeTreeDialog mergeTreeDialog;
   private final SettingsDialog settingsDialog;
   private final AboutDialog aboutDialog;
 
@@ -100,6 +114,45 @@ public class AppController {
    * Indicate whether there are any unsaved changes.
    */
   private boolean unsavedChanges;
+  /**
+   * The job computing the relatives counts of the current tree in the background, if any.
+   */
+  private TaskScheduler.Job<RelativesCounts> relativesCountsJob;
+  /**
+   * Changes made to the current tree that have not been applied to the views yet.
+   */
+  private final Set<FamilyTreeChange> pendingChanges = new LinkedHashSet<>();
+  private final FamilyTreeChangeListener treeChangeListener = this::onTreeChange;
+  /**
+   * The job loading a tree in the background, null if none are being loaded.
+   */
+  private TaskScheduler.Job<FamilyTree> loadingJob;
+  /**
+   * Incremented on each tree load, so that the outcomes of cancelled loads are ignored.
+   */
+  private int loadId;
+  /**
+   * Indicate whether the current tree was changed while another one was being loaded.
+   */
+  private boolean changedWhileLoading;
+  /**
+   * The job saving the current tree in the background, null if none is being saved.
+   */
+  private TaskScheduler.Job<Map<AttachedDocument, Path>> savingJob;
+  /**
+   * Indicate whether the current tree was changed while it was being saved.
+   */
+  private boolean changedWhileSaving;
+  /**
+   * The directories of the trees that are being exported. They must not be saved to until the export is done.
+   * A directory appears once per export in progress.
+   */
+  private final List<Path> exportedDirectories = new ArrayList<>();
+  /**
+   * The temporary directories of the trees merged into the current one.
+   * The merged documents are copied from them when the tree is saved, they are deleted afterwards.
+   */
+  private final List<Path> mergedTreesDirectories = new ArrayList<>();
 
   /**
    * Create the app’s controller.
@@ -119,6 +172,7 @@ public class AppController {
     stage.setMaximized(true);
 
     this.statisticsPanel = new StatisticsPanel(config);
+    this.pedigreePanel = new PedigreePanel(config);
     this.personDetailsView = new PersonDetailsView(config);
     this.familyMembersTreeView = new FamilyMembersTreeView(config);
     this.geneticFamilyTreePane = new GeneticFamilyTreePane(config);
@@ -128,22 +182,36 @@ public class AppController {
     this.editRegistriesDialog = new RegistriesDialog(config);
     this.editPersonDialog = new EditPersonDialog(config);
     this.editDocumentsDialog = new ManageDocumentsDialog(config);
+    this.editPlacesDialog = new PlacesDialog(config);
     this.exportTreeAsImageDialog = new ExportTreeAsImageDialog(
         config,
         this.geneticFamilyTreePane,
         this.familyMemberFullViewPane
     );
     this.mapDialog = new MapDialog(config);
+    this.mergeTreeDialog = new MergeTreeDialog(config);
     this.settingsDialog = new SettingsDialog(config);
     this.aboutDialog = new AboutDialog(config);
 
-    final Scene scene = new Scene(new VBox(this.createMenuBar(), this.createToolBar(), this.createContent(config)));
+    final SplitPane content = this.createContent(config);
+    VBox.setVgrow(content, Priority.ALWAYS);
+    this.mainPane = new VBox(this.createMenuBar(), this.createToolBar(), content);
+    VBox.setVgrow(this.mainPane, Priority.ALWAYS);
+    // Disabled until a tree is loaded
+    this.mainPane.setDisable(true);
+    final Scene scene = new Scene(new VBox(this.mainPane, new TaskStatusBar(App.taskScheduler(), config)));
     stage.setScene(scene);
     theme.getStyleSheets().forEach(path -> scene.getStylesheets().add(path.toExternalForm()));
 
     this.birthdaysDialog = new BirthdaysDialog(config);
     this.birthdaysDialog.personClickListeners()
         .add(event -> this.onPersonClick(event, null));
+    this.relationshipsDialog = new RelationshipsDialog(config);
+    this.relationshipsDialog.showRelationshipListeners()
+        .add(this::onShowRelationship);
+    this.duplicatesDialog = new DuplicatesDialog(config);
+    this.duplicatesDialog.personClickListeners()
+        .add(event -> this.onPersonClick(event, null));
 
     // Files drag-and-drop
     scene.setOnDragOver(event -> {
@@ -154,10 +222,11 @@ public class AppController {
     });
     scene.setOnDragDropped(event -> {
       final Dragboard db = event.getDragboard();
-      final boolean success = this.isDragAndDropValid(db) &&
-          (!this.unsavedChanges || this.canProceedAfterOptionalSave());
-      if (success)
-        this.loadTree(db.getFiles().get(0).getName());
+      final boolean success = this.isDragAndDropValid(db);
+      if (success) {
+        final String directoryName = db.getFiles().get(0).getName();
+        this.proceedAfterOptionalSave(() -> this.loadTree(directoryName, null));
+      }
       event.setDropCompleted(success);
       event.consume();
     });
@@ -170,8 +239,12 @@ public class AppController {
     });
 
     stage.setOnCloseRequest(event -> {
-      if (this.unsavedChanges && !this.canProceedAfterOptionalSave())
-        event.consume();
+      // The app is closed by hand once the user has made their choice
+      event.consume();
+      this.proceedAfterOptionalSave(() -> {
+        this.deleteMergedTreesDirectories();
+        stage.close();
+      });
     });
   }
 
@@ -212,6 +285,12 @@ public class AppController {
     importTreeMenuItem.setOnAction(event -> this.onImportTreeAction());
     fileMenu.getItems().add(importTreeMenuItem);
 
+    final MenuItem mergeTreeMenuItem = new MenuItem();
+    mergeTreeMenuItem.setText(language.translate("menu.file.merge"));
+    mergeTreeMenuItem.setGraphic(theme.getIcon(Icon.MERGE_TREE_FILE, Icon.Size.SMALL));
+    mergeTreeMenuItem.setOnAction(event -> this.onMergeTreeAction());
+    fileMenu.getItems().add(mergeTreeMenuItem);
+
     final MenuItem exportTreeMenuItem = new MenuItem();
     exportTreeMenuItem.setText(language.translate("menu.file.export"));
     exportTreeMenuItem.setGraphic(theme.getIcon(Icon.EXPORT_TREE_FILE, Icon.Size.SMALL));
@@ -250,13 +329,13 @@ public class AppController {
     this.undoMenuItem.setText(language.translate("menu.edit.undo"));
     this.undoMenuItem.setGraphic(theme.getIcon(Icon.UNDO, Icon.Size.SMALL));
     this.undoMenuItem.setAccelerator(new KeyCodeCombination(KeyCode.Z, KeyCombination.CONTROL_DOWN));
-    this.undoMenuItem.setDisable(true); // TEMP disabled until implemented
+    this.undoMenuItem.setOnAction(event -> this.onUndoAction());
     editMenu.getItems().add(this.undoMenuItem);
 
     this.redoMenuItem.setText(language.translate("menu.edit.redo"));
     this.redoMenuItem.setGraphic(theme.getIcon(Icon.REDO, Icon.Size.SMALL));
     this.redoMenuItem.setAccelerator(new KeyCodeCombination(KeyCode.Y, KeyCombination.CONTROL_DOWN));
-    this.redoMenuItem.setDisable(true); // TEMP disabled until implemented
+    this.redoMenuItem.setOnAction(event -> this.onRedoAction());
     editMenu.getItems().add(this.redoMenuItem);
 
     editMenu.getItems().add(new SeparatorMenuItem());
@@ -274,6 +353,18 @@ public class AppController {
     editTreeDocuments.setOnAction(event -> this.onEditTreeDocumentsAction());
     editMenu.getItems().add(editTreeDocuments);
 
+    final MenuItem editPlacesMenuItem = new MenuItem();
+    editPlacesMenuItem.setText(language.translate("menu.edit.edit_places"));
+    editPlacesMenuItem.setGraphic(theme.getIcon(Icon.EDIT_PLACES, Icon.Size.SMALL));
+    editPlacesMenuItem.setOnAction(event -> this.onEditPlacesAction());
+    editMenu.getItems().add(editPlacesMenuItem);
+
+    final MenuItem geoCodePlacesMenuItem = new MenuItem();
+    geoCodePlacesMenuItem.setText(language.translate("menu.edit.geocode_places"));
+    geoCodePlacesMenuItem.setGraphic(theme.getIcon(Icon.GEOCODE_PLACES, Icon.Size.SMALL));
+    geoCodePlacesMenuItem.setOnAction(event -> this.onGeoCodePlacesAction());
+    editMenu.getItems().add(geoCodePlacesMenuItem);
+
     editMenu.getItems().add(new SeparatorMenuItem());
 
     final MenuItem renameTreeMenuItem = new MenuItem();
@@ -371,7 +462,7 @@ public class AppController {
     calculateRelationshipsMenuItem.setText(language.translate("menu.tools.calculate_relationships"));
     calculateRelationshipsMenuItem.setGraphic(theme.getIcon(Icon.CALCULATE_RELATIONSHIPS, Icon.Size.SMALL));
     calculateRelationshipsMenuItem.setAccelerator(new KeyCodeCombination(KeyCode.R, KeyCombination.CONTROL_DOWN));
-    calculateRelationshipsMenuItem.setDisable(true); // TEMP disabled until implemented
+    calculateRelationshipsMenuItem.setOnAction(event -> this.onShowRelationshipsDialog());
     toolsMenu.getItems().add(calculateRelationshipsMenuItem);
 
     final MenuItem birthdaysMenuItem = new MenuItem();
@@ -388,6 +479,19 @@ public class AppController {
     mapMenuItem.setOnAction(event -> this.onShowMapDialog());
     toolsMenu.getItems().add(mapMenuItem);
 
+    final MenuItem importGazetteerMenuItem = new MenuItem();
+    importGazetteerMenuItem.setText(language.translate("menu.tools.import_gazetteer"));
+    importGazetteerMenuItem.setGraphic(theme.getIcon(Icon.IMPORT_GAZETTEER, Icon.Size.SMALL));
+    importGazetteerMenuItem.setOnAction(event -> this.onImportGazetteerAction());
+    toolsMenu.getItems().add(importGazetteerMenuItem);
+
+    final MenuItem findDuplicatesMenuItem = new MenuItem();
+    findDuplicatesMenuItem.setText(language.translate("menu.tools.find_duplicates"));
+    findDuplicatesMenuItem.setGraphic(theme.getIcon(Icon.FIND_DUPLICATES, Icon.Size.SMALL));
+    findDuplicatesMenuItem.setAccelerator(new KeyCodeCombination(KeyCode.D, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN));
+    findDuplicatesMenuItem.setOnAction(event -> this.onShowDuplicatesDialog());
+    toolsMenu.getItems().add(findDuplicatesMenuItem);
+
     toolsMenu.getItems().add(new SeparatorMenuItem());
 
     final MenuItem checkInconsistenciesMenuItem = new MenuItem();
@@ -437,12 +541,12 @@ public class AppController {
 
     this.undoToolbarButton.setTooltip(new Tooltip(language.translate("toolbar.undo")));
     this.undoToolbarButton.setGraphic(theme.getIcon(Icon.UNDO, Icon.Size.BIG));
-    this.undoToolbarButton.setDisable(true); // TEMP disabled until implemented
+    this.undoToolbarButton.setOnAction(event -> this.onUndoAction());
     toolbar.getItems().add(this.undoToolbarButton);
 
     this.redoToolbarButton.setTooltip(new Tooltip(language.translate("toolbar.redo")));
     this.redoToolbarButton.setGraphic(theme.getIcon(Icon.REDO, Icon.Size.BIG));
-    this.redoToolbarButton.setDisable(true); // TEMP disabled until implemented
+    this.redoToolbarButton.setOnAction(event -> this.onRedoAction());
     toolbar.getItems().add(this.redoToolbarButton);
 
     toolbar.getItems().add(new Separator(Orientation.VERTICAL));
@@ -519,7 +623,7 @@ public class AppController {
     final Button calculateRelationshipsToolbarButton = new Button();
     calculateRelationshipsToolbarButton.setTooltip(new Tooltip(language.translate("toolbar.calculate_relationships")));
     calculateRelationshipsToolbarButton.setGraphic(theme.getIcon(Icon.CALCULATE_RELATIONSHIPS, Icon.Size.BIG));
-    calculateRelationshipsToolbarButton.setDisable(true); // TEMP disabled until implemented
+    calculateRelationshipsToolbarButton.setOnAction(event -> this.onShowRelationshipsDialog());
     toolbar.getItems().add(calculateRelationshipsToolbarButton);
 
     final Button birthdaysToolbarButton = new Button();
@@ -567,10 +671,12 @@ public class AppController {
     this.familyMemberFullViewPane.personClickListeners()
         .add(event -> this.onPersonClick(event, this.familyMemberFullViewPane));
     this.familyMemberFullViewPane.newParentClickListeners().add(this::onNewParentClick);
-    tabPane.getTabs().add(new Tab(language.translate("main_view.tab.person_relatives"), this.familyMemberFullViewPane));
+    this.familyMemberFullViewTab = new Tab(language.translate("main_view.tab.person_relatives"), this.familyMemberFullViewPane);
+    tabPane.getTabs().add(this.familyMemberFullViewTab);
     this.familyMemberFullViewPane.setLegendVisible(config.shouldShowLegends());
 
     tabPane.getTabs().add(new Tab(language.translate("main_view.tab.statistics"), this.statisticsPanel));
+    tabPane.getTabs().add(new Tab(language.translate("main_view.tab.pedigree"), this.pedigreePanel));
 
     this.personDetailsView.personClickListeners()
         .add(event -> this.onPersonClick(event, null));
@@ -595,14 +701,24 @@ public class AppController {
     this.stage.show();
 
     // Open the passed tree directory
-    if (treeName != null && this.loadTree(treeName))
-      return;
+    if (treeName != null)
+      this.loadTree(treeName, this::openDefaultTree);
+    else
+      this.openDefaultTree();
+  }
 
+  /**
+   * Open the only existing tree or else the most recently opened one.
+   * If none could be opened, let the user choose a tree or create a new one.
+   */
+  private void openDefaultTree() {
     final Map<String, TreeMetadata> treesMetadata = App.treesMetadataManager().treesMetadata();
 
     // Only one choice, open it
-    if (treesMetadata.size() == 1 && this.loadTree(treesMetadata.keySet().iterator().next()))
+    if (treesMetadata.size() == 1) {
+      this.loadTree(treesMetadata.keySet().iterator().next(), this::chooseOrCreateTree);
       return;
+    }
 
     final Optional<TreeMetadata> lastOpened = treesMetadata
         .values()
@@ -611,25 +727,35 @@ public class AppController {
         .sorted()
         .findFirst();
     // Re-open the most recently opened tree, if any
-    if (lastOpened.isPresent() && this.loadTree(lastOpened.get().directoryName()))
-      return;
+    if (lastOpened.isPresent())
+      this.loadTree(lastOpened.get().directoryName(), this::chooseOrCreateTree);
+    else
+      this.chooseOrCreateTree();
+  }
+
+  /**
+   * Let the user choose a tree from a dialog, if there are any, or else create a new tree.
+   * The app is closed if the user does neither.
+   */
+  private void chooseOrCreateTree() {
+    final Map<String, TreeMetadata> treesMetadata = App.treesMetadataManager().treesMetadata();
 
-    // No trees have a last-opened date, choose from a dialog
     if (!treesMetadata.isEmpty()) {
       this.treesManagerDialog.refresh(null);
       final Optional<String> name = this.treesManagerDialog.showAndWait();
       if (name.isPresent()) {
-        this.loadTree(name.get());
+        this.loadTree(name.get(), this::chooseOrCreateTree);
         return;
       }
     }
 
     // No more options, create a new tree
-    if (!this.onNewTreeAction())
+    if (!this.createNewTree())
       this.stage.hide();
   }
 
   public void onConfigUpdate() {
+    this.familyTree.history().setMemoryBudget(this.config.undoHistorySize() * 1024L);
     this.geneticFamilyTreePane.setMaxHeight(this.config.maxTreeHeight());
     this.geneticFamilyTreePane.refresh();
     this.familyMemberFullViewPane.refresh();
@@ -645,7 +771,16 @@ public class AppController {
    * @param directory The directory the tree has been loaded from.
    */
   private void setFamilyTree(@NotNull FamilyTree tree, @NotNull Path directory) {
+    if (this.familyTree != null)
+      this.familyTree.removeChangeListener(this.treeChangeListener);
+    this.pendingChanges.clear();
+    if (this.relativesCountsJob != null)
+      this.relativesCountsJob.cancel();
+    this.deleteMergedTreesDirectories();
     this.familyTree = tree;
+    this.mainPane.setDisable(false);
+    tree.addChangeListener(this.treeChangeListener);
+    tree.history().setMemoryBudget(this.config.undoHistorySize() * 1024L);
     this.familyMembersTreeView.setFamilyTree(this.familyTree);
     this.geneticFamilyTreePane.setFamilyTree(this.familyTree);
     this.familyMemberFullViewPane.setFamilyTree(this.familyTree);
@@ -662,6 +797,73 @@ public class AppController {
     this.updateUI();
   }
 
+  /**
+   * Called whenever the current tree changes.
+   * Changes are queued and applied to the views all at once on the next pulse.
+   *
+   * @param change The change.
+   */
+  private void onTreeChange(@NotNull FamilyTreeChange change) {
+    if (this.pendingChanges.isEmpty())
+      Platform.runLater(this::applyTreeChanges);
+    this.pendingChanges.add(change);
+  }
+
+  /**
+   * Update the views with the queued changes of the current tree.
+   */
+  private void applyTreeChanges() {
+    // All changes made since the previous call are undone at once
+    this.familyTree.history().endStep();
+    if (this.pendingChanges.isEmpty())
+      return;
+    final List<FamilyTreeChange> changes = new ArrayList<>(this.pendingChanges);
+    this.pendingChanges.clear();
+    this.familyMembersTreeView.onTreeChanges(changes);
+    this.geneticFamilyTreePane.onTreeChanges(changes);
+    this.familyMemberFullViewPane.onTreeChanges(changes);
+    this.statisticsPanel.onTreeChanges(changes);
+    this.personDetailsView.onTreeChanges(changes);
+    this.unsavedChanges = true;
+    if (this.loadingJob != null)
+      this.changedWhileLoading = true;
+    if (this.savingJob != null)
+      this.changedWhileSaving = true;
+    this.updateUI();
+  }
+
+  /**
+   * Count the ancestors and descendants of the current tree’s members in the background
+   * if they are not available yet. Views are refreshed once the counts are set.
+   * Counts are then kept up to date by the tree itself.
+   */
+  private void computeRelativesCounts() {
+    final FamilyTree familyTree = this.familyTree;
+    if (familyTree.hasRelativesCounts() || this.relativesCountsJob != null)
+      return;
+    final FamilyGraph graph = familyTree.graph();
+    this.relativesCountsJob = App.taskScheduler().submit(
+        this.config.language().translate("task.count_relatives"),
+        TaskScheduler.Priority.LOW,
+        context -> RelativesCounts.compute(graph),
+        counts -> {
+          this.relativesCountsJob = null;
+          if (!familyTree.setRelativesCounts(counts))
+            this.computeRelativesCounts(); // The tree was modified in the meantime
+          else {
+            this.familyMembersTreeView.refresh();
+            this.geneticFamilyTreePane.refresh();
+            this.familyMemberFullViewPane.refresh();
+          }
+        },
+        e -> {
+          this.relativesCountsJob = null;
+          if (!(e instanceof CancellationException))
+            App.LOGGER.exception(e);
+        }
+    );
+  }
+
   /**
    * Open an alert dialog to rename the current tree.
    */
@@ -678,6 +880,8 @@ public class AppController {
 
     this.familyTree.setName(name.get());
     this.unsavedChanges = true;
+    if (this.savingJob != null)
+      this.changedWhileSaving = true;
     this.updateUI();
   }
 
@@ -685,12 +889,17 @@ public class AppController {
    * Open an alert dialog to create a new tree.
    * <p>
    * Checks for any unsaved changes.
+   */
+  private void onNewTreeAction() {
+    this.proceedAfterOptionalSave(this::createNewTree);
+  }
+
+  /**
+   * Open an alert dialog to create a new tree, without checking for unsaved changes.
    *
    * @return True if a new tree was created as a result of this call; false otherwise.
    */
-  private boolean onNewTreeAction() {
-    if (this.unsavedChanges && !this.canProceedAfterOptionalSave()) return false;
-
+  private boolean createNewTree() {
     final String defaultName = this.config.language().translate("app_title.undefined_tree_name");
     boolean proceed = true;
     do {
@@ -729,8 +938,7 @@ public class AppController {
    * @param directoryName The name of the directory to open.
    */
   private void onOpenTreeAction(@NotNull String directoryName) {
-    if (!this.unsavedChanges || this.canProceedAfterOptionalSave())
-      this.loadTree(directoryName);
+    this.proceedAfterOptionalSave(() -> this.loadTree(directoryName, null));
   }
 
   /**
@@ -745,118 +953,314 @@ public class AppController {
 
   /**
    * Open a file chooser dialog to import a zipped family tree.
+   * The file is unzipped in the background then the tree is loaded.
    * <p>
    * Checks for any unsaved changes.
    */
   private void onImportTreeAction() {
-    if (this.unsavedChanges && !this.canProceedAfterOptionalSave()) return;
+    this.proceedAfterOptionalSave(this::importTree);
+  }
 
+  /**
+   * Open a file chooser dialog to import a zipped family tree, without checking for unsaved changes.
+   */
+  private void importTree() {
     final var file = FileChoosers.showZippedTreeFileChooser(this.config, this.stage);
     if (file.isEmpty()) return;
 
-    final String targetDir;
+    App.taskScheduler().submit(
+        this.config.language().translate("task.import_tree", new FormatArg("file", file.get().getFileName())),
+        TaskScheduler.Priority.HIGH,
+        context -> {
+          // Each import has its own directory so that concurrent imports do not delete each other’s files
+          final Path directory = Files.createTempDirectory("jenealogio2-import");
+          try {
+            final String targetDir = FileUtils.unzip(file.get(), directory, context);
+            context.checkCancelled();
+            Files.move(directory.resolve(targetDir), App.USER_DATA_DIR.resolve(targetDir));
+            return targetDir;
+          } finally {
+            FileUtils.deleteRecursively(directory);
+          }
+        },
+        targetDir -> this.loadTree(targetDir, null),
+        e -> Alerts.taskError(this.config, e, "load_error")
+    );
+  }
+
+  /**
+   * Open a file chooser dialog to merge a tree exported as a ZIP file into the current one.
+   * The file is unzipped and matched against the current tree in the background,
+   * then the user reviews the persons that may already be in the current tree before the merge is applied.
+   */
+  private void onMergeTreeAction() {
+    final var file = FileChoosers.showZippedTreeFileChooser(this.config, this.stage);
+    if (file.isEmpty())
+      return;
+
+    final Language language = this.config.language();
+    final FamilyTree familyTree = this.familyTree;
+    final TreeMerger merger = new TreeMerger(familyTree, language.locale());
+    final Path directory;
     try {
-      FileUtils.deleteRecursively(App.TEMP_DIR);
-      targetDir = FileUtils.unzip(file.get(), App.TEMP_DIR);
-      Files.move(App.TEMP_DIR.resolve(targetDir), App.USER_DATA_DIR.resolve(targetDir));
-      FileUtils.deleteRecursively(App.TEMP_DIR);
+      directory = Files.createTempDirectory("jenealogio2-merge");
     } catch (final IOException e) {
-      App.LOGGER.exception(e);
-      Alerts.error(
-          this.config,
-          "alert.load_error.header",
-          "alert.load_error.content",
-          "alert.load_error.title",
-          new FormatArg("trace", e.getMessage())
-      );
+      Alerts.taskError(this.config, e, "load_error");
       return;
     }
-    this.loadTree(targetDir);
+    App.taskScheduler().submit(
+        language.translate("task.merge_tree", new FormatArg("file", file.get().getFileName())),
+        TaskScheduler.Priority.HIGH,
+        context -> {
+          final String treeDir = FileUtils.unzip(file.get(), directory, context);
+          context.checkCancelled();
+          final FamilyTree source = new FamilyTreeReader().loadFromDirectory(directory.resolve(treeDir));
+          return merger.prepare(source, context);
+        },
+        matches -> {
+          boolean merged = false;
+          try {
+            merged = this.applyMerge(familyTree, merger, file.get(), matches);
+          } finally {
+            // The merged documents are copied from the directory when the tree is saved, it must be kept until then
+            if (merged)
+              this.mergedTreesDirectories.add(directory);
+            else
+              deleteTempDirectory(directory);
+          }
+        },
+        e -> {
+          deleteTempDirectory(directory);
+          Alerts.taskError(this.config, e, "load_error");
+        }
+    );
+  }
+
+  /**
+   * Let the user review the matched persons of a merged tree then merge it into the current tree.
+   *
+   * @param familyTree The tree the merge was prepared for.
+   * @param merger     The prepared merger.
+   * @param file       The merged file.
+   * @param matches    The persons that may be in both trees.
+   * @return True if the tree was merged, false if the merge was cancelled.
+   */
+  private boolean applyMerge(
+      @NotNull FamilyTree familyTree,
+      @NotNull TreeMerger merger,
+      @NotNull Path file,
+      @NotNull List<TreeMerger.Match> matches
+  ) {
+    if (familyTree != this.familyTree)
+      return false;
+    this.mergeTreeDialog.setMatches(file.getFileName().toString(), matches);
+    final Optional<Map<Person, Person>> matchedPersons = matches.isEmpty()
+        ? Optional.of(Map.of())
+        : this.mergeTreeDialog.showAndWait();
+    if (matchedPersons.isEmpty())
+      return false;
+    if (merger.historySize() > familyTree.history().memoryBudget() && !Alerts.confirmation(
+        this.config,
+        "alert.merge_not_undoable.header",
+        "alert.merge_not_undoable.content",
+        null
+    ))
+      return false;
+    final TreeMerger.Result result = merger.apply(matchedPersons.get());
+    familyTree.fireChange(new FamilyTreeChange.RegistriesChanged());
+    this.applyTreeChanges();
+    Alerts.info(
+        this.config,
+        "alert.merge_done.header",
+        "alert.merge_done.content",
+        "alert.merge_done.title",
+        new FormatArg("persons", result.addedPersons()),
+        new FormatArg("merged", result.mergedPersons()),
+        new FormatArg("events", result.addedLifeEvents()),
+        new FormatArg("documents", result.addedDocuments()),
+        new FormatArg("skipped", result.skipped())
+    );
+    return true;
+  }
+
+  /**
+   * Delete the temporary directories of the trees merged into the current one.
+   */
+  private void deleteMergedTreesDirectories() {
+    this.mergedTreesDirectories.forEach(AppController::deleteTempDirectory);
+    this.mergedTreesDirectories.clear();
+  }
+
+  private static void deleteTempDirectory(@NotNull Path directory) {
+    try {
+      FileUtils.deleteRecursively(directory);
+    } catch (final IOException e) {
+      App.LOGGER.exception(e);
+    }
   }
 
   /**
    * Open a file chooser dialog to export this tree as a ZIP file.
+   * The file is written in the background.
    */
   private void onExportTreeAction() {
     final var file = FileChoosers.showZippedTreeFileSaver(this.config, this.stage, this.familyTree.name());
     if (file.isEmpty())
       return;
+    // The saved files are exported, they have to be up-to-date
+    if (this.unsavedChanges) {
+      if (Alerts.confirmation(this.config, "alert.save_before_export.header", null, null))
+        this.saveFile(() -> this.exportTree(file.get()));
+    } else
+      this.exportTree(file.get());
+  }
 
-    try {
-      FileUtils.zip(this.loadedFile, file.get());
-    } catch (final IOException e) {
-      App.LOGGER.exception(e);
-      Alerts.error(
-          this.config,
-          "alert.save_error.header",
-          "alert.save_error.content",
-          "alert.save_error.title",
-          new FormatArg("trace", e.getMessage())
-      );
-    }
+  /**
+   * Export the saved files of this tree as a ZIP file in the background.
+   *
+   * @param file The file to write to.
+   */
+  private void exportTree(@NotNull Path file) {
+    final Path directory = this.loadedFile;
+    this.exportedDirectories.add(directory);
+    this.updateUI();
+    App.taskScheduler().submit(
+        this.config.language().translate("task.export_tree", new FormatArg("file", file.getFileName())),
+        TaskScheduler.Priority.NORMAL,
+        context -> {
+          try {
+            FileUtils.zip(directory, file, context);
+          } catch (final CancellationException e) {
+            // Do not leave an incomplete file behind
+            Files.deleteIfExists(file);
+            throw e;
+          }
+          return null;
+        },
+        result -> this.onExportDone(directory),
+        e -> {
+          this.onExportDone(directory);
+          Alerts.taskError(this.config, e, "save_error");
+        }
+    );
+  }
+
+  /**
+   * Allow saving a tree again once it has been exported.
+   *
+   * @param directory The directory of the exported tree.
+   */
+  private void onExportDone(@NotNull Path directory) {
+    this.exportedDirectories.remove(directory);
+    this.updateUI();
   }
 
   /**
-   * Load a tree from a directory.
+   * Load a tree from a directory in the background. The tree becomes the current one once loaded.
+   * Any tree that is still being loaded is cancelled.
    *
    * @param directoryName The name of the directory to read.
-   * @return The tree read from the file.
+   * @param onFailure     An action to run if the tree could not be loaded or its loading was cancelled
+   *                      by the user. May be null.
    */
-  private boolean loadTree(@NotNull String directoryName) {
+  private void loadTree(@NotNull String directoryName, Runnable onFailure) {
+    final int loadId = ++this.loadId;
+    if (this.loadingJob != null)
+      this.loadingJob.cancel();
     App.LOGGER.info("Loading tree %s…".formatted(directoryName));
-    final FamilyTree familyTree;
     final Path path = App.USER_DATA_DIR.resolve(directoryName);
-    try {
-      familyTree = new FamilyTreeReader().loadFromDirectory(path);
-    } catch (final IOException e) {
-      App.LOGGER.exception(e);
-      Alerts.error(
-          this.config,
-          "alert.load_error.header",
-          "alert.load_error.content",
-          "alert.load_error.title",
-          new FormatArg("trace", e.getMessage())
-      );
-      return false;
-    }
-    App.LOGGER.info("Done");
-
-    this.setFamilyTree(familyTree, path);
-    return true;
+    // The current tree must not be edited while it is being replaced
+    this.mainPane.setDisable(true);
+    this.changedWhileLoading = false;
+    this.loadingJob = App.taskScheduler().submit(
+        this.config.language().translate("task.load_tree", new FormatArg("name", directoryName)),
+        TaskScheduler.Priority.HIGH,
+        context -> new FamilyTreeReader().loadFromDirectory(path),
+        familyTree -> {
+          this.loadingJob = null;
+          App.LOGGER.info("Done");
+          // Menu accelerators still work while the main pane is disabled
+          if (this.changedWhileLoading) {
+            this.mainPane.setDisable(false);
+            this.proceedAfterOptionalSave(() -> this.setFamilyTree(familyTree, path));
+          } else
+            this.setFamilyTree(familyTree, path);
+        },
+        e -> {
+          if (loadId != this.loadId)
+            return; // Replaced by another load
+          this.loadingJob = null;
+          this.mainPane.setDisable(this.familyTree == null);
+          Alerts.taskError(this.config, e, "load_error");
+          if (onFailure != null)
+            onFailure.run();
+        }
+    );
   }
 
   /**
    * Save the current tree.
    */
   private void onSaveAction() {
-    if (this.saveFile()) {
-      this.unsavedChanges = false;
-      this.updateUI();
-    }
+    this.saveFile(null);
   }
 
   /**
-   * Save the current tree to a file.
+   * Save the current tree in the background.
+   * <p>
+   * The tree is written from a snapshot of its current state, it may be edited while it is being saved.
+   * The history cannot be navigated until the save is done, as undoing an edit could restore
+   * a document whose file is being deleted.
    *
-   * @return True if save succeeded, false otherwise.
+   * @param onSuccess An action to run once the tree has been saved, if it is still the current one. May be null.
    */
-  private boolean saveFile() {
-    App.LOGGER.info("Saving tree to %s…".formatted(this.loadedFile));
-    try {
-      this.familyTreeWriter.saveToDirectory(this.familyTree, this.loadedFile, this.config);
-    } catch (final IOException e) {
-      App.LOGGER.exception(e);
-      Alerts.error(
-          this.config,
-          "alert.save_error.header",
-          "alert.save_error.content",
-          "alert.save_error.title",
-          new FormatArg("trace", e.getMessage())
-      );
-      return false;
+  private void saveFile(Runnable onSuccess) {
+    if (this.exportedDirectories.contains(this.loadedFile)) {
+      Alerts.warning(this.config, "alert.save_during_export.header", null, null);
+      return;
     }
-    App.LOGGER.info("Done");
-    return true;
+    if (this.savingJob != null) {
+      Alerts.warning(this.config, "alert.save_in_progress.header", null, null);
+      return;
+    }
+    final FamilyTree familyTree = this.familyTree;
+    final Path directory = this.loadedFile;
+    final FamilyTreeSnapshot snapshot = familyTree.snapshot();
+    final List<FileOperation> fileOperations = List.copyOf(familyTree.pendingFileOperations());
+    // Documents may still be copied from these directories while another tree is opened
+    final List<Path> mergedTreesDirectories = new ArrayList<>(this.mergedTreesDirectories);
+    this.mergedTreesDirectories.clear();
+    this.changedWhileSaving = false;
+    App.LOGGER.info("Saving tree to %s…".formatted(directory));
+    this.savingJob = App.taskScheduler().submit(
+        this.config.language().translate("task.save_tree", new FormatArg("name", snapshot.name())),
+        TaskScheduler.Priority.HIGH,
+        context -> this.familyTreeWriter.saveToDirectory(snapshot, fileOperations, directory, this.config),
+        newPaths -> {
+          this.savingJob = null;
+          newPaths.forEach(AttachedDocument::setPath);
+          familyTree.removePendingFileOperations(fileOperations);
+          mergedTreesDirectories.forEach(AppController::deleteTempDirectory);
+          App.LOGGER.info("Done");
+          // Another tree may have been loaded in the meantime
+          if (familyTree != this.familyTree)
+            return;
+          this.unsavedChanges = this.changedWhileSaving;
+          this.updateUI();
+          if (onSuccess != null)
+            onSuccess.run();
+        },
+        e -> {
+          this.savingJob = null;
+          if (familyTree == this.familyTree)
+            this.mergedTreesDirectories.addAll(mergedTreesDirectories);
+          else
+            mergedTreesDirectories.forEach(AppController::deleteTempDirectory);
+          this.updateUI();
+          Alerts.taskError(this.config, e, "save_error");
+        }
+    );
+    this.updateUI();
   }
 
   /**
@@ -893,15 +1297,29 @@ public class AppController {
    * Set the selected person as the root of the current tree.
    */
   private void onSetAsRootAction() {
-    this.getSelectedPerson().ifPresent(root -> {
-      this.familyTree.setRoot(root);
-      this.unsavedChanges = true;
-      this.geneticFamilyTreePane.refresh();
-      this.familyMemberFullViewPane.refresh();
-      this.familyMembersTreeView.refresh();
-      this.personDetailsView.refresh();
-      this.updateUI();
-    });
+    this.getSelectedPerson().ifPresent(root -> this.familyTree.setRoot(root));
+  }
+
+  /**
+   * Undo the last changes made to the current tree.
+   */
+  private void onUndoAction() {
+    final UndoHistory history = this.familyTree.history();
+    if (history.canUndo()) {
+      history.undo();
+      this.applyTreeChanges();
+    }
+  }
+
+  /**
+   * Redo the last undone changes of the current tree.
+   */
+  private void onRedoAction() {
+    final UndoHistory history = this.familyTree.history();
+    if (history.canRedo()) {
+      history.redo();
+      this.applyTreeChanges();
+    }
   }
 
   /**
@@ -973,21 +1391,8 @@ public class AppController {
           null,
           "alert.delete_person.title"
       );
-      if (delete) {
+      if (delete)
         this.familyTree.removePerson(person);
-
-        // Update UI
-        this.geneticFamilyTreePane.refresh();
-        this.familyMemberFullViewPane.refresh();
-        this.familyMembersTreeView.refresh();
-        this.statisticsPanel.refresh();
-        if (this.personDetailsView.person() == person)
-          this.personDetailsView.setPerson(null, this.familyTree);
-        else
-          this.personDetailsView.refresh();
-        this.unsavedChanges = true;
-        this.updateUI();
-      }
     });
   }
 
@@ -1104,15 +1509,8 @@ public class AppController {
   private void onEditRegistriesAction() {
     this.editRegistriesDialog.refresh(this.familyTree);
     final Optional<ButtonType> result = this.editRegistriesDialog.showAndWait();
-    if (result.isPresent() && !result.get().getButtonData().isCancelButton()) {
-      this.familyMembersTreeView.refresh();
-      this.geneticFamilyTreePane.refresh();
-      this.familyMemberFullViewPane.refresh();
-      this.statisticsPanel.refresh();
-      this.personDetailsView.refresh();
-      this.unsavedChanges = true;
-      this.updateUI();
-    }
+    if (result.isPresent() && !result.get().getButtonData().isCancelButton())
+      this.familyTree.fireChange(new FamilyTreeChange.RegistriesChanged());
   }
 
   /**
@@ -1123,16 +1521,84 @@ public class AppController {
     this.editDocumentsDialog.showAndWait().ifPresent(this::onDocumentsUpdate);
   }
 
-  private void onDocumentsUpdate(@NotNull ManageDocumentsDialog.Result result) {
-    if (result.targetUpdated() || result.anyDocumentUpdated()) {
-      this.familyMembersTreeView.refresh();
-      this.geneticFamilyTreePane.refresh();
-      this.familyMemberFullViewPane.refresh();
-      this.statisticsPanel.refresh();
-      this.personDetailsView.refresh();
-      this.unsavedChanges = true;
-      this.updateUI();
+  /**
+   * Open the dialog to edit the current tree’s places.
+   */
+  private void onEditPlacesAction() {
+    this.editPlacesDialog.refresh(this.familyTree);
+    this.editPlacesDialog.showAndWait();
+    this.applyTreeChanges();
+  }
+
+  /**
+   * Look up the coordinates of all places without any in the background.
+   * Requests are rate-limited, the found coordinates are applied at once when all lookups are done.
+   */
+  private void onGeoCodePlacesAction() {
+    final FamilyTree familyTree = this.familyTree;
+    final Set<String> addresses = familyTree.addressesWithoutCoordinates();
+    if (addresses.isEmpty()) {
+      Alerts.info(
+          this.config,
+          "alert.no_places_to_geocode.header",
+          null,
+          "alert.no_places_to_geocode.title"
+      );
+      return;
     }
+
+    final Language language = this.config.language();
+    App.taskScheduler().submit(
+        language.translate("task.geocode_places", addresses.size(), new FormatArg("count", addresses.size())),
+        TaskScheduler.Priority.NORMAL,
+        context -> new BatchGeoCoder().geoCode(addresses, context),
+        coordinates -> {
+          if (familyTree != this.familyTree)
+            return;
+          final int updated = familyTree.setPlacesCoordinates(coordinates);
+          if (updated != 0)
+            this.applyTreeChanges();
+          Alerts.info(
+              this.config,
+              "alert.geocoding_done.header",
+              "alert.geocoding_done.content",
+              "alert.geocoding_done.title",
+              new FormatArg("found", coordinates.size()),
+              new FormatArg("total", addresses.size())
+          );
+        },
+        e -> Alerts.taskError(this.config, e, "geocoding_error")
+    );
+  }
+
+  /**
+   * Open a file chooser dialog to select a GeoNames-style dump
+   * then build the offline gazetteer from it in the background.
+   */
+  private void onImportGazetteerAction() {
+    final var file = FileChoosers.showGazetteerFileChooser(this.config, this.stage);
+    if (file.isEmpty())
+      return;
+
+    App.taskScheduler().submit(
+        this.config.language().translate("task.import_gazetteer", new FormatArg("file", file.get().getFileName())),
+        TaskScheduler.Priority.NORMAL,
+        context -> GeoCoder.importGazetteer(file.get(), context),
+        count -> Alerts.info(
+            this.config,
+            "alert.gazetteer_imported.header",
+            "alert.gazetteer_imported.content",
+            "alert.gazetteer_imported.title",
+            new FormatArg("count", count)
+        ),
+        e -> Alerts.taskError(this.config, e, "gazetteer_import_error")
+    );
+  }
+
+  private void onDocumentsUpdate(@NotNull ManageDocumentsDialog.Result result) {
+    // Changed documents have been reported by the tree and the document edit dialog
+    if (result.targetUpdated() || result.anyDocumentUpdated())
+      this.applyTreeChanges();
   }
 
   /**
@@ -1153,18 +1619,13 @@ public class AppController {
       this.editPersonDialog.setParents(parents);
     this.editPersonDialog.selectTab(tabIndex);
     this.editPersonDialog.showAndWait().ifPresent(editedPerson -> {
-      this.familyMembersTreeView.refresh();
-      this.geneticFamilyTreePane.refresh();
-      this.familyMemberFullViewPane.refresh();
-      this.statisticsPanel.refresh();
-      this.personDetailsView.refresh();
+      // Apply changes now so that the new person can be selected in the views
+      this.applyTreeChanges();
       if (person == null && childInfo != null && childInfo.isEmpty())
         this.onPersonClick(
             new PersonClickedEvent(editedPerson, PersonClickedEvent.Action.SET_AS_TARGET),
             null
         );
-      this.unsavedChanges = true;
-      this.updateUI();
     });
   }
 
@@ -1181,17 +1642,30 @@ public class AppController {
         this.config.isDebug() ? " [Debug]" : ""
     );
     this.stage.setTitle(title);
+    this.computeRelativesCounts();
 
     if (this.birthdaysDialog.isShowing())
       this.birthdaysDialog.refresh(this.familyTree);
     if (this.mapDialog.isShowing())
       this.mapDialog.refresh(this.familyTree);
+    if (this.relationshipsDialog.isShowing())
+      this.relationshipsDialog.refresh(this.familyTree);
+    if (this.duplicatesDialog.isShowing())
+      this.duplicatesDialog.refresh(this.familyTree);
+    this.pedigreePanel.setPerson(
+        this.familyTree,
+        this.geneticFamilyTreePane.getSelectedPerson()
+            .or(this.geneticFamilyTreePane::targettedPerson)
+            .orElse(null)
+    );
 
     final var selectedPerson = this.getSelectedPerson();
     final boolean selection = selectedPerson.isPresent();
     final boolean hasAnyParents = selection && selectedPerson.get().hasAnyParents();
     final boolean selectedIsRoot = selection && this.familyTree.isRoot(selectedPerson.get());
     final boolean noTarget = this.geneticFamilyTreePane.targettedPerson().isEmpty();
+    final boolean exporting = this.exportedDirectories.contains(this.loadedFile);
+    final boolean saving = this.savingJob != null;
 
     this.openTreeMenu.getItems().clear();
     final Map<String, TreeMetadata> treesMetadata = App.treesMetadataManager().treesMetadata();
@@ -1210,7 +1684,9 @@ public class AppController {
       this.openTreeMenu.getItems().add(this.manageTreesMenuItem);
     }
 
-    this.saveMenuItem.setDisable(!this.unsavedChanges);
+    this.saveMenuItem.setDisable(!this.unsavedChanges || exporting || saving);
+    this.undoMenuItem.setDisable(saving || !this.familyTree.history().canUndo());
+    this.redoMenuItem.setDisable(saving || !this.familyTree.history().canRedo());
     this.setAsRootMenuItem.setDisable(!selection || selectedIsRoot);
     this.editPersonMenuItem.setDisable(!selection);
     this.removePersonMenuItem.setDisable(!selection || selectedIsRoot);
@@ -1221,7 +1697,9 @@ public class AppController {
     this.editDocumentsMenuItem.setDisable(!selection);
     this.exportTreeAsMenuItem.setDisable(noTarget);
 
-    this.saveToolbarButton.setDisable(!this.unsavedChanges);
+    this.saveToolbarButton.setDisable(!this.unsavedChanges || exporting || saving);
+    this.undoToolbarButton.setDisable(saving || !this.familyTree.history().canUndo());
+    this.redoToolbarButton.setDisable(saving || !this.familyTree.history().canRedo());
     this.previousSelectionToolbarButton.setDisable(this.selectionIndex <= 0);
     this.nextSelectionToolbarButton.setDisable(
         this.selectionIndex == -1 || this.selectionIndex == this.selectionHistory.size() - 1);
@@ -1258,6 +1736,27 @@ public class AppController {
     this.birthdaysDialog.show();
   }
 
+  /**
+   * Open relationships dialog, with the currently selected person, if any, as the first person.
+   */
+  private void onShowRelationshipsDialog() {
+    if (this.relationshipsDialog.isShowing())
+      return;
+    this.relationshipsDialog.refresh(this.familyTree);
+    this.getSelectedPerson().ifPresent(this.relationshipsDialog::setPerson1);
+    this.relationshipsDialog.show();
+  }
+
+  /**
+   * Highlight the path of the given relationship in the person relatives view.
+   *
+   * @param relationship The relationship to show.
+   */
+  private void onShowRelationship(final @NotNull Relationship relationship) {
+    this.familyMemberFullViewTab.getTabPane().getSelectionModel().select(this.familyMemberFullViewTab);
+    this.familyMemberFullViewPane.showRelationship(relationship);
+  }
+
   /**
    * Open map dialog.
    */
@@ -1268,6 +1767,16 @@ public class AppController {
     this.mapDialog.show();
   }
 
+  /**
+   * Open duplicates dialog.
+   */
+  private void onShowDuplicatesDialog() {
+    if (this.duplicatesDialog.isShowing())
+      return;
+    this.duplicatesDialog.refresh(this.familyTree);
+    this.duplicatesDialog.show();
+  }
+
   /**
    * Open settings dialog.
    */
@@ -1286,17 +1795,33 @@ public class AppController {
   /**
    * Check if there are unsaved changes and, if so, warn the user.
    * The user can choose to discard or save changes, or cancel the dialog.
+   * <p>
+   * The action is run right away if there are no unsaved changes or the user chose to discard them,
+   * once the tree has been saved if they chose to save it, and not at all if they cancelled
+   * or the tree is still being saved.
    *
-   * @return True if there are no unsaved changes, or the user chose to discard them,
-   * or they chose to save and the save was successful.
+   * @param action The action to run.
    */
-  private boolean canProceedAfterOptionalSave() {
-    final Optional<Boolean> open = Alerts.confirmationWithCancel(
+  private void proceedAfterOptionalSave(@NotNull Runnable action) {
+    if (this.savingJob != null) {
+      Alerts.warning(this.config, "alert.save_in_progress.header", null, null);
+      return;
+    }
+    if (!this.unsavedChanges) {
+      action.run();
+      return;
+    }
+    final Optional<Boolean> save = Alerts.confirmationWithCancel(
         this.config,
         "alert.unsaved_changes.header",
         "alert.unsaved_changes.content",
         null
     );
-    return open.isPresent() && (!open.get() || this.saveFile());
+    if (save.isEmpty())
+      return;
+    if (save.get())
+      this.saveFile(action);
+    else
+      action.run();
   }
 }
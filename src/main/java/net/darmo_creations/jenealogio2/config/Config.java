@@ -2,12 +2,14 @@ package net.darmo_creations.jenealogio2.config;
 
 import net.darmo_creations.jenealogio2.*;
 import net.darmo_creations.jenealogio2.config.theme.*;
+import net.darmo_creations.jenealogio2.model.*;
 import net.darmo_creations.jenealogio2.ui.*;
 import net.darmo_creations.jenealogio2.utils.*;
 import org.ini4j.*;
 import org.jetbrains.annotations.*;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -17,6 +19,12 @@ import java.util.*;
  * and the application to be restarted to apply.
  */
 public final class Config implements Cloneable {
+  /**
+   * Bounds of the memory budget of the undo history, in KiB.
+   */
+  public static final int MIN_UNDO_HISTORY_SIZE = 64;
+  public static final int MAX_UNDO_HISTORY_SIZE = 1 << 16;
+
   private static final Map<LanguageSetting, Language> LANGUAGES = new EnumMap<>(LanguageSetting.class);
 
   private static final File SETTINGS_FILE = new File("settings.ini");
@@ -30,6 +38,9 @@ public final class Config implements Cloneable {
   private static final String TIME_FORMAT_OPTION = "time_format";
   private static final String SHOW_DECEASED_BIRTHDAYS_OPTION = "show_deceased_birthdays";
   private static final String SHOW_LEGENDS = "show_legends";
+  private static final String UNDO_HISTORY_SIZE_OPTION = "undo_history_size";
+  private static final String GEOCODING_STRATEGY_OPTION = "geocoding_strategy";
+  private static final String MAP_TILE_PACK_OPTION = "map_tile_pack";
 
   /**
    * Load the configuration from the settings file.
@@ -62,11 +73,14 @@ public final class Config implements Cloneable {
 
     final int dateFormatOrdinal = ini.get(APP_SECTION, DATE_FORMAT_OPTION, int.class);
     final int timeFormatOrdinal = ini.get(APP_SECTION, TIME_FORMAT_OPTION, int.class);
+    final int geoCodingStrategyOrdinal = ini.get(APP_SECTION, GEOCODING_STRATEGY_OPTION, int.class);
     final DateFormat dateFormat;
     final TimeFormat timeFormat;
+    final GeoCodingStrategy geoCodingStrategy;
     try {
       dateFormat = DateFormat.values()[dateFormatOrdinal];
       timeFormat = TimeFormat.values()[timeFormatOrdinal];
+      geoCodingStrategy = GeoCodingStrategy.values()[geoCodingStrategyOrdinal];
     } catch (final IndexOutOfBoundsException e) {
       throw new ConfigException(e);
     }
@@ -75,6 +89,17 @@ public final class Config implements Cloneable {
     // Default to true if option is not present
     final boolean showLegends = ini.get(APP_SECTION, SHOW_LEGENDS) == null ||
         ini.get(APP_SECTION, SHOW_LEGENDS, boolean.class);
+    Integer undoHistorySize = ini.get(APP_SECTION, UNDO_HISTORY_SIZE_OPTION, Integer.class);
+    if (undoHistorySize == null)
+      undoHistorySize = (int) (UndoHistory.DEFAULT_MEMORY_BUDGET >> 10);
+    final Path mapTilePack;
+    try {
+      mapTilePack = StringUtils.stripNullable(ini.get(APP_SECTION, MAP_TILE_PACK_OPTION))
+          .map(Path::of)
+          .orElse(null);
+    } catch (final InvalidPathException e) {
+      throw new ConfigException(e);
+    }
 
     try {
       return new Config(
@@ -86,6 +111,9 @@ public final class Config implements Cloneable {
           timeFormat,
           showDeceasedPersonsBirthdays,
           showLegends,
+          undoHistorySize,
+          geoCodingStrategy,
+          mapTilePack,
           debug
       );
     } catch (final IllegalArgumentException e) {
@@ -161,6 +189,9 @@ public final class Config implements Cloneable {
   private TimeFormat timeFormat;
   private boolean showDeceasedPersonsBirthdays;
   private boolean showLegends;
+  private int undoHistorySize;
+  private GeoCodingStrategy geoCodingStrategy;
+  private Path mapTilePack;
 
   /**
    * Create a configuration object.
@@ -172,6 +203,9 @@ public final class Config implements Cloneable {
    * @param dateFormat           Date format.
    * @param timeFormat           Time format.
    * @param showLegends          Whether to show the legends in tree views.
+   * @param undoHistorySize      Memory budget of the undo history, in KiB.
+   * @param geoCodingStrategy    Where to look up the coordinates of addresses.
+   * @param mapTilePack          The directory of the local map tiles. May be null.
    * @param debug                Whether to run the app in debug mode.
    */
   public Config(
@@ -183,6 +217,9 @@ public final class Config implements Cloneable {
       @NotNull TimeFormat timeFormat,
       boolean showDeceasedPersonsBirthdays,
       boolean showLegends,
+      int undoHistorySize,
+      @NotNull GeoCodingStrategy geoCodingStrategy,
+      Path mapTilePack,
       boolean debug
   ) {
     this.languageSetting = Objects.requireNonNull(languageSetting);
@@ -195,6 +232,9 @@ public final class Config implements Cloneable {
     this.setTimeFormat(timeFormat);
     this.setShouldShowDeceasedPersonsBirthdays(showDeceasedPersonsBirthdays);
     this.setShouldShowLegends(showLegends);
+    this.setUndoHistorySize(undoHistorySize);
+    this.setGeoCodingStrategy(geoCodingStrategy);
+    this.setMapTilePack(mapTilePack);
     this.debug = debug;
   }
 
@@ -292,6 +332,56 @@ public final class Config implements Cloneable {
     this.showLegends = showLegends;
   }
 
+  /**
+   * The memory budget of the undo history of trees, in KiB.
+   */
+  public int undoHistorySize() {
+    return this.undoHistorySize;
+  }
+
+  /**
+   * Set the memory budget of the undo history of trees.
+   *
+   * @param size The new budget in KiB.
+   */
+  public void setUndoHistorySize(int size) {
+    if (size < MIN_UNDO_HISTORY_SIZE || size > MAX_UNDO_HISTORY_SIZE)
+      throw new IllegalArgumentException("invalid undo history size");
+    this.undoHistorySize = size;
+  }
+
+  /**
+   * Where to look up the coordinates of addresses.
+   */
+  public GeoCodingStrategy geoCodingStrategy() {
+    return this.geoCodingStrategy;
+  }
+
+  /**
+   * Set where to look up the coordinates of addresses.
+   *
+   * @param geoCodingStrategy The new strategy.
+   */
+  public void setGeoCodingStrategy(@NotNull GeoCodingStrategy geoCodingStrategy) {
+    this.geoCodingStrategy = Objects.requireNonNull(geoCodingStrategy);
+  }
+
+  /**
+   * The directory of the local map tiles.
+   */
+  public Optional<Path> mapTilePack() {
+    return Optional.ofNullable(this.mapTilePack);
+  }
+
+  /**
+   * Set the directory of the local map tiles.
+   *
+   * @param mapTilePack The new directory. May be null to only use online tiles.
+   */
+  public void setMapTilePack(Path mapTilePack) {
+    this.mapTilePack = mapTilePack;
+  }
+
   /**
    * Whether the app is in debug mode.
    */
@@ -315,6 +405,9 @@ public final class Config implements Cloneable {
         this.timeFormat,
         this.showDeceasedPersonsBirthdays,
         this.showLegends,
+        this.undoHistorySize,
+        this.geoCodingStrategy,
+        this.mapTilePack,
         this.debug
     );
   }
@@ -335,6 +428,9 @@ public final class Config implements Cloneable {
         this.timeFormat,
         this.showDeceasedPersonsBirthdays,
         this.showLegends,
+        this.undoHistorySize,
+        this.geoCodingStrategy,
+        this.mapTilePack,
         this.debug
     );
   }
@@ -367,6 +463,9 @@ public final class Config implements Cloneable {
     ini.put(APP_SECTION, TIME_FORMAT_OPTION, this.timeFormat.ordinal());
     ini.put(APP_SECTION, SHOW_DECEASED_BIRTHDAYS_OPTION, this.showDeceasedPersonsBirthdays);
     ini.put(APP_SECTION, SHOW_LEGENDS, this.showLegends);
+    ini.put(APP_SECTION, UNDO_HISTORY_SIZE_OPTION, this.undoHistorySize);
+    ini.put(APP_SECTION, GEOCODING_STRATEGY_OPTION, this.geoCodingStrategy.ordinal());
+    ini.put(APP_SECTION, MAP_TILE_PACK_OPTION, this.mapTilePack != null ? this.mapTilePack.toString() : "");
     ini.store();
     App.LOGGER.info("Done.");
   }
@@ -386,6 +485,9 @@ public final class Config implements Cloneable {
         && this.dateFormat == that.dateFormat
         && this.timeFormat == that.timeFormat
         && this.showLegends == that.showLegends
+        && this.undoHistorySize == that.undoHistorySize
+        && this.geoCodingStrategy == that.geoCodingStrategy
+        && Objects.equals(this.mapTilePack, that.mapTilePack)
         && this.showDeceasedPersonsBirthdays == that.showDeceasedPersonsBirthdays;
   }
 
@@ -400,7 +502,10 @@ public final class Config implements Cloneable {
         this.dateFormat,
         this.timeFormat,
         this.showLegends,
-        this.showDeceasedPersonsBirthdays
+        this.showDeceasedPersonsBirthdays,
+        this.undoHistorySize,
+        this.geoCodingStrategy,
+        this.mapTilePack
     );
   }
 }
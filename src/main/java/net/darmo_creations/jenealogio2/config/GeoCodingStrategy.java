@@ -0,0 +1,21 @@
+package net.darmo_creations.jenealogio2.config;
+
+import net.darmo_creations.jenealogio2.utils.*;
+
+/**
+ * Enumeration of the sources {@link GeoCoder} may look up addresses from.
+ */
+public enum GeoCodingStrategy {
+  /**
+   * Only query the online geocoding service.
+   */
+  ONLINE,
+  /**
+   * Only search the offline gazetteer.
+   */
+  OFFLINE,
+  /**
+   * Search the offline gazetteer first, then query the online service for the addresses it does not know.
+   */
+  BOTH,
+}
@@ -13,6 +13,7 @@ public enum Icon {
   OPEN_TREE("folder_vertical_open"),
   MANAGE_TREES("tree_gear"),
   IMPORT_TREE_FILE("tree_down"),
+  MERGE_TREE_FILE("tree_down"),
   EXPORT_TREE_FILE("tree_up"),
   SAVE("diskette"),
   SETTINGS("cog"),
@@ -24,6 +25,8 @@ public enum Icon {
   PERSON_NEXT("user_go"),
   EDIT_REGISTRIES("tag_blue_edit"),
   EDIT_TREE_DOCUMENTS("page_white_stack_edit"),
+  EDIT_PLACES("map"),
+  GEOCODE_PLACES("download_cloud"),
   RENAME_TREE("tree_textfield"),
   SET_AS_ROOT("anchor"),
   CREATE_PERSON("user_add"),
@@ -41,6 +44,7 @@ public enum Icon {
   CALCULATE_RELATIONSHIPS("link_go"),
   BIRTHDAYS("cake"),
   MAP("map"),
+  IMPORT_GAZETTEER("map_magnify"),
   CHECK_INCONSISTENCIES("error_go"),
 
   ABOUT("information"),
@@ -93,6 +97,7 @@ public enum Icon {
 
   ADD_ENTRY("plus"),
   DELETE_ENTRY("cross"),
+  REPLACE_ENTRY("arrow_refresh"),
 
   INFO("information"),
 
@@ -103,6 +108,7 @@ public enum Icon {
   LIFE_EVENTS_TAB("clock"),
   FAMILY_TAB("users_5"),
   FOSTER_PARENTS_TAB("users_3"),
+  KINSHIP_TAB("link_go"),
   EDIT_MAIN_PICTURE("pencil"),
   REMOVE_MAIN_PICTURE("minus"),
 
@@ -118,8 +124,15 @@ public enum Icon {
 
   COPY_TO_CLIPBOARD("clipboard_invoice"),
 
+  SELECT_PERSON("user_edit"),
+  SHOW_RELATIONSHIP_PATH("link_go"),
+
   NO_IMAGE("picture_error"),
 
+  CANCEL_TASK("cross"),
+  FIND_DUPLICATES("users_3"),
+  DISMISS_DUPLICATE("cross"),
+
   // File extensions
   UNKNOWN_FILE_EXT("page_white"),
   FILE_EXT_SWF("file_extension_swf"),
@@ -8,6 +8,7 @@ import org.jetbrains.annotations.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.*;
 
 /**
  * Writes {@link FamilyTree}s to the file system. See {@link TreeFileManager} for more details.
@@ -16,42 +17,58 @@ public class FamilyTreeWriter extends TreeFileManager {
   private final TreeXMLWriter treeXMLWriter = new TreeXMLWriter();
 
   /**
-   * Save a family tree to the file system.
+   * Save a snapshot of a family tree to the file system, then perform the given file operations.
+   * <p>
+   * Neither the snapshot nor the documents are modified, so that trees may be saved outside the JavaFX thread.
+   * The paths returned for the copied and renamed documents have to be set with
+   * {@link AttachedDocument#setPath(Path)} once the tree has been saved.
    *
-   * @param familyTree Family tree object to save.
-   * @param directory  Directory to write to.
-   * @param config     The app’s config.
-   * @throws IOException If any error occurs.
+   * @param familyTree     Snapshot of the family tree to save.
+   * @param fileOperations The pending file operations of the tree.
+   * @param directory      Directory to write to.
+   * @param config         The app’s config.
+   * @return The new path of each document whose file was copied or moved.
+   * @throws IOException If the tree file could not be written.
    */
-  public void saveToDirectory(final @NotNull FamilyTree familyTree, @NotNull Path directory, final @NotNull Config config) throws IOException {
+  public Map<AttachedDocument, Path> saveToDirectory(
+      final @NotNull FamilyTreeSnapshot familyTree,
+      final @NotNull List<FileOperation> fileOperations,
+      @NotNull Path directory,
+      final @NotNull Config config
+  ) throws IOException {
     final Path filesDir = directory.resolve(FILES_DIR);
     if (!Files.exists(filesDir))
       Files.createDirectories(filesDir);
     try (final var out = new FileOutputStream(directory.resolve(TREE_FILE_NAME).toFile())) {
       this.treeXMLWriter.writeToStream(familyTree, out, config);
     }
-    this.performFileOperations(filesDir, familyTree);
+    return this.performFileOperations(filesDir, fileOperations);
   }
 
-  private void performFileOperations(@NotNull Path root, @NotNull FamilyTree familyTree) {
-    for (final FileOperation operation : familyTree.pendingFileOperations()) {
+  private Map<AttachedDocument, Path> performFileOperations(
+      @NotNull Path root,
+      final @NotNull List<FileOperation> fileOperations
+  ) {
+    // Documents are compared by file name, which may change
+    final Map<AttachedDocument, Path> newPaths = new IdentityHashMap<>();
+    for (final FileOperation operation : fileOperations) {
       try {
         if (operation instanceof ImportFileOperation ifo) {
           // FamilyTreeReader generates this operation when building the family tree, skip it
-          if (!ifo.sourceFile().equals(root.resolve(ifo.fileName()))) {
-            final Path newPath = Files.copy(ifo.sourceFile(), root.resolve(ifo.fileName()));
-            operation.document().setPath(newPath);
-          }
+          if (!ifo.sourceFile().equals(root.resolve(ifo.fileName())))
+            newPaths.put(operation.document(), Files.copy(ifo.sourceFile(), root.resolve(ifo.fileName())));
         } else if (operation instanceof DeleteFileOperation dfo) {
           Files.deleteIfExists(root.resolve(dfo.fileName()));
         } else if (operation instanceof RenameFileOperation rfo) {
-          final Path newPath = Files.move(root.resolve(rfo.fileName()), root.resolve(rfo.newFileName()));
-          operation.document().setPath(newPath);
+          newPaths.put(
+              operation.document(),
+              Files.move(root.resolve(rfo.fileName()), root.resolve(rfo.newFileName()))
+          );
         }
       } catch (final IOException e) {
         App.LOGGER.exception(e);
       }
     }
-    familyTree.clearPendingFileOperations();
+    return newPaths;
   }
 }
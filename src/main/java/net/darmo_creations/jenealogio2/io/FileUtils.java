@@ -4,6 +4,7 @@ import javafx.embed.swing.*;
 import javafx.scene.image.*;
 import net.darmo_creations.jenealogio2.*;
 import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import javax.imageio.*;
@@ -11,6 +12,8 @@ import java.awt.image.*;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
 import java.util.zip.*;
 
 public final class FileUtils {
@@ -20,10 +23,16 @@ public final class FileUtils {
    *
    * @param zipFilePath Path to the file to unzip.
    * @param destDir     Directory into which to unzip the file.
+   * @param context     The context of the task this method is called from, to report progress to.
    * @return The name of the resulting unzipped directory.
-   * @throws IOException If any I/O error occurs.
+   * @throws IOException           If any I/O error occurs.
+   * @throws CancellationException If the task is cancelled.
    */
-  public static String unzip(final @NotNull Path zipFilePath, @NotNull Path destDir) throws IOException {
+  public static String unzip(
+      final @NotNull Path zipFilePath,
+      @NotNull Path destDir,
+      @NotNull TaskScheduler.TaskContext context
+  ) throws IOException {
     final String dirName = splitExtension(zipFilePath.getFileName().toString()).fileName();
     destDir = destDir.resolve(dirName);
     if (!Files.exists(destDir))
@@ -32,8 +41,10 @@ public final class FileUtils {
     final byte[] buffer = new byte[1024];
     try (final FileInputStream fis = new FileInputStream(zipFilePath.toFile());
          final ZipInputStream zis = new ZipInputStream(fis)) {
+      final long totalSize = Math.max(1, fis.getChannel().size());
       ZipEntry ze;
       do {
+        context.checkCancelled();
         ze = zis.getNextEntry();
         if (ze != null) {
           final Path newFile = destDir.resolve(ze.getName());
@@ -49,6 +60,8 @@ public final class FileUtils {
             }
           }
           zis.closeEntry();
+          // Position in the compressed file
+          context.setProgress((double) fis.getChannel().position() / totalSize);
         }
       } while (ze != null);
     }
@@ -62,20 +75,33 @@ public final class FileUtils {
    *
    * @param targetDirectory Path to the directory to zip.
    * @param destFile        Path of the resulting zip file.
-   * @throws IOException If any I/O error occurs.
+   * @param context         The context of the task this method is called from, to report progress to.
+   * @throws IOException           If any I/O error occurs.
+   * @throws CancellationException If the task is cancelled.
    */
-  public static void zip(@NotNull Path targetDirectory, @NotNull Path destFile) throws IOException {
+  public static void zip(
+      @NotNull Path targetDirectory,
+      @NotNull Path destFile,
+      @NotNull TaskScheduler.TaskContext context
+  ) throws IOException {
+    final long totalSize;
+    try (final Stream<Path> files = Files.walk(targetDirectory)) {
+      totalSize = Math.max(1, files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum());
+    }
     try (final var fos = new FileOutputStream(destFile.toFile());
          final var zipOut = new ZipOutputStream(fos)) {
-      zipFile(targetDirectory, null, zipOut); // Pass null to skip the target directory itself
+      // Pass null to skip the target directory itself
+      zipFile(targetDirectory, null, zipOut, new ZipProgress(totalSize, context));
     }
   }
 
   private static void zipFile(
       @NotNull Path file,
       String fileName,
-      @NotNull ZipOutputStream zipOut
+      @NotNull ZipOutputStream zipOut,
+      @NotNull ZipProgress progress
   ) throws IOException {
+    progress.context().checkCancelled();
     if (Files.isDirectory(file)) {
       if (fileName != null) {
         if (fileName.endsWith("/"))
@@ -86,7 +112,7 @@ public final class FileUtils {
       }
       try (final var files = Files.newDirectoryStream(file)) {
         for (final Path path : files)
-          zipFile(path, (fileName != null ? fileName + "/" : "") + path.getFileName(), zipOut);
+          zipFile(path, (fileName != null ? fileName + "/" : "") + path.getFileName(), zipOut, progress);
       }
     } else {
       try (final var fis = new FileInputStream(file.toFile())) {
@@ -98,6 +124,30 @@ public final class FileUtils {
           zipOut.write(bytes, 0, length);
         zipOut.closeEntry();
       }
+      progress.add(file.toFile().length());
+    }
+  }
+
+  /**
+   * Tracks the number of bytes zipped so far.
+   */
+  private static final class ZipProgress {
+    private final long totalSize;
+    private final TaskScheduler.TaskContext context;
+    private long doneSize;
+
+    private ZipProgress(long totalSize, @NotNull TaskScheduler.TaskContext context) {
+      this.totalSize = totalSize;
+      this.context = context;
+    }
+
+    private TaskScheduler.TaskContext context() {
+      return this.context;
+    }
+
+    private void add(long size) {
+      this.doneSize += size;
+      this.context.setProgress((double) this.doneSize / this.totalSize);
     }
   }
 
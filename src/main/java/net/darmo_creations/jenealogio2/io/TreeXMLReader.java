@@ -20,6 +20,15 @@ import java.util.function.*;
  * Deserializes {@link FamilyTree} objects from XML data.
  */
 public class TreeXMLReader extends TreeXMLManager {
+  /**
+   * Deduplicates the names, occupations and addresses of the tree being read, null outside of reads.
+   */
+  private Interner<String> strings;
+  /**
+   * Deduplicates the places of the tree being read, null outside of reads.
+   */
+  private Interner<Place> places;
+
   // region Public methods
 
   /**
@@ -33,6 +42,21 @@ public class TreeXMLReader extends TreeXMLManager {
   public FamilyTree readFromStream(
       @NotNull InputStream inputStream,
       @NotNull AttachedDocumentBuilder documentBuilder
+  ) throws IOException {
+    this.strings = new Interner<>();
+    this.places = new Interner<>();
+    try {
+      return this.readTree(inputStream, documentBuilder);
+    } finally {
+      // Pools are only needed while reading
+      this.strings = null;
+      this.places = null;
+    }
+  }
+
+  private FamilyTree readTree(
+      @NotNull InputStream inputStream,
+      @NotNull AttachedDocumentBuilder documentBuilder
   ) throws IOException {
     final Document document = XmlUtils.readFile(inputStream);
 
@@ -88,10 +112,22 @@ public class TreeXMLReader extends TreeXMLManager {
     else lifeEvents = new ArrayList<>();
 
     this.applyDocumentAnnotations(persons, lifeEvents, annotations);
+    // Loading a tree is not a change that can be undone
+    familyTree.history().clear();
 
     return familyTree;
   }
 
+  /**
+   * Return the canonical instance of a string read from the current tree.
+   *
+   * @param s A string.
+   * @return The canonical instance if a tree is being read, the string itself otherwise.
+   */
+  private String intern(@NotNull String s) {
+    return this.strings != null ? this.strings.intern(s) : s;
+  }
+
   /**
    * Read registries from a {@code .reg} file.
    *
@@ -559,7 +595,7 @@ public class TreeXMLReader extends TreeXMLManager {
       final String occupation = XmlUtils.getAttr(
           occupationElement.get(),
           MAIN_OCCUPATION_VALUE_ATTR,
-          s -> s,
+          this::intern,
           null,
           true
       );
@@ -704,7 +740,7 @@ public class TreeXMLReader extends TreeXMLManager {
         consumer.accept(XmlUtils.getAttr(
             nameElement.get(),
             NAME_VALUE_ATTR,
-            s -> s,
+            this::intern,
             null,
             true
         ));
@@ -736,7 +772,7 @@ public class TreeXMLReader extends TreeXMLManager {
           names.add(XmlUtils.getAttr(
               nameElement,
               NAME_VALUE_ATTR,
-              s -> s,
+              this::intern,
               null,
               true
           ));
@@ -951,7 +987,7 @@ public class TreeXMLReader extends TreeXMLManager {
       final String address = XmlUtils.getAttr(
           element,
           PLACE_ADDRESS_ATTR,
-          s -> s,
+          this::intern,
           null,
           true
       );
@@ -962,7 +998,8 @@ public class TreeXMLReader extends TreeXMLManager {
           () -> null,
           false
       );
-      lifeEvent.setPlace(new Place(address, latLon));
+      final Place place = new Place(address, latLon);
+      lifeEvent.setPlace(this.places != null ? this.places.intern(place) : place);
     }
   }
 
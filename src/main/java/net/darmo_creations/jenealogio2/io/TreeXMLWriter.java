@@ -18,19 +18,23 @@ import java.util.stream.*;
 
 /**
  * Serializes {@link FamilyTree} objects to XML data.
+ * Trees are written from their {@link FamilyTreeSnapshot}s so that they may be saved outside the JavaFX thread.
  */
 public class TreeXMLWriter extends TreeXMLManager {
   // region Public methods
 
   /**
    * Save a family tree to an output stream.
+   * <p>
+   * Persons are identified by their index in the snapshot’s graph and life events by their index
+   * in {@link FamilyTreeSnapshot#lifeEvents()}.
    *
-   * @param familyTree   Family tree object to save.
+   * @param familyTree   Snapshot of the family tree to save.
    * @param outputStream Stream to write to.
    * @param config       The app’s config.
    */
   public void writeToStream(
-      final @NotNull FamilyTree familyTree,
+      final @NotNull FamilyTreeSnapshot familyTree,
       @NotNull OutputStream outputStream,
       final @NotNull Config config
   ) {
@@ -51,22 +55,18 @@ public class TreeXMLWriter extends TreeXMLManager {
         familyTree.name()
     );
 
-    final Map<Person, Integer> personIDs = new HashMap<>();
     final Map<LifeEvent, Integer> eventIDs = new HashMap<>();
-    final List<Person> persons = new LinkedList<>(familyTree.persons());
-    for (int i = 0; i < persons.size(); i++)
-      personIDs.put(persons.get(i), i);
-    final List<LifeEvent> events = new LinkedList<>(familyTree.lifeEvents());
+    final List<LifeEventSnapshot> events = familyTree.lifeEvents();
     for (int i = 0; i < events.size(); i++)
-      eventIDs.put(events.get(i), i);
+      eventIDs.put(events.get(i).lifeEvent(), i);
 
-    this.writeUserRegistryEntries(document, familyTreeElement, familyTree, null);
-    this.writeDocuments(document, familyTreeElement, familyTree, personIDs, eventIDs);
+    this.writeUserRegistryEntries(document, familyTreeElement, familyTree.registries());
+    this.writeDocuments(document, familyTreeElement, familyTree, eventIDs);
     final Element peopleElement = (Element) familyTreeElement
         .appendChild(document.createElement(PEOPLE_TAG));
-    this.writePersons(document, familyTreeElement, peopleElement, familyTree, persons, personIDs);
+    this.writePersons(document, familyTreeElement, peopleElement, familyTree);
     final Element lifeEventsElement = document.createElement(LIFE_EVENTS_TAG);
-    this.writeEvents(document, lifeEventsElement, familyTree.lifeEvents(), personIDs);
+    this.writeEvents(document, lifeEventsElement, familyTree);
     if (lifeEventsElement.hasChildNodes())
       familyTreeElement.appendChild(lifeEventsElement);
 
@@ -90,7 +90,19 @@ public class TreeXMLWriter extends TreeXMLManager {
   ) throws IOException {
     final Document document = this.newDocumentBuilder().newDocument();
     final Element dummyElement = document.createElement("dummy");
-    this.writeUserRegistryEntries(document, dummyElement, familyTree, keep);
+    final RegistriesSnapshot registries = RegistriesSnapshot.of(
+        familyTree.genderRegistry()
+            .serializableEntries()
+            .stream()
+            .filter(entry -> keep.genderKeys().contains(entry.key()))
+            .toList(),
+        familyTree.lifeEventTypeRegistry()
+            .serializableEntries()
+            .stream()
+            .filter(entry -> keep.lifeEventTypeKeys().contains(entry.key()))
+            .toList()
+    );
+    this.writeUserRegistryEntries(document, dummyElement, registries);
     final Element registriesElement = (Element) dummyElement.getChildNodes().item(0);
     document.appendChild(registriesElement);
     XmlUtils.setAttr(
@@ -108,35 +120,24 @@ public class TreeXMLWriter extends TreeXMLManager {
   // region User registries
 
   /**
-   * Write all user-defined registry entries.
+   * Write user-defined registry entries.
    *
    * @param document          Current XML document.
    * @param familyTreeElement XML element to write into.
-   * @param familyTree        Tree to get entries from.
-   * @param keep              The {@link RegistryEntry} values to save.
-   *                          If null, all eligible entries are kept.
+   * @param registries        The entries to write.
    */
   private void writeUserRegistryEntries(
       @NotNull Document document,
       @NotNull Element familyTreeElement,
-      final @NotNull FamilyTree familyTree,
-      final RegistriesValues keep
+      final @NotNull RegistriesSnapshot registries
   ) {
     final Element registriesElement = document.createElement(REGISTRIES_TAG);
-    final List<LifeEventType> userLifeEventTypes = familyTree.lifeEventTypeRegistry()
-        .serializableEntries()
-        .stream()
-        .filter(entry -> keep == null || keep.lifeEventTypeKeys().contains(entry.key()))
-        .toList();
-    final List<Gender> userGenders = familyTree.genderRegistry()
-        .serializableEntries()
-        .stream()
-        .filter(entry -> keep == null || keep.genderKeys().contains(entry.key()))
-        .toList();
+    final var userLifeEventTypes = registries.lifeEventTypes();
+    final var userGenders = registries.genders();
 
     if (!userGenders.isEmpty()) {
       final Element gendersElement = document.createElement(GENDERS_TAG);
-      for (final Gender gender : userGenders) {
+      for (final var gender : userGenders) {
         final Element entryElement = (Element) gendersElement
             .appendChild(document.createElement(REGISTRY_ENTRY_TAG));
         XmlUtils.setAttr(
@@ -149,7 +150,7 @@ public class TreeXMLWriter extends TreeXMLManager {
             document,
             entryElement,
             REGISTRY_ENTRY_LABEL_ATTR,
-            Objects.requireNonNull(gender.userDefinedName())
+            gender.name()
         );
         XmlUtils.setAttr(
             document,
@@ -177,7 +178,7 @@ public class TreeXMLWriter extends TreeXMLManager {
             document,
             entryElement,
             REGISTRY_ENTRY_LABEL_ATTR,
-            Objects.requireNonNull(lifeEventType.userDefinedName())
+            lifeEventType.name()
         );
         XmlUtils.setAttr(
             document,
@@ -207,7 +208,7 @@ public class TreeXMLWriter extends TreeXMLManager {
             document,
             entryElement,
             LIFE_EVENT_TYPE_UNIQUE_ATTR,
-            String.valueOf(lifeEventType.isUnique())
+            String.valueOf(lifeEventType.unique())
         );
       });
       if (typesElement.hasChildNodes())
@@ -243,11 +244,11 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeDocuments(
       @NotNull Document document,
       @NotNull Element familyTreeElement,
-      @NotNull FamilyTree familyTree,
-      final @NotNull Map<Person, Integer> personIDs,
+      final @NotNull FamilyTreeSnapshot familyTree,
       final @NotNull Map<LifeEvent, Integer> eventIDs
   ) {
-    final Collection<AttachedDocument> documents = familyTree.documents();
+    final FamilyGraph graph = familyTree.graph();
+    final Collection<DocumentSnapshot> documents = familyTree.documents();
     if (!documents.isEmpty()) {
       final Element documentsElement = document.createElement(DOCUMENTS_TAG);
       documents.forEach(doc -> {
@@ -269,7 +270,7 @@ public class TreeXMLWriter extends TreeXMLManager {
               authorsElement,
               AUTHORS_IDS_ATTR,
               doc.authors().stream()
-                  .map(p -> String.valueOf(personIDs.get(p)))
+                  .map(p -> String.valueOf(graph.indexOf(p)))
                   .collect(Collectors.joining(","))
           );
         }
@@ -287,7 +288,7 @@ public class TreeXMLWriter extends TreeXMLManager {
             if (o instanceof Person p) {
               objectElement = (Element) docAnnotationsElement
                   .appendChild(document.createElement(PERSON_ANNOTATION_TAG));
-              id = personIDs.get(p);
+              id = graph.indexOf(p);
             } else if (o instanceof LifeEvent e) {
               objectElement = (Element) docAnnotationsElement
                   .appendChild(document.createElement(LIFE_EVENT_ANNOTATION_TAG));
@@ -319,37 +320,35 @@ public class TreeXMLWriter extends TreeXMLManager {
   // region Persons
 
   /**
-   * Write all persons from the tree.
+   * Write all persons from the tree, in index order.
    *
    * @param document          Current XML document.
    * @param familyTreeElement Root element.
    * @param peopleElement     Element to write to.
-   * @param familyTree        Family tree object to get root from.
-   * @param persons           List of persons to write to the document.
-   * @param personIDs         Map to get person IDs from.
+   * @param familyTree        Snapshot of the family tree to get persons from.
    */
   private void writePersons(
       @NotNull Document document,
       @NotNull Element familyTreeElement,
       @NotNull Element peopleElement,
-      final @NotNull FamilyTree familyTree,
-      final @NotNull List<Person> persons,
-      final @NotNull Map<Person, Integer> personIDs
+      final @NotNull FamilyTreeSnapshot familyTree
   ) {
-    for (final Person person : persons) {
+    final PersonSnapshot root = familyTree.root().orElse(null);
+    for (int i = 0; i < familyTree.size(); i++) {
+      final PersonSnapshot person = familyTree.person(i);
       // Set root ID attribute
-      if (familyTree.isRoot(person))
+      if (person == root)
         XmlUtils.setAttr(
             document,
             familyTreeElement,
             FAMILY_TREE_ROOT_ATTR,
-            String.valueOf(personIDs.get(person))
+            String.valueOf(i)
         );
 
       final Element personElement = (Element) peopleElement
           .appendChild(document.createElement(PERSON_TAG));
 
-      this.writeMainPictureTag(document, personElement, person);
+      this.writeMainPictureTag(document, personElement, familyTree, person.mainPicture());
       this.writeDisambiguationIdTag(document, personElement, person);
       this.writeLifeStatusTag(document, personElement, person);
       this.writeLegalLastNameTag(document, personElement, person);
@@ -364,18 +363,19 @@ public class TreeXMLWriter extends TreeXMLManager {
       if (!person.assignedGenderAtBirth().equals(person.gender()))
         this.writeGenderTag(document, personElement, GENDER_TAG, GENDER_KEY_ATTR, person::gender);
       this.writeMainOccupationTag(document, personElement, person);
-      this.writeParentsTag(document, personElement, person, personIDs);
-      this.writeNotesTag(document, personElement, person);
-      this.writeSourcesTag(document, personElement, person);
+      this.writeParentsTag(document, personElement, familyTree.graph(), i);
+      this.writeNotesTag(document, personElement, person.notes());
+      this.writeSourcesTag(document, personElement, person.sources());
     }
   }
 
   private void writeMainPictureTag(
       @NotNull Document document,
       @NotNull Element element,
-      final @NotNull GenealogyObject<?> o
+      final @NotNull FamilyTreeSnapshot familyTree,
+      final @NotNull Optional<Picture> picture
   ) {
-    final var mainPicture = o.mainPicture();
+    final var mainPicture = picture.flatMap(familyTree::document);
     if (mainPicture.isEmpty()) return;
 
     final Element mainPictureElement = (Element) element
@@ -391,7 +391,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeDisambiguationIdTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person
+      final @NotNull PersonSnapshot person
   ) {
     person.disambiguationID().ifPresent(id -> {
       final Element disambiguationIDElement = (Element) personElement
@@ -408,7 +408,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeLifeStatusTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person
+      final @NotNull PersonSnapshot person
   ) {
     final Element lifeStatusElement = (Element) personElement
         .appendChild(document.createElement(LIFE_STATUS_TAG));
@@ -423,7 +423,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeLegalLastNameTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person
+      final @NotNull PersonSnapshot person
   ) {
     person.legalLastName().ifPresent(s -> {
       final Element legalLastNameElement = (Element) personElement
@@ -440,7 +440,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writePublicLastNameTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person
+      final @NotNull PersonSnapshot person
   ) {
     person.publicLastName().ifPresent(s -> {
       final Element publicLastNameElement = (Element) personElement
@@ -485,7 +485,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeMainOccupationTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person
+      final @NotNull PersonSnapshot person
   ) {
     person.mainOccupation().ifPresent(occupation -> {
       final Element occupationElement = (Element) personElement
@@ -502,13 +502,13 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeParentsTag(
       @NotNull Document document,
       @NotNull Element personElement,
-      final @NotNull Person person,
-      final @NotNull Map<Person, Integer> personIDs
+      final @NotNull FamilyGraph graph,
+      int index
   ) {
     final Element parentsElement = document.createElement(PARENTS_TAG);
     for (final var type : ParentalRelationType.values()) {
-      final Set<Person> parents = person.parents(type);
-      if (parents.isEmpty())
+      final int parentsCount = graph.parentsCount(index, type);
+      if (parentsCount == 0)
         continue;
       final Element groupElement = (Element) parentsElement
           .appendChild(document.createElement(PARENT_GROUP_TAG));
@@ -518,14 +518,14 @@ public class TreeXMLWriter extends TreeXMLManager {
           PARENT_GROUP_ORDINAL_ATTR,
           String.valueOf(type.ordinal())
       );
-      for (final Person parent : parents) {
+      for (int n = 0; n < parentsCount; n++) {
         final Element parentElement = (Element) groupElement
             .appendChild(document.createElement(PARENT_TAG));
         XmlUtils.setAttr(
             document,
             parentElement,
             PARENT_ID_ATTR,
-            String.valueOf(personIDs.get(parent))
+            String.valueOf(graph.parent(index, type, n))
         );
       }
     }
@@ -536,24 +536,24 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeNotesTag(
       @NotNull Document document,
       @NotNull Element element,
-      final @NotNull GenealogyObject<?> o
+      final @NotNull Optional<String> notes
   ) {
-    o.notes().ifPresent(notes -> {
+    notes.ifPresent(s -> {
       final Element notesElement = (Element) element
           .appendChild(document.createElement(NOTES_TAG));
-      notesElement.setTextContent(notes);
+      notesElement.setTextContent(s);
     });
   }
 
   private void writeSourcesTag(
       @NotNull Document document,
       @NotNull Element element,
-      final @NotNull GenealogyObject<?> o
+      final @NotNull Optional<String> sources
   ) {
-    o.sources().ifPresent(sources -> {
+    sources.ifPresent(s -> {
       final Element sourcesElement = (Element) element
           .appendChild(document.createElement(SOURCES_TAG));
-      sourcesElement.setTextContent(sources);
+      sourcesElement.setTextContent(s);
     });
   }
 
@@ -592,31 +592,30 @@ public class TreeXMLWriter extends TreeXMLManager {
   // region Life events
 
   /**
-   * Write a list of life events.
+   * Write all life events from the tree.
    *
    * @param document          Current XML document.
    * @param lifeEventsElement Element to write to.
-   * @param lifeEvents        Set of life events to write.
-   * @param personIDs         Map to extract person IDs from.
+   * @param familyTree        Snapshot of the family tree to get life events and person IDs from.
    */
   private void writeEvents(
       @NotNull Document document,
       @NotNull Element lifeEventsElement,
-      final @NotNull Set<LifeEvent> lifeEvents,
-      final @NotNull Map<Person, Integer> personIDs
+      final @NotNull FamilyTreeSnapshot familyTree
   ) {
-    for (final LifeEvent lifeEvent : lifeEvents) {
+    final FamilyGraph graph = familyTree.graph();
+    for (final LifeEventSnapshot lifeEvent : familyTree.lifeEvents()) {
       final Element lifeEventElement = (Element) lifeEventsElement
           .appendChild(document.createElement(LIFE_EVENT_TAG));
 
-      this.writeMainPictureTag(document, lifeEventElement, lifeEvent);
+      this.writeMainPictureTag(document, lifeEventElement, familyTree, lifeEvent.mainPicture());
       this.writeDateTag(document, lifeEventElement, lifeEvent.date());
       this.writeLifeEventTypeTag(document, lifeEventElement, lifeEvent);
       this.writePlace(document, lifeEventElement, lifeEvent);
-      this.writeActorsTag(document, lifeEventElement, lifeEvent, personIDs);
-      this.writeWitnessesTag(document, lifeEventElement, lifeEvent, personIDs);
-      this.writeNotesTag(document, lifeEventElement, lifeEvent);
-      this.writeSourcesTag(document, lifeEventElement, lifeEvent);
+      this.writeActorsTag(document, lifeEventElement, lifeEvent, graph);
+      this.writeWitnessesTag(document, lifeEventElement, lifeEvent, graph);
+      this.writeNotesTag(document, lifeEventElement, lifeEvent.notes());
+      this.writeSourcesTag(document, lifeEventElement, lifeEvent.sources());
     }
   }
 
@@ -683,7 +682,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeLifeEventTypeTag(
       @NotNull Document document,
       @NotNull Element lifeEventElement,
-      final @NotNull LifeEvent lifeEvent
+      final @NotNull LifeEventSnapshot lifeEvent
   ) {
     final Element typeElement = (Element) lifeEventElement
         .appendChild(document.createElement(TYPE_TAG));
@@ -698,7 +697,7 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writePlace(
       @NotNull Document document,
       @NotNull Element lifeEventElement,
-      final @NotNull LifeEvent lifeEvent
+      final @NotNull LifeEventSnapshot lifeEvent
   ) {
     lifeEvent.place().ifPresent(place -> {
       final Element placeElement = (Element) lifeEventElement
@@ -721,8 +720,8 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeActorsTag(
       @NotNull Document document,
       @NotNull Element lifeEventElement,
-      final @NotNull LifeEvent lifeEvent,
-      final @NotNull Map<Person, Integer> personIDs
+      final @NotNull LifeEventSnapshot lifeEvent,
+      final @NotNull FamilyGraph graph
   ) {
     final Element actorsElement = (Element) lifeEventElement
         .appendChild(document.createElement(ACTORS_TAG));
@@ -733,7 +732,7 @@ public class TreeXMLWriter extends TreeXMLManager {
           document,
           personElement,
           PERSON_ID_ATTR,
-          String.valueOf(personIDs.get(person))
+          String.valueOf(graph.indexOf(person))
       );
     });
   }
@@ -741,8 +740,8 @@ public class TreeXMLWriter extends TreeXMLManager {
   private void writeWitnessesTag(
       @NotNull Document document,
       @NotNull Element lifeEventElement,
-      final @NotNull LifeEvent lifeEvent,
-      final @NotNull Map<Person, Integer> personIDs
+      final @NotNull LifeEventSnapshot lifeEvent,
+      final @NotNull FamilyGraph graph
   ) {
     final Element witnessesElement = document.createElement(WITNESSES_TAG);
     lifeEvent.witnesses().forEach(person -> {
@@ -752,7 +751,7 @@ public class TreeXMLWriter extends TreeXMLManager {
           document,
           personElement,
           PERSON_ID_ATTR,
-          String.valueOf(personIDs.get(person))
+          String.valueOf(graph.indexOf(person))
       );
     });
     if (witnessesElement.hasChildNodes())
@@ -0,0 +1,410 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Reachability index over the parent/child graph of a {@link FamilyTree}.
+ * <p>
+ * This index memoizes the ancestor and descendant closures of the persons that have been queried,
+ * as sorted arrays of person indices (see {@link FamilyTree#personIndex(Person)}), for each set of
+ * {@link ParentalRelationType}s. Closures are computed by an iterative breadth-first walk that reuses
+ * the memoized closures it reaches. They are patched in place when a parent link is added,
+ * and dropped only when they contain the child or parent of a removed link.
+ * <p>
+ * The total number of memoized indices is bounded by {@link #MAX_MEMOIZED_INDICES};
+ * the least recently used closures are dropped first.
+ */
+final class AncestryIndex {
+  /**
+   * The maximum number of person indices kept across all memoized closures, i.e. 8 MiB.
+   */
+  static final int MAX_MEMOIZED_INDICES = 1 << 21;
+
+  private static final int[] EMPTY = new int[0];
+
+  private final FamilyTree familyTree;
+  /**
+   * Memoized closures, in access order.
+   */
+  private final LinkedHashMap<Key, int[]> closures = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * The total length of the memoized closures.
+   */
+  private long memoizedIndices;
+  /**
+   * Visit marks used by traversals, indexed by person index.
+   * A person is marked if its value equals {@link #epoch}.
+   */
+  private int[] marks = new int[0];
+  private int epoch;
+
+  /**
+   * Create a new index for the given tree.
+   *
+   * @param familyTree The tree to index.
+   */
+  AncestryIndex(@NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Indicate whether a person is an ancestor of another.
+   *
+   * @param ancestor The potential ancestor.
+   * @param person   The person whose ancestors are to be checked.
+   * @param mask     Mask of the relation types to follow.
+   * @param memoize  Whether to compute and keep the closure of the person if not already available.
+   *                 If false and no closure is available, the graph is walked instead.
+   * @return True if there is a path from the person to the ancestor, false otherwise.
+   */
+  boolean isAncestor(@NotNull Person ancestor, @NotNull Person person, int mask, boolean memoize) {
+    final int ancestorIndex = this.familyTree.personIndex(ancestor);
+    final int personIndex = this.familyTree.personIndex(person);
+    final int[] ancestors = this.closures.get(new Key(personIndex, mask, true));
+    if (ancestors != null)
+      return Arrays.binarySearch(ancestors, ancestorIndex) >= 0;
+    final int[] descendants = this.closures.get(new Key(ancestorIndex, mask, false));
+    if (descendants != null)
+      return Arrays.binarySearch(descendants, personIndex) >= 0;
+    if (memoize)
+      return Arrays.binarySearch(this.ancestors(person, mask), ancestorIndex) >= 0;
+    final boolean[] found = {false};
+    this.walk(person, mask, true, p -> {
+      if (p == ancestor) found[0] = true;
+      return !found[0];
+    });
+    return found[0];
+  }
+
+  /**
+   * The ancestor closure of the given person.
+   *
+   * @param person The person to get the ancestors of.
+   * @param mask   Mask of the relation types to follow.
+   * @return The sorted array of the indices of all ancestors of the person. Must not be modified.
+   */
+  int[] ancestors(@NotNull Person person, int mask) {
+    return this.closure(this.familyTree.personIndex(person), mask, true);
+  }
+
+  /**
+   * The descendant closure of the given person.
+   *
+   * @param person The person to get the descendants of.
+   * @param mask   Mask of the relation types to follow.
+   * @return The sorted array of the indices of all descendants of the person. Must not be modified.
+   */
+  int[] descendants(@NotNull Person person, int mask) {
+    return this.closure(this.familyTree.personIndex(person), mask, false);
+  }
+
+  /**
+   * Return the persons that are at most the given number of generations above or below a person.
+   *
+   * @param person      The person to start from.
+   * @param mask        Mask of the relation types to follow.
+   * @param generations The maximum number of generations to go through.
+   * @param upwards     True to return ancestors, false to return descendants.
+   * @return The list of found persons, in breadth-first order.
+   */
+  List<Person> relatives(@NotNull Person person, int mask, int generations, boolean upwards) {
+    final List<Person> result = new ArrayList<>();
+    List<Person> level = List.of(person);
+    this.newEpoch();
+    this.mark(person);
+    for (int i = 0; i < generations && !level.isEmpty(); i++) {
+      final List<Person> nextLevel = new ArrayList<>();
+      for (final Person p : level)
+        this.forEachNeighbor(p, mask, upwards, neighbor -> {
+          if (this.mark(neighbor))
+            nextLevel.add(neighbor);
+        });
+      result.addAll(nextLevel);
+      level = nextLevel;
+    }
+    return result;
+  }
+
+  /**
+   * Update the memoized closures after a parent has been added to a person.
+   *
+   * @param child  The person whose parent was added.
+   * @param parent The added parent.
+   * @param type   The type of the added parent.
+   */
+  void onParentAdded(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    final int typeBit = 1 << type.ordinal();
+    final int childIndex = this.familyTree.personIndex(child);
+    final int parentIndex = this.familyTree.personIndex(parent);
+    final List<Key> affected = new ArrayList<>();
+    this.closures.forEach((key, closure) -> {
+      if ((key.mask() & typeBit) == 0)
+        return;
+      // The ancestors of the child and of its descendants gain the parent and its ancestors, and conversely
+      final int linkEnd = key.upwards() ? childIndex : parentIndex;
+      if (key.index() == linkEnd || Arrays.binarySearch(closure, linkEnd) >= 0)
+        affected.add(key);
+    });
+    // Closures gained by the affected persons, computed at most once per mask and direction
+    final Map<Key, int[]> gained = new HashMap<>();
+    for (final Key key : affected) {
+      final int[] added = gained.computeIfAbsent(
+          new Key(key.upwards() ? parentIndex : childIndex, key.mask(), key.upwards()),
+          k -> merge(new int[] {k.index()}, this.computeClosure(k.index(), k.mask(), k.upwards()))
+      );
+      final int[] closure = this.closures.get(key);
+      final int[] merged = merge(closure, added);
+      this.memoizedIndices += merged.length - closure.length;
+      this.closures.put(key, merged);
+    }
+    this.trim();
+  }
+
+  /**
+   * Drop the memoized closures affected by the removal of a parent from a person.
+   *
+   * @param child  The person whose parent was removed.
+   * @param parent The removed parent.
+   * @param type   The type of the removed parent.
+   */
+  void onParentRemoved(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    final int typeBit = 1 << type.ordinal();
+    final int childIndex = this.familyTree.personIndex(child);
+    final int parentIndex = this.familyTree.personIndex(parent);
+    this.removeIf((key, closure) -> {
+      if ((key.mask() & typeBit) == 0)
+        return false;
+      final int linkEnd = key.upwards() ? childIndex : parentIndex;
+      return key.index() == linkEnd || Arrays.binarySearch(closure, linkEnd) >= 0;
+    });
+  }
+
+  /**
+   * Drop the closures of a person whose index is about to be released.
+   *
+   * @param index The index of the removed person.
+   */
+  void onPersonRemoved(int index) {
+    this.removeIf((key, closure) -> key.index() == index);
+  }
+
+  /**
+   * Drop all memoized closures.
+   */
+  void invalidate() {
+    this.closures.clear();
+    this.memoizedIndices = 0;
+  }
+
+  private int[] closure(int index, int mask, boolean upwards) {
+    final Key key = new Key(index, mask, upwards);
+    final int[] cached = this.closures.get(key);
+    if (cached != null)
+      return cached;
+    final int[] closure = this.computeClosure(index, mask, upwards);
+    if (closure.length <= MAX_MEMOIZED_INDICES) {
+      this.closures.put(key, closure);
+      this.memoizedIndices += closure.length;
+      this.trim();
+    }
+    return closure;
+  }
+
+  /**
+   * Compute the closure of a person without memoizing it.
+   * Persons whose closure is already memoized are not walked through, their closure is copied instead.
+   */
+  private int[] computeClosure(int index, int mask, boolean upwards) {
+    int[] result = new int[16];
+    int size = 0;
+    final IntQueue queue = new IntQueue();
+    this.newEpoch();
+    this.marks[index] = this.epoch;
+    queue.add(index);
+    while (!queue.isEmpty()) {
+      final Person person = this.familyTree.personAt(queue.poll());
+      final List<Person> neighbors = new ArrayList<>();
+      this.forEachNeighbor(person, mask, upwards, neighbors::add);
+      for (final Person neighbor : neighbors) {
+        final int i = this.familyTree.personIndex(neighbor);
+        if (this.marks[i] == this.epoch)
+          continue;
+        this.marks[i] = this.epoch;
+        if (size == result.length)
+          result = Arrays.copyOf(result, 2 * size);
+        result[size++] = i;
+        // Reuse the memoized closures instead of walking through them again
+        final int[] memoized = this.closures.get(new Key(i, mask, upwards));
+        if (memoized == null) {
+          queue.add(i);
+          continue;
+        }
+        for (final int j : memoized)
+          if (this.marks[j] != this.epoch) {
+            this.marks[j] = this.epoch;
+            if (size == result.length)
+              result = Arrays.copyOf(result, Math.max(2 * size, size + memoized.length));
+            result[size++] = j;
+          }
+      }
+    }
+    if (size == 0)
+      return EMPTY;
+    result = Arrays.copyOf(result, size);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Drop the least recently used closures until the memoized indices fit in {@link #MAX_MEMOIZED_INDICES}.
+   */
+  private void trim() {
+    final var iterator = this.closures.values().iterator();
+    while (this.memoizedIndices > MAX_MEMOIZED_INDICES && iterator.hasNext()) {
+      this.memoizedIndices -= iterator.next().length;
+      iterator.remove();
+    }
+  }
+
+  private void removeIf(@NotNull BiPredicate<Key, int[]> predicate) {
+    final var iterator = this.closures.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      if (predicate.test(entry.getKey(), entry.getValue())) {
+        this.memoizedIndices -= entry.getValue().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Walk the graph breadth-first from the given person, excluding it.
+   *
+   * @param person  The person to start from.
+   * @param mask    Mask of the relation types to follow.
+   * @param upwards True to visit ancestors, false to visit descendants.
+   * @param visitor Function called on each visited person. The walk stops as soon as it returns false.
+   */
+  private void walk(
+      @NotNull Person person,
+      int mask,
+      boolean upwards,
+      @NotNull Predicate<Person> visitor
+  ) {
+    final Deque<Person> queue = new ArrayDeque<>();
+    queue.add(person);
+    this.newEpoch();
+    this.mark(person);
+    final boolean[] stop = {false};
+    while (!queue.isEmpty() && !stop[0]) {
+      this.forEachNeighbor(queue.poll(), mask, upwards, neighbor -> {
+        if (!stop[0] && this.mark(neighbor)) {
+          queue.add(neighbor);
+          stop[0] = !visitor.test(neighbor);
+        }
+      });
+    }
+  }
+
+  private void forEachNeighbor(
+      @NotNull Person person,
+      int mask,
+      boolean upwards,
+      @NotNull Consumer<Person> action
+  ) {
+    for (final var type : ParentalRelationType.values())
+      if ((mask & 1 << type.ordinal()) != 0)
+        (upwards ? person.parents(type) : person.children(type)).forEach(action);
+  }
+
+  private void newEpoch() {
+    final int capacity = this.familyTree.personIndexCapacity();
+    if (this.marks.length < capacity)
+      this.marks = Arrays.copyOf(this.marks, capacity);
+    if (++this.epoch == 0) { // Overflow, reset all marks
+      Arrays.fill(this.marks, 0);
+      this.epoch = 1;
+    }
+  }
+
+  /**
+   * Mark the given person as visited.
+   *
+   * @return True if the person was not already marked, false otherwise.
+   */
+  private boolean mark(@NotNull Person person) {
+    final int index = this.familyTree.personIndex(person);
+    if (this.marks[index] == this.epoch)
+      return false;
+    this.marks[index] = this.epoch;
+    return true;
+  }
+
+  /**
+   * Merge two sorted arrays of distinct integers.
+   *
+   * @return A sorted array containing the distinct values of both arrays.
+   * May be one of the arguments if the other one does not contain any additional value.
+   */
+  private static int[] merge(final @NotNull int[] a, final @NotNull int[] b) {
+    if (b.length == 0) return a;
+    if (a.length == 0) return b;
+    final int[] result = new int[a.length + b.length];
+    int i = 0, j = 0, k = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) result[k++] = a[i++];
+      else if (a[i] > b[j]) result[k++] = b[j++];
+      else {
+        result[k++] = a[i++];
+        j++;
+      }
+    }
+    while (i < a.length) result[k++] = a[i++];
+    while (j < b.length) result[k++] = b[j++];
+    if (k == a.length) return a;
+    return k == result.length ? result : Arrays.copyOf(result, k);
+  }
+
+  /**
+   * Identifies a memoized closure.
+   *
+   * @param index   The index of the person whose closure it is.
+   * @param mask    Mask of the followed relation types.
+   * @param upwards True for the ancestor closure, false for the descendant closure.
+   */
+  private record Key(int index, int mask, boolean upwards) {
+  }
+
+  /**
+   * A growable FIFO queue of ints.
+   */
+  private static final class IntQueue {
+    private int[] values = new int[16];
+    private int head;
+    private int tail;
+
+    void add(int value) {
+      if (this.tail == this.values.length) {
+        if (this.head > 0) { // Reclaim the space of polled values
+          System.arraycopy(this.values, this.head, this.values, 0, this.tail - this.head);
+          this.tail -= this.head;
+          this.head = 0;
+        }
+        if (this.tail == this.values.length)
+          this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+      }
+      this.values[this.tail++] = value;
+    }
+
+    int poll() {
+      return this.values[this.head++];
+    }
+
+    boolean isEmpty() {
+      return this.head == this.tail;
+    }
+  }
+}
@@ -143,6 +143,7 @@ public class AttachedDocument implements Comparable<AttachedDocument> {
   public final void addAuthor(@NotNull Person author, int index) {
     this.authors.add(index, Objects.requireNonNull(author));
     author.addAuthoredDocument(this);
+    author.recordEdit(() -> this.removeAuthor(author), () -> this.addAuthor(author, index));
   }
 
   /**
@@ -152,16 +153,20 @@ public class AttachedDocument implements Comparable<AttachedDocument> {
    * @param author The author to remove.
    */
   public final void removeAuthor(@NotNull Person author) {
+    final int index = this.authors.indexOf(author);
     this.authors.remove(author);
     author.removeAuthoredDocument(this);
+    if (index >= 0)
+      author.recordEdit(() -> this.addAuthor(author, index), () -> this.removeAuthor(author));
   }
 
   /**
    * Remove all authors from this document.
    */
   public final void clearAuthors() {
-    this.authors.forEach(p -> p.removeAuthoredDocument(this));
-    this.authors.clear();
+    // Remove the last ones first so that the recorded indices stay valid when undoing
+    for (int i = this.authors.size() - 1; i >= 0; i--)
+      this.removeAuthor(this.authors.get(i));
   }
 
   /**
@@ -228,8 +233,19 @@ public class AttachedDocument implements Comparable<AttachedDocument> {
       @NotNull GenealogyObject<?> object,
       String note
   ) {
-    this.annotations.get(annotationType).put(object, note);
+    final var annotations = this.annotations.get(annotationType);
+    final boolean annotated = annotations.containsKey(object);
+    final String previousNote = annotations.put(object, note);
     object.addAnnotatedInDocument(this, annotationType);
+    object.recordEdit(
+        () -> {
+          if (annotated)
+            this.annotateObject(annotationType, object, previousNote);
+          else
+            this.removeObjectAnnotation(annotationType, object);
+        },
+        () -> this.annotateObject(annotationType, object, note)
+    );
   }
 
   /**
@@ -243,20 +259,50 @@ public class AttachedDocument implements Comparable<AttachedDocument> {
       @NotNull AnnotationType annotationType,
       @NotNull GenealogyObject<?> object
   ) {
-    this.annotations.get(annotationType).remove(object);
+    final var annotations = this.annotations.get(annotationType);
+    final boolean annotated = annotations.containsKey(object);
+    final String note = annotations.remove(object);
     object.removeAnnotatedInDocument(annotationType, this);
+    if (annotated)
+      object.recordEdit(
+          () -> this.annotateObject(annotationType, object, note),
+          () -> this.removeObjectAnnotation(annotationType, object)
+      );
   }
 
   /**
    * Remove all annotations from this document.
    */
   public final void clearObjectAnnotations() {
-    for (final var annotationType : AnnotationType.values()) {
-      final var annotations = this.annotations.get(annotationType);
-      annotations.keySet().forEach(
-          o -> o.removeAnnotatedInDocument(annotationType, this));
-      annotations.clear();
-    }
+    for (final var annotationType : AnnotationType.values())
+      // Copy the set as it is modified by the calls
+      new ArrayList<>(this.annotations.get(annotationType).keySet())
+          .forEach(o -> this.removeObjectAnnotation(annotationType, o));
+  }
+
+  /**
+   * The objects that reference this document, i.e. its authors and the objects annotated in it.
+   * <p>
+   * As every link between documents and objects is set through this class, the returned objects
+   * are the only ones that reference this document.
+   *
+   * @return A new set containing the objects.
+   */
+  @Contract("-> new")
+  public Set<GenealogyObject<?>> referencingObjects() {
+    final Set<GenealogyObject<?>> objects = new HashSet<>(this.authors);
+    for (final var annotations : this.annotations.values())
+      objects.addAll(annotations.keySet());
+    return objects;
+  }
+
+  /**
+   * Remove all links between this document and the objects that reference it.
+   * Only the referencing objects are visited.
+   */
+  void detach() {
+    this.clearAuthors();
+    this.clearObjectAnnotations();
   }
 
   @Override
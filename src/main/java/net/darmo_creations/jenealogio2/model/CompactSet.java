@@ -0,0 +1,140 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A set that stores its elements in a plain array, meant for the small sets held by each model object.
+ * <p>
+ * Sets of up to {@link #MAX_ARRAY_SIZE} elements take a fraction of the memory of a {@link HashSet},
+ * at the cost of linear lookups. Larger sets switch to a {@link HashSet}.
+ * Null elements are not allowed.
+ *
+ * @param <E> Type of elements.
+ */
+final class CompactSet<E> extends AbstractSet<E> {
+  /**
+   * Number of elements above which elements are stored in a {@link HashSet}.
+   */
+  static final int MAX_ARRAY_SIZE = 16;
+  private static final Object[] EMPTY = new Object[0];
+
+  private Object[] elements = EMPTY;
+  private int size;
+  /**
+   * The elements once there are more than {@link #MAX_ARRAY_SIZE} of them, null otherwise.
+   */
+  private Set<E> hashSet;
+
+  /**
+   * Return the set to store in place of the given one after adding an element to it.
+   * This allows storing a shared empty set in objects that never get any element.
+   *
+   * @param set     A set previously returned by this method or {@link Collections#emptySet()}.
+   * @param element The element to add.
+   * @param <E>     Type of elements.
+   * @return The given set, or a new {@link CompactSet} containing the element if the given set was empty.
+   */
+  static <E> Set<E> add(@NotNull Set<E> set, @NotNull E element) {
+    if (set == Collections.<E>emptySet())
+      set = new CompactSet<>();
+    set.add(element);
+    return set;
+  }
+
+  @Override
+  public int size() {
+    return this.hashSet != null ? this.hashSet.size() : this.size;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (this.hashSet != null)
+      return this.hashSet.contains(o);
+    return this.indexOf(o) >= 0;
+  }
+
+  @Override
+  public boolean add(@NotNull E e) {
+    Objects.requireNonNull(e);
+    if (this.hashSet != null)
+      return this.hashSet.add(e);
+    if (this.indexOf(e) >= 0)
+      return false;
+    if (this.size == MAX_ARRAY_SIZE) {
+      this.hashSet = new HashSet<>(this);
+      this.elements = EMPTY;
+      this.size = 0;
+      return this.hashSet.add(e);
+    }
+    if (this.size == this.elements.length)
+      this.elements = Arrays.copyOf(this.elements, Math.min(MAX_ARRAY_SIZE, Math.max(2, this.size * 2)));
+    this.elements[this.size++] = e;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (this.hashSet != null)
+      return this.hashSet.remove(o);
+    final int i = this.indexOf(o);
+    if (i < 0)
+      return false;
+    this.removeAt(i);
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    this.hashSet = null;
+    this.elements = EMPTY;
+    this.size = 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    if (this.hashSet != null)
+      return this.hashSet.iterator();
+    return new Iterator<>() {
+      private int next;
+      private boolean canRemove;
+
+      @Override
+      public boolean hasNext() {
+        return this.next < CompactSet.this.size;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public E next() {
+        if (!this.hasNext())
+          throw new NoSuchElementException();
+        this.canRemove = true;
+        return (E) CompactSet.this.elements[this.next++];
+      }
+
+      @Override
+      public void remove() {
+        if (!this.canRemove)
+          throw new IllegalStateException();
+        this.canRemove = false;
+        CompactSet.this.removeAt(--this.next);
+      }
+    };
+  }
+
+  private int indexOf(Object o) {
+    for (int i = 0; i < this.size; i++)
+      if (this.elements[i].equals(o))
+        return i;
+    return -1;
+  }
+
+  private void removeAt(int i) {
+    System.arraycopy(this.elements, i + 1, this.elements, i, this.size - i - 1);
+    this.elements[--this.size] = null;
+    if (this.size == 0)
+      this.elements = EMPTY;
+  }
+}
@@ -0,0 +1,86 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.io.*;
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the state of an {@link AttachedDocument} at a given time,
+ * as found in a {@link FamilyTreeSnapshot}.
+ * <p>
+ * Its methods mirror those of {@link AttachedDocument}. Authors and annotated objects are the live objects,
+ * their state at the same time may be looked up through the tree snapshot.
+ */
+public final class DocumentSnapshot {
+  private final AttachedDocument document;
+  private final String fileName;
+  private final String description;
+  private final DateTime date;
+  private final List<Person> authors;
+  private final Map<AnnotationType, Map<GenealogyObject<?>, Optional<String>>> annotations =
+      new EnumMap<>(AnnotationType.class);
+
+  /**
+   * Copy the current state of the given document.
+   *
+   * @param document The document to copy.
+   */
+  DocumentSnapshot(final @NotNull AttachedDocument document) {
+    this.document = document;
+    this.fileName = document.fileName();
+    this.description = document.description().orElse(null);
+    this.date = document.date().orElse(null);
+    this.authors = List.copyOf(document.authors());
+    for (final AnnotationType annotationType : AnnotationType.values())
+      this.annotations.put(annotationType, Map.copyOf(document.annotatedObjects(annotationType)));
+  }
+
+  /**
+   * The live document this snapshot was taken from.
+   * Its state may have changed since then and should not be read outside the JavaFX thread.
+   */
+  public AttachedDocument document() {
+    return this.document;
+  }
+
+  /**
+   * This document’s file name.
+   */
+  public String fileName() {
+    return this.fileName;
+  }
+
+  /**
+   * This document’s description.
+   */
+  public Optional<String> description() {
+    return Optional.ofNullable(this.description);
+  }
+
+  /**
+   * This document’s date.
+   */
+  public Optional<DateTime> date() {
+    return Optional.ofNullable(this.date);
+  }
+
+  /**
+   * The authors of this document.
+   */
+  public @Unmodifiable List<Person> authors() {
+    return this.authors;
+  }
+
+  /**
+   * The objects annotated in this document, along with their location in the document.
+   *
+   * @param annotationType The type of annotations to return.
+   */
+  public @Unmodifiable Map<GenealogyObject<?>, Optional<String>> annotatedObjects(
+      @NotNull AnnotationType annotationType
+  ) {
+    return this.annotations.get(annotationType);
+  }
+}
@@ -0,0 +1,368 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * Finds pairs of persons of a {@link FamilyTree} that may be duplicates of one another,
+ * for instance after merging the results of several researches.
+ * <p>
+ * Comparing all pairs of persons would take too long for large trees. Instead, persons are grouped
+ * into blocks by blocking keys, made of the {@link FrenchSoundex} key of a word of their last names
+ * and either their birth decade or the first word of their birth place. Only persons sharing a block
+ * are compared. Blocks that are still too large are sorted by first names and each person is only compared
+ * to the next few ones. Candidate pairs are then scored in parallel on their names, birth dates and places,
+ * and parents.
+ * <p>
+ * A finder remembers the persons and scores of its last search. Searching again after the tree has been edited
+ * only scores the pairs that involve persons whose compared data changed. A cancelled search leaves the finder
+ * as it was before, so it may simply be restarted.
+ * <p>
+ * Searches work on {@link FamilyTreeSnapshot}s, they may run outside the JavaFX thread.
+ */
+public final class DuplicateFinder {
+  /**
+   * The default minimum score of returned pairs.
+   */
+  public static final double DEFAULT_THRESHOLD = 0.75;
+  /**
+   * Blocks with more persons than this are compared with a sliding window.
+   */
+  private static final int MAX_BLOCK_SIZE = 200;
+  /**
+   * The number of following persons each person of a large block is compared to.
+   */
+  private static final int WINDOW_SIZE = 20;
+  /**
+   * Birth years further apart than this exclude a pair.
+   */
+  private static final int MAX_YEARS_DIFFERENCE = 10;
+  private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final RegistryEntryKey BIRTH_TYPE_KEY = new RegistryEntryKey(Registry.BUILTIN_NS, "birth");
+
+  private final Locale locale;
+  /**
+   * The profiles of all persons as of the last complete search.
+   */
+  private Map<Person, Profile> profiles = new HashMap<>();
+  /**
+   * The scores of all pairs compared by previous searches, whatever their score.
+   */
+  private final Map<PersonPair, Double> scores = new ConcurrentHashMap<>();
+
+  /**
+   * Create a finder.
+   *
+   * @param locale The locale to use for lower-case conversions of names.
+   */
+  public DuplicateFinder(@NotNull Locale locale) {
+    this.locale = Objects.requireNonNull(locale);
+  }
+
+  /**
+   * Find pairs of persons that may be duplicates.
+   *
+   * @param snapshot  The tree to search.
+   * @param threshold The minimum score of returned pairs, in [0, 1].
+   * @param context   The context of the task running the search, to report progress and check for cancellation.
+   * @return The pairs whose score is at least the threshold, sorted by decreasing score.
+   * @throws java.util.concurrent.CancellationException If the task is cancelled.
+   */
+  public synchronized List<Candidate> find(
+      final @NotNull FamilyTreeSnapshot snapshot,
+      double threshold,
+      @NotNull TaskScheduler.TaskContext context
+  ) {
+    final Map<Person, Profile> profiles = profiles(snapshot, this.locale);
+    context.checkCancelled();
+
+    // Forget the scores of pairs involving persons that changed or were removed
+    final Set<Person> changed = new HashSet<>();
+    profiles.forEach((person, profile) -> {
+      if (!profile.equals(this.profiles.get(person)))
+        changed.add(person);
+    });
+    for (final Person person : this.profiles.keySet())
+      if (!profiles.containsKey(person))
+        changed.add(person);
+    if (!changed.isEmpty())
+      this.scores.keySet().removeIf(pair -> changed.contains(pair.person1) || changed.contains(pair.person2));
+    context.setProgress(0.1);
+
+    // Only blocks containing a changed person may have pairs that have not been scored yet
+    final List<List<Profile>> blocks = blocks(profiles.values()).stream()
+        .filter(block -> block.stream().anyMatch(profile -> changed.contains(profile.person)))
+        .toList();
+    final int total = blocks.size();
+    final int[] done = {0};
+    blocks.parallelStream().forEach(block -> {
+      context.checkCancelled();
+      this.scoreBlock(block);
+      synchronized (done) {
+        context.setProgress(0.1 + 0.9 * ++done[0] / total);
+      }
+    });
+
+    this.profiles = profiles;
+    final List<Candidate> candidates = new ArrayList<>();
+    this.scores.forEach((pair, score) -> {
+      if (score >= threshold)
+        candidates.add(new Candidate(pair.person1, pair.person2, score));
+    });
+    candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+    return candidates;
+  }
+
+  /**
+   * Score all not yet scored pairs of the given block.
+   *
+   * @param block A block.
+   */
+  private void scoreBlock(final @NotNull List<Profile> block) {
+    if (block.size() <= MAX_BLOCK_SIZE) {
+      for (int i = 0; i < block.size(); i++)
+        for (int j = i + 1; j < block.size(); j++)
+          this.scorePair(block.get(i), block.get(j));
+    } else {
+      final List<Profile> sorted = new ArrayList<>(block);
+      sorted.sort(Comparator.comparing(profile -> profile.firstNames));
+      for (int i = 0; i < sorted.size(); i++)
+        for (int j = i + 1; j < Math.min(sorted.size(), i + 1 + WINDOW_SIZE); j++)
+          this.scorePair(sorted.get(i), sorted.get(j));
+    }
+  }
+
+  private void scorePair(final @NotNull Profile profile1, final @NotNull Profile profile2) {
+    this.scores.computeIfAbsent(new PersonPair(profile1.person, profile2.person), pair -> score(profile1, profile2));
+  }
+
+  /**
+   * Compute the likelihood that two persons are the same.
+   *
+   * @param p1 A person’s profile.
+   * @param p2 Another person’s profile.
+   * @return A score in [0, 1].
+   */
+  static double score(final @NotNull Profile p1, final @NotNull Profile p2) {
+    if (p1.gender != null && p2.gender != null && !p1.gender.equals(p2.gender))
+      return 0;
+    final boolean bothYears = p1.birthYear != null && p2.birthYear != null;
+    if (bothYears && Math.abs(p1.birthYear - p2.birthYear) > MAX_YEARS_DIFFERENCE)
+      return 0;
+
+    double lastNamesScore = similarity(p1.lastNames, p2.lastNames);
+    if (!Collections.disjoint(p1.lastNameKeys, p2.lastNameKeys))
+      lastNamesScore = Math.max(lastNamesScore, 0.8);
+    final double firstNamesScore = similarity(p1.firstNames, p2.firstNames);
+    final double dateScore = bothYears
+        ? 1 - (double) Math.abs(p1.birthYear - p2.birthYear) / MAX_YEARS_DIFFERENCE
+        : 0.5;
+    final double placeScore = p1.birthPlace != null && p2.birthPlace != null
+        ? p1.birthPlace.equals(p2.birthPlace) ? 1 : 0
+        : 0.5;
+    // Different known parents strongly suggest different persons
+    final double parentsScore = !p1.parents.isEmpty() && !p2.parents.isEmpty()
+        ? Collections.disjoint(p1.parents, p2.parents) ? 0 : 1
+        : 0.5;
+    return 0.3 * lastNamesScore
+        + 0.3 * firstNamesScore
+        + 0.2 * dateScore
+        + 0.1 * placeScore
+        + 0.1 * parentsScore;
+  }
+
+  /**
+   * The similarity of two folded names, based on their Levenshtein distance.
+   *
+   * @return A value in [0, 1], 0.5 if any name is empty.
+   */
+  private static double similarity(@NotNull String s1, @NotNull String s2) {
+    if (s1.isEmpty() || s2.isEmpty())
+      return 0.5;
+    return 1 - (double) StringUtils.levenshteinDistance(s1, s2) / Math.max(s1.length(), s2.length());
+  }
+
+  /**
+   * Group the given profiles by blocking key.
+   *
+   * @param profiles The profiles to group.
+   * @return The blocks with at least two persons.
+   */
+  private static Collection<List<Profile>> blocks(final @NotNull Collection<Profile> profiles) {
+    final Map<String, List<Profile>> blocks = new HashMap<>();
+    for (final Profile profile : profiles)
+      for (final String key : blockingKeys(profile))
+        blocks.computeIfAbsent(key, k -> new ArrayList<>()).add(profile);
+    blocks.values().removeIf(block -> block.size() < 2);
+    return blocks.values();
+  }
+
+  /**
+   * The blocking keys of the given person. Persons without last names are blocked by first names instead.
+   * Persons born close to the end of a decade also get the key of the neighboring decade.
+   *
+   * @param profile A person’s profile.
+   * @return The person’s keys.
+   */
+  static Set<String> blockingKeys(final @NotNull Profile profile) {
+    final Set<String> keys = new HashSet<>();
+    final Set<String> nameKeys = new HashSet<>();
+    for (final String key : profile.lastNameKeys)
+      nameKeys.add("l:" + key);
+    if (nameKeys.isEmpty())
+      for (final String word : splitWords(profile.firstNames)) {
+        final String key = FrenchSoundex.encode(word);
+        if (!key.isEmpty())
+          nameKeys.add("f:" + key);
+      }
+    for (final String nameKey : nameKeys) {
+      if (profile.birthYear != null) {
+        keys.add(nameKey + "|d:" + Math.floorDiv(profile.birthYear - 2, 10));
+        keys.add(nameKey + "|d:" + Math.floorDiv(profile.birthYear + 2, 10));
+      }
+      if (profile.birthPlace != null)
+        keys.add(nameKey + "|p:" + profile.birthPlace);
+      if (profile.birthYear == null && profile.birthPlace == null)
+        keys.add(nameKey);
+    }
+    return keys;
+  }
+
+  /**
+   * Compute the profiles of all persons of the given snapshot.
+   *
+   * @param snapshot The tree’s snapshot.
+   * @param locale   The locale to use for lower-case conversions of names.
+   * @return The profiles of all persons.
+   */
+  static Map<Person, Profile> profiles(final @NotNull FamilyTreeSnapshot snapshot, @NotNull Locale locale) {
+    final Map<Person, LifeEventSnapshot> births = new HashMap<>();
+    for (final LifeEventSnapshot lifeEvent : snapshot.lifeEvents())
+      if (lifeEvent.type().key().equals(BIRTH_TYPE_KEY))
+        for (final Person actor : lifeEvent.actors())
+          births.put(actor, lifeEvent);
+    final FamilyGraph graph = snapshot.graph();
+    final int allTypes = FamilyGraph.mask(ParentalRelationType.values());
+    final Map<Person, Profile> profiles = new HashMap<>();
+    for (int i = 0; i < snapshot.size(); i++) {
+      final PersonSnapshot person = snapshot.person(i);
+      final Set<Person> parents = new HashSet<>();
+      graph.forEachParent(i, allTypes, parent -> parents.add(graph.person(parent)));
+      profiles.put(person.person(), profile(person, births.get(person.person()), parents, locale));
+    }
+    return profiles;
+  }
+
+  private static Profile profile(
+      final @NotNull PersonSnapshot person,
+      final LifeEventSnapshot birth,
+      final @NotNull Set<Person> parents,
+      @NotNull Locale locale
+  ) {
+    final List<String> lastNames = new ArrayList<>();
+    person.legalLastName().ifPresent(lastNames::add);
+    person.publicLastName().ifPresent(lastNames::add);
+    final String foldedLastNames = NameIndex.fold(String.join(" ", lastNames), locale);
+    final Set<String> lastNameKeys = new HashSet<>();
+    for (final String word : splitWords(foldedLastNames)) {
+      final String key = FrenchSoundex.encode(word);
+      if (!key.isEmpty())
+        lastNameKeys.add(key);
+    }
+    final List<String> firstNames = new ArrayList<>(person.legalFirstNames());
+    if (firstNames.isEmpty())
+      firstNames.addAll(person.publicFirstNames());
+    final String foldedFirstNames = NameIndex.fold(String.join(" ", firstNames), locale);
+    Integer birthYear = null;
+    String birthPlace = null;
+    if (birth != null) {
+      birthYear = birth.date().date().toISO8601Date().getYear();
+      birthPlace = birth.place()
+          .map(place -> splitWords(NameIndex.fold(place.address(), locale)))
+          .filter(words -> !words.isEmpty())
+          .map(words -> words.get(0))
+          .orElse(null);
+    }
+    return new Profile(
+        person.person(),
+        foldedLastNames,
+        lastNameKeys,
+        foldedFirstNames,
+        person.gender().or(person::assignedGenderAtBirth).orElse(null),
+        birthYear,
+        birthPlace,
+        parents
+    );
+  }
+
+  private static List<String> splitWords(@NotNull String s) {
+    final List<String> words = new ArrayList<>();
+    for (final String word : WORD_SEPARATORS.split(s))
+      if (!word.isEmpty())
+        words.add(word);
+    return words;
+  }
+
+  /**
+   * A pair of persons that may be duplicates.
+   *
+   * @param person1 A person.
+   * @param person2 Another person.
+   * @param score   The likelihood that both persons are the same, in [0, 1].
+   */
+  public record Candidate(@NotNull Person person1, @NotNull Person person2, double score) {
+  }
+
+  /**
+   * The data of a person that is compared to find duplicates. Names are folded as by {@link NameIndex}.
+   *
+   * @param person       The person.
+   * @param lastNames    The person’s legal and public last names, separated by spaces.
+   * @param lastNameKeys The phonetic keys of the words of the person’s last names.
+   * @param firstNames   The person’s legal first names, or public ones if there are none, separated by spaces.
+   * @param gender       The person’s gender, or assigned gender at birth if unknown.
+   * @param birthYear    The person’s ISO 8601 birth year, null if unknown.
+   * @param birthPlace   The first word of the person’s birth place, null if unknown.
+   * @param parents      The person’s parents of all types.
+   */
+  record Profile(
+      @NotNull Person person,
+      @NotNull String lastNames,
+      @NotNull Set<String> lastNameKeys,
+      @NotNull String firstNames,
+      Gender gender,
+      Integer birthYear,
+      String birthPlace,
+      @NotNull Set<Person> parents
+  ) {
+  }
+
+  /**
+   * An unordered pair of persons.
+   */
+  private static final class PersonPair {
+    private final Person person1;
+    private final Person person2;
+
+    private PersonPair(@NotNull Person person1, @NotNull Person person2) {
+      this.person1 = person1;
+      this.person2 = person2;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PersonPair pair
+          && (this.person1 == pair.person1 && this.person2 == pair.person2
+          || this.person1 == pair.person2 && this.person2 == pair.person1);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.person1.hashCode() ^ this.person2.hashCode();
+    }
+  }
+}
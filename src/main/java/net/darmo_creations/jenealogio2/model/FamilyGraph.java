@@ -0,0 +1,511 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * An immutable snapshot of the links between the members of a {@link FamilyTree},
+ * as returned by {@link FamilyTree#graph()}.
+ * <p>
+ * Members are numbered from 0 to {@link #size()} (exclusive). Parent and child links are stored
+ * for each {@link ParentalRelationType} in compressed sparse row form: an offsets array indexed by person
+ * and a targets array holding the indices of the linked persons, sorted in ascending order.
+ * Unions (life events whose type indicates a union) are stored the same way.
+ * <p>
+ * When members or links change, the tree derives a new graph from its current one, copying only the arrays
+ * affected by the change and sharing the others.
+ * <p>
+ * Traversals over this graph only read {@code int} arrays and do not allocate,
+ * and as the snapshot never changes, it may be traversed from several threads at once,
+ * for instance through a parallel stream over {@link #indices()}.
+ */
+public final class FamilyGraph {
+  /**
+   * Minimum number of persons from which the snapshot is built in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 4096;
+  private static final int[] EMPTY = new int[0];
+
+  private final Person[] persons;
+  /**
+   * Indices in this graph, indexed by person index in the tree (see {@link FamilyTree#personIndex(Person)}).
+   */
+  private final int[] indices;
+  private final int[][] parentOffsets;
+  private final int[][] parentTargets;
+  private final int[][] childOffsets;
+  private final int[][] childTargets;
+  private final int[] partnerOffsets;
+  private final int[] partnerTargets;
+
+  /**
+   * Create a snapshot of the given tree’s current members and links.
+   * Links to persons that are not members of the tree are ignored.
+   *
+   * @param familyTree The tree to take a snapshot of.
+   */
+  FamilyGraph(final @NotNull FamilyTree familyTree) {
+    final int capacity = familyTree.personIndexCapacity();
+    this.indices = new int[capacity];
+    final List<Person> persons = new ArrayList<>(capacity);
+    for (int i = 0; i < capacity; i++) {
+      final Person person = familyTree.personAt(i);
+      if (person != null) {
+        this.indices[i] = persons.size();
+        persons.add(person);
+      } else
+        this.indices[i] = -1;
+    }
+    this.persons = persons.toArray(new Person[0]);
+
+    final int n = this.persons.length;
+    final int typesNb = ParentalRelationType.values().length;
+    this.parentOffsets = new int[typesNb][n + 1];
+    this.parentTargets = new int[typesNb][];
+    this.childOffsets = new int[typesNb][n + 1];
+    this.childTargets = new int[typesNb][];
+    for (final var type : ParentalRelationType.values()) {
+      final int t = type.ordinal();
+      this.parentTargets[t] = this.buildRows(this.parentOffsets[t], (person, action) -> person.parents(type).forEach(action));
+      this.childTargets[t] = this.buildRows(this.childOffsets[t], (person, action) -> person.children(type).forEach(action));
+    }
+    this.partnerOffsets = new int[n + 1];
+    this.partnerTargets = this.buildRows(this.partnerOffsets, Person::forEachPartner);
+  }
+
+  /**
+   * Create a graph from the arrays of another one.
+   */
+  private FamilyGraph(
+      final @NotNull Person[] persons,
+      final @NotNull int[] indices,
+      final @NotNull int[][] parentOffsets,
+      final @NotNull int[][] parentTargets,
+      final @NotNull int[][] childOffsets,
+      final @NotNull int[][] childTargets,
+      final @NotNull int[] partnerOffsets,
+      final @NotNull int[] partnerTargets
+  ) {
+    this.persons = persons;
+    this.indices = indices;
+    this.parentOffsets = parentOffsets;
+    this.parentTargets = parentTargets;
+    this.childOffsets = childOffsets;
+    this.childTargets = childTargets;
+    this.partnerOffsets = partnerOffsets;
+    this.partnerTargets = partnerTargets;
+  }
+
+  /**
+   * Create a copy of the given graph with the unions of its persons read again.
+   */
+  private FamilyGraph(final @NotNull FamilyGraph graph) {
+    this.persons = graph.persons;
+    this.indices = graph.indices;
+    this.parentOffsets = graph.parentOffsets;
+    this.parentTargets = graph.parentTargets;
+    this.childOffsets = graph.childOffsets;
+    this.childTargets = graph.childTargets;
+    this.partnerOffsets = new int[this.persons.length + 1];
+    this.partnerTargets = this.buildRows(this.partnerOffsets, Person::forEachPartner);
+  }
+
+  /**
+   * Return a copy of this graph with a parent link added or removed.
+   * Only the rows of the link’s type are copied, all other arrays are shared.
+   *
+   * @param child  The child of the link.
+   * @param parent The parent of the link.
+   * @param type   The type of the link.
+   * @param linked True if the link was added, false if it was removed.
+   * @return The new graph, or this graph if either person is not in it or the link is already up to date.
+   */
+  FamilyGraph withParentLink(
+      @NotNull Person child,
+      @NotNull Person parent,
+      @NotNull ParentalRelationType type,
+      boolean linked
+  ) {
+    final int c = this.indexOf(child);
+    final int p = this.indexOf(parent);
+    if (c < 0 || p < 0)
+      return this;
+    final int t = type.ordinal();
+    final int[][] parentRows = patchRow(this.parentOffsets[t], this.parentTargets[t], c, p, linked);
+    if (parentRows == null)
+      return this;
+    final int[][] childRows = patchRow(this.childOffsets[t], this.childTargets[t], p, c, linked);
+    final int[][] parentOffsets = this.parentOffsets.clone();
+    final int[][] parentTargets = this.parentTargets.clone();
+    final int[][] childOffsets = this.childOffsets.clone();
+    final int[][] childTargets = this.childTargets.clone();
+    parentOffsets[t] = parentRows[0];
+    parentTargets[t] = parentRows[1];
+    if (childRows != null) {
+      childOffsets[t] = childRows[0];
+      childTargets[t] = childRows[1];
+    }
+    return new FamilyGraph(this.persons, this.indices, parentOffsets, parentTargets,
+        childOffsets, childTargets, this.partnerOffsets, this.partnerTargets);
+  }
+
+  /**
+   * Return a copy of this graph with a person that has no links appended to it.
+   * All targets arrays are shared.
+   *
+   * @param person The person to add. Its tree index must have been set.
+   * @return The new graph, or this graph if the person is already in it.
+   */
+  FamilyGraph withPerson(@NotNull Person person) {
+    if (this.indexOf(person) >= 0)
+      return this;
+    final int n = this.persons.length;
+    final Person[] persons = Arrays.copyOf(this.persons, n + 1);
+    persons[n] = person;
+    final int treeIndex = person.treeIndex();
+    final int[] indices = Arrays.copyOf(this.indices, Math.max(this.indices.length, treeIndex + 1));
+    Arrays.fill(indices, this.indices.length, indices.length, -1);
+    indices[treeIndex] = n;
+    return new FamilyGraph(persons, indices, appendEmptyRow(this.parentOffsets), this.parentTargets,
+        appendEmptyRow(this.childOffsets), this.childTargets, appendEmptyRow(this.partnerOffsets), this.partnerTargets);
+  }
+
+  /**
+   * Return a copy of this graph without a person that has no links.
+   * The indices of the persons after it are shifted down by one.
+   *
+   * @param person The person to remove.
+   * @return The new graph, this graph if the person is not in it,
+   * or null if the person still has links in this graph, which then has to be rebuilt.
+   */
+  FamilyGraph withoutPerson(@NotNull Person person) {
+    final int r = this.indexOf(person);
+    if (r < 0)
+      return this;
+    final int allMask = mask(EnumSet.allOf(ParentalRelationType.class));
+    final boolean[] hasLinks = {this.partnersCount(r) != 0};
+    this.forEachParent(r, allMask, i -> hasLinks[0] = true);
+    this.forEachChild(r, allMask, i -> hasLinks[0] = true);
+    if (hasLinks[0])
+      return null;
+    final int n = this.persons.length;
+    final Person[] persons = new Person[n - 1];
+    System.arraycopy(this.persons, 0, persons, 0, r);
+    System.arraycopy(this.persons, r + 1, persons, r, n - r - 1);
+    final int[] indices = this.indices.clone();
+    indices[person.treeIndex()] = -1;
+    for (int i = 0; i < indices.length; i++)
+      if (indices[i] > r)
+        indices[i]--;
+    final int typesNb = this.parentOffsets.length;
+    final int[][] parentOffsets = new int[typesNb][];
+    final int[][] parentTargets = new int[typesNb][];
+    final int[][] childOffsets = new int[typesNb][];
+    final int[][] childTargets = new int[typesNb][];
+    for (int t = 0; t < typesNb; t++) {
+      parentOffsets[t] = removeEmptyRow(this.parentOffsets[t], r);
+      parentTargets[t] = shiftTargets(this.parentTargets[t], r);
+      childOffsets[t] = removeEmptyRow(this.childOffsets[t], r);
+      childTargets[t] = shiftTargets(this.childTargets[t], r);
+    }
+    return new FamilyGraph(persons, indices, parentOffsets, parentTargets, childOffsets, childTargets,
+        removeEmptyRow(this.partnerOffsets, r), shiftTargets(this.partnerTargets, r));
+  }
+
+  /**
+   * Return a copy of this graph with the unions of its persons read again. Parent links are shared.
+   */
+  FamilyGraph withUpdatedPartners() {
+    return new FamilyGraph(this);
+  }
+
+  /**
+   * Insert a value into or remove it from a row of a compressed sparse row table.
+   *
+   * @param offsets The table’s offsets.
+   * @param targets The table’s targets.
+   * @param row     The row to update.
+   * @param value   The value to insert or remove.
+   * @param insert  True to insert the value, false to remove it.
+   * @return The new offsets and targets arrays, or null if the row already contains or lacks the value.
+   */
+  private static int[][] patchRow(final int[] offsets, final int[] targets, int row, int value, boolean insert) {
+    final int start = offsets[row];
+    final int end = offsets[row + 1];
+    final int position = Arrays.binarySearch(targets, start, end, value);
+    if (position >= 0 == insert)
+      return null;
+    final int delta = insert ? 1 : -1;
+    final int[] newOffsets = offsets.clone();
+    for (int i = row + 1; i < newOffsets.length; i++)
+      newOffsets[i] += delta;
+    final int[] newTargets = new int[targets.length + delta];
+    if (insert) {
+      final int at = -position - 1;
+      System.arraycopy(targets, 0, newTargets, 0, at);
+      newTargets[at] = value;
+      System.arraycopy(targets, at, newTargets, at + 1, targets.length - at);
+    } else {
+      System.arraycopy(targets, 0, newTargets, 0, position);
+      System.arraycopy(targets, position + 1, newTargets, position, targets.length - position - 1);
+    }
+    return new int[][] {newOffsets, newTargets};
+  }
+
+  private static int[][] appendEmptyRow(final int[][] offsets) {
+    final int[][] result = new int[offsets.length][];
+    for (int t = 0; t < offsets.length; t++)
+      result[t] = appendEmptyRow(offsets[t]);
+    return result;
+  }
+
+  private static int[] appendEmptyRow(final int[] offsets) {
+    final int[] result = Arrays.copyOf(offsets, offsets.length + 1);
+    result[offsets.length] = offsets[offsets.length - 1];
+    return result;
+  }
+
+  private static int[] removeEmptyRow(final int[] offsets, int row) {
+    final int[] result = new int[offsets.length - 1];
+    System.arraycopy(offsets, 0, result, 0, row + 1);
+    System.arraycopy(offsets, row + 2, result, row + 1, offsets.length - row - 2);
+    return result;
+  }
+
+  /**
+   * Decrement the values greater than the given one. Sorted rows remain sorted.
+   */
+  private static int[] shiftTargets(final int[] targets, int removed) {
+    final int[] result = targets.clone();
+    for (int i = 0; i < result.length; i++)
+      if (result[i] > removed)
+        result[i]--;
+    return result;
+  }
+
+  /**
+   * Fill the given offsets array and return the corresponding targets array.
+   *
+   * @param offsets   The offsets array to fill. Must have a length of {@link #size()} + 1.
+   * @param neighbors A function that feeds the neighbors of a person to a consumer.
+   * @return The targets array.
+   */
+  private int[] buildRows(
+      int @NotNull [] offsets,
+      final @NotNull BiConsumer<Person, Consumer<Person>> neighbors
+  ) {
+    final int n = this.persons.length;
+    final int[][] rows = new int[n][];
+    this.range().forEach(i -> {
+      final int[][] row = {EMPTY};
+      final int[] size = {0};
+      neighbors.accept(this.persons[i], neighbor -> {
+        final int j = this.indexOf(neighbor);
+        if (j < 0) // Not a member of the tree
+          return;
+        if (size[0] == row[0].length)
+          row[0] = Arrays.copyOf(row[0], Math.max(4, size[0] * 2));
+        row[0][size[0]++] = j;
+      });
+      // Several union events may link the same two persons
+      rows[i] = Arrays.stream(row[0], 0, size[0]).sorted().distinct().toArray();
+    });
+    for (int i = 0; i < n; i++)
+      offsets[i + 1] = offsets[i] + rows[i].length;
+    final int[] targets = new int[offsets[n]];
+    this.range().forEach(i -> System.arraycopy(rows[i], 0, targets, offsets[i], rows[i].length));
+    return targets;
+  }
+
+  /**
+   * A stream over all person indices, parallel if this graph is large enough.
+   */
+  private IntStream range() {
+    final IntStream range = this.indices();
+    return this.persons.length >= PARALLEL_THRESHOLD ? range.parallel() : range;
+  }
+
+  /**
+   * Convert relation types into a bit mask, as expected by the traversal methods of this class.
+   *
+   * @param relationTypes The relation types.
+   * @return A bit mask where the nth bit is set if the type with ordinal n is in the collection.
+   */
+  public static int mask(final @NotNull Collection<ParentalRelationType> relationTypes) {
+    int mask = 0;
+    for (final var relationType : relationTypes)
+      mask |= 1 << relationType.ordinal();
+    return mask;
+  }
+
+  /**
+   * Convert relation types into a bit mask, as expected by the traversal methods of this class.
+   *
+   * @param relationTypes The relation types.
+   * @return A bit mask where the nth bit is set if the type with ordinal n is in the array.
+   */
+  public static int mask(final @NotNull ParentalRelationType... relationTypes) {
+    return mask(Arrays.asList(relationTypes));
+  }
+
+  /**
+   * The number of persons in this graph.
+   */
+  public int size() {
+    return this.persons.length;
+  }
+
+  /**
+   * A sequential stream over all person indices of this graph, in ascending order.
+   */
+  public IntStream indices() {
+    return IntStream.range(0, this.persons.length);
+  }
+
+  /**
+   * The person with the given index.
+   *
+   * @param index A person index.
+   * @return The person.
+   * @throws IndexOutOfBoundsException If the index is not in [0, {@link #size()}[.
+   */
+  public Person person(int index) {
+    return this.persons[index];
+  }
+
+  /**
+   * The index of the given person in this graph.
+   * <p>
+   * Persons that were removed from the tree after this snapshot was taken are not found.
+   *
+   * @param person A person.
+   * @return The person’s index or -1 if it is not in this graph.
+   */
+  public int indexOf(final @NotNull Person person) {
+    final int treeIndex = person.treeIndex();
+    if (treeIndex < 0 || treeIndex >= this.indices.length)
+      return -1;
+    final int index = this.indices[treeIndex];
+    return index >= 0 && this.persons[index] == person ? index : -1;
+  }
+
+  /**
+   * The number of parents of the given type of a person.
+   *
+   * @param index The person’s index.
+   * @param type  The relation type.
+   * @return The number of parents.
+   */
+  public int parentsCount(int index, @NotNull ParentalRelationType type) {
+    final int[] offsets = this.parentOffsets[type.ordinal()];
+    return offsets[index + 1] - offsets[index];
+  }
+
+  /**
+   * The nth parent of the given type of a person.
+   *
+   * @param index The person’s index.
+   * @param type  The relation type.
+   * @param n     The parent’s rank, in [0, {@link #parentsCount(int, ParentalRelationType)}[.
+   * @return The parent’s index.
+   */
+  public int parent(int index, @NotNull ParentalRelationType type, int n) {
+    final int t = type.ordinal();
+    return this.parentTargets[t][this.parentOffsets[t][index] + n];
+  }
+
+  /**
+   * The number of children of the given type of a person.
+   *
+   * @param index The person’s index.
+   * @param type  The relation type.
+   * @return The number of children.
+   */
+  public int childrenCount(int index, @NotNull ParentalRelationType type) {
+    final int[] offsets = this.childOffsets[type.ordinal()];
+    return offsets[index + 1] - offsets[index];
+  }
+
+  /**
+   * The nth child of the given type of a person.
+   *
+   * @param index The person’s index.
+   * @param type  The relation type.
+   * @param n     The child’s rank, in [0, {@link #childrenCount(int, ParentalRelationType)}[.
+   * @return The child’s index.
+   */
+  public int child(int index, @NotNull ParentalRelationType type, int n) {
+    final int t = type.ordinal();
+    return this.childTargets[t][this.childOffsets[t][index] + n];
+  }
+
+  /**
+   * The number of persons a person has been in a union with.
+   *
+   * @param index The person’s index.
+   * @return The number of partners.
+   */
+  public int partnersCount(int index) {
+    return this.partnerOffsets[index + 1] - this.partnerOffsets[index];
+  }
+
+  /**
+   * The nth partner of a person.
+   *
+   * @param index The person’s index.
+   * @param n     The partner’s rank, in [0, {@link #partnersCount(int)}[.
+   * @return The partner’s index.
+   */
+  public int partner(int index, int n) {
+    return this.partnerTargets[this.partnerOffsets[index] + n];
+  }
+
+  /**
+   * Apply an action on the parents of a person.
+   *
+   * @param index  The person’s index.
+   * @param mask   Mask of the relation types to follow (see {@link #mask(Collection)}).
+   * @param action The action to apply on each parent’s index.
+   */
+  public void forEachParent(int index, int mask, final @NotNull IntConsumer action) {
+    forEach(this.parentOffsets, this.parentTargets, index, mask, action);
+  }
+
+  /**
+   * Apply an action on the children of a person.
+   *
+   * @param index  The person’s index.
+   * @param mask   Mask of the relation types to follow (see {@link #mask(Collection)}).
+   * @param action The action to apply on each child’s index.
+   */
+  public void forEachChild(int index, int mask, final @NotNull IntConsumer action) {
+    forEach(this.childOffsets, this.childTargets, index, mask, action);
+  }
+
+  /**
+   * Apply an action on the partners of a person.
+   *
+   * @param index  The person’s index.
+   * @param action The action to apply on each partner’s index.
+   */
+  public void forEachPartner(int index, final @NotNull IntConsumer action) {
+    for (int i = this.partnerOffsets[index], end = this.partnerOffsets[index + 1]; i < end; i++)
+      action.accept(this.partnerTargets[i]);
+  }
+
+  private static void forEach(
+      final int[][] offsets,
+      final int[][] targets,
+      int index,
+      int mask,
+      final @NotNull IntConsumer action
+  ) {
+    for (int t = 0; t < offsets.length; t++)
+      if ((mask & 1 << t) != 0)
+        for (int i = offsets[t][index], end = offsets[t][index + 1]; i < end; i++)
+          action.accept(targets[t][i]);
+  }
+}
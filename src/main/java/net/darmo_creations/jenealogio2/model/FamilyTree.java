@@ -5,6 +5,7 @@ import net.darmo_creations.jenealogio2.io.file_ops.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.function.*;
 
 /**
  * A family tree has a name and contains a set of persons that belong to it.
@@ -18,6 +19,29 @@ public class FamilyTree {
   private final Set<LifeEvent> lifeEvents = new HashSet<>();
   private final Map<String, AttachedDocument> documents = new HashMap<>();
   private final List<FileOperation> pendingFileOperations = new LinkedList<>();
+  /**
+   * Persons indexed by their {@link #personIndex(Person)}. Released indices hold null values.
+   */
+  private final List<Person> indexedPersons = new ArrayList<>();
+  private final Deque<Integer> freeIndices = new ArrayDeque<>();
+  private final AncestryIndex ancestryIndex = new AncestryIndex(this);
+  private final RelationshipFinder relationshipFinder = new RelationshipFinder(this);
+  private final RelativesCounter relativesCounter = new RelativesCounter(this);
+  private final List<FamilyTreeChangeListener> changeListeners = new LinkedList<>();
+  private final UndoHistory history = new UndoHistory();
+  private final NameIndex nameIndex = new NameIndex(this);
+  private final SimilarNameIndex similarNameIndex = new SimilarNameIndex(this);
+  private final PlaceIndex placeIndex = new PlaceIndex();
+  /**
+   * Cached snapshot of this tree’s links, null if it has to be rebuilt.
+   */
+  private FamilyGraph graph;
+  private int graphUnionTypesHash;
+  /**
+   * Cached snapshot of this tree, null if it has to be rebuilt.
+   */
+  private FamilyTreeSnapshot snapshot;
+  private KinshipCalculator kinshipCalculator;
   private String name;
   private Person root;
 
@@ -28,6 +52,8 @@ public class FamilyTree {
    */
   public FamilyTree(@NotNull String name) {
     this.setName(name);
+    this.genderRegistry.setFamilyTree(this);
+    this.lifeEventTypeRegistry.setFamilyTree(this);
   }
 
   /**
@@ -44,6 +70,66 @@ public class FamilyTree {
    */
   public void setName(@NotNull String name) {
     this.name = Objects.requireNonNull(name);
+    this.snapshot = null;
+  }
+
+  /**
+   * Add a listener that will be notified of every change made to this tree.
+   *
+   * @param listener The listener to add.
+   */
+  public void addChangeListener(@NotNull FamilyTreeChangeListener listener) {
+    this.changeListeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Remove a listener added with {@link #addChangeListener(FamilyTreeChangeListener)}.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeChangeListener(@NotNull FamilyTreeChangeListener listener) {
+    this.changeListeners.remove(listener);
+  }
+
+  /**
+   * Notify all listeners of a change.
+   * <p>
+   * Changes made through this tree, its members and their life events are reported automatically.
+   * This method has to be called after changing objects that do not know which tree they belong to,
+   * i.e. registry entries and the metadata of documents.
+   *
+   * @param change The change to report.
+   */
+  public void fireChange(@NotNull FamilyTreeChange change) {
+    Objects.requireNonNull(change);
+    this.snapshot = null;
+    for (final FamilyTreeChangeListener listener : this.changeListeners)
+      listener.onChange(change);
+  }
+
+  /**
+   * The history of the changes made to this tree and its objects.
+   */
+  public UndoHistory history() {
+    return this.history;
+  }
+
+  /**
+   * Indicate whether the given person is a member of this tree.
+   *
+   * @param person The person to check.
+   */
+  public boolean hasPerson(final @NotNull Person person) {
+    return this.isMember(person);
+  }
+
+  /**
+   * Indicate whether the given life event is in this tree.
+   *
+   * @param lifeEvent The event to check.
+   */
+  public boolean hasLifeEvent(final @NotNull LifeEvent lifeEvent) {
+    return this.lifeEvents.contains(lifeEvent);
   }
 
   /**
@@ -86,9 +172,23 @@ public class FamilyTree {
 
   /**
    * Clear all pending file operations of this tree.
+   * If any document was deleted, the history of this tree is also cleared as deleted files cannot be restored.
    */
   public void clearPendingFileOperations() {
-    this.pendingFileOperations.clear();
+    this.removePendingFileOperations(new ArrayList<>(this.pendingFileOperations));
+  }
+
+  /**
+   * Remove the given operations from the pending file operations of this tree, once they have been performed.
+   * Operations added since then are kept.
+   * If any document was deleted, the history of this tree is also cleared as deleted files cannot be restored.
+   *
+   * @param operations The performed operations.
+   */
+  public void removePendingFileOperations(final @NotNull Collection<FileOperation> operations) {
+    if (operations.stream().anyMatch(o -> o instanceof DeleteFileOperation))
+      this.history.clear();
+    this.pendingFileOperations.removeAll(operations);
   }
 
   /**
@@ -101,7 +201,103 @@ public class FamilyTree {
     if (this.persons.isEmpty())
       this.root = person;
     person.setFamilyTree(this);
-    this.persons.add(person);
+    if (this.persons.add(person)) {
+      final Integer index = this.freeIndices.poll();
+      if (index != null) {
+        person.setTreeIndex(index);
+        this.indexedPersons.set(index, person);
+      } else {
+        person.setTreeIndex(this.indexedPersons.size());
+        this.indexedPersons.add(person);
+      }
+      person.updateGendersUsage(true);
+      this.nameIndex.add(person);
+      this.similarNameIndex.add(person);
+      // Links created before the person joined this tree were not reported to the index
+      if (person.hasAnyParents() || person.hasAnyChildren()) {
+        this.ancestryIndex.invalidate();
+        this.relativesCounter.invalidate();
+        this.graph = null;
+      } else if (this.graph != null)
+        this.graph = this.graph.withPerson(person);
+      this.history.record(() -> this.removeMember(person), () -> this.addPerson(person));
+      this.fireChange(new FamilyTreeChange.PersonAdded(person));
+    }
+  }
+
+  /**
+   * Return the members of this tree whose names contain every word of the given query,
+   * regardless of case and accents. Names include legal and public first and last names, and nicknames.
+   * <p>
+   * Searches use a trigram index of all names that is built on the first search
+   * then updated as members are added, removed or renamed.
+   *
+   * @param query  The words to search for, separated by whitespace.
+   * @param locale The locale to use for lower-case conversions.
+   * @return The matching persons. Empty if the query is blank.
+   */
+  public Set<Person> searchPersons(@NotNull String query, @NotNull Locale locale) {
+    return this.nameIndex.search(query, locale);
+  }
+
+  /**
+   * Return the members of this tree that have, for every word of the given query, a name that sounds like it
+   * or is spelled similarly, regardless of case and accents. This is meant to find the many spellings
+   * of a same name in historical records, like “Dupont”, “Dupond” or “Du Pont”.
+   * <p>
+   * Names are compared by French phonetic key and by edit distance, using an index of all names
+   * that is built on the first search then updated as members are added, removed or renamed.
+   *
+   * @param query  The words to search for, separated by whitespace.
+   * @param locale The locale to use for lower-case conversions.
+   * @return The matching persons. Empty if the query is blank.
+   */
+  public Set<Person> searchSimilarPersons(@NotNull String query, @NotNull Locale locale) {
+    return this.similarNameIndex.search(query, locale);
+  }
+
+  /**
+   * Return the places of this tree’s life events that have a word starting with the given query,
+   * regardless of case and accents.
+   * <p>
+   * Searches use a prefix index of all places that is built on the first search
+   * then updated as events are added, removed or moved.
+   *
+   * @param query  The beginning of the words to search for.
+   * @param locale The locale to use for lower-case conversions.
+   * @param limit  The maximum number of places to return.
+   * @return The matching places, each one once, the most used ones first. All places if the query is blank.
+   */
+  public List<Place> searchPlaces(@NotNull String query, @NotNull Locale locale, int limit) {
+    return this.placeSearch(locale).search(query, limit);
+  }
+
+  /**
+   * An immutable copy of the places of this tree’s life events and of their prefix index,
+   * to search them outside the JavaFX thread. It is cached until places are added, removed or moved.
+   *
+   * @param locale The locale to use for lower-case conversions.
+   * @return The current copy.
+   */
+  public PlaceSearch placeSearch(@NotNull Locale locale) {
+    return this.placeIndex.placeSearch(locale);
+  }
+
+  /**
+   * The distinct places of this tree’s life events. Events of equal places share the same instance.
+   */
+  public @UnmodifiableView Set<Place> places() {
+    return this.placeIndex.places();
+  }
+
+  /**
+   * The life events of this tree that take place at the given place.
+   *
+   * @param place A place.
+   * @return The place’s events.
+   */
+  public @UnmodifiableView Set<LifeEvent> lifeEventsAt(@NotNull Place place) {
+    return this.placeIndex.lifeEvents(place);
   }
 
   /**
@@ -121,14 +317,47 @@ public class FamilyTree {
     }
     for (final LifeEvent lifeEvent : person.lifeEvents()) {
       this.removeActorFromLifeEvent(lifeEvent, person);
-      lifeEvent.removeWitness(person);
-      this.lifeEvents.remove(lifeEvent);
+      this.removeWitnessFromLifeEvent(lifeEvent, person);
     }
+    // Documents are detached while the person is still a member so that the changes are recorded
+    // Copy the set as it is modified by the callbacks
+    new ArrayList<>(person.authoredDocuments()).forEach(d -> d.removeAuthor(person));
+    this.detachDocuments(person);
+    if (this.removeMember(person))
+      this.history.record(() -> this.addPerson(person), () -> this.removeMember(person));
+  }
+
+  /**
+   * Remove the given person from this tree’s members, without removing any of its links.
+   *
+   * @param person The person to remove.
+   * @return True if the person was a member of this tree, false otherwise.
+   */
+  private boolean removeMember(@NotNull Person person) {
+    if (!this.isMember(person))
+      return false;
+    final int index = person.treeIndex();
+    person.updateGendersUsage(false);
+    this.nameIndex.remove(person);
+    this.similarNameIndex.remove(person);
+    // Links are only left when undoing the addition of a person that already had some
+    if (person.hasAnyParents() || person.hasAnyChildren()) {
+      this.ancestryIndex.invalidate();
+      this.relativesCounter.invalidate();
+      this.graph = null;
+    } else if (this.graph != null)
+      this.graph = this.graph.withoutPerson(person);
+    this.ancestryIndex.onPersonRemoved(index);
+    this.relativesCounter.onPersonRemoved(index);
+    this.indexedPersons.set(index, null);
+    this.freeIndices.push(index);
+    person.setTreeIndex(-1);
     this.persons.remove(person);
-    person.authoredDocuments().forEach(d -> d.removeAuthor(person));
-    for (final var annotationType : AnnotationType.values())
-      person.getAnnotatedInDocuments(annotationType)
-          .forEach(d -> d.removeObjectAnnotation(annotationType, person));
+    // Only happens when undoing the addition of the first member
+    if (this.root == person)
+      this.root = null;
+    this.fireChange(new FamilyTreeChange.PersonRemoved(person));
+    return true;
   }
 
   /**
@@ -138,8 +367,10 @@ public class FamilyTree {
    * @param actors    Persons to set as actors.
    */
   public void setLifeEventActors(@NotNull LifeEvent lifeEvent, final @NotNull Set<Person> actors) {
-    this.lifeEvents.add(lifeEvent);
-    lifeEvent.setActors(actors);
+    this.addLifeEvent(lifeEvent);
+    final Set<Person> previous = lifeEvent.actors();
+    this.setActors(lifeEvent, actors);
+    this.recordActorsChange(lifeEvent, previous);
   }
 
   /**
@@ -153,12 +384,22 @@ public class FamilyTree {
     if (!lifeEvent.hasActor(actor))
       return;
     if (lifeEvent.actors().size() <= lifeEvent.type().minActors()) {
-      lifeEvent.actors().forEach(a -> a.removeLifeEvent(lifeEvent));
-      lifeEvent.witnesses().forEach(w -> w.removeLifeEvent(lifeEvent));
-      actor.removeLifeEvent(lifeEvent);
-      this.lifeEvents.remove(lifeEvent);
-    } else
+      // Documents are detached while the event is still in this tree so that the changes are recorded
+      this.detachDocuments(lifeEvent);
+      this.setParticipantsLinked(lifeEvent, false);
+      this.history.record(
+          () -> this.setParticipantsLinked(lifeEvent, true),
+          () -> this.setParticipantsLinked(lifeEvent, false)
+      );
+      this.removeLifeEvent(lifeEvent);
+    } else {
+      final Set<Person> previous = lifeEvent.actors();
       lifeEvent.removeActor(actor);
+      if (lifeEvent.type().indicatesUnion())
+        this.onUnionsChanged();
+      this.fireChange(new FamilyTreeChange.LifeEventChanged(lifeEvent));
+      this.recordActorsChange(lifeEvent, previous);
+    }
   }
 
   /**
@@ -168,8 +409,14 @@ public class FamilyTree {
    * @param witness   The witness to add.
    */
   public void addWitnessToLifeEvent(@NotNull LifeEvent lifeEvent, @NotNull Person witness) {
-    this.lifeEvents.add(lifeEvent);
-    lifeEvent.addWitness(witness);
+    this.addLifeEvent(lifeEvent);
+    final boolean added = !lifeEvent.hasWitness(witness);
+    this.setWitness(lifeEvent, witness, true);
+    if (added)
+      this.history.record(
+          () -> this.setWitness(lifeEvent, witness, false),
+          () -> this.setWitness(lifeEvent, witness, true)
+      );
   }
 
   /**
@@ -179,7 +426,222 @@ public class FamilyTree {
    * @param witness   The witness to remove.
    */
   public void removeWitnessFromLifeEvent(@NotNull LifeEvent lifeEvent, @NotNull Person witness) {
-    lifeEvent.removeWitness(witness);
+    if (!lifeEvent.hasWitness(witness))
+      return;
+    this.setWitness(lifeEvent, witness, false);
+    this.history.record(
+        () -> this.setWitness(lifeEvent, witness, true),
+        () -> this.setWitness(lifeEvent, witness, false)
+    );
+  }
+
+  /**
+   * Replace the actors of a life event, without adding it to this tree’s events set.
+   *
+   * @param lifeEvent The event to set actors of.
+   * @param actors    Persons to set as actors. If empty, all actors are removed without any check.
+   */
+  private void setActors(@NotNull LifeEvent lifeEvent, final @NotNull Set<Person> actors) {
+    if (actors.isEmpty())
+      lifeEvent.clearActors();
+    else
+      lifeEvent.setActors(actors);
+    if (lifeEvent.type().indicatesUnion())
+      this.onUnionsChanged();
+    this.fireChange(new FamilyTreeChange.LifeEventChanged(lifeEvent));
+  }
+
+  /**
+   * Record the change of the actors of a life event, if they changed.
+   *
+   * @param lifeEvent The event whose actors changed.
+   * @param previous  The previous actors.
+   */
+  private void recordActorsChange(@NotNull LifeEvent lifeEvent, final @NotNull Set<Person> previous) {
+    final Set<Person> actors = lifeEvent.actors();
+    if (!actors.equals(previous))
+      this.history.record(() -> this.setActors(lifeEvent, previous), () -> this.setActors(lifeEvent, actors));
+  }
+
+  /**
+   * Add or remove a witness of a life event.
+   *
+   * @param lifeEvent The event to update.
+   * @param witness   The witness.
+   * @param present   True to add the witness, false to remove it.
+   */
+  private void setWitness(@NotNull LifeEvent lifeEvent, @NotNull Person witness, boolean present) {
+    if (present)
+      lifeEvent.addWitness(witness);
+    else
+      lifeEvent.removeWitness(witness);
+    this.fireChange(new FamilyTreeChange.LifeEventChanged(lifeEvent));
+  }
+
+  /**
+   * Add or remove a life event from the events of all its actors and witnesses. The event itself is not updated.
+   *
+   * @param lifeEvent The event.
+   * @param linked    True to add the event to its participants, false to remove it from them.
+   */
+  private void setParticipantsLinked(@NotNull LifeEvent lifeEvent, boolean linked) {
+    final Consumer<Person> action = linked ? p -> p.addLifeEvent(lifeEvent) : p -> p.removeLifeEvent(lifeEvent);
+    lifeEvent.actors().forEach(action);
+    lifeEvent.witnesses().forEach(action);
+    if (lifeEvent.type().indicatesUnion())
+      this.onUnionsChanged();
+    this.fireChange(new FamilyTreeChange.LifeEventChanged(lifeEvent));
+  }
+
+  /**
+   * Replace the type of all life events of this tree that have the given type.
+   *
+   * @param type        The type to replace.
+   * @param replacement The type to replace it with.
+   * @throws IllegalArgumentException If the number of actors of any of the events
+   *                                  is not allowed by the replacement type.
+   */
+  public void replaceLifeEventType(@NotNull LifeEventType type, @NotNull LifeEventType replacement) {
+    Objects.requireNonNull(replacement);
+    // Copy the set as it is modified by setType()
+    final List<LifeEvent> lifeEvents = type.users().stream().map(o -> (LifeEvent) o).toList();
+    for (final LifeEvent lifeEvent : lifeEvents) {
+      final int actorsNb = lifeEvent.actors().size();
+      if (actorsNb < replacement.minActors() || actorsNb > replacement.maxActors())
+        throw new IllegalArgumentException("type %s does not allow %d actors".formatted(replacement.key(), actorsNb));
+    }
+    lifeEvents.forEach(lifeEvent -> lifeEvent.setType(replacement));
+  }
+
+  /**
+   * Replace the given gender in the assigned gender at birth and gender of all members of this tree.
+   *
+   * @param gender      The gender to replace.
+   * @param replacement The gender to replace it with.
+   */
+  public void replaceGender(@NotNull Gender gender, @NotNull Gender replacement) {
+    Objects.requireNonNull(replacement);
+    // Copy the set as it is modified by replaceGender()
+    new ArrayList<>(gender.users()).forEach(o -> ((Person) o).replaceGender(gender, replacement));
+  }
+
+  /**
+   * Return the places of this tree’s life events that are within the given box.
+   *
+   * @param box The area to search.
+   * @return The places whose coordinates are within the box.
+   */
+  public List<Place> placesIn(final @NotNull LatLonBox box) {
+    return this.placeIndex.search(box);
+  }
+
+  /**
+   * Return the places of this tree’s life events that are within the given distance of a point.
+   *
+   * @param center The point to search around.
+   * @param radius The maximum distance in kilometers.
+   * @return The places within the distance, the closest first.
+   */
+  public List<Place> placesWithin(final @NotNull LatLon center, double radius) {
+    return this.placeIndex.search(center, radius);
+  }
+
+  /**
+   * Return the places of this tree’s life events that are the closest to a point.
+   *
+   * @param point The point to search around.
+   * @param k     The maximum number of places to return.
+   * @return The k places closest to the point, the closest first.
+   */
+  public List<Place> nearestPlaces(final @NotNull LatLon point, int k) {
+    return this.placeIndex.nearest(point, k);
+  }
+
+  /**
+   * Return the life events of this tree that take place within the given box.
+   *
+   * @param box The area to search.
+   * @return The events whose place’s coordinates are within the box.
+   */
+  public Set<LifeEvent> lifeEventsIn(final @NotNull LatLonBox box) {
+    final Set<LifeEvent> lifeEvents = new HashSet<>();
+    this.placesIn(box).forEach(place -> lifeEvents.addAll(this.lifeEventsAt(place)));
+    return lifeEvents;
+  }
+
+  /**
+   * Return the life events of this tree that take place within the given distance of a point.
+   *
+   * @param center The point to search around.
+   * @param radius The maximum distance in kilometers.
+   * @return The events whose place’s coordinates are within the distance.
+   */
+  public Set<LifeEvent> lifeEventsWithin(final @NotNull LatLon center, double radius) {
+    final Set<LifeEvent> lifeEvents = new HashSet<>();
+    this.placesWithin(center, radius).forEach(place -> lifeEvents.addAll(this.lifeEventsAt(place)));
+    return lifeEvents;
+  }
+
+  /**
+   * Replace the given place in all life events of this tree that take place there.
+   * This is used to rename a place, change its coordinates, or merge it into another place.
+   *
+   * @param place       The place to replace.
+   * @param replacement The place to replace it with.
+   */
+  public void replacePlace(@NotNull Place place, @NotNull Place replacement) {
+    Objects.requireNonNull(replacement);
+    // Copy the set as it is modified by setPlace()
+    new ArrayList<>(this.placeIndex.lifeEvents(place)).forEach(lifeEvent -> lifeEvent.setPlace(replacement));
+  }
+
+  /**
+   * The addresses of the places of this tree’s life events that have no coordinates.
+   */
+  public Set<String> addressesWithoutCoordinates() {
+    final Set<String> addresses = new HashSet<>();
+    for (final Place place : this.placeIndex.places())
+      if (place.latLon().isEmpty())
+        addresses.add(place.address());
+    return addresses;
+  }
+
+  /**
+   * Set the coordinates of the places that have none. The changes are undone at once.
+   *
+   * @param coordinates The coordinates of some addresses.
+   * @return The number of places that were given coordinates.
+   */
+  public int setPlacesCoordinates(final @NotNull Map<String, LatLon> coordinates) {
+    this.history.endStep();
+    int count = 0;
+    // Copy the set as it is modified by replacePlace()
+    for (final Place place : new ArrayList<>(this.placeIndex.places())) {
+      final LatLon latLon = coordinates.get(place.address());
+      if (place.latLon().isEmpty() && latLon != null) {
+        this.replacePlace(place, new Place(place.address(), latLon));
+        count++;
+      }
+    }
+    this.history.endStep();
+    return count;
+  }
+
+  private void addLifeEvent(@NotNull LifeEvent lifeEvent) {
+    if (this.lifeEvents.add(lifeEvent)) {
+      lifeEvent.type().addUser(lifeEvent);
+      this.placeIndex.add(lifeEvent);
+      this.history.record(() -> this.removeLifeEvent(lifeEvent), () -> this.addLifeEvent(lifeEvent));
+    }
+  }
+
+  private void removeLifeEvent(@NotNull LifeEvent lifeEvent) {
+    if (this.lifeEvents.remove(lifeEvent)) {
+      lifeEvent.type().removeUser(lifeEvent);
+      this.placeIndex.remove(lifeEvent, lifeEvent.place().orElse(null));
+      this.history.record(() -> this.addLifeEvent(lifeEvent), () -> this.removeLifeEvent(lifeEvent));
+      this.fireChange(new FamilyTreeChange.LifeEventChanged(lifeEvent));
+    }
   }
 
   /**
@@ -191,8 +653,19 @@ public class FamilyTree {
   public boolean addDocument(@NotNull AttachedDocument document) {
     if (this.documents.containsKey(document.fileName()))
       return false;
-    this.documents.put(document.fileName(), document);
-    this.pendingFileOperations.add(new ImportFileOperation(document.fileName(), document.path(), document));
+    final String fileName = document.fileName();
+    this.documents.put(fileName, document);
+    final FileOperation operation = new ImportFileOperation(fileName, document.path(), document);
+    this.pendingFileOperations.add(operation);
+    this.history.record(new DocumentEdit(
+        document,
+        operation,
+        () -> this.documents.remove(fileName),
+        () -> this.documents.put(fileName, document),
+        () -> new DeleteFileOperation(fileName, document),
+        () -> new ImportFileOperation(fileName, document.path(), document)
+    ));
+    this.fireChange(new FamilyTreeChange.DocumentChanged(document));
     return true;
   }
 
@@ -207,20 +680,35 @@ public class FamilyTree {
     if (!this.documents.containsKey(fileName))
       return null;
     final AttachedDocument document = this.documents.remove(fileName);
-    Objects.requireNonNull(fileName);
-    this.persons.forEach(p -> {
-      p.removeAuthoredDocument(document);
-      for (final var annotationType : AnnotationType.values())
-        p.removeAnnotatedInDocument(annotationType, document);
-    });
-    this.lifeEvents.forEach(event -> {
-      for (final var annotationType : AnnotationType.values())
-        event.removeAnnotatedInDocument(annotationType, document);
-    });
-    this.pendingFileOperations.add(new DeleteFileOperation(fileName, document));
+    final FileOperation operation = new DeleteFileOperation(fileName, document);
+    this.pendingFileOperations.add(operation);
+    this.history.record(new DocumentEdit(
+        document,
+        operation,
+        () -> this.documents.put(fileName, document),
+        () -> this.documents.remove(fileName),
+        () -> new ImportFileOperation(fileName, document.path(), document),
+        () -> new DeleteFileOperation(fileName, document)
+    ));
+    // Only the objects that reference the document are updated
+    document.detach();
+    this.fireChange(new FamilyTreeChange.DocumentChanged(document));
     return document;
   }
 
+  /**
+   * Remove the annotations and main picture of an object that is being removed from this tree.
+   *
+   * @param object The removed object.
+   */
+  private void detachDocuments(@NotNull GenealogyObject<?> object) {
+    for (final var annotationType : AnnotationType.values())
+      // Copy the set as it is modified by the callbacks
+      new ArrayList<>(object.getAnnotatedInDocuments(annotationType))
+          .forEach(d -> d.removeObjectAnnotation(annotationType, object));
+    object.setMainPicture(null);
+  }
+
   /**
    * Rename the given document.
    *
@@ -242,7 +730,28 @@ public class FamilyTree {
     final AttachedDocument document = this.documents.remove(oldFileName);
     document.setName(newName);
     this.documents.put(newFileName, document);
-    this.pendingFileOperations.add(new RenameFileOperation(oldFileName, newFileName, document));
+    final FileOperation operation = new RenameFileOperation(oldFileName, newFileName, document);
+    this.pendingFileOperations.add(operation);
+    this.history.record(new DocumentEdit(
+        document,
+        operation,
+        () -> this.moveDocument(document, newFileName, oldFileName, oldName),
+        () -> this.moveDocument(document, oldFileName, newFileName, newName),
+        () -> new RenameFileOperation(newFileName, oldFileName, document),
+        () -> new RenameFileOperation(oldFileName, newFileName, document)
+    ));
+    this.fireChange(new FamilyTreeChange.DocumentChanged(document));
+  }
+
+  private void moveDocument(
+      @NotNull AttachedDocument document,
+      @NotNull String fileName,
+      @NotNull String newFileName,
+      @NotNull String newName
+  ) {
+    this.documents.remove(fileName);
+    document.setName(newName);
+    this.documents.put(newFileName, document);
   }
 
   /**
@@ -289,7 +798,364 @@ public class FamilyTree {
   public void setRoot(@NotNull Person root) {
     if (!this.persons.contains(root))
       throw new NoSuchElementException("Person %s is not in this family tree".formatted(root));
+    final Person previous = this.root;
     this.root = Objects.requireNonNull(root);
+    this.history.recordChange(this, "root", FamilyTree::setRoot, previous, root);
+    this.fireChange(new FamilyTreeChange.RootChanged(root));
+  }
+
+  /**
+   * Indicate whether a person is an ancestor of another through the given relation types.
+   *
+   * @param ancestor      The potential ancestor.
+   * @param person        The person whose ancestors are to be checked.
+   * @param relationTypes The relation types to follow from children to parents.
+   * @return True if the first person is an ancestor of the second one, false otherwise.
+   * @throws NoSuchElementException If any of the passed persons is not a member of this tree.
+   */
+  public boolean isAncestor(
+      @NotNull Person ancestor,
+      @NotNull Person person,
+      final @NotNull Set<ParentalRelationType> relationTypes
+  ) {
+    this.ensureMember(ancestor);
+    this.ensureMember(person);
+    return this.ancestryIndex.isAncestor(ancestor, person, FamilyGraph.mask(relationTypes), true);
+  }
+
+  /**
+   * Return the ancestors of a person through the given relation types.
+   *
+   * @param person        The person to get the ancestors of.
+   * @param generations   The maximum number of generations to go up. If negative, all ancestors are returned.
+   * @param relationTypes The relation types to follow from children to parents.
+   * @return The set of ancestors of the given person.
+   * @throws NoSuchElementException If the passed person is not a member of this tree.
+   */
+  @Contract("_, _, _ -> new")
+  public Set<Person> ancestors(
+      @NotNull Person person,
+      int generations,
+      final @NotNull Set<ParentalRelationType> relationTypes
+  ) {
+    return this.relatives(person, generations, relationTypes, true);
+  }
+
+  /**
+   * Return the descendants of a person through the given relation types.
+   *
+   * @param person        The person to get the descendants of.
+   * @param generations   The maximum number of generations to go down. If negative, all descendants are returned.
+   * @param relationTypes The relation types to follow from parents to children.
+   * @return The set of descendants of the given person.
+   * @throws NoSuchElementException If the passed person is not a member of this tree.
+   */
+  @Contract("_, _, _ -> new")
+  public Set<Person> descendants(
+      @NotNull Person person,
+      int generations,
+      final @NotNull Set<ParentalRelationType> relationTypes
+  ) {
+    return this.relatives(person, generations, relationTypes, false);
+  }
+
+  private Set<Person> relatives(
+      @NotNull Person person,
+      int generations,
+      final @NotNull Set<ParentalRelationType> relationTypes,
+      boolean upwards
+  ) {
+    this.ensureMember(person);
+    final int mask = FamilyGraph.mask(relationTypes);
+    if (generations >= 0)
+      return new HashSet<>(this.ancestryIndex.relatives(person, mask, generations, upwards));
+    final int[] indices = upwards
+        ? this.ancestryIndex.ancestors(person, mask)
+        : this.ancestryIndex.descendants(person, mask);
+    final Set<Person> relatives = new HashSet<>();
+    for (final int index : indices)
+      relatives.add(this.indexedPersons.get(index));
+    return relatives;
+  }
+
+  /**
+   * Find the shortest kinship paths between two persons of this tree.
+   *
+   * @param person1       The person to start from.
+   * @param person2       The person to reach.
+   * @param relationTypes The parental relation types to follow, in both directions.
+   * @param followUnions  Whether to also follow unions, i.e. life events whose type indicates a union.
+   * @return The shortest paths from the first to the second person, in no particular order.
+   * Empty if no path could be found.
+   * @throws NoSuchElementException If any of the passed persons is not a member of this tree.
+   */
+  @Contract("_, _, _, _ -> new")
+  public List<Relationship> findRelationships(
+      @NotNull Person person1,
+      @NotNull Person person2,
+      final @NotNull Set<ParentalRelationType> relationTypes,
+      boolean followUnions
+  ) {
+    this.ensureMember(person1);
+    this.ensureMember(person2);
+    return new ArrayList<>(this.relationshipFinder.find(
+        person1, person2, FamilyGraph.mask(relationTypes), followUnions));
+  }
+
+  /**
+   * Count the known genetic ancestors of a person for each generation back, with and without pedigree collapse.
+   *
+   * @param person      The person to analyze the pedigree of.
+   * @param generations The number of generations to go back.
+   * @return The analysis.
+   * @throws NoSuchElementException   If the passed person is not a member of this tree.
+   * @throws IllegalArgumentException If the number of generations is not in [1, {@link PedigreeAnalysis#MAX_GENERATIONS}].
+   */
+  @Contract("_, _ -> new")
+  public PedigreeAnalysis analyzePedigree(@NotNull Person person, int generations) {
+    this.ensureMember(person);
+    return PedigreeAnalysis.compute(this.graph(), person, generations);
+  }
+
+  /**
+   * An immutable snapshot of the parent/child links and unions between the members of this tree,
+   * suited for traversals of large trees.
+   * <p>
+   * The snapshot is cached. When members, parental links or unions change, a patched copy of it replaces it,
+   * sharing the arrays that did not change; it is only rebuilt from scratch when the union types have changed.
+   * Snapshots returned by previous calls are not updated.
+   *
+   * @return The current snapshot.
+   */
+  public FamilyGraph graph() {
+    final int unionTypesHash = this.unionTypesHash();
+    if (this.graph == null || unionTypesHash != this.graphUnionTypesHash) {
+      this.graph = new FamilyGraph(this);
+      this.graphUnionTypesHash = unionTypesHash;
+    }
+    return this.graph;
+  }
+
+  /**
+   * An immutable snapshot of this tree’s current members, links, life events, documents and user-defined
+   * registry entries, that may be read outside the JavaFX thread while this tree keeps being edited.
+   * <p>
+   * The snapshot is cached until this tree changes. Building a new one only copies the persons and life events
+   * that changed since the previous one, the others are shared.
+   *
+   * @return The current snapshot.
+   */
+  public FamilyTreeSnapshot snapshot() {
+    final FamilyGraph graph = this.graph();
+    if (this.snapshot == null || this.snapshot.graph() != graph)
+      this.snapshot = new FamilyTreeSnapshot(
+          this.name,
+          graph,
+          this.lifeEvents,
+          this.documents.values(),
+          RegistriesSnapshot.of(
+              this.genderRegistry.serializableEntries(),
+              this.lifeEventTypeRegistry.serializableEntries()
+          ),
+          this.root
+      );
+    return this.snapshot;
+  }
+
+  /**
+   * A calculator for the kinship and inbreeding coefficients of this tree’s members.
+   * <p>
+   * The calculator memoizes the coefficients it computes. It is kept as long as the {@link #graph()}
+   * of this tree does not change.
+   *
+   * @return The calculator for the current graph.
+   */
+  public KinshipCalculator kinshipCalculator() {
+    final FamilyGraph graph = this.graph();
+    if (this.kinshipCalculator == null || this.kinshipCalculator.graph() != graph)
+      this.kinshipCalculator = new KinshipCalculator(graph);
+    return this.kinshipCalculator;
+  }
+
+  /**
+   * The number of distinct known ancestors of a person through the relation types
+   * in {@link ParentalRelationType#GENETIC_RELATIONS}.
+   *
+   * @param person The person to get the ancestors count of.
+   * @return The count, or an empty value if the counts of this tree have not been set yet.
+   * @throws NoSuchElementException If the passed person is not a member of this tree.
+   * @see #setRelativesCounts(RelativesCounts)
+   */
+  public OptionalInt ancestorsCount(@NotNull Person person) {
+    this.ensureMember(person);
+    return this.relativesCounter.ancestorsCount(person);
+  }
+
+  /**
+   * The number of distinct known descendants of a person through the relation types
+   * in {@link ParentalRelationType#GENETIC_RELATIONS}.
+   *
+   * @param person The person to get the descendants count of.
+   * @return The count, or an empty value if the counts of this tree have not been set yet.
+   * @throws NoSuchElementException If the passed person is not a member of this tree.
+   * @see #setRelativesCounts(RelativesCounts)
+   */
+  public OptionalInt descendantsCount(@NotNull Person person) {
+    this.ensureMember(person);
+    return this.relativesCounter.descendantsCount(person);
+  }
+
+  /**
+   * Indicate whether the ancestors and descendants counts of this tree’s members are available.
+   */
+  public boolean hasRelativesCounts() {
+    return this.relativesCounter.isLoaded();
+  }
+
+  /**
+   * Set the ancestors and descendants counts of this tree’s members.
+   * Counts are then updated incrementally whenever parents are added or removed.
+   * <p>
+   * As counting relatives may take a while on large trees, counts can be computed outside the JavaFX thread
+   * by calling {@link RelativesCounts#compute(FamilyGraph)} on this tree’s {@link #graph()}.
+   *
+   * @param counts The counts to set.
+   * @return True if the counts were set, false if they were computed from a graph that is not up to date.
+   */
+  public boolean setRelativesCounts(final @NotNull RelativesCounts counts) {
+    if (counts.graph() != this.graph)
+      return false;
+    this.relativesCounter.load(counts);
+    return true;
+  }
+
+  /**
+   * Compute then set the ancestors and descendants counts of this tree’s members.
+   *
+   * @see #setRelativesCounts(RelativesCounts)
+   */
+  public void computeRelativesCounts() {
+    this.setRelativesCounts(RelativesCounts.compute(this.graph()));
+  }
+
+  /**
+   * A hash of the life event types that currently indicate a union.
+   * Types may be edited without this tree being notified, the graph is rebuilt if this value changes.
+   */
+  private int unionTypesHash() {
+    int hash = 1;
+    for (final LifeEventType type : this.lifeEventTypeRegistry.entries())
+      if (type.indicatesUnion())
+        hash = 31 * hash + type.key().hashCode();
+    return hash;
+  }
+
+  /**
+   * Indicate whether adding the given parent to the given child would create a cycle,
+   * i.e. whether the child is already an ancestor of the parent through any relation type.
+   * Persons that are not members of this tree are ignored.
+   *
+   * @param child  The child a parent is about to be added to.
+   * @param parent The parent to add.
+   * @return True if the link would create a cycle, false otherwise.
+   */
+  boolean wouldCreateCycle(final @NotNull Person child, final @NotNull Person parent) {
+    if (!this.isMember(child) || !this.isMember(parent))
+      return false;
+    return this.ancestryIndex.isAncestor(child, parent, FamilyGraph.mask(EnumSet.allOf(ParentalRelationType.class)), false);
+  }
+
+  /**
+   * Called by {@link Person#addParent(Person, ParentalRelationType)} after a parent has been added.
+   */
+  void onParentAdded(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    if (this.isMember(child) && this.isMember(parent)) {
+      this.ancestryIndex.onParentAdded(child, parent, type);
+      this.relativesCounter.onParentAdded(child, parent, type);
+      if (this.graph != null)
+        this.graph = this.graph.withParentLink(child, parent, type, true);
+    }
+    if (this.isMember(child) || this.isMember(parent))
+      this.fireChange(new FamilyTreeChange.ParentsChanged(child, parent));
+  }
+
+  /**
+   * Called by {@link Person#removeParent(Person)} after a parent has been removed.
+   */
+  void onParentRemoved(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    if (this.isMember(child) && this.isMember(parent)) {
+      this.ancestryIndex.onParentRemoved(child, parent, type);
+      this.relativesCounter.onParentRemoved(child, parent, type);
+      if (this.graph != null)
+        this.graph = this.graph.withParentLink(child, parent, type, false);
+    }
+    if (this.isMember(child) || this.isMember(parent))
+      this.fireChange(new FamilyTreeChange.ParentsChanged(child, parent));
+  }
+
+  /**
+   * Called by {@link Person} after any of its names changed.
+   */
+  void onNamesChanged(@NotNull Person person) {
+    this.nameIndex.update(person);
+    this.similarNameIndex.update(person);
+  }
+
+  /**
+   * Called by {@link LifeEvent} after its place changed.
+   *
+   * @param lifeEvent The event.
+   * @param previous  The event’s previous place.
+   */
+  void onPlaceChanged(@NotNull LifeEvent lifeEvent, Place previous) {
+    this.placeIndex.remove(lifeEvent, previous);
+    this.placeIndex.add(lifeEvent);
+  }
+
+  /**
+   * Called whenever a union between members of this tree may have been created or removed.
+   */
+  void onUnionsChanged() {
+    if (this.graph != null)
+      this.graph = this.graph.withUpdatedPartners();
+  }
+
+  /**
+   * The index of the given member of this tree. Indices are in the range [0, {@link #personIndexCapacity()}[
+   * and are reused once their person has been removed from this tree.
+   *
+   * @param person A member of this tree.
+   * @return The person’s index.
+   */
+  int personIndex(final @NotNull Person person) {
+    return person.treeIndex();
+  }
+
+  /**
+   * The person with the given index.
+   *
+   * @param index A person index.
+   * @return The person or null if the index is not in use.
+   */
+  Person personAt(int index) {
+    return this.indexedPersons.get(index);
+  }
+
+  /**
+   * The upper bound (exclusive) of all person indices currently in use.
+   */
+  int personIndexCapacity() {
+    return this.indexedPersons.size();
+  }
+
+  boolean isMember(final @NotNull Person person) {
+    final int index = person.treeIndex();
+    return index >= 0 && index < this.indexedPersons.size() && this.indexedPersons.get(index) == person;
+  }
+
+  private void ensureMember(final @NotNull Person person) {
+    if (!this.isMember(person))
+      throw new NoSuchElementException("Person %s is not in this family tree".formatted(person));
   }
 
   public GenderRegistry genderRegistry() {
@@ -299,4 +1165,75 @@ public class FamilyTree {
   public LifeEventTypeRegistry lifeEventTypeRegistry() {
     return this.lifeEventTypeRegistry;
   }
+
+  /**
+   * The addition, removal or renaming of a document.
+   * <p>
+   * When the change is undone or redone, the file operation it queued is cancelled if it is still pending.
+   * Otherwise, it has already been applied to the files and the opposite operation is queued.
+   */
+  private final class DocumentEdit implements UndoHistory.Edit {
+    private final AttachedDocument document;
+    private final Runnable undo;
+    private final Runnable redo;
+    private final Supplier<FileOperation> undoOperation;
+    private final Supplier<FileOperation> redoOperation;
+    /**
+     * The estimated memory used by the file names captured by this edit’s actions, in bytes.
+     */
+    private final int fileNamesSize;
+    /**
+     * The last file operation queued by this edit, null if it was cancelled.
+     */
+    private FileOperation operation;
+
+    private DocumentEdit(
+        @NotNull AttachedDocument document,
+        @NotNull FileOperation operation,
+        @NotNull Runnable undo,
+        @NotNull Runnable redo,
+        @NotNull Supplier<FileOperation> undoOperation,
+        @NotNull Supplier<FileOperation> redoOperation
+    ) {
+      this.document = document;
+      this.operation = operation;
+      this.undo = undo;
+      this.redo = redo;
+      this.undoOperation = undoOperation;
+      this.redoOperation = redoOperation;
+      int fileNamesSize = UndoHistory.sizeOf(operation.fileName());
+      if (operation instanceof RenameFileOperation o)
+        // Renaming also captures the old and new names of the document
+        fileNamesSize = 2 * (fileNamesSize + UndoHistory.sizeOf(o.newFileName()));
+      this.fileNamesSize = fileNamesSize;
+    }
+
+    @Override
+    public void undo() {
+      this.undo.run();
+      this.updateFileOperation(this.undoOperation);
+    }
+
+    @Override
+    public void redo() {
+      this.redo.run();
+      this.updateFileOperation(this.redoOperation);
+    }
+
+    private void updateFileOperation(@NotNull Supplier<FileOperation> operation) {
+      if (this.operation != null && FamilyTree.this.pendingFileOperations.remove(this.operation))
+        this.operation = null;
+      else {
+        this.operation = operation.get();
+        FamilyTree.this.pendingFileOperations.add(this.operation);
+      }
+      FamilyTree.this.fireChange(new FamilyTreeChange.DocumentChanged(this.document));
+    }
+
+    @Override
+    public int size() {
+      // This object, a file operation, four lambdas capturing a few references and the captured file names
+      return 48 + 32 + 4 * 24 + this.fileNamesSize;
+    }
+  }
 }
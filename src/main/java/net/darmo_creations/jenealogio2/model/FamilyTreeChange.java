@@ -0,0 +1,99 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A change made to a {@link FamilyTree}, as reported to its {@link FamilyTreeChangeListener}s.
+ * <p>
+ * Changes only tell which object changed, listeners have to read its current state from the tree.
+ * Changes are records so that identical changes reported several times in a row can be merged.
+ */
+public sealed interface FamilyTreeChange {
+  /**
+   * A person was added to the tree.
+   *
+   * @param person The added person.
+   */
+  record PersonAdded(@NotNull Person person) implements FamilyTreeChange {
+    public PersonAdded {
+      Objects.requireNonNull(person);
+    }
+  }
+
+  /**
+   * A person was removed from the tree.
+   *
+   * @param person The removed person.
+   */
+  record PersonRemoved(@NotNull Person person) implements FamilyTreeChange {
+    public PersonRemoved {
+      Objects.requireNonNull(person);
+    }
+  }
+
+  /**
+   * A property of a member of the tree changed, e.g. its names or genders.
+   *
+   * @param person The updated person.
+   */
+  record PersonUpdated(@NotNull Person person) implements FamilyTreeChange {
+    public PersonUpdated {
+      Objects.requireNonNull(person);
+    }
+  }
+
+  /**
+   * A parent was added to or removed from a member of the tree.
+   *
+   * @param child  The person whose parents changed.
+   * @param parent The added or removed parent.
+   */
+  record ParentsChanged(@NotNull Person child, @NotNull Person parent) implements FamilyTreeChange {
+    public ParentsChanged {
+      Objects.requireNonNull(child);
+      Objects.requireNonNull(parent);
+    }
+  }
+
+  /**
+   * A life event was added to or removed from the tree, or one of its properties,
+   * actors or witnesses changed.
+   *
+   * @param lifeEvent The changed event.
+   */
+  record LifeEventChanged(@NotNull LifeEvent lifeEvent) implements FamilyTreeChange {
+    public LifeEventChanged {
+      Objects.requireNonNull(lifeEvent);
+    }
+  }
+
+  /**
+   * A document was added to, removed from, or renamed in the tree, or its metadata changed.
+   *
+   * @param document The changed document.
+   */
+  record DocumentChanged(@NotNull AttachedDocument document) implements FamilyTreeChange {
+    public DocumentChanged {
+      Objects.requireNonNull(document);
+    }
+  }
+
+  /**
+   * The tree’s root changed.
+   *
+   * @param root The new root.
+   */
+  record RootChanged(@NotNull Person root) implements FamilyTreeChange {
+    public RootChanged {
+      Objects.requireNonNull(root);
+    }
+  }
+
+  /**
+   * Entries of the tree’s gender or life event type registries changed.
+   */
+  record RegistriesChanged() implements FamilyTreeChange {
+  }
+}
@@ -0,0 +1,15 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Interface for objects that listen to changes made to a {@link FamilyTree}.
+ */
+public interface FamilyTreeChangeListener {
+  /**
+   * Called right after a change was made to the tree.
+   *
+   * @param change The change.
+   */
+  void onChange(@NotNull FamilyTreeChange change);
+}
@@ -0,0 +1,154 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the members, links, life events, documents and user-defined registry entries
+ * of a {@link FamilyTree}, as returned by {@link FamilyTree#snapshot()}.
+ * <p>
+ * Snapshots let long-running tasks read a consistent state of a tree outside the JavaFX thread
+ * while the tree keeps being edited. As snapshots never change, they may be read from several threads at once.
+ * <p>
+ * Taking a snapshot is cheap: each person and life event caches its own snapshot until it changes,
+ * so that successive snapshots of a tree share the copies of all unchanged objects,
+ * and links are taken from the tree’s cached {@link FamilyGraph}. Documents and registry entries,
+ * which are far fewer, are copied anew for each snapshot.
+ */
+public final class FamilyTreeSnapshot {
+  private final String name;
+  private final FamilyGraph graph;
+  /**
+   * Persons indexed by their index in {@link #graph}.
+   */
+  private final PersonSnapshot[] persons;
+  private final List<LifeEventSnapshot> lifeEvents;
+  /**
+   * Documents indexed by their live object. Documents are compared by file name, which may change.
+   */
+  private final Map<AttachedDocument, DocumentSnapshot> documents = new IdentityHashMap<>();
+  private final RegistriesSnapshot registries;
+  private final Person root;
+
+  /**
+   * Create a snapshot of a tree’s current state.
+   *
+   * @param name       The tree’s name.
+   * @param graph      The tree’s current graph.
+   * @param lifeEvents The tree’s life events.
+   * @param documents  The tree’s documents.
+   * @param registries The tree’s user-defined registry entries.
+   * @param root       The tree’s root.
+   */
+  FamilyTreeSnapshot(
+      @NotNull String name,
+      final @NotNull FamilyGraph graph,
+      final @NotNull Collection<LifeEvent> lifeEvents,
+      final @NotNull Collection<AttachedDocument> documents,
+      @NotNull RegistriesSnapshot registries,
+      Person root
+  ) {
+    this.name = name;
+    this.graph = graph;
+    this.persons = new PersonSnapshot[graph.size()];
+    for (int i = 0; i < this.persons.length; i++)
+      this.persons[i] = graph.person(i).snapshot();
+    final List<LifeEventSnapshot> snapshots = new ArrayList<>(lifeEvents.size());
+    for (final LifeEvent lifeEvent : lifeEvents)
+      snapshots.add(lifeEvent.snapshot());
+    this.lifeEvents = Collections.unmodifiableList(snapshots);
+    for (final AttachedDocument document : documents)
+      this.documents.put(document, new DocumentSnapshot(document));
+    this.registries = registries;
+    this.root = root;
+  }
+
+  /**
+   * The tree’s name.
+   */
+  public String name() {
+    return this.name;
+  }
+
+  /**
+   * The links between the tree’s members. Person indices in the graph are the same as in this snapshot.
+   */
+  public FamilyGraph graph() {
+    return this.graph;
+  }
+
+  /**
+   * The number of persons in this snapshot.
+   */
+  public int size() {
+    return this.persons.length;
+  }
+
+  /**
+   * The person with the given index.
+   *
+   * @param index A person index.
+   * @return The person.
+   * @throws IndexOutOfBoundsException If the index is not in [0, {@link #size()}[.
+   */
+  public PersonSnapshot person(int index) {
+    return this.persons[index];
+  }
+
+  /**
+   * The state of the given person in this snapshot.
+   *
+   * @param person A live person.
+   * @return The person’s snapshot or an empty value if it was not a member of the tree.
+   */
+  public Optional<PersonSnapshot> person(final @NotNull Person person) {
+    final int index = this.graph.indexOf(person);
+    return index >= 0 ? Optional.of(this.persons[index]) : Optional.empty();
+  }
+
+  /**
+   * All persons of this snapshot, in index order.
+   */
+  public @Unmodifiable List<PersonSnapshot> persons() {
+    return Collections.unmodifiableList(Arrays.asList(this.persons));
+  }
+
+  /**
+   * All life events of this snapshot.
+   */
+  public @Unmodifiable List<LifeEventSnapshot> lifeEvents() {
+    return this.lifeEvents;
+  }
+
+  /**
+   * All documents of this snapshot.
+   */
+  public @UnmodifiableView Collection<DocumentSnapshot> documents() {
+    return Collections.unmodifiableCollection(this.documents.values());
+  }
+
+  /**
+   * The state of the given document in this snapshot.
+   *
+   * @param document A live document.
+   * @return The document’s snapshot or an empty value if it was not in the tree.
+   */
+  public Optional<DocumentSnapshot> document(final @NotNull AttachedDocument document) {
+    return Optional.ofNullable(this.documents.get(document));
+  }
+
+  /**
+   * The tree’s user-defined registry entries.
+   */
+  public RegistriesSnapshot registries() {
+    return this.registries;
+  }
+
+  /**
+   * The tree’s root.
+   */
+  public Optional<PersonSnapshot> root() {
+    return this.root != null ? this.person(this.root) : Optional.empty();
+  }
+}
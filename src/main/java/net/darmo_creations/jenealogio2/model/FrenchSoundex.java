@@ -0,0 +1,67 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.regex.*;
+
+/**
+ * Computes phonetic keys of names with an adaptation of Soundex to French (“Soundex 2” by Frédéric Brouard),
+ * so that names that sound the same, like “Dupont” and “Dupond”, get the same key.
+ */
+final class FrenchSoundex {
+  private static final Pattern NON_LETTERS = Pattern.compile("[^a-z]+");
+  private static final Pattern VOWELS = Pattern.compile("[eiou]");
+  private static final Pattern SILENT_H = Pattern.compile("(?<![cs])h");
+  private static final Pattern SILENT_Y = Pattern.compile("(?<!a)y");
+  private static final Pattern SILENT_ENDING = Pattern.compile("[adts]$");
+  private static final Pattern REPEATED_LETTERS = Pattern.compile("(.)\\1+");
+  /**
+   * Replacements of hard G’s and C’s and of Q’s, applied in this order.
+   */
+  private static final String[][] REPLACEMENTS = {
+      {"gui", "ki"}, {"gue", "ke"}, {"ga", "ka"}, {"go", "ko"}, {"gu", "k"},
+      {"ca", "ka"}, {"co", "ko"}, {"cu", "ku"}, {"q", "k"}, {"cc", "k"}, {"ck", "k"},
+  };
+  /**
+   * Replacements of prefixes, the first matching one is applied.
+   */
+  private static final String[][] PREFIXES = {
+      {"mac", "mcc"}, {"asa", "aza"}, {"kn", "nn"}, {"pf", "ff"}, {"sch", "sss"}, {"ph", "ff"},
+  };
+  /**
+   * The maximum length of keys.
+   */
+  private static final int LENGTH = 4;
+
+  /**
+   * Compute the phonetic key of the given word.
+   *
+   * @param word A word, lower-cased and stripped from its accents.
+   * @return The word’s key, empty if the word has no letters.
+   */
+  static String encode(@NotNull String word) {
+    String s = NON_LETTERS.matcher(word.replace("œ", "oe").replace("æ", "ae")).replaceAll("");
+    if (s.isEmpty())
+      return s;
+    for (final String[] replacement : REPLACEMENTS)
+      s = s.replace(replacement[0], replacement[1]);
+    // All vowels except the first letter sound alike
+    s = s.charAt(0) + VOWELS.matcher(s.substring(1)).replaceAll("a");
+    for (final String[] prefix : PREFIXES)
+      if (s.startsWith(prefix[0])) {
+        s = prefix[1] + s.substring(prefix[0].length());
+        break;
+      }
+    s = SILENT_H.matcher(s).replaceAll("");
+    s = SILENT_Y.matcher(s).replaceAll("");
+    s = SILENT_ENDING.matcher(s).replaceAll("");
+    if (s.isEmpty())
+      return s;
+    s = s.charAt(0) + s.substring(1).replace("a", "");
+    s = REPEATED_LETTERS.matcher(s).replaceAll("$1");
+    return s.length() > LENGTH ? s.substring(0, LENGTH) : s;
+  }
+
+  private FrenchSoundex() {
+  }
+}
@@ -54,7 +54,9 @@ public final class Gender extends RegistryEntry {
    */
   public void setIcon(@NotNull Image icon) {
     this.ensureNotBuiltin("icon");
+    final Image previous = this.icon;
     this.icon = Objects.requireNonNull(icon);
+    this.recordChange(previous, icon, this::setIcon);
   }
 
   @Override
@@ -6,6 +6,7 @@ import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.function.*;
 
 /**
  * Base class for all genealogical objects.
@@ -15,13 +16,17 @@ import java.util.*;
 public abstract class GenealogyObject<T extends GenealogyObject<T>> {
   private String notes;
   private String sources;
+  /**
+   * Annotation types without any document are mapped to the shared {@link Collections#emptySet()},
+   * see {@link CompactSet#add(Set, Object)}.
+   */
   private final Map<AnnotationType, Set<AttachedDocument>> documentAnnotations =
       new EnumMap<>(AnnotationType.class);
   private Picture mainPicture;
 
   protected GenealogyObject() {
     for (final var annotationType : AnnotationType.values())
-      this.documentAnnotations.put(annotationType, new HashSet<>());
+      this.documentAnnotations.put(annotationType, Collections.emptySet());
   }
 
   /**
@@ -44,7 +49,10 @@ public abstract class GenealogyObject<T extends GenealogyObject<T>> {
    */
   @SuppressWarnings("unchecked")
   public T setNotes(String notes) {
+    final String previous = this.notes;
     this.notes = StringUtils.stripNullable(notes).orElse(null);
+    this.recordChange("notes", GenealogyObject::setNotes, previous, this.notes);
+    this.fireUpdated();
     return (T) this;
   }
 
@@ -63,7 +71,10 @@ public abstract class GenealogyObject<T extends GenealogyObject<T>> {
    */
   @SuppressWarnings("unchecked")
   public T setSources(String sources) {
+    final String previous = this.sources;
     this.sources = StringUtils.stripNullable(sources).orElse(null);
+    this.recordChange("sources", GenealogyObject::setSources, previous, this.sources);
+    this.fireUpdated();
     return (T) this;
   }
 
@@ -95,8 +106,11 @@ public abstract class GenealogyObject<T extends GenealogyObject<T>> {
       final @NotNull AttachedDocument document,
       @NotNull AnnotationType annotationType
   ) {
-    this.documentAnnotations.get(annotationType)
-        .add(Objects.requireNonNull(document));
+    this.documentAnnotations.put(annotationType, CompactSet.add(
+        this.documentAnnotations.get(annotationType),
+        Objects.requireNonNull(document)
+    ));
+    this.fireUpdated();
   }
 
   /**
@@ -112,6 +126,7 @@ public abstract class GenealogyObject<T extends GenealogyObject<T>> {
   ) {
     this.documentAnnotations.get(annotationType)
         .remove(Objects.requireNonNull(document));
+    this.fireUpdated();
   }
 
   /**
@@ -120,6 +135,51 @@ public abstract class GenealogyObject<T extends GenealogyObject<T>> {
    * @param picture The {@link Picture} to set as main. May be null.
    */
   void setMainPicture(final Picture picture) {
+    final Picture previous = this.mainPicture;
+    if (previous != null)
+      previous.removeMainPictureOf(this);
     this.mainPicture = picture;
+    this.recordChange("mainPicture", GenealogyObject::setMainPicture, previous, picture);
+    if (picture != null)
+      picture.addMainPictureOf(this);
+    this.fireUpdated();
+  }
+
+  /**
+   * The {@link FamilyTree} this object belongs to, null if it does not belong to any.
+   */
+  abstract @Nullable FamilyTree containingTree();
+
+  /**
+   * Report a change of this object to the {@link FamilyTree} it belongs to, if any.
+   */
+  abstract void fireUpdated();
+
+  /**
+   * Record a change of a property of this object in the history of the {@link FamilyTree} it belongs to, if any.
+   *
+   * @param property The name of the property.
+   * @param setter   A function that sets the property’s value.
+   * @param oldValue The previous value.
+   * @param newValue The new value.
+   * @param <V>      Type of the property’s values.
+   */
+  @SuppressWarnings("unchecked")
+  <V> void recordChange(@NotNull String property, @NotNull BiConsumer<T, V> setter, V oldValue, V newValue) {
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.history().recordChange((T) this, property, setter, oldValue, newValue);
+  }
+
+  /**
+   * Record a change involving this object in the history of the {@link FamilyTree} it belongs to, if any.
+   *
+   * @param undo The action that reverts the change.
+   * @param redo The action that applies the change again.
+   */
+  void recordEdit(@NotNull Runnable undo, @NotNull Runnable redo) {
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.history().record(undo, redo);
   }
 }
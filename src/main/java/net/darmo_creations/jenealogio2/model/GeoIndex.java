@@ -0,0 +1,159 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A spatial index of places with coordinates, used to find the places within an area
+ * without checking every place of a tree.
+ * <p>
+ * The Earth is divided into a grid of cells of {@link #CELL_SIZE} degrees and each place is stored
+ * in the cell that contains its coordinates. Only the non-empty cells are stored. Queries only check
+ * the places of the cells that overlap the queried area, or all non-empty cells if there are fewer of them.
+ */
+final class GeoIndex {
+  /**
+   * The size of the cells in degrees of latitude and longitude.
+   */
+  static final double CELL_SIZE = 0.25;
+  private static final int ROWS = (int) (180 / CELL_SIZE);
+  private static final int COLUMNS = (int) (360 / CELL_SIZE);
+  /**
+   * Half the Earth’s circumference, no two points are further apart than this.
+   */
+  private static final double MAX_DISTANCE = Math.PI * LatLon.EARTH_RADIUS;
+
+  /**
+   * The places of each non-empty cell.
+   */
+  private final Map<Integer, Set<Place>> cells = new HashMap<>();
+
+  /**
+   * Add a place to this index.
+   *
+   * @param place A place with coordinates.
+   */
+  void add(@NotNull Place place) {
+    this.cells.computeIfAbsent(cell(place.latLon().orElseThrow()), c -> new HashSet<>()).add(place);
+  }
+
+  /**
+   * Remove a place from this index.
+   *
+   * @param place A place with coordinates.
+   */
+  void remove(@NotNull Place place) {
+    final int cell = cell(place.latLon().orElseThrow());
+    final Set<Place> places = this.cells.get(cell);
+    if (places != null) {
+      places.remove(place);
+      if (places.isEmpty())
+        this.cells.remove(cell);
+    }
+  }
+
+  /**
+   * Return the places within the given box.
+   *
+   * @param box The area to search.
+   * @return The places whose coordinates are within the box.
+   */
+  List<Place> search(final @NotNull LatLonBox box) {
+    final List<Place> places = new ArrayList<>();
+    final int row0 = row(box.south());
+    final int row1 = row(box.north());
+    final int col0 = column(box.west());
+    final int col1 = column(box.east());
+    final int columnsNb = box.crossesAntimeridian() ? Math.min(COLUMNS, COLUMNS - col0 + col1 + 1) : col1 - col0 + 1;
+    if ((long) (row1 - row0 + 1) * columnsNb > this.cells.size()) {
+      for (final Set<Place> cell : this.cells.values())
+        addPlacesWithin(cell, box, places);
+    } else
+      for (int row = row0; row <= row1; row++)
+        for (int i = 0; i < columnsNb; i++) {
+          final Set<Place> cell = this.cells.get(row * COLUMNS + (col0 + i) % COLUMNS);
+          if (cell != null)
+            addPlacesWithin(cell, box, places);
+        }
+    return places;
+  }
+
+  private static void addPlacesWithin(
+      final @NotNull Set<Place> cell,
+      final @NotNull LatLonBox box,
+      @NotNull List<Place> places
+  ) {
+    for (final Place place : cell)
+      if (box.contains(place.latLon().orElseThrow()))
+        places.add(place);
+  }
+
+  /**
+   * Return the places within the given distance of a point.
+   *
+   * @param center The point to search around.
+   * @param radius The maximum distance in kilometers.
+   * @return The places within the distance, the closest first.
+   */
+  List<Place> search(final @NotNull LatLon center, double radius) {
+    final List<Place> places = new ArrayList<>(this.search(boundingBox(center, radius)));
+    places.removeIf(place -> center.distanceTo(place.latLon().orElseThrow()) > radius);
+    places.sort(Comparator.comparingDouble(place -> center.distanceTo(place.latLon().orElseThrow())));
+    return places;
+  }
+
+  /**
+   * Return the places closest to a point.
+   *
+   * @param point The point to search around.
+   * @param k     The maximum number of places to return.
+   * @return The k places closest to the point, the closest first.
+   */
+  List<Place> nearest(final @NotNull LatLon point, int k) {
+    // Search larger and larger areas until there are enough places
+    double radius = CELL_SIZE * 111;
+    List<Place> places;
+    do {
+      places = this.search(point, radius);
+      radius *= 2;
+    } while (places.size() < k && radius < 2 * MAX_DISTANCE);
+    return places.subList(0, Math.min(k, places.size()));
+  }
+
+  /**
+   * The smallest box that contains the circle of the given radius around a point.
+   */
+  static LatLonBox boundingBox(final @NotNull LatLon center, double radius) {
+    final double dLat = Math.toDegrees(radius / LatLon.EARTH_RADIUS);
+    final double south = center.lat() - dLat;
+    final double north = center.lat() + dLat;
+    if (south <= -90 || north >= 90) // The circle contains a pole
+      return new LatLonBox(Math.max(-90, south), -180, Math.min(90, north), 180);
+    final double dLon = Math.toDegrees(Math.asin(
+        Math.min(1, Math.sin(radius / LatLon.EARTH_RADIUS) / Math.cos(Math.toRadians(center.lat())))));
+    if (dLon >= 180 || radius >= MAX_DISTANCE / 2)
+      return new LatLonBox(south, -180, north, 180);
+    return new LatLonBox(south, normalizeLongitude(center.lon() - dLon), north, normalizeLongitude(center.lon() + dLon));
+  }
+
+  private static double normalizeLongitude(double lon) {
+    if (lon < -180)
+      return lon + 360;
+    if (lon > 180)
+      return lon - 360;
+    return lon;
+  }
+
+  private static int cell(final @NotNull LatLon latLon) {
+    return row(latLon.lat()) * COLUMNS + column(latLon.lon());
+  }
+
+  private static int row(double lat) {
+    return Math.min(ROWS - 1, Math.max(0, (int) Math.floor((lat + 90) / CELL_SIZE)));
+  }
+
+  private static int column(double lon) {
+    return Math.min(COLUMNS - 1, Math.max(0, (int) Math.floor((lon + 180) / CELL_SIZE)));
+  }
+}
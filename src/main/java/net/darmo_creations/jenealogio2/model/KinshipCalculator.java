@@ -0,0 +1,211 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * Computes kinship and inbreeding coefficients between the members of a {@link FamilyGraph}
+ * through the relation types in {@link ParentalRelationType#GENETIC_RELATIONS}.
+ * <p>
+ * The kinship coefficient of two persons is the probability that alleles picked at random
+ * at the same locus in each of them are identical by descent. Wright’s inbreeding coefficient
+ * of a person is the kinship coefficient of their two genetic parents.
+ * <p>
+ * Coefficients are computed with the recursive tabular method: the kinship of a person with themselves
+ * is {@code (1 + F) / 2}, and the kinship of two distinct persons is half the sum of the kinships of the second one
+ * with each known genetic parent of the first one, where the first one is always the person of the later generation,
+ * who cannot be an ancestor of the other. Every computed pair is memoized, which keeps the cost
+ * proportional to the number of pairs of ancestors even in trees with heavy pedigree collapse,
+ * where enumerating the paths through common ancestors would be exponential.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class KinshipCalculator {
+  /**
+   * Number of rows and columns of the blocks of {@link #kinshipMatrix(List)} computed by a single task.
+   */
+  private static final int BLOCK_SIZE = 16;
+  private static final int IN_PROGRESS = -2;
+
+  private final FamilyGraph graph;
+  /**
+   * The first and second genetic parents of each person, -1 if unknown.
+   */
+  private final int[] parents1;
+  private final int[] parents2;
+  /**
+   * The generation of each person, founders being at generation 0.
+   */
+  private final int[] generations;
+  private final Map<Long, Double> memo = new ConcurrentHashMap<>();
+
+  /**
+   * Create a calculator for the given graph.
+   * Persons with more than two genetic parents only have the first two taken into account.
+   *
+   * @param graph The graph to compute coefficients on.
+   */
+  public KinshipCalculator(@NotNull FamilyGraph graph) {
+    this.graph = Objects.requireNonNull(graph);
+    final int n = graph.size();
+    this.parents1 = new int[n];
+    this.parents2 = new int[n];
+    Arrays.fill(this.parents1, -1);
+    Arrays.fill(this.parents2, -1);
+    final int mask = FamilyGraph.mask(ParentalRelationType.GENETIC_RELATIONS);
+    for (int i = 0; i < n; i++) {
+      final int child = i;
+      graph.forEachParent(i, mask, parent -> {
+        if (this.parents1[child] < 0)
+          this.parents1[child] = parent;
+        else if (this.parents2[child] < 0 && this.parents1[child] != parent)
+          this.parents2[child] = parent;
+      });
+    }
+    this.generations = new int[n];
+    this.computeGenerations();
+  }
+
+  /**
+   * Compute the generation of each person, i.e. the length of the longest chain of genetic parents above them.
+   * Links that close a cycle in a malformed tree are dropped.
+   */
+  private void computeGenerations() {
+    Arrays.fill(this.generations, -1);
+    final Deque<Integer> stack = new ArrayDeque<>();
+    for (int i = 0; i < this.generations.length; i++) {
+      if (this.generations[i] >= 0)
+        continue;
+      stack.push(i);
+      while (!stack.isEmpty()) {
+        final int person = stack.peek();
+        if (this.generations[person] >= 0) { // Already pushed by another child
+          stack.pop();
+          continue;
+        }
+        if (this.generations[person] != IN_PROGRESS) { // First visit, compute the parents first
+          this.generations[person] = IN_PROGRESS;
+          boolean pending = false;
+          for (final int[] parents : new int[][] {this.parents1, this.parents2}) {
+            final int parent = parents[person];
+            if (parent < 0)
+              continue;
+            if (this.generations[parent] == IN_PROGRESS)
+              parents[person] = -1;
+            else if (this.generations[parent] < 0) {
+              stack.push(parent);
+              pending = true;
+            }
+          }
+          if (pending)
+            continue;
+        }
+        stack.pop();
+        int generation = 0;
+        if (this.parents1[person] >= 0)
+          generation = this.generations[this.parents1[person]] + 1;
+        if (this.parents2[person] >= 0)
+          generation = Math.max(generation, this.generations[this.parents2[person]] + 1);
+        this.generations[person] = generation;
+      }
+    }
+  }
+
+  /**
+   * The graph this calculator works on.
+   */
+  public FamilyGraph graph() {
+    return this.graph;
+  }
+
+  /**
+   * Compute Wright’s inbreeding coefficient of a person.
+   *
+   * @param person A person of this calculator’s graph.
+   * @return The inbreeding coefficient, in [0, 1]. 0 if any of the person’s genetic parents is unknown.
+   * @throws NoSuchElementException If the person is not in this calculator’s graph.
+   */
+  public double inbreedingCoefficient(final @NotNull Person person) {
+    return this.inbreeding(this.indexOf(person));
+  }
+
+  /**
+   * Compute the kinship coefficient between two persons.
+   *
+   * @param person1 A person of this calculator’s graph.
+   * @param person2 Another person of this calculator’s graph.
+   * @return The kinship coefficient, in [0, 1].
+   * @throws NoSuchElementException If any of the persons is not in this calculator’s graph.
+   */
+  public double kinshipCoefficient(final @NotNull Person person1, final @NotNull Person person2) {
+    return this.kinship(this.indexOf(person1), this.indexOf(person2));
+  }
+
+  /**
+   * Compute the kinship coefficients between all persons of a group.
+   * The matrix is computed in parallel by blocks, only the blocks on and above the diagonal being computed
+   * as the matrix is symmetric.
+   *
+   * @param persons Persons of this calculator’s graph.
+   * @return A matrix whose cell (i, j) holds the kinship coefficient of the ith and jth persons of the list.
+   * @throws NoSuchElementException If any of the persons is not in this calculator’s graph.
+   */
+  public double[][] kinshipMatrix(final @NotNull List<Person> persons) {
+    final int[] indices = persons.stream().mapToInt(this::indexOf).toArray();
+    final int n = indices.length;
+    final double[][] matrix = new double[n][n];
+    final int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    IntStream.range(0, blocks * blocks)
+        .filter(block -> block / blocks <= block % blocks)
+        .parallel()
+        .forEach(block -> {
+          final int rowStart = block / blocks * BLOCK_SIZE;
+          final int columnStart = block % blocks * BLOCK_SIZE;
+          for (int i = rowStart; i < Math.min(n, rowStart + BLOCK_SIZE); i++)
+            for (int j = Math.max(i, columnStart); j < Math.min(n, columnStart + BLOCK_SIZE); j++)
+              matrix[i][j] = matrix[j][i] = this.kinship(indices[i], indices[j]);
+        });
+    return matrix;
+  }
+
+  private double inbreeding(int person) {
+    final int parent1 = this.parents1[person];
+    final int parent2 = this.parents2[person];
+    return parent1 >= 0 && parent2 >= 0 ? this.kinship(parent1, parent2) : 0;
+  }
+
+  private double kinship(int person1, int person2) {
+    if (person1 == person2)
+      return (1 + this.inbreeding(person1)) / 2;
+    // Expand the person of the later generation, they cannot be an ancestor of the other one
+    final int g1 = this.generations[person1];
+    final int g2 = this.generations[person2];
+    if (g1 < g2 || g1 == g2 && person1 < person2) {
+      final int tmp = person1;
+      person1 = person2;
+      person2 = tmp;
+    }
+    final long key = (long) person1 << 32 | person2;
+    final Double memoized = this.memo.get(key);
+    if (memoized != null)
+      return memoized;
+    double kinship = 0;
+    if (this.parents1[person1] >= 0)
+      kinship += this.kinship(this.parents1[person1], person2);
+    if (this.parents2[person1] >= 0)
+      kinship += this.kinship(this.parents2[person1], person2);
+    kinship /= 2;
+    this.memo.put(key, kinship);
+    return kinship;
+  }
+
+  private int indexOf(final @NotNull Person person) {
+    final int index = this.graph.indexOf(person);
+    if (index < 0)
+      throw new NoSuchElementException("Person %s is not in this graph".formatted(person));
+    return index;
+  }
+}
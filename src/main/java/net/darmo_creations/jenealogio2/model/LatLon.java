@@ -9,6 +9,11 @@ import org.jetbrains.annotations.*;
  * @param lon Point’s longitude.
  */
 public record LatLon(double lat, double lon) {
+  /**
+   * The mean radius of the Earth in kilometers.
+   */
+  public static final double EARTH_RADIUS = 6371.0088;
+
   /**
    * Parses a string into a {@link LatLon} object.
    *
@@ -22,6 +27,20 @@ public record LatLon(double lat, double lon) {
     return new LatLon(Double.parseDouble(split[0]), Double.parseDouble(split[1]));
   }
 
+  /**
+   * The great-circle distance between this point and another one, using the haversine formula.
+   *
+   * @param other The other point.
+   * @return The distance in kilometers.
+   */
+  public double distanceTo(@NotNull LatLon other) {
+    final double dLat = Math.toRadians(other.lat - this.lat);
+    final double dLon = Math.toRadians(other.lon - this.lon);
+    final double a = Math.pow(Math.sin(dLat / 2), 2)
+        + Math.cos(Math.toRadians(this.lat)) * Math.cos(Math.toRadians(other.lat)) * Math.pow(Math.sin(dLon / 2), 2);
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
   @Override
   public String toString() {
     return "%s,%s".formatted(Double.toString(this.lat), Double.toString(this.lon));
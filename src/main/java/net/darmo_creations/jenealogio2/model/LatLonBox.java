@@ -0,0 +1,47 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * An area of the Earth’s surface bounded by two parallels and two meridians.
+ * If {@code west} is greater than {@code east}, the box crosses the 180th meridian.
+ *
+ * @param south The latitude of the southern bound, in [-90, 90].
+ * @param west  The longitude of the western bound, in [-180, 180].
+ * @param north The latitude of the northern bound, in [{@code south}, 90].
+ * @param east  The longitude of the eastern bound, in [-180, 180].
+ */
+public record LatLonBox(double south, double west, double north, double east) {
+  /**
+   * A box that covers the whole Earth.
+   */
+  public static final LatLonBox WORLD = new LatLonBox(-90, -180, 90, 180);
+
+  public LatLonBox {
+    if (south < -90 || north > 90 || south > north)
+      throw new IllegalArgumentException("invalid latitudes: %s, %s".formatted(south, north));
+    if (west < -180 || west > 180 || east < -180 || east > 180)
+      throw new IllegalArgumentException("invalid longitudes: %s, %s".formatted(west, east));
+  }
+
+  /**
+   * Indicate whether this box crosses the 180th meridian.
+   */
+  public boolean crossesAntimeridian() {
+    return this.west > this.east;
+  }
+
+  /**
+   * Indicate whether the given point is within this box.
+   *
+   * @param latLon A point.
+   * @return True if the point is within this box or on its bounds, false otherwise.
+   */
+  public boolean contains(@NotNull LatLon latLon) {
+    if (latLon.lat() < this.south || latLon.lat() > this.north)
+      return false;
+    if (this.crossesAntimeridian())
+      return latLon.lon() >= this.west || latLon.lon() <= this.east;
+    return latLon.lon() >= this.west && latLon.lon() <= this.east;
+  }
+}
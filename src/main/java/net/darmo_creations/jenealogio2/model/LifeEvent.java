@@ -18,11 +18,15 @@ import java.util.stream.*;
  * is based on the {@link DateTime#compareTo(DateTime)} method.
  */
 public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<LifeEvent> {
-  private final Set<Person> actors = new HashSet<>();
-  private final Set<Person> witnesses = new HashSet<>();
+  private final Set<Person> actors = new CompactSet<>();
+  private final Set<Person> witnesses = new CompactSet<>();
   private DateTime date;
   private LifeEventType type;
   private Place place;
+  /**
+   * Cached snapshot of this event, null if it has to be rebuilt.
+   */
+  private LifeEventSnapshot snapshot;
 
   /**
    * Create a new life event.
@@ -58,7 +62,10 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
    * @return This object.
    */
   public LifeEvent setDate(@NotNull DateTime date) {
+    final DateTime previous = this.date;
     this.date = Objects.requireNonNull(date);
+    this.recordChange("date", LifeEvent::setDate, previous, date);
+    this.fireUpdated();
     return this;
   }
 
@@ -76,7 +83,21 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
    * @return This object.
    */
   public LifeEvent setType(@NotNull LifeEventType type) {
-    this.type = Objects.requireNonNull(type);
+    Objects.requireNonNull(type);
+    final boolean unionChanged = this.type != null && this.type.indicatesUnion() != type.indicatesUnion();
+    // Only events of a tree are registered as users of their type
+    if (this.type != null && this.type.isUsedBy(this)) {
+      this.type.removeUser(this);
+      type.addUser(this);
+    }
+    final LifeEventType previous = this.type;
+    this.type = type;
+    this.recordChange("type", LifeEvent::setType, previous, type);
+    if (unionChanged)
+      for (final Person actor : this.actors)
+        if (actor.familyTree() != null)
+          actor.familyTree().onUnionsChanged();
+    this.fireUpdated();
     return this;
   }
 
@@ -94,10 +115,54 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
    * @return This object.
    */
   public LifeEvent setPlace(Place place) {
+    final Place previous = this.place;
     this.place = place;
+    this.recordChange("place", LifeEvent::setPlace, previous, place);
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.onPlaceChanged(this, previous);
+    this.fireUpdated();
     return this;
   }
 
+  /**
+   * Replace this event’s place by an equal instance shared with other events.
+   * The change is neither recorded nor notified as the place’s value does not change.
+   *
+   * @param place A place equal to this event’s current one.
+   */
+  void internPlace(@NotNull Place place) {
+    this.place = place;
+  }
+
+  @Override
+  @Nullable FamilyTree containingTree() {
+    // Events are in the tree of their actors
+    for (final Person actor : this.actors) {
+      final FamilyTree familyTree = actor.familyTree();
+      if (familyTree != null && familyTree.hasLifeEvent(this))
+        return familyTree;
+    }
+    return null;
+  }
+
+  /**
+   * An immutable copy of this event’s current state, cached until this event changes.
+   */
+  public LifeEventSnapshot snapshot() {
+    if (this.snapshot == null)
+      this.snapshot = new LifeEventSnapshot(this);
+    return this.snapshot;
+  }
+
+  @Override
+  void fireUpdated() {
+    this.snapshot = null;
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.fireChange(new FamilyTreeChange.LifeEventChanged(this));
+  }
+
   /**
    * A copy of this event’s actors.
    */
@@ -118,6 +183,7 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
           .formatted(this.type.minActors(), this.type.maxActors(), actors.size()));
     if (actors.stream().anyMatch(this::hasWitness))
       throw new IllegalArgumentException("Same person cannot be both witness and actor of same event");
+    this.snapshot = null;
     // Dissociate current actors
     this.actors.forEach(p -> p.removeLifeEvent(this));
     this.actors.clear();
@@ -126,6 +192,16 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
     actors.forEach(actor -> actor.addLifeEvent(this));
   }
 
+  /**
+   * Remove all actors from this event without any check. Updates the {@link Person} objects.
+   * Used to revert the first call to {@link #setActors(Set)}.
+   */
+  void clearActors() {
+    this.snapshot = null;
+    this.actors.forEach(p -> p.removeLifeEvent(this));
+    this.actors.clear();
+  }
+
   /**
    * Remove an actor from this event. Updates the {@link Person} object.
    *
@@ -135,6 +211,7 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
   void removeActor(final @NotNull Person actor) {
     if (this.actors.size() == this.type.minActors() && this.hasActor(actor))
       throw new IllegalStateException("Cannot remove any more actors");
+    this.snapshot = null;
     this.actors.remove(actor);
     actor.removeLifeEvent(this);
   }
@@ -166,6 +243,7 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
     Objects.requireNonNull(witness);
     if (this.hasActor(witness))
       throw new IllegalArgumentException("Same person cannot be both witness and actor of same event");
+    this.snapshot = null;
     this.witnesses.add(witness);
     witness.addLifeEvent(this);
   }
@@ -178,6 +256,7 @@ public class LifeEvent extends GenealogyObject<LifeEvent> implements Comparable<
   void removeWitness(final Person witness) {
     if (!this.hasWitness(witness))
       return;
+    this.snapshot = null;
     this.witnesses.remove(witness);
     witness.removeLifeEvent(this);
   }
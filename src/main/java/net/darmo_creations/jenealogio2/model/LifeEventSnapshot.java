@@ -0,0 +1,129 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the state of a {@link LifeEvent} at a given time, as found in a {@link FamilyTreeSnapshot}.
+ * <p>
+ * Its methods mirror those of {@link LifeEvent}. Actors and witnesses are the live {@link Person} objects,
+ * their state at the same time may be looked up with {@link FamilyTreeSnapshot#person(Person)}.
+ * <p>
+ * {@link LifeEventType} objects are shared with the live model, only their key should be read
+ * outside the JavaFX thread.
+ */
+public final class LifeEventSnapshot {
+  private final LifeEvent lifeEvent;
+  private final DateTime date;
+  private final LifeEventType type;
+  private final Place place;
+  private final Set<Person> actors;
+  private final Set<Person> witnesses;
+  private final Picture mainPicture;
+  private final String notes;
+  private final String sources;
+
+  /**
+   * Copy the current state of the given life event.
+   *
+   * @param lifeEvent The life event to copy.
+   */
+  LifeEventSnapshot(final @NotNull LifeEvent lifeEvent) {
+    this.lifeEvent = lifeEvent;
+    this.date = lifeEvent.date();
+    this.type = lifeEvent.type();
+    this.place = lifeEvent.place().orElse(null);
+    this.actors = Set.copyOf(lifeEvent.actors());
+    this.witnesses = Set.copyOf(lifeEvent.witnesses());
+    this.mainPicture = lifeEvent.mainPicture().orElse(null);
+    this.notes = lifeEvent.notes().orElse(null);
+    this.sources = lifeEvent.sources().orElse(null);
+  }
+
+  /**
+   * The live event this snapshot was taken from.
+   * Its state may have changed since then and should not be read outside the JavaFX thread.
+   */
+  public LifeEvent lifeEvent() {
+    return this.lifeEvent;
+  }
+
+  /**
+   * This event’s date.
+   */
+  public DateTime date() {
+    return this.date;
+  }
+
+  /**
+   * This event’s type.
+   */
+  public LifeEventType type() {
+    return this.type;
+  }
+
+  /**
+   * This event’s place.
+   */
+  public Optional<Place> place() {
+    return Optional.ofNullable(this.place);
+  }
+
+  /**
+   * This event’s actors.
+   */
+  public @Unmodifiable Set<Person> actors() {
+    return this.actors;
+  }
+
+  /**
+   * Indicate whether a person is an actor of this event.
+   *
+   * @param person Person to check.
+   * @return True if the person is an actor of this event, false otherwise.
+   */
+  public boolean hasActor(final Person person) {
+    return person != null && this.actors.contains(person);
+  }
+
+  /**
+   * This event’s witnesses.
+   */
+  public @Unmodifiable Set<Person> witnesses() {
+    return this.witnesses;
+  }
+
+  /**
+   * Indicate whether a person is a witness of this event.
+   *
+   * @param person Person to check.
+   * @return True if the person is a witness of this event, false otherwise.
+   */
+  public boolean hasWitness(final Person person) {
+    return person != null && this.witnesses.contains(person);
+  }
+
+  /**
+   * This event’s main picture. Its state at the same time may be looked up
+   * with {@link FamilyTreeSnapshot#document(AttachedDocument)}.
+   */
+  public Optional<Picture> mainPicture() {
+    return Optional.ofNullable(this.mainPicture);
+  }
+
+  /**
+   * This event’s notes.
+   */
+  public Optional<String> notes() {
+    return Optional.ofNullable(this.notes);
+  }
+
+  /**
+   * This event’s sources.
+   */
+  public Optional<String> sources() {
+    return Optional.ofNullable(this.sources);
+  }
+}
@@ -63,7 +63,9 @@ public final class LifeEventType extends RegistryEntry {
    */
   public void setGroup(@NotNull Group group) {
     this.ensureNotBuiltin("group");
+    final Group previous = this.group;
     this.group = Objects.requireNonNull(group);
+    this.recordChange(previous, group, this::setGroup);
   }
 
   /**
@@ -81,7 +83,9 @@ public final class LifeEventType extends RegistryEntry {
    */
   public void setIndicatesDeath(boolean indicatesDeath) {
     this.ensureNotBuiltin("indicatesDeath");
+    final boolean previous = this.indicatesDeath;
     this.indicatesDeath = indicatesDeath;
+    this.recordChange(previous, indicatesDeath, this::setIndicatesDeath);
   }
 
   /**
@@ -123,9 +127,17 @@ public final class LifeEventType extends RegistryEntry {
       throw new IllegalArgumentException("max cannot be less than min");
     if (isUnion && min < 2)
       throw new IllegalArgumentException("not enough max actors for union: " + max);
+    final int previousMin = this.minActors;
+    final int previousMax = this.maxActors;
+    final boolean previousIsUnion = this.indicatesUnion;
     this.minActors = min;
     this.maxActors = max;
     this.indicatesUnion = isUnion;
+    if (min != previousMin || max != previousMax || isUnion != previousIsUnion)
+      this.recordEdit(
+          () -> this.setActorsNumber(previousMin, previousMax, previousIsUnion),
+          () -> this.setActorsNumber(min, max, isUnion)
+      );
   }
 
   /**
@@ -143,7 +155,9 @@ public final class LifeEventType extends RegistryEntry {
    */
   public void setUnique(boolean unique) {
     this.ensureNotBuiltin("unique");
+    final boolean previous = this.unique;
     this.unique = unique;
+    this.recordChange(previous, unique, this::setUnique);
   }
 
   @Override
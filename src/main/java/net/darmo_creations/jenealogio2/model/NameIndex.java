@@ -0,0 +1,278 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.text.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A trigram inverted index of the names of a {@link FamilyTree}’s members, used to search persons by name.
+ * <p>
+ * All names of each person (legal and public first and last names, and nicknames) are folded,
+ * i.e. lower-cased according to a locale and stripped from their accents, then joined into a single string.
+ * Each sequence of 3 consecutive characters within a name is mapped to the indices of the persons
+ * whose names contain it (see {@link FamilyTree#personIndex(Person)}).
+ * <p>
+ * A query is answered by picking the persons listed for the rarest trigram of the query
+ * and checking whether their folded names actually contain it. Queries shorter than 3 characters
+ * are checked against all persons’ folded names, which are cached.
+ * <p>
+ * The index is built on the first query then kept up to date as members are added, removed or renamed.
+ * It is rebuilt if a query uses a different locale.
+ */
+final class NameIndex {
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  /**
+   * Separates the names in the folded names of a person. Queries never contain it.
+   */
+  static final char SEPARATOR = '\n';
+  private static final int[] EMPTY = new int[0];
+
+  private final FamilyTree familyTree;
+  /**
+   * The locale the index was built with, null if it has not been built.
+   */
+  private Locale locale;
+  /**
+   * The folded names of each person, indexed by person index. Released indices hold null values.
+   */
+  private final List<String> foldedNames = new ArrayList<>();
+  /**
+   * The indices of the persons whose folded names contain each trigram.
+   */
+  private final Map<Long, Postings> postings = new HashMap<>();
+
+  /**
+   * Create an empty index for the given tree.
+   *
+   * @param familyTree The tree whose members to index.
+   */
+  NameIndex(final @NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Return the members of the tree whose names contain every word of the given query,
+   * ignoring case and accents.
+   *
+   * @param query  The query.
+   * @param locale The locale to use for case conversions.
+   * @return The matching persons.
+   */
+  Set<Person> search(@NotNull String query, @NotNull Locale locale) {
+    if (!locale.equals(this.locale))
+      this.build(locale);
+    final List<String> words = words(query, locale);
+    if (words.isEmpty())
+      return new HashSet<>();
+
+    // Pick the shortest postings list among all trigrams of all words
+    int[] candidates = null;
+    int candidatesNb = 0;
+    for (final String word : words)
+      for (int i = 0; i + 3 <= word.length(); i++) {
+        final Postings p = this.postings.get(trigram(word, i));
+        if (p == null)
+          return new HashSet<>();
+        if (candidates == null || p.size < candidatesNb) {
+          candidates = p.indices;
+          candidatesNb = p.size;
+        }
+      }
+
+    final Set<Person> matches = new HashSet<>();
+    if (candidates != null) {
+      for (int i = 0; i < candidatesNb; i++)
+        this.check(candidates[i], words, matches);
+    } else // Only short words, check all persons
+      for (int i = 0; i < this.foldedNames.size(); i++)
+        this.check(i, words, matches);
+    return matches;
+  }
+
+  private void check(int index, final @NotNull List<String> words, @NotNull Set<Person> matches) {
+    final String names = this.foldedNames.get(index);
+    if (names != null && containsAll(names, words))
+      matches.add(this.familyTree.personAt(index));
+  }
+
+  /**
+   * Check whether the names of the given person contain every word of the given query,
+   * ignoring case and accents. This method does not use any index.
+   *
+   * @param person The person to check.
+   * @param query  The query.
+   * @param locale The locale to use for case conversions.
+   * @return True if the person matches the query, false otherwise.
+   */
+  static boolean matches(final @NotNull Person person, @NotNull String query, @NotNull Locale locale) {
+    final List<String> words = words(query, locale);
+    return !words.isEmpty() && containsAll(foldNames(person, locale), words);
+  }
+
+  private static boolean containsAll(@NotNull String names, final @NotNull List<String> words) {
+    for (final String word : words)
+      if (!names.contains(word))
+        return false;
+    return true;
+  }
+
+  /**
+   * Split the given query into folded words.
+   *
+   * @param query  The query.
+   * @param locale The locale to use for case conversions.
+   * @return The non-empty words.
+   */
+  private static List<String> words(@NotNull String query, @NotNull Locale locale) {
+    final List<String> words = new ArrayList<>();
+    for (final String word : WHITESPACE.split(fold(query, locale)))
+      if (!word.isEmpty())
+        words.add(word);
+    return words;
+  }
+
+  /**
+   * Index the names of a person that has just been added to the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person.
+   */
+  void add(final @NotNull Person person) {
+    if (this.locale != null)
+      this.setNames(this.familyTree.personIndex(person), foldNames(person, this.locale));
+  }
+
+  /**
+   * Remove a person that is about to be removed from the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person.
+   */
+  void remove(final @NotNull Person person) {
+    if (this.locale != null)
+      this.setNames(this.familyTree.personIndex(person), null);
+  }
+
+  /**
+   * Update the names of a member of the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person whose names changed.
+   */
+  void update(final @NotNull Person person) {
+    this.add(person);
+  }
+
+  private void build(@NotNull Locale locale) {
+    this.locale = locale;
+    this.foldedNames.clear();
+    this.postings.clear();
+    for (int i = 0; i < this.familyTree.personIndexCapacity(); i++) {
+      final Person person = this.familyTree.personAt(i);
+      if (person != null)
+        this.setNames(i, foldNames(person, locale));
+    }
+  }
+
+  /**
+   * Replace the folded names of a person and update the postings of the trigrams that were added or removed.
+   *
+   * @param index The person’s index.
+   * @param names The person’s new folded names, null to remove the person.
+   */
+  private void setNames(int index, String names) {
+    while (this.foldedNames.size() <= index)
+      this.foldedNames.add(null);
+    final String previous = this.foldedNames.set(index, names);
+    if (Objects.equals(previous, names))
+      return;
+    final Set<Long> oldTrigrams = trigrams(previous);
+    final Set<Long> newTrigrams = trigrams(names);
+    for (final long trigram : oldTrigrams)
+      if (!newTrigrams.contains(trigram)) {
+        final Postings p = this.postings.get(trigram);
+        p.remove(index);
+        if (p.size == 0)
+          this.postings.remove(trigram);
+      }
+    for (final long trigram : newTrigrams)
+      if (!oldTrigrams.contains(trigram))
+        this.postings.computeIfAbsent(trigram, t -> new Postings()).add(index);
+  }
+
+  /**
+   * The distinct trigrams of the given folded names. Trigrams spanning two names are ignored.
+   *
+   * @param names Folded names. May be null.
+   * @return The trigrams.
+   */
+  private static Set<Long> trigrams(String names) {
+    final Set<Long> trigrams = new HashSet<>();
+    if (names == null)
+      return trigrams;
+    for (int i = 0; i + 3 <= names.length(); i++)
+      if (names.charAt(i + 1) != SEPARATOR && names.charAt(i + 2) != SEPARATOR && names.charAt(i) != SEPARATOR)
+        trigrams.add(trigram(names, i));
+    return trigrams;
+  }
+
+  private static long trigram(@NotNull String s, int i) {
+    return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+  }
+
+  /**
+   * Fold all names of the given person into a single string.
+   *
+   * @param person The person.
+   * @param locale The locale to use for case conversions.
+   * @return The folded names, separated by {@link #SEPARATOR}.
+   */
+  static String foldNames(final @NotNull Person person, @NotNull Locale locale) {
+    final StringJoiner joiner = new StringJoiner(String.valueOf(SEPARATOR));
+    person.legalLastName().ifPresent(joiner::add);
+    person.publicLastName().ifPresent(joiner::add);
+    person.legalFirstNames().forEach(joiner::add);
+    person.publicFirstNames().forEach(joiner::add);
+    person.nicknames().forEach(joiner::add);
+    return fold(joiner.toString(), locale);
+  }
+
+  /**
+   * Lower-case the given string according to the given locale and strip it from its accents.
+   *
+   * @param s      The string to fold.
+   * @param locale The locale to use for case conversions.
+   * @return The folded string.
+   */
+  static String fold(@NotNull String s, @NotNull Locale locale) {
+    // Lower-case first as some locales map accented upper-case letters to unaccented ones
+    final String normalized = Normalizer.normalize(s.toLowerCase(locale), Normalizer.Form.NFD);
+    return COMBINING_MARKS.matcher(normalized).replaceAll("");
+  }
+
+  /**
+   * An unordered list of person indices.
+   */
+  private static final class Postings {
+    private int[] indices = EMPTY;
+    private int size;
+
+    private void add(int index) {
+      if (this.size == this.indices.length)
+        this.indices = Arrays.copyOf(this.indices, Math.max(4, this.size * 2));
+      this.indices[this.size++] = index;
+    }
+
+    private void remove(int index) {
+      for (int i = 0; i < this.size; i++)
+        if (this.indices[i] == index) {
+          // Order does not matter, move the last index in its place
+          this.indices[i] = this.indices[--this.size];
+          return;
+        }
+    }
+  }
+}
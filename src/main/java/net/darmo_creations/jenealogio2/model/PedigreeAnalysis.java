@@ -0,0 +1,159 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Statistics about the known genetic ancestors of a person, generation by generation,
+ * as returned by {@link FamilyTree#analyzePedigree(Person, int)}.
+ * <p>
+ * Each generation n back has 2<sup>n</sup> ancestor slots. A slot is known if the corresponding person
+ * is in the tree. Because of pedigree collapse, a single person may fill several slots
+ * if they are reached through several lines.
+ *
+ * @param person            The analyzed person.
+ * @param generations       Statistics for each generation back, the first one being the person’s parents.
+ * @param distinctAncestors The number of distinct known ancestors over all generations.
+ */
+public record PedigreeAnalysis(
+    @NotNull Person person,
+    @NotNull @Unmodifiable List<Generation> generations,
+    int distinctAncestors
+) {
+  /**
+   * The maximum number of generations that can be analyzed, above which slot counts would overflow.
+   */
+  public static final int MAX_GENERATIONS = 62;
+
+  public PedigreeAnalysis {
+    Objects.requireNonNull(person);
+    generations = List.copyOf(generations);
+  }
+
+  /**
+   * The completeness index of this pedigree, i.e. the proportion of the ancestor slots of all analyzed generations
+   * that are known.
+   *
+   * @return A value in [0, 1].
+   */
+  public double completeness() {
+    long slots = 0, known = 0;
+    for (final Generation generation : this.generations) {
+      slots += generation.slots();
+      known += generation.knownAncestors();
+    }
+    return slots == 0 ? 0 : (double) known / slots;
+  }
+
+  /**
+   * Analyze the pedigree of a person.
+   * Persons with more than two genetic parents only have the first two taken into account.
+   * <p>
+   * As graphs never change, this method may be called outside the JavaFX thread.
+   *
+   * @param graph       The graph to analyze.
+   * @param person      The person to analyze the pedigree of. Must be in the graph.
+   * @param generations The number of generations to go back.
+   * @return The analysis.
+   * @throws IllegalArgumentException If the number of generations is not in [1, {@link #MAX_GENERATIONS}].
+   */
+  public static PedigreeAnalysis compute(final @NotNull FamilyGraph graph, @NotNull Person person, int generations) {
+    if (generations < 1 || generations > MAX_GENERATIONS)
+      throw new IllegalArgumentException("Generations number must be in [1, %d], got %d"
+          .formatted(MAX_GENERATIONS, generations));
+    final int n = graph.size();
+    final int words = (n + 63) >>> 6;
+    // Ancestors found in any generation
+    final long[] found = new long[words];
+    // Ancestors of the next generation
+    final long[] nextLevel = new long[words];
+    // Number of slots filled by each person of the current and next generations
+    long[] counts = new long[n];
+    long[] nextCounts = new long[n];
+    int[] level = new int[Math.max(1, n)];
+    int[] next = new int[Math.max(1, n)];
+    int size = 1;
+    level[0] = graph.indexOf(person);
+    counts[level[0]] = 1;
+
+    final List<Generation> result = new ArrayList<>(generations);
+    for (int g = 1; g <= generations; g++) {
+      int nextSize = 0;
+      long known = 0;
+      for (int k = 0; k < size; k++) {
+        final int child = level[k];
+        final long count = counts[child];
+        counts[child] = 0;
+        int parents = 0;
+        for (final var type : ParentalRelationType.GENETIC_RELATIONS)
+          for (int r = 0; r < graph.parentsCount(child, type) && parents < 2; r++, parents++) {
+            final int parent = graph.parent(child, type, r);
+            if (!isSet(nextLevel, parent)) {
+              set(nextLevel, parent);
+              set(found, parent);
+              next[nextSize++] = parent;
+            }
+            nextCounts[parent] += count;
+            known += count;
+          }
+      }
+      result.add(new Generation(g, 1L << g, known, nextSize));
+      for (int k = 0; k < nextSize; k++)
+        clear(nextLevel, next[k]);
+      final int[] tmpLevel = level;
+      level = next;
+      next = tmpLevel;
+      final long[] tmpCounts = counts;
+      counts = nextCounts;
+      nextCounts = tmpCounts;
+      size = nextSize;
+    }
+
+    int distinct = 0;
+    for (final long word : found)
+      distinct += Long.bitCount(word);
+    return new PedigreeAnalysis(person, result, distinct);
+  }
+
+  private static boolean isSet(final long @NotNull [] bitmap, int index) {
+    return (bitmap[index >>> 6] & 1L << index) != 0;
+  }
+
+  private static void set(long @NotNull [] bitmap, int index) {
+    bitmap[index >>> 6] |= 1L << index;
+  }
+
+  private static void clear(long @NotNull [] bitmap, int index) {
+    bitmap[index >>> 6] &= ~(1L << index);
+  }
+
+  /**
+   * Statistics about the ancestors of a single generation.
+   *
+   * @param number            The generation’s number, 1 being the parents, 2 the grandparents, etc.
+   * @param slots             The theoretical number of ancestors in this generation, i.e. 2<sup>number</sup>.
+   * @param knownAncestors    The number of slots filled by a known person.
+   * @param distinctAncestors The number of distinct persons that fill the known slots.
+   */
+  public record Generation(int number, long slots, long knownAncestors, int distinctAncestors) {
+    /**
+     * The proportion of slots of this generation that are known.
+     *
+     * @return A value in [0, 1].
+     */
+    public double completeness() {
+      return (double) this.knownAncestors / this.slots;
+    }
+
+    /**
+     * The pedigree collapse rate of this generation, i.e. the proportion of known slots
+     * that are filled by a person already filling another slot.
+     *
+     * @return A value in [0, 1].
+     */
+    public double collapse() {
+      return this.knownAncestors == 0 ? 0 : 1 - (double) this.distinctAncestors / this.knownAncestors;
+    }
+  }
+}
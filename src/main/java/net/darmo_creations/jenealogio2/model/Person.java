@@ -43,21 +43,32 @@ public class Person extends GenealogyObject<Person> {
       BIRTH_DATE_THEN_NAME_COMPARATOR_FACTORY.apply(true);
 
   private FamilyTree familyTree;
+  /**
+   * Index of this person in its family tree, -1 if not a member of any tree.
+   */
+  private int treeIndex = -1;
+  /**
+   * Cached snapshot of this person, null if it has to be rebuilt.
+   */
+  private PersonSnapshot snapshot;
   private Integer disambiguationID;
   private LifeStatus lifeStatus = LifeStatus.LIVING;
-  private final List<String> legalFirstNames = new ArrayList<>();
+  // Names lists are immutable and replaced as a whole by their setters
+  private List<String> legalFirstNames = List.of();
   private String legalLastName;
-  private final List<String> publicFirstNames = new ArrayList<>();
+  private List<String> publicFirstNames = List.of();
   private String publicLastName;
-  private final List<String> nicknames = new ArrayList<>();
+  private List<String> nicknames = List.of();
   private Gender assignedGenderAtBirth;
   private Gender gender;
   private String mainOccupation;
   /**
    * We assume exactly two parents per person.
+   * Relation types without any person are mapped to the shared {@link Collections#emptySet()},
+   * see {@link CompactSet#add(Set, Object)}.
    */
-  private final Map<ParentalRelationType, Set<Person>> parents = new HashMap<>();
-  private final Map<ParentalRelationType, Set<Person>> children = new HashMap<>();
+  private final Map<ParentalRelationType, Set<Person>> parents = new EnumMap<>(ParentalRelationType.class);
+  private final Map<ParentalRelationType, Set<Person>> children = new EnumMap<>(ParentalRelationType.class);
   /**
    * Ordered list of all life events this person was an actor in.
    */
@@ -65,15 +76,15 @@ public class Person extends GenealogyObject<Person> {
   /**
    * The documents this person has authored.
    */
-  private final Set<AttachedDocument> authoredDocuments = new HashSet<>();
+  private Set<AttachedDocument> authoredDocuments = Collections.emptySet();
 
   /**
    * Create a new alive person.
    */
   public Person() {
     for (final var relationType : ParentalRelationType.values()) {
-      this.parents.put(relationType, new HashSet<>());
-      this.children.put(relationType, new HashSet<>());
+      this.parents.put(relationType, Collections.emptySet());
+      this.children.put(relationType, Collections.emptySet());
     }
   }
 
@@ -93,6 +104,22 @@ public class Person extends GenealogyObject<Person> {
     this.familyTree = Objects.requireNonNull(familyTree);
   }
 
+  /**
+   * The index of this person in its {@link FamilyTree}, -1 if it is not a member of any tree.
+   */
+  int treeIndex() {
+    return this.treeIndex;
+  }
+
+  /**
+   * Set the index of this person in its {@link FamilyTree}.
+   *
+   * @param treeIndex The index.
+   */
+  void setTreeIndex(int treeIndex) {
+    this.treeIndex = treeIndex;
+  }
+
   @Override
   public String name(@NotNull Language language) {
     return this.toString();
@@ -119,7 +146,10 @@ public class Person extends GenealogyObject<Person> {
   public Person setDisambiguationID(Integer disambiguationID) {
     if (disambiguationID != null && disambiguationID < 1)
       throw new IllegalArgumentException("Disambiguation ID must be > 0");
+    final Integer previous = this.disambiguationID;
     this.disambiguationID = disambiguationID;
+    this.recordChange("disambiguationID", Person::setDisambiguationID, previous, disambiguationID);
+    this.fireUpdated();
     return this;
   }
 
@@ -143,7 +173,10 @@ public class Person extends GenealogyObject<Person> {
     final boolean isDead = this.getLifeEventsAsActor().stream().anyMatch(e -> e.type().indicatesDeath());
     if (isDead && lifeStatus != LifeStatus.DECEASED)
       throw new IllegalArgumentException("cannot change status of a person with at least one event indicating death");
+    final LifeStatus previous = this.lifeStatus;
     this.lifeStatus = Objects.requireNonNull(lifeStatus);
+    this.recordChange("lifeStatus", Person::setLifeStatus, previous, lifeStatus);
+    this.fireUpdated();
     return this;
   }
 
@@ -176,8 +209,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setLegalFirstNames(final @NotNull List<String> legalFirstNames) {
-    this.legalFirstNames.clear();
-    this.legalFirstNames.addAll(this.filterOutEmptyStrings(legalFirstNames));
+    final List<String> previous = this.legalFirstNames;
+    this.legalFirstNames = this.filterOutEmptyStrings(legalFirstNames);
+    this.recordChange("legalFirstNames", Person::setLegalFirstNames, previous, this.legalFirstNames);
+    this.fireNamesUpdated();
     return this;
   }
 
@@ -200,7 +235,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setLegalLastName(String legalLastName) {
+    final String previous = this.legalLastName;
     this.legalLastName = StringUtils.stripNullable(legalLastName).orElse(null);
+    this.recordChange("legalLastName", Person::setLegalLastName, previous, this.legalLastName);
+    this.fireNamesUpdated();
     return this;
   }
 
@@ -233,8 +271,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setPublicFirstNames(final @NotNull List<String> publicFirstNames) {
-    this.publicFirstNames.clear();
-    this.publicFirstNames.addAll(this.filterOutEmptyStrings(publicFirstNames));
+    final List<String> previous = this.publicFirstNames;
+    this.publicFirstNames = this.filterOutEmptyStrings(publicFirstNames);
+    this.recordChange("publicFirstNames", Person::setPublicFirstNames, previous, this.publicFirstNames);
+    this.fireNamesUpdated();
     return this;
   }
 
@@ -257,7 +297,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setPublicLastName(String publicLastName) {
+    final String previous = this.publicLastName;
     this.publicLastName = StringUtils.stripNullable(publicLastName).orElse(null);
+    this.recordChange("publicLastName", Person::setPublicLastName, previous, this.publicLastName);
+    this.fireNamesUpdated();
     return this;
   }
 
@@ -283,8 +326,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setNicknames(final @NotNull List<String> nicknames) {
-    this.nicknames.clear();
-    this.nicknames.addAll(this.filterOutEmptyStrings(nicknames));
+    final List<String> previous = this.nicknames;
+    this.nicknames = this.filterOutEmptyStrings(nicknames);
+    this.recordChange("nicknames", Person::setNicknames, previous, this.nicknames);
+    this.fireNamesUpdated();
     return this;
   }
 
@@ -305,21 +350,14 @@ public class Person extends GenealogyObject<Person> {
   }
 
   /**
-   * Check whether any names of this person contain the given string, regardless of case.
+   * Check whether the names of this person contain every word of the given string, regardless of case and accents.
    *
    * @param s        The string to check.
    * @param language The language to use for lower-case conversions.
    * @return True if any match was found, false otherwise.
    */
   public boolean matchesName(@NotNull String s, @NotNull Language language) {
-    final Locale locale = language.locale();
-    final String lcString = s.toLowerCase(locale);
-    final Predicate<String> p = n -> n != null && n.toLowerCase(locale).contains(lcString);
-    return p.test(this.legalLastName)
-        || p.test(this.publicLastName)
-        || this.legalFirstNames.stream().anyMatch(p)
-        || this.publicFirstNames.stream().anyMatch(p)
-        || this.nicknames.stream().anyMatch(p);
+    return NameIndex.matches(this, s, language.locale());
   }
 
   /**
@@ -337,7 +375,11 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setAssignedGenderAtBirth(Gender assignedGenderAtBirth) {
+    final Gender previous = this.assignedGenderAtBirth;
     this.assignedGenderAtBirth = assignedGenderAtBirth;
+    this.onGenderChanged(previous, assignedGenderAtBirth);
+    this.recordChange("assignedGenderAtBirth", Person::setAssignedGenderAtBirth, previous, assignedGenderAtBirth);
+    this.fireUpdated();
     return this;
   }
 
@@ -356,10 +398,53 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setGender(Gender gender) {
+    final Gender previous = this.gender;
     this.gender = gender;
+    this.onGenderChanged(previous, gender);
+    this.recordChange("gender", Person::setGender, previous, gender);
+    this.fireUpdated();
     return this;
   }
 
+  /**
+   * Replace the given gender by another one in both the assigned gender at birth and gender of this person.
+   *
+   * @param gender      The gender to replace.
+   * @param replacement The gender to replace it with.
+   */
+  void replaceGender(@NotNull Gender gender, @NotNull Gender replacement) {
+    if (this.assignedGenderAtBirth == gender)
+      this.setAssignedGenderAtBirth(replacement);
+    if (this.gender == gender)
+      this.setGender(replacement);
+  }
+
+  /**
+   * Register or unregister this person as a user of its genders.
+   * Called when this person joins or leaves its {@link FamilyTree}.
+   *
+   * @param used True to register this person, false to unregister it.
+   */
+  void updateGendersUsage(boolean used) {
+    for (final Gender g : new Gender[] {this.assignedGenderAtBirth, this.gender})
+      if (g != null) {
+        if (used)
+          g.addUser(this);
+        else
+          g.removeUser(this);
+      }
+  }
+
+  private void onGenderChanged(Gender previous, Gender gender) {
+    // Only members of a tree are registered as users of their genders
+    if (this.treeIndex < 0 || previous == gender)
+      return;
+    if (previous != null && previous != this.assignedGenderAtBirth && previous != this.gender)
+      previous.removeUser(this);
+    if (gender != null)
+      gender.addUser(this);
+  }
+
   /**
    * This person’s main occupation during its life.
    */
@@ -374,7 +459,10 @@ public class Person extends GenealogyObject<Person> {
    */
   @Contract("_ -> this")
   public Person setMainOccupation(String mainOccupation) {
+    final String previous = this.mainOccupation;
     this.mainOccupation = mainOccupation;
+    this.recordChange("mainOccupation", Person::setMainOccupation, previous, mainOccupation);
+    this.fireUpdated();
     return this;
   }
 
@@ -409,11 +497,15 @@ public class Person extends GenealogyObject<Person> {
    * @param type   The parent’s type.
    * @throws IllegalArgumentException If this person already has the maximum number of parents of the given type,
    *                                  or the parent has already been added to this person,
-   *                                  or the relation is genetic and this person already has 2 genetic parents.
+   *                                  or the relation is genetic and this person already has 2 genetic parents,
+   *                                  or the parent is this person or one of its descendants.
    */
   public void addParent(@NotNull Person parent, @NotNull ParentalRelationType type) {
     Objects.requireNonNull(parent);
 
+    if (parent == this || this.familyTree != null && this.familyTree.wouldCreateCycle(this, parent))
+      throw new IllegalArgumentException("Person %s cannot be an ancestor of itself".formatted(this));
+
     final var maxCount = type.maxParentsCount();
     if (maxCount.isPresent() && this.parents.get(type).size() == maxCount.get())
       throw new IllegalArgumentException("cannot add more than %d parents of type %s".formatted(maxCount.get(), type));
@@ -432,8 +524,11 @@ public class Person extends GenealogyObject<Person> {
         throw new IllegalArgumentException("Person %s already has 2 DNA parents".formatted(this));
     }
 
-    this.parents.get(type).add(parent);
-    parent.children.get(type).add(this);
+    this.parents.put(type, CompactSet.add(this.parents.get(type), parent));
+    parent.children.put(type, CompactSet.add(parent.children.get(type), this));
+    if (this.familyTree != null)
+      this.familyTree.onParentAdded(this, parent, type);
+    this.recordEdit(() -> this.removeParent(parent), () -> this.addParent(parent, type));
   }
 
   /**
@@ -450,6 +545,9 @@ public class Person extends GenealogyObject<Person> {
       if (parents.contains(parent)) {
         parents.remove(parent);
         parent.children.get(relationType).remove(this);
+        if (this.familyTree != null)
+          this.familyTree.onParentRemoved(this, parent, relationType);
+        this.recordEdit(() -> this.addParent(parent, relationType), () -> this.removeParent(parent));
         break;
       }
     }
@@ -476,6 +574,13 @@ public class Person extends GenealogyObject<Person> {
     return this.parents.entrySet().stream().anyMatch(e -> !e.getValue().isEmpty());
   }
 
+  /**
+   * Indicate whether this person has any children, of any relation type.
+   */
+  public boolean hasAnyChildren() {
+    return this.children.entrySet().stream().anyMatch(e -> !e.getValue().isEmpty());
+  }
+
   /**
    * The collection of children for this person.
    *
@@ -776,8 +881,10 @@ public class Person extends GenealogyObject<Person> {
         && this.getActedInEventsStream().anyMatch(e -> e.type().equals(event.type())))
       throw new IllegalArgumentException("%s already acts in an event of type '%s'"
           .formatted(this, event.type().key().fullName()));
-    if (event.hasActor(this) && event.type().indicatesDeath())
+    if (event.hasActor(this) && event.type().indicatesDeath()) {
+      this.recordChange("lifeStatus", Person::setLifeStatus, this.lifeStatus, LifeStatus.DECEASED);
       this.lifeStatus = LifeStatus.DECEASED;
+    }
     if (!this.lifeEvents.contains(event)) {
       this.lifeEvents.add(event);
       this.lifeEvents.sort(null);
@@ -811,7 +918,8 @@ public class Person extends GenealogyObject<Person> {
    * @param document The document to add.
    */
   void addAuthoredDocument(final @NotNull AttachedDocument document) {
-    this.authoredDocuments.add(document);
+    this.authoredDocuments = CompactSet.add(this.authoredDocuments, document);
+    this.fireUpdated();
   }
 
   /**
@@ -822,6 +930,39 @@ public class Person extends GenealogyObject<Person> {
    */
   void removeAuthoredDocument(final @NotNull AttachedDocument document) {
     this.authoredDocuments.remove(document);
+    this.fireUpdated();
+  }
+
+  @Override
+  @Nullable FamilyTree containingTree() {
+    return this.familyTree != null && this.familyTree.isMember(this) ? this.familyTree : null;
+  }
+
+  /**
+   * An immutable copy of this person’s current state, cached until this person changes.
+   */
+  public PersonSnapshot snapshot() {
+    if (this.snapshot == null)
+      this.snapshot = new PersonSnapshot(this);
+    return this.snapshot;
+  }
+
+  /**
+   * Notify the containing tree that this person’s names changed, then fire an update.
+   */
+  private void fireNamesUpdated() {
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.onNamesChanged(this);
+    this.fireUpdated();
+  }
+
+  @Override
+  void fireUpdated() {
+    this.snapshot = null;
+    final FamilyTree familyTree = this.containingTree();
+    if (familyTree != null)
+      familyTree.fireChange(new FamilyTreeChange.PersonUpdated(this));
   }
 
   /**
@@ -836,6 +977,20 @@ public class Person extends GenealogyObject<Person> {
     return values.stream().map(String::strip).filter(s -> !s.isEmpty()).toList();
   }
 
+  /**
+   * Call the given action on each person this person is in a union with,
+   * i.e. the other actors of events whose type indicates a union.
+   *
+   * @param action The action to perform.
+   */
+  void forEachPartner(@NotNull Consumer<Person> action) {
+    for (final LifeEvent lifeEvent : this.lifeEvents)
+      if (lifeEvent.type().indicatesUnion() && lifeEvent.hasActor(this))
+        for (final Person actor : lifeEvent.actors())
+          if (actor != this)
+            action.accept(actor);
+  }
+
   /**
    * Return a stream of life events this person acted in.
    */
@@ -0,0 +1,159 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the state of a {@link Person} at a given time, as found in a {@link FamilyTreeSnapshot}.
+ * <p>
+ * Its methods mirror those of {@link Person}. Links to other persons are available
+ * through the {@link FamilyTreeSnapshot#graph()} of the tree snapshot.
+ * <p>
+ * {@link Gender} objects are shared with the live model, only their key should be read outside the JavaFX thread.
+ */
+public final class PersonSnapshot {
+  private final Person person;
+  private final Integer disambiguationID;
+  private final LifeStatus lifeStatus;
+  private final List<String> legalFirstNames;
+  private final String legalLastName;
+  private final List<String> publicFirstNames;
+  private final String publicLastName;
+  private final List<String> nicknames;
+  private final Gender assignedGenderAtBirth;
+  private final Gender gender;
+  private final String mainOccupation;
+  private final Picture mainPicture;
+  private final String notes;
+  private final String sources;
+
+  /**
+   * Copy the current state of the given person.
+   *
+   * @param person The person to copy.
+   */
+  PersonSnapshot(final @NotNull Person person) {
+    this.person = person;
+    this.disambiguationID = person.disambiguationID().orElse(null);
+    this.lifeStatus = person.lifeStatus();
+    this.legalFirstNames = List.copyOf(person.legalFirstNames());
+    this.legalLastName = person.legalLastName().orElse(null);
+    this.publicFirstNames = List.copyOf(person.publicFirstNames());
+    this.publicLastName = person.publicLastName().orElse(null);
+    this.nicknames = List.copyOf(person.nicknames());
+    this.assignedGenderAtBirth = person.assignedGenderAtBirth().orElse(null);
+    this.gender = person.gender().orElse(null);
+    this.mainOccupation = person.mainOccupation().orElse(null);
+    this.mainPicture = person.mainPicture().orElse(null);
+    this.notes = person.notes().orElse(null);
+    this.sources = person.sources().orElse(null);
+  }
+
+  /**
+   * The live person this snapshot was taken from.
+   * Its state may have changed since then and should not be read outside the JavaFX thread.
+   */
+  public Person person() {
+    return this.person;
+  }
+
+  /**
+   * This person’s disambiguation ID.
+   */
+  public Optional<Integer> disambiguationID() {
+    return Optional.ofNullable(this.disambiguationID);
+  }
+
+  /**
+   * This person’s life status.
+   */
+  public LifeStatus lifeStatus() {
+    return this.lifeStatus;
+  }
+
+  /**
+   * This person’s legal first names.
+   */
+  public @Unmodifiable List<String> legalFirstNames() {
+    return this.legalFirstNames;
+  }
+
+  /**
+   * This person’s legal last name.
+   */
+  public Optional<String> legalLastName() {
+    return Optional.ofNullable(this.legalLastName);
+  }
+
+  /**
+   * This person’s public first names.
+   */
+  public @Unmodifiable List<String> publicFirstNames() {
+    return this.publicFirstNames;
+  }
+
+  /**
+   * This person’s public last name.
+   */
+  public Optional<String> publicLastName() {
+    return Optional.ofNullable(this.publicLastName);
+  }
+
+  /**
+   * This person’s nicknames.
+   */
+  public @Unmodifiable List<String> nicknames() {
+    return this.nicknames;
+  }
+
+  /**
+   * This person’s last name, the legal one if defined or the public one if not.
+   */
+  public Optional<String> getLastName() {
+    return this.legalLastName().or(this::publicLastName);
+  }
+
+  /**
+   * This person’s gender at birth.
+   */
+  public Optional<Gender> assignedGenderAtBirth() {
+    return Optional.ofNullable(this.assignedGenderAtBirth);
+  }
+
+  /**
+   * This person’s gender.
+   */
+  public Optional<Gender> gender() {
+    return Optional.ofNullable(this.gender);
+  }
+
+  /**
+   * This person’s main occupation.
+   */
+  public Optional<String> mainOccupation() {
+    return Optional.ofNullable(this.mainOccupation);
+  }
+
+  /**
+   * This person’s main picture. Its state at the same time may be looked up
+   * with {@link FamilyTreeSnapshot#document(AttachedDocument)}.
+   */
+  public Optional<Picture> mainPicture() {
+    return Optional.ofNullable(this.mainPicture);
+  }
+
+  /**
+   * This person’s notes.
+   */
+  public Optional<String> notes() {
+    return Optional.ofNullable(this.notes);
+  }
+
+  /**
+   * This person’s sources.
+   */
+  public Optional<String> sources() {
+    return Optional.ofNullable(this.sources);
+  }
+}
@@ -18,6 +18,7 @@ public class Picture extends AttachedDocument {
   public static final List<String> FILE_EXTENSIONS = List.of(".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp");
 
   private final Image image;
+  private final Set<GenealogyObject<?>> mainPictureOf = new CompactSet<>();
 
   /**
    * Create a new picture.
@@ -38,4 +39,42 @@ public class Picture extends AttachedDocument {
   public Optional<Image> image() {
     return Optional.ofNullable(this.image);
   }
+
+  /**
+   * The objects that have this picture as their main picture.
+   *
+   * @return An unmodifiable view of the internal set.
+   */
+  @UnmodifiableView
+  public Set<GenealogyObject<?>> mainPictureOf() {
+    return Collections.unmodifiableSet(this.mainPictureOf);
+  }
+
+  @Override
+  public Set<GenealogyObject<?>> referencingObjects() {
+    final Set<GenealogyObject<?>> objects = super.referencingObjects();
+    objects.addAll(this.mainPictureOf);
+    return objects;
+  }
+
+  @Override
+  void detach() {
+    super.detach();
+    new ArrayList<>(this.mainPictureOf).forEach(o -> o.setMainPicture(null));
+  }
+
+  /**
+   * Called by {@link GenealogyObject#setMainPicture(Picture)} when this picture becomes the main picture of an object.
+   */
+  void addMainPictureOf(final @NotNull GenealogyObject<?> object) {
+    this.mainPictureOf.add(object);
+  }
+
+  /**
+   * Called by {@link GenealogyObject#setMainPicture(Picture)} when this picture is no longer
+   * the main picture of an object.
+   */
+  void removeMainPictureOf(final @NotNull GenealogyObject<?> object) {
+    this.mainPictureOf.remove(object);
+  }
 }
@@ -0,0 +1,208 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An index of the places of a {@link FamilyTree}’s life events.
+ * <p>
+ * Each distinct place is stored once, along with the events that use it. Places are interned:
+ * events added to the tree, or moved to a place equal to an indexed one, are given the indexed instance,
+ * so that the many events of a same place share a single object. The events of a place are known
+ * without scanning the whole tree, which makes it cheap to edit a place for all its uses.
+ * <p>
+ * Places are also suggested as users type. Addresses are folded as by {@link NameIndex}. Each suffix
+ * of a folded address that starts at the beginning of a word is kept in a sorted map, so that the places
+ * with a word starting with a query are found with a single range lookup. This map is built on the first query
+ * then kept up to date. It is rebuilt if a query uses a different locale. Queries are run against
+ * an immutable {@link PlaceSearch} copy of it, which is cached until places change, so that they may run
+ * outside the JavaFX thread while the map is updated.
+ * <p>
+ * Places with coordinates are also kept in a {@link GeoIndex} to search them by area.
+ */
+final class PlaceIndex {
+  /**
+   * The indexed places and their events.
+   */
+  private final Map<Place, Entry> entries = new HashMap<>();
+  /**
+   * The locale the prefix map was built with, null if it has not been built.
+   */
+  private Locale locale;
+  /**
+   * The places whose folded address contains each key at the start of a word.
+   */
+  private final NavigableMap<String, Set<Place>> keys = new TreeMap<>();
+  /**
+   * The copy of the prefix map to run queries against, null if places changed since it was made.
+   */
+  private PlaceSearch placeSearch;
+  private final GeoIndex geoIndex = new GeoIndex();
+
+  /**
+   * An immutable copy of the places and their prefix map, to search places that have a word
+   * starting with a query, ignoring case and accents.
+   *
+   * @param locale The locale to use for case conversions.
+   * @return The current copy.
+   */
+  PlaceSearch placeSearch(@NotNull Locale locale) {
+    if (!locale.equals(this.locale))
+      this.buildKeys(locale);
+    if (this.placeSearch == null) {
+      final Map<Place, Integer> uses = new HashMap<>();
+      this.entries.forEach((place, entry) -> uses.put(place, entry.lifeEvents.size()));
+      this.placeSearch = new PlaceSearch(this.keys, uses, locale);
+    }
+    return this.placeSearch;
+  }
+
+  /**
+   * Return the places within the given box.
+   *
+   * @param box The area to search.
+   * @return The places whose coordinates are within the box.
+   */
+  List<Place> search(final @NotNull LatLonBox box) {
+    return this.geoIndex.search(box);
+  }
+
+  /**
+   * Return the places within the given distance of a point.
+   *
+   * @param center The point to search around.
+   * @param radius The maximum distance in kilometers.
+   * @return The places within the distance, the closest first.
+   */
+  List<Place> search(final @NotNull LatLon center, double radius) {
+    return this.geoIndex.search(center, radius);
+  }
+
+  /**
+   * Return the places closest to a point.
+   *
+   * @param point The point to search around.
+   * @param k     The maximum number of places to return.
+   * @return The k places closest to the point, the closest first.
+   */
+  List<Place> nearest(final @NotNull LatLon point, int k) {
+    return this.geoIndex.nearest(point, k);
+  }
+
+  /**
+   * All indexed places.
+   */
+  Set<Place> places() {
+    return Collections.unmodifiableSet(this.entries.keySet());
+  }
+
+  /**
+   * The events that use the given place.
+   *
+   * @param place A place.
+   * @return The place’s events, empty if the place is not indexed.
+   */
+  Set<LifeEvent> lifeEvents(@NotNull Place place) {
+    final Entry entry = this.entries.get(place);
+    return entry != null ? Collections.unmodifiableSet(entry.lifeEvents) : Set.of();
+  }
+
+  /**
+   * Index the place of an event that has just been added to the tree or moved.
+   * If an equal place is already indexed, the event is given the indexed instance.
+   * Does nothing if the event has no place.
+   *
+   * @param lifeEvent The event.
+   */
+  void add(@NotNull LifeEvent lifeEvent) {
+    final Place place = lifeEvent.place().orElse(null);
+    if (place == null)
+      return;
+    // The number of uses of the place changes
+    this.placeSearch = null;
+    Entry entry = this.entries.get(place);
+    if (entry == null) {
+      entry = new Entry(place);
+      this.entries.put(place, entry);
+      if (place.latLon().isPresent())
+        this.geoIndex.add(place);
+      if (this.locale != null)
+        for (final String key : keys(place, this.locale))
+          this.keys.computeIfAbsent(key, k -> new HashSet<>()).add(place);
+    } else if (entry.place != place)
+      lifeEvent.internPlace(entry.place);
+    entry.lifeEvents.add(lifeEvent);
+  }
+
+  /**
+   * Remove the place of an event that has just been removed from the tree or moved.
+   * Does nothing if the place is null.
+   *
+   * @param lifeEvent The event.
+   * @param place     The event’s place before it was moved, or its current place if it was removed.
+   */
+  void remove(@NotNull LifeEvent lifeEvent, Place place) {
+    if (place == null)
+      return;
+    final Entry entry = this.entries.get(place);
+    if (entry == null || !entry.lifeEvents.remove(lifeEvent))
+      return;
+    this.placeSearch = null;
+    if (!entry.lifeEvents.isEmpty())
+      return;
+    this.entries.remove(place);
+    if (place.latLon().isPresent())
+      this.geoIndex.remove(place);
+    if (this.locale != null)
+      for (final String key : keys(place, this.locale)) {
+        final Set<Place> places = this.keys.get(key);
+        if (places != null) {
+          places.remove(place);
+          if (places.isEmpty())
+            this.keys.remove(key);
+        }
+      }
+  }
+
+  private void buildKeys(@NotNull Locale locale) {
+    this.locale = locale;
+    this.placeSearch = null;
+    this.keys.clear();
+    for (final Place place : this.entries.keySet())
+      for (final String key : keys(place, locale))
+        this.keys.computeIfAbsent(key, k -> new HashSet<>()).add(place);
+  }
+
+  /**
+   * The suffixes of the folded address of a place that start at the beginning of a word.
+   *
+   * @param place  A place.
+   * @param locale The locale to use for case conversions.
+   * @return The place’s keys.
+   */
+  static Set<String> keys(final @NotNull Place place, @NotNull Locale locale) {
+    final String address = NameIndex.fold(place.address(), locale);
+    final Set<String> keys = new HashSet<>();
+    for (int i = 0; i < address.length(); i++)
+      if (Character.isLetterOrDigit(address.charAt(i))
+          && (i == 0 || !Character.isLetterOrDigit(address.charAt(i - 1))))
+        keys.add(address.substring(i));
+    return keys;
+  }
+
+  /**
+   * An indexed place.
+   */
+  private static final class Entry {
+    /**
+     * The instance shared by all events of this place.
+     */
+    private final Place place;
+    private final Set<LifeEvent> lifeEvents = new HashSet<>();
+
+    private Entry(@NotNull Place place) {
+      this.place = place;
+    }
+  }
+}
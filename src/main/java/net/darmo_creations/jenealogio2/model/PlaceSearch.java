@@ -0,0 +1,77 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the places of a {@link FamilyTree} and of their prefix index,
+ * as returned by {@link FamilyTree#placeSearch(Locale)}.
+ * <p>
+ * Unlike the tree, it may be searched outside the JavaFX thread, e.g. by auto-completion tasks.
+ * It is not updated when the tree’s places change, a new one has to be requested from the tree.
+ */
+public final class PlaceSearch {
+  private final Locale locale;
+  /**
+   * The sorted keys of the prefix index.
+   */
+  private final String[] keys;
+  /**
+   * The places whose folded address contains each key at the start of a word, in the same order as {@link #keys}.
+   */
+  private final Place[][] places;
+  /**
+   * All places, the most used ones first, then sorted by address.
+   */
+  private final List<Place> rankedPlaces;
+  /**
+   * The index of each place in {@link #rankedPlaces}.
+   */
+  private final Map<Place, Integer> ranks = new HashMap<>();
+
+  /**
+   * Copy the given prefix index.
+   *
+   * @param keys   The places whose folded address contains each key at the start of a word.
+   * @param uses   The number of events of each place.
+   * @param locale The locale the keys were built with.
+   */
+  PlaceSearch(
+      final @NotNull SortedMap<String, Set<Place>> keys,
+      final @NotNull Map<Place, Integer> uses,
+      @NotNull Locale locale
+  ) {
+    this.locale = locale;
+    this.keys = keys.keySet().toArray(String[]::new);
+    this.places = keys.values().stream().map(places -> places.toArray(Place[]::new)).toArray(Place[][]::new);
+    this.rankedPlaces = uses.keySet().stream()
+        .sorted(Comparator.<Place>comparingInt(uses::get).reversed().thenComparing(Place::address))
+        .toList();
+    for (int i = 0; i < this.rankedPlaces.size(); i++)
+      this.ranks.put(this.rankedPlaces.get(i), i);
+  }
+
+  /**
+   * Return the places that have a word starting with the given query, ignoring case and accents.
+   *
+   * @param query The query. May span several words.
+   * @param limit The maximum number of places to return.
+   * @return The matching places, the most used ones first, then sorted by address. All places if the query is blank.
+   */
+  public List<Place> search(@NotNull String query, int limit) {
+    final String prefix = NameIndex.fold(query.strip(), this.locale);
+    if (prefix.isEmpty())
+      return this.rankedPlaces.subList(0, Math.min(limit, this.rankedPlaces.size()));
+    final Set<Place> matches = new HashSet<>();
+    int i = Arrays.binarySearch(this.keys, prefix);
+    if (i < 0)
+      i = -i - 1;
+    for (; i < this.keys.length && this.keys[i].startsWith(prefix); i++)
+      Collections.addAll(matches, this.places[i]);
+    return matches.stream()
+        .sorted(Comparator.comparingInt(this.ranks::get))
+        .limit(limit)
+        .toList();
+  }
+}
@@ -0,0 +1,81 @@
+package net.darmo_creations.jenealogio2.model;
+
+import javafx.scene.image.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An immutable copy of user-defined {@link Gender} and {@link LifeEventType} registry entries at a given time,
+ * as found in a {@link FamilyTreeSnapshot}.
+ *
+ * @param genders        The copied genders.
+ * @param lifeEventTypes The copied life event types.
+ */
+public record RegistriesSnapshot(
+    @NotNull @Unmodifiable List<GenderEntry> genders,
+    @NotNull @Unmodifiable List<LifeEventTypeEntry> lifeEventTypes
+) {
+  /**
+   * Copy the current state of the given entries.
+   *
+   * @param genders        The genders to copy.
+   * @param lifeEventTypes The life event types to copy.
+   * @return The snapshot.
+   */
+  public static RegistriesSnapshot of(
+      final @NotNull Collection<Gender> genders,
+      final @NotNull Collection<LifeEventType> lifeEventTypes
+  ) {
+    return new RegistriesSnapshot(
+        genders.stream().map(GenderEntry::of).toList(),
+        lifeEventTypes.stream().map(LifeEventTypeEntry::of).toList()
+    );
+  }
+
+  /**
+   * The state of a user-defined {@link Gender}.
+   *
+   * @param key  The gender’s key.
+   * @param name The gender’s user-defined name.
+   * @param icon The gender’s icon. Icons are never modified, only replaced.
+   */
+  public record GenderEntry(@NotNull RegistryEntryKey key, @NotNull String name, @NotNull Image icon) {
+    private static GenderEntry of(final @NotNull Gender gender) {
+      return new GenderEntry(gender.key(), Objects.requireNonNull(gender.userDefinedName()), gender.icon());
+    }
+  }
+
+  /**
+   * The state of a user-defined {@link LifeEventType}.
+   *
+   * @param key            The type’s key.
+   * @param name           The type’s user-defined name.
+   * @param group          The type’s group.
+   * @param indicatesDeath Whether the type indicates a death.
+   * @param indicatesUnion Whether the type indicates a union.
+   * @param minActors      The minimum number of actors of the type.
+   * @param unique         Whether the type is unique.
+   */
+  public record LifeEventTypeEntry(
+      @NotNull RegistryEntryKey key,
+      @NotNull String name,
+      @NotNull LifeEventType.Group group,
+      boolean indicatesDeath,
+      boolean indicatesUnion,
+      int minActors,
+      boolean unique
+  ) {
+    private static LifeEventTypeEntry of(final @NotNull LifeEventType type) {
+      return new LifeEventTypeEntry(
+          type.key(),
+          Objects.requireNonNull(type.userDefinedName()),
+          type.group(),
+          type.indicatesDeath(),
+          type.indicatesUnion(),
+          type.minActors(),
+          type.isUnique()
+      );
+    }
+  }
+}
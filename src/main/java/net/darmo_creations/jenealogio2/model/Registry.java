@@ -20,6 +20,10 @@ public abstract class Registry<E extends RegistryEntry, A> {
   private final String name;
   private final Map<RegistryEntryKey, E> entries = new HashMap<>();
   private final EntryFactory<E, A> entryFactory;
+  /**
+   * The tree this registry belongs to, null while builtin entries are being registered.
+   */
+  private FamilyTree familyTree;
 
   /**
    * Create a new registry.
@@ -114,6 +118,10 @@ public abstract class Registry<E extends RegistryEntry, A> {
       throw new IllegalArgumentException("label is empty for non-builtin key '%s'".formatted(key));
     final E entry = this.entryFactory.apply(key, label, args);
     this.entries.put(key, entry);
+    if (!key.isBuiltin()) {
+      entry.setRegistry(this);
+      this.recordEdit(() -> this.entries.remove(key), () -> this.entries.put(key, entry));
+    }
     return entry;
   }
 
@@ -121,12 +129,47 @@ public abstract class Registry<E extends RegistryEntry, A> {
    * Delete the given entry.
    *
    * @param entry Entry to delete.
-   * @throws IllegalArgumentException If the entry is in {@link #BUILTIN_NS}.
+   * @throws IllegalArgumentException If the entry is in {@link #BUILTIN_NS} or is still in use.
    */
   public void removeEntry(E entry) {
     if (entry.isBuiltin())
       throw new IllegalArgumentException("cannot delete builtin entry '%s'".formatted(entry.key()));
-    this.entries.remove(entry.key());
+    if (entry.usage() != 0)
+      throw new IllegalArgumentException("cannot delete entry '%s' as it is in use".formatted(entry.key()));
+    if (this.entries.remove(entry.key()) != null)
+      this.recordEdit(() -> this.entries.put(entry.key(), entry), () -> this.entries.remove(entry.key()));
+  }
+
+  /**
+   * Set the tree this registry belongs to.
+   *
+   * @param familyTree The tree.
+   */
+  void setFamilyTree(@NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Record a change of this registry or of one of its entries in the history of the tree it belongs to.
+   * Undoing or redoing the change notifies the tree’s listeners that registries have changed.
+   *
+   * @param undo The action that reverts the change.
+   * @param redo The action that applies the change again.
+   */
+  void recordEdit(@NotNull Runnable undo, @NotNull Runnable redo) {
+    if (this.familyTree == null)
+      return;
+    final FamilyTree familyTree = this.familyTree;
+    familyTree.history().record(
+        () -> {
+          undo.run();
+          familyTree.fireChange(new FamilyTreeChange.RegistriesChanged());
+        },
+        () -> {
+          redo.run();
+          familyTree.fireChange(new FamilyTreeChange.RegistriesChanged());
+        }
+    );
   }
 
   /**
@@ -3,6 +3,7 @@ package net.darmo_creations.jenealogio2.model;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.function.*;
 
 /**
  * A registry entry has an internal unique key in a {@link Registry}.
@@ -10,6 +11,14 @@ import java.util.*;
 public abstract class RegistryEntry {
   private final RegistryEntryKey key;
   private String userDefinedName;
+  /**
+   * Members of the {@link FamilyTree} that use this entry.
+   */
+  private Set<GenealogyObject<?>> users = Collections.emptySet();
+  /**
+   * The registry this entry is registered in, null for builtin entries.
+   */
+  private Registry<?, ?> registry;
 
   protected RegistryEntry(@NotNull RegistryEntryKey key, String userDefinedName) {
     this.key = Objects.requireNonNull(key);
@@ -41,7 +50,9 @@ public abstract class RegistryEntry {
    */
   public void setUserDefinedName(@NotNull String userDefinedName) {
     this.ensureNotBuiltin("userDefinedName");
+    final String previous = this.userDefinedName;
     this.userDefinedName = Objects.requireNonNull(userDefinedName);
+    this.recordChange(previous, userDefinedName, this::setUserDefinedName);
   }
 
   /**
@@ -53,6 +64,86 @@ public abstract class RegistryEntry {
     return this.key.isBuiltin();
   }
 
+  /**
+   * The number of objects of the {@link FamilyTree} that use this entry.
+   */
+  public int usage() {
+    return this.users.size();
+  }
+
+  /**
+   * The objects of the {@link FamilyTree} that use this entry.
+   *
+   * @return An unmodifiable view of the internal set.
+   */
+  @UnmodifiableView
+  public Set<GenealogyObject<?>> users() {
+    return Collections.unmodifiableSet(this.users);
+  }
+
+  /**
+   * Indicate whether the given object is registered as a user of this entry.
+   *
+   * @param object The object to check.
+   */
+  boolean isUsedBy(@NotNull GenealogyObject<?> object) {
+    return this.users.contains(object);
+  }
+
+  /**
+   * Register an object of the {@link FamilyTree} as a user of this entry.
+   *
+   * @param object The object that uses this entry.
+   */
+  void addUser(@NotNull GenealogyObject<?> object) {
+    this.users = CompactSet.add(this.users, object);
+  }
+
+  /**
+   * Unregister an object as a user of this entry.
+   *
+   * @param object The object that no longer uses this entry.
+   */
+  void removeUser(@NotNull GenealogyObject<?> object) {
+    this.users.remove(object);
+  }
+
+  /**
+   * Set the registry this entry is registered in.
+   *
+   * @param registry The registry.
+   */
+  void setRegistry(@NotNull Registry<?, ?> registry) {
+    this.registry = Objects.requireNonNull(registry);
+  }
+
+  /**
+   * Record a change of a property of this entry in the history of the {@link FamilyTree}
+   * whose registry this entry is registered in, if any.
+   * Does nothing if both values are equal.
+   *
+   * @param oldValue The previous value.
+   * @param newValue The new value.
+   * @param setter   A function that sets the property’s value.
+   * @param <V>      Type of the property’s values.
+   */
+  protected <V> void recordChange(V oldValue, V newValue, @NotNull Consumer<V> setter) {
+    if (!Objects.equals(oldValue, newValue))
+      this.recordEdit(() -> setter.accept(oldValue), () -> setter.accept(newValue));
+  }
+
+  /**
+   * Record a change of this entry in the history of the {@link FamilyTree}
+   * whose registry this entry is registered in, if any.
+   *
+   * @param undo The action that reverts the change.
+   * @param redo The action that applies the change again.
+   */
+  protected void recordEdit(@NotNull Runnable undo, @NotNull Runnable redo) {
+    if (this.registry != null)
+      this.registry.recordEdit(undo, redo);
+  }
+
   protected void ensureNotBuiltin(@NotNull String property) {
     if (this.isBuiltin())
       throw new UnsupportedOperationException("Cannot modify property %s of builtin regitry entry.".formatted(property));
@@ -0,0 +1,240 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A kinship path between two persons of a {@link FamilyTree},
+ * as returned by {@link FamilyTree#findRelationships(Person, Person, Set, boolean)}.
+ * <p>
+ * The path is read from the first person to the last one: the nth step describes
+ * how the (n+1)th person relates to the nth one.
+ *
+ * @param persons The persons along the path, starting with the first queried person and ending with the second one.
+ * @param steps   The steps between consecutive persons. Always contains one less element than {@code persons}.
+ */
+public record Relationship(@NotNull @Unmodifiable List<Person> persons, @NotNull @Unmodifiable List<Step> steps) {
+  public Relationship {
+    Objects.requireNonNull(persons);
+    Objects.requireNonNull(steps);
+    if (persons.isEmpty() || steps.size() != persons.size() - 1)
+      throw new IllegalArgumentException("Expected %d steps, got %d".formatted(persons.size() - 1, steps.size()));
+    persons = List.copyOf(persons);
+    steps = List.copyOf(steps);
+  }
+
+  /**
+   * The person this relationship starts from.
+   */
+  public Person from() {
+    return this.persons.get(0);
+  }
+
+  /**
+   * The person this relationship leads to.
+   */
+  public Person to() {
+    return this.persons.get(this.persons.size() - 1);
+  }
+
+  /**
+   * Return the name of this relationship in the given language,
+   * i.e. what the last person is to the first one (e.g. “second cousin once removed”).
+   * <p>
+   * The path is split into blood segments (a number of generations up followed by a number of generations down)
+   * and unions. Common combinations are given their usual names (in-laws, step-relatives, etc.),
+   * other ones are described as a chain of simpler relationships.
+   *
+   * @param language The language to use.
+   * @return The relationship’s name.
+   */
+  public String name(final @NotNull Language language) {
+    if (this.steps.isEmpty())
+      return language.translate("relationship.self");
+    final List<Segment> segments = this.segments();
+    final Optional<String> compound = compoundName(segments, language);
+    if (compound.isPresent())
+      return compound.get();
+    String name = null;
+    for (final Segment segment : segments) {
+      final String segmentName = segment.name(language);
+      name = name == null
+          ? segmentName
+          : language.translate("relationship.chain",
+          new FormatArg("owner", name), new FormatArg("relationship", segmentName));
+    }
+    return name;
+  }
+
+  /**
+   * Split the steps of this path into segments.
+   * A new segment starts after each union and whenever the path goes up again after having gone down.
+   */
+  private List<Segment> segments() {
+    final List<Segment> segments = new LinkedList<>();
+    int up = 0, down = 0;
+    boolean genetic = true;
+    ParentalRelationType lastType = null;
+    for (final Step step : this.steps) {
+      switch (step.kind()) {
+        case PARTNER -> {
+          if (up + down != 0)
+            segments.add(new Segment(up, down, genetic, lastType));
+          segments.add(Segment.UNION);
+          up = down = 0;
+          genetic = true;
+        }
+        case PARENT -> {
+          if (down != 0) {
+            segments.add(new Segment(up, down, genetic, lastType));
+            up = down = 0;
+            genetic = true;
+          }
+          up++;
+        }
+        case CHILD -> down++;
+      }
+      if (step.kind() != Step.Kind.PARTNER) {
+        genetic &= step.relationType().geneticRelation();
+        lastType = step.relationType();
+      }
+    }
+    if (up + down != 0)
+      segments.add(new Segment(up, down, genetic, lastType));
+    return segments;
+  }
+
+  /**
+   * Return the usual name of short paths that mix unions and blood relations.
+   */
+  private static Optional<String> compoundName(final @NotNull List<Segment> segments, final @NotNull Language language) {
+    final String key;
+    if (segments.size() == 2 && segments.get(0) == Segment.UNION) {
+      final Segment s = segments.get(1);
+      if (s.is(1, 0)) key = "parent_in_law";
+      else if (s.is(1, 1)) key = "sibling_in_law";
+      else if (s.is(0, 1)) key = "stepchild";
+      else key = null;
+    } else if (segments.size() == 2 && segments.get(1) == Segment.UNION) {
+      final Segment s = segments.get(0);
+      if (s.is(1, 0)) key = "stepparent";
+      else if (s.is(1, 1)) key = "sibling_in_law";
+      else if (s.is(0, 1)) key = "child_in_law";
+      else key = null;
+    } else if (segments.size() == 3 && segments.get(1) == Segment.UNION
+        && segments.get(0).is(1, 0) && segments.get(2).is(0, 1)) {
+      key = "stepsibling";
+    } else if (segments.size() == 2 && segments.get(0).is(0, 1) && segments.get(1).is(1, 0)) {
+      key = "coparent";
+    } else {
+      key = null;
+    }
+    return Optional.ofNullable(key).map(k -> language.translate("relationship." + k));
+  }
+
+  /**
+   * A step along a relationship path.
+   *
+   * @param kind         How the next person relates to the current one.
+   * @param relationType The parental relation between both persons. Null for {@link Kind#PARTNER} steps.
+   */
+  public record Step(@NotNull Kind kind, ParentalRelationType relationType) {
+    public Step {
+      Objects.requireNonNull(kind);
+      if ((kind == Kind.PARTNER) != (relationType == null))
+        throw new IllegalArgumentException("Only partner steps must not have a relation type");
+    }
+
+    public enum Kind {
+      /**
+       * The next person is a parent of the current one.
+       */
+      PARENT,
+      /**
+       * The next person is a child of the current one.
+       */
+      CHILD,
+      /**
+       * The next person is in a union with the current one.
+       */
+      PARTNER,
+    }
+  }
+
+  /**
+   * A part of a relationship path that goes up a number of generations then down another number,
+   * or a single union.
+   *
+   * @param up       Number of generations up.
+   * @param down     Number of generations down.
+   * @param genetic  Whether all steps of this segment are genetic relations.
+   * @param lastType The type of the last parental relation of this segment.
+   */
+  private record Segment(int up, int down, boolean genetic, ParentalRelationType lastType) {
+    static final Segment UNION = new Segment(0, 0, true, null);
+
+    boolean is(int up, int down) {
+      return this != UNION && this.up == up && this.down == down;
+    }
+
+    String name(final @NotNull Language language) {
+      if (this == UNION)
+        return language.translate("relationship.partner");
+      // Direct non-genetic relations have their own names (godparent, adoptive child, etc.)
+      if (!this.genetic && this.up + this.down == 1)
+        return language.translate("relationship.%s.%s".formatted(
+            this.up == 1 ? "parent" : "child", this.lastType.name().toLowerCase()));
+      final String name;
+      if (this.down == 0)
+        name = generational(language, "ancestor", this.up, 2);
+      else if (this.up == 0)
+        name = generational(language, "descendant", this.down, 2);
+      else if (this.up == 1 && this.down == 1)
+        name = language.translate("relationship.sibling");
+      else if (this.down == 1)
+        name = generational(language, "pibling", this.up - 1, 2);
+      else if (this.up == 1)
+        name = generational(language, "nibling", this.down - 1, 2);
+      else {
+        final String cousin = generational(language, "cousin", Math.min(this.up, this.down) - 1, 0);
+        final int removed = Math.abs(this.up - this.down);
+        name = removed == 0 ? cousin : generational(language, "cousin_removed", removed, 0,
+            new FormatArg("relationship", cousin));
+      }
+      if (!this.genetic)
+        return language.translate("relationship.non_genetic", new FormatArg("relationship", name));
+      return name;
+    }
+
+    /**
+     * Translate a relationship whose name depends on a number of generations.
+     * If a key exists for the specific number, it is used, otherwise the generic {@code .n} key is formatted
+     * with the number as {@code generations} and the number minus the given offset as {@code n}.
+     *
+     * @param language    The language to use.
+     * @param base        The base translation key, without the {@code relationship.} prefix.
+     * @param generations The number of generations.
+     * @param offset      The value to substract from the number of generations for the generic key.
+     * @param formatArgs  Additional format arguments.
+     * @return The translated text.
+     */
+    private static String generational(
+        final @NotNull Language language,
+        @NotNull String base,
+        int generations,
+        int offset,
+        final @NotNull FormatArg... formatArgs
+    ) {
+      final String key = "relationship.%s.%d".formatted(base, generations);
+      if (language.hasKey(key))
+        return language.translate(key, formatArgs);
+      final FormatArg[] args = Arrays.copyOf(formatArgs, formatArgs.length + 2);
+      args[formatArgs.length] = new FormatArg("n", generations - offset);
+      args[formatArgs.length + 1] = new FormatArg("generations", generations);
+      return language.translate("relationship.%s.n".formatted(base), args);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Finds the shortest kinship paths between two members of a {@link FamilyTree}.
+ * <p>
+ * The search is a bidirectional breadth-first search over parent/child links of the requested
+ * {@link ParentalRelationType}s and, optionally, unions (life events whose type indicates a union).
+ * The search runs over the tree’s {@link FamilyGraph} snapshot. Visited sets are bitmaps and distances are arrays,
+ * all indexed by the snapshot’s person indices, which keeps queries fast on large trees.
+ */
+final class RelationshipFinder {
+  /**
+   * Maximum number of paths returned by a single query.
+   */
+  static final int MAX_PATHS = 32;
+
+  private final FamilyTree familyTree;
+  // Reused between queries, only valid for persons whose bit is set in the corresponding visited bitmap
+  private int[] distances1 = new int[0];
+  private int[] distances2 = new int[0];
+
+  /**
+   * Create a new relationship finder for the given tree.
+   *
+   * @param familyTree The tree to search.
+   */
+  RelationshipFinder(@NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Find the shortest paths between two persons.
+   *
+   * @param person1      The first person.
+   * @param person2      The second person.
+   * @param mask         Mask of the parental relation types to follow (see {@link FamilyGraph#mask(Collection)}).
+   * @param followUnions Whether unions should be followed.
+   * @return The shortest paths from the first to the second person, at most {@link #MAX_PATHS}.
+   * Empty if the persons are not related.
+   */
+  List<Relationship> find(@NotNull Person person1, @NotNull Person person2, int mask, boolean followUnions) {
+    if (person1 == person2)
+      return List.of(new Relationship(List.of(person1), List.of()));
+
+    final FamilyGraph graph = this.familyTree.graph();
+    final int capacity = graph.size();
+    if (this.distances1.length < capacity) {
+      this.distances1 = new int[capacity];
+      this.distances2 = new int[capacity];
+    }
+    final long[] visited1 = new long[(capacity + 63) >>> 6];
+    final long[] visited2 = new long[(capacity + 63) >>> 6];
+    final Side side1 = new Side(visited1, this.distances1, graph.indexOf(person1));
+    final Side side2 = new Side(visited2, this.distances2, graph.indexOf(person2));
+
+    // Meeting edges (from side 1 to side 2) of the shortest paths
+    final List<int[]> meetings = new ArrayList<>();
+    int best = Integer.MAX_VALUE;
+    while (best == Integer.MAX_VALUE && side1.size > 0 && side2.size > 0) {
+      final boolean expandFirst = side1.size <= side2.size;
+      final Side side = expandFirst ? side1 : side2;
+      final Side other = expandFirst ? side2 : side1;
+      final int[] frontier = Arrays.copyOf(side.frontier, side.size);
+      side.size = 0;
+      for (final int u : frontier) {
+        final int du = side.distances[u];
+        forEachNeighbor(graph, u, mask, followUnions, v -> {
+          if (isSet(other.visited, v)) {
+            final int length = du + 1 + other.distances[v];
+            meetings.add(expandFirst
+                ? new int[] {u, v, length}
+                : new int[] {v, u, length});
+          }
+          if (!isSet(side.visited, v)) {
+            set(side.visited, v);
+            side.distances[v] = du + 1;
+            side.push(v);
+          }
+        });
+      }
+      for (final int[] meeting : meetings)
+        best = Math.min(best, meeting[2]);
+    }
+    if (best == Integer.MAX_VALUE)
+      return List.of();
+
+    final List<Relationship> relationships = new LinkedList<>();
+    final Set<List<Person>> seen = new HashSet<>();
+    for (final int[] meeting : meetings) {
+      if (meeting[2] != best)
+        continue;
+      for (final List<Person> head : halfPaths(graph, side1, meeting[0], mask, followUnions))
+        for (final List<Person> tail : halfPaths(graph, side2, meeting[1], mask, followUnions)) {
+          final List<Person> reversedTail = new ArrayList<>(tail);
+          Collections.reverse(reversedTail);
+          final List<Person> path = new ArrayList<>(head);
+          path.addAll(reversedTail);
+          if (seen.add(path))
+            relationships.add(toRelationship(path));
+          if (relationships.size() == MAX_PATHS)
+            return relationships;
+        }
+    }
+    return relationships;
+  }
+
+  /**
+   * Return all shortest paths from a side’s start person to the given person, in that order.
+   */
+  private static List<List<Person>> halfPaths(
+      final @NotNull FamilyGraph graph,
+      @NotNull Side side,
+      int index,
+      int mask,
+      boolean followUnions
+  ) {
+    final List<List<Person>> paths = new LinkedList<>();
+    final LinkedList<Person> path = new LinkedList<>();
+    collectHalfPaths(graph, side, index, mask, followUnions, path, paths);
+    return paths;
+  }
+
+  private static void collectHalfPaths(
+      final @NotNull FamilyGraph graph,
+      @NotNull Side side,
+      int index,
+      int mask,
+      boolean followUnions,
+      @NotNull LinkedList<Person> path,
+      @NotNull List<List<Person>> paths
+  ) {
+    path.addFirst(graph.person(index));
+    if (index == side.start)
+      paths.add(new ArrayList<>(path));
+    else {
+      final int distance = side.distances[index];
+      // Links are symmetric, predecessors are neighbors one step closer to the start
+      forEachNeighbor(graph, index, mask, followUnions, i -> {
+        if (paths.size() < MAX_PATHS && isSet(side.visited, i) && side.distances[i] == distance - 1)
+          collectHalfPaths(graph, side, i, mask, followUnions, path, paths);
+      });
+    }
+    path.removeFirst();
+  }
+
+  private static Relationship toRelationship(final @NotNull List<Person> path) {
+    final List<Relationship.Step> steps = new ArrayList<>(path.size() - 1);
+    for (int i = 0; i < path.size() - 1; i++) {
+      final Person current = path.get(i);
+      final Person next = path.get(i + 1);
+      final var parentType = current.getParentType(next);
+      if (parentType.isPresent())
+        steps.add(new Relationship.Step(Relationship.Step.Kind.PARENT, parentType.get()));
+      else {
+        final var childType = next.getParentType(current);
+        if (childType.isPresent())
+          steps.add(new Relationship.Step(Relationship.Step.Kind.CHILD, childType.get()));
+        else
+          steps.add(new Relationship.Step(Relationship.Step.Kind.PARTNER, null));
+      }
+    }
+    return new Relationship(path, steps);
+  }
+
+  private static void forEachNeighbor(
+      final @NotNull FamilyGraph graph,
+      int index,
+      int mask,
+      boolean followUnions,
+      @NotNull IntConsumer action
+  ) {
+    graph.forEachParent(index, mask, action);
+    graph.forEachChild(index, mask, action);
+    if (followUnions)
+      graph.forEachPartner(index, action);
+  }
+
+  private static boolean isSet(final long @NotNull [] bitmap, int index) {
+    return (bitmap[index >>> 6] & 1L << index) != 0;
+  }
+
+  private static void set(long @NotNull [] bitmap, int index) {
+    bitmap[index >>> 6] |= 1L << index;
+  }
+
+  /**
+   * The state of one of the two searches.
+   */
+  private static final class Side {
+    final long[] visited;
+    final int[] distances;
+    final int start;
+    int[] frontier = new int[16];
+    int size;
+
+    Side(long @NotNull [] visited, int @NotNull [] distances, int start) {
+      this.visited = visited;
+      this.distances = distances;
+      this.start = start;
+      set(visited, start);
+      distances[start] = 0;
+      this.push(start);
+    }
+
+    void push(int index) {
+      if (this.size == this.frontier.length)
+        this.frontier = Arrays.copyOf(this.frontier, this.size * 2);
+      this.frontier[this.size++] = index;
+    }
+  }
+}
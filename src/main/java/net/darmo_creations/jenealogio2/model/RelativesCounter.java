@@ -0,0 +1,315 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Keeps the numbers of distinct known ancestors and descendants of the members of a {@link FamilyTree}
+ * up to date as parents are added and removed.
+ * <p>
+ * Counts are initially loaded from a {@link RelativesCounts} computed on the whole tree.
+ * When a genetic link between a child and a parent changes, only two sets of counts are affected:
+ * the ancestors counts of the child and its descendants, which gain or lose some of the parent and its ancestors,
+ * and the descendants counts of the parent and its ancestors, which gain or lose some of the child
+ * and its descendants. For each person of the first set, the persons of the second set that it reaches
+ * without the changed link are found with a single pass over its ancestors, as bit sets;
+ * the other ones are those it gains or loses. Both sets of counts are patched from these bit sets.
+ */
+final class RelativesCounter {
+  private final FamilyTree familyTree;
+  /**
+   * Counts indexed by person index, null if they have not been loaded.
+   */
+  private int[] ancestorsCounts;
+  private int[] descendantsCounts;
+  /**
+   * Positions of persons in the part of the tree being recounted, -1 for other persons.
+   */
+  private int[] localIndices = new int[0];
+
+  /**
+   * Create a new counter for the given tree.
+   *
+   * @param familyTree The tree to count relatives in.
+   */
+  RelativesCounter(@NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Indicate whether counts have been loaded.
+   */
+  boolean isLoaded() {
+    return this.ancestorsCounts != null;
+  }
+
+  /**
+   * Load counts computed on the whole tree.
+   *
+   * @param counts The counts to load. Their graph must be up to date with the tree.
+   */
+  void load(final @NotNull RelativesCounts counts) {
+    final int capacity = this.familyTree.personIndexCapacity();
+    this.ancestorsCounts = new int[capacity];
+    this.descendantsCounts = new int[capacity];
+    counts.copyTo(this.ancestorsCounts, this.descendantsCounts);
+  }
+
+  /**
+   * The number of distinct known ancestors of a member of the tree.
+   *
+   * @param person A member of the tree.
+   * @return The count or an empty value if counts have not been loaded.
+   */
+  OptionalInt ancestorsCount(final @NotNull Person person) {
+    return this.get(this.ancestorsCounts, person);
+  }
+
+  /**
+   * The number of distinct known descendants of a member of the tree.
+   *
+   * @param person A member of the tree.
+   * @return The count or an empty value if counts have not been loaded.
+   */
+  OptionalInt descendantsCount(final @NotNull Person person) {
+    return this.get(this.descendantsCounts, person);
+  }
+
+  /**
+   * Update the counts after a parent has been added to a person.
+   *
+   * @param child  The person whose parent was added.
+   * @param parent The added parent.
+   * @param type   The type of the added parent.
+   */
+  void onParentAdded(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    this.onLinkChanged(child, parent, type, 1);
+  }
+
+  /**
+   * Update the counts after a parent has been removed from a person.
+   *
+   * @param child  The person whose parent was removed.
+   * @param parent The removed parent.
+   * @param type   The type of the removed parent.
+   */
+  void onParentRemoved(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    this.onLinkChanged(child, parent, type, -1);
+  }
+
+  /**
+   * Reset the counts of a person whose index is about to be released.
+   * All of its links must have already been removed.
+   *
+   * @param index The index of the removed person.
+   */
+  void onPersonRemoved(int index) {
+    if (this.isLoaded() && index < this.ancestorsCounts.length) {
+      this.ancestorsCounts[index] = 0;
+      this.descendantsCounts[index] = 0;
+    }
+  }
+
+  /**
+   * Drop all counts.
+   */
+  void invalidate() {
+    this.ancestorsCounts = null;
+    this.descendantsCounts = null;
+  }
+
+  private OptionalInt get(final int[] counts, final @NotNull Person person) {
+    if (counts == null)
+      return OptionalInt.empty();
+    final int index = this.familyTree.personIndex(person);
+    // Persons added after the counts were loaded have no relatives yet
+    return OptionalInt.of(index < counts.length ? counts[index] : 0);
+  }
+
+  /**
+   * Patch the counts affected by a genetic link.
+   *
+   * @param child  The child of the link.
+   * @param parent The parent of the link.
+   * @param type   The link’s type.
+   * @param sign   1 if the link was added, -1 if it was removed.
+   */
+  private void onLinkChanged(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type, int sign) {
+    if (!this.isLoaded() || (RelativesCounts.MASK & 1 << type.ordinal()) == 0)
+      return;
+    final int capacity = this.familyTree.personIndexCapacity();
+    if (this.ancestorsCounts.length < capacity) {
+      this.ancestorsCounts = Arrays.copyOf(this.ancestorsCounts, capacity);
+      this.descendantsCounts = Arrays.copyOf(this.descendantsCounts, capacity);
+    }
+    if (this.localIndices.length < capacity) {
+      final int oldLength = this.localIndices.length;
+      this.localIndices = Arrays.copyOf(this.localIndices, capacity);
+      Arrays.fill(this.localIndices, oldLength, capacity, -1);
+    }
+
+    // All walks ignore the changed link, whether it is still there or not
+    final Link link = new Link(child, parent, type);
+    // The parent and its ancestors, whose descendants counts may change
+    final List<Person> upper = this.closure(parent, true, link);
+    for (int i = 0; i < upper.size(); i++)
+      this.localIndices[this.familyTree.personIndex(upper.get(i))] = i;
+    // The child and its descendants, whose ancestors counts may change
+    final List<Person> lower = this.closure(child, false, link);
+    try {
+      for (final Person person : lower)
+        if (this.localIndices[this.familyTree.personIndex(person)] >= 0) {
+          // The link closes a cycle in malformed data, counts will have to be computed again
+          this.invalidate();
+          return;
+        }
+      this.patchCounts(upper, lower, link, sign);
+    } finally {
+      for (final Person person : upper)
+        this.localIndices[this.familyTree.personIndex(person)] = -1;
+    }
+  }
+
+  /**
+   * Patch the descendants counts of the upper persons and the ancestors counts of the lower persons.
+   *
+   * @param upper The parent of the link and its ancestors, with their positions in {@link #localIndices}.
+   * @param lower The child of the link and its descendants.
+   * @param link  The changed link.
+   * @param sign  1 if the link was added, -1 if it was removed.
+   */
+  private void patchCounts(
+      final @NotNull List<Person> upper,
+      final @NotNull List<Person> lower,
+      @NotNull Link link,
+      int sign
+  ) {
+    // The upper persons each person reaches without the link, including itself. Null bit sets are empty.
+    final int words = (upper.size() + 63) >>> 6;
+    final Map<Person, long[]> reachedUpper = new HashMap<>();
+    for (final Person person : this.ancestorsFirst(lower, link)) {
+      long[] bits = null;
+      final int position = this.localIndices[this.familyTree.personIndex(person)];
+      if (position >= 0) {
+        bits = new long[words];
+        bits[position >>> 6] |= 1L << position;
+      }
+      for (final Person p : this.geneticNeighbors(person, true, link)) {
+        final long[] parentBits = reachedUpper.get(p);
+        if (parentBits != null) {
+          if (bits == null)
+            bits = new long[words];
+          for (int w = 0; w < words; w++)
+            bits[w] |= parentBits[w];
+        }
+      }
+      if (bits != null)
+        reachedUpper.put(person, bits);
+    }
+
+    // A lower person gains or loses the upper persons it does not reach without the link, and conversely
+    final int[] reachingLower = new int[upper.size()];
+    for (final Person person : lower) {
+      final long[] bits = reachedUpper.get(person);
+      int reachedCount = 0;
+      if (bits != null)
+        for (int w = 0; w < words; w++) {
+          long word = bits[w];
+          reachedCount += Long.bitCount(word);
+          while (word != 0) {
+            reachingLower[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+            word &= word - 1;
+          }
+        }
+      this.ancestorsCounts[this.familyTree.personIndex(person)] += sign * (upper.size() - reachedCount);
+    }
+    for (int i = 0; i < upper.size(); i++)
+      this.descendantsCounts[this.familyTree.personIndex(upper.get(i))] += sign * (lower.size() - reachingLower[i]);
+  }
+
+  /**
+   * Get a person and all its ancestors or descendants, ignoring the given link.
+   *
+   * @param person  The person to start from.
+   * @param upwards True to walk through parents, false to walk through children.
+   * @param link    The link to ignore.
+   * @return The person followed by its ancestors or descendants.
+   */
+  private List<Person> closure(@NotNull Person person, boolean upwards, @NotNull Link link) {
+    final List<Person> persons = new ArrayList<>();
+    final Set<Person> visited = new HashSet<>();
+    visited.add(person);
+    persons.add(person);
+    for (int i = 0; i < persons.size(); i++)
+      for (final Person p : this.geneticNeighbors(persons.get(i), upwards, link))
+        if (visited.add(p))
+          persons.add(p);
+    return persons;
+  }
+
+  /**
+   * Sort the given persons and all their ancestors so that the parents of each person come before it,
+   * ignoring the given link.
+   *
+   * @param persons The persons to start from.
+   * @param link    The link to ignore.
+   * @return The persons and their ancestors in depth-first post-order.
+   */
+  private List<Person> ancestorsFirst(final @NotNull List<Person> persons, @NotNull Link link) {
+    final List<Person> order = new ArrayList<>();
+    final Set<Person> visited = new HashSet<>();
+    final Deque<Person> path = new ArrayDeque<>();
+    final Deque<Iterator<Person>> parents = new ArrayDeque<>();
+    for (final Person root : persons) {
+      if (!visited.add(root))
+        continue;
+      path.push(root);
+      parents.push(this.geneticNeighbors(root, true, link).iterator());
+      while (!path.isEmpty()) {
+        final Iterator<Person> iterator = parents.peek();
+        if (iterator.hasNext()) {
+          final Person p = iterator.next();
+          if (visited.add(p)) {
+            path.push(p);
+            parents.push(this.geneticNeighbors(p, true, link).iterator());
+          }
+        } else {
+          parents.pop();
+          order.add(path.pop());
+        }
+      }
+    }
+    return order;
+  }
+
+  /**
+   * The genetic parents or children of a person that are members of the tree, ignoring the given link.
+   *
+   * @param person  A person.
+   * @param upwards True to get the person’s parents, false to get its children.
+   * @param link    The link to ignore.
+   * @return The person’s parents or children.
+   */
+  private List<Person> geneticNeighbors(@NotNull Person person, boolean upwards, @NotNull Link link) {
+    final List<Person> neighbors = new ArrayList<>();
+    for (final var type : ParentalRelationType.GENETIC_RELATIONS)
+      for (final Person neighbor : upwards ? person.parents(type) : person.children(type))
+        if (this.familyTree.isMember(neighbor) && !link.is(upwards ? person : neighbor, upwards ? neighbor : person, type))
+          neighbors.add(neighbor);
+    return neighbors;
+  }
+
+  /**
+   * A parental link.
+   *
+   * @param child  The link’s child.
+   * @param parent The link’s parent.
+   * @param type   The link’s type.
+   */
+  private record Link(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+    boolean is(@NotNull Person child, @NotNull Person parent, @NotNull ParentalRelationType type) {
+      return this.child == child && this.parent == parent && this.type == type;
+    }
+  }
+}
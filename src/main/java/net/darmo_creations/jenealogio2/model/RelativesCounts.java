@@ -0,0 +1,216 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * The number of distinct known ancestors and descendants of each member of a {@link FamilyGraph},
+ * through the relation types in {@link ParentalRelationType#GENETIC_RELATIONS}.
+ * <p>
+ * Counts are computed by a dynamic programming pass over the graph in topological order,
+ * where the set of ancestors of a person is the union of the sets of their parents.
+ * To count distinct persons rather than paths while keeping the memory linear in the graph’s size,
+ * ancestors are split into blocks of 64 persons, the sets for each block being merged as 64-bit words.
+ * <p>
+ * Instances are immutable and can be computed outside the JavaFX thread
+ * before being passed to {@link FamilyTree#setRelativesCounts(RelativesCounts)}.
+ */
+public final class RelativesCounts {
+  /**
+   * Mask of the relation types counts are computed through.
+   */
+  static final int MASK = FamilyGraph.mask(ParentalRelationType.GENETIC_RELATIONS);
+  /**
+   * Number of persons from which blocks are computed in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 4096;
+
+  private final FamilyGraph graph;
+  private final int[] ancestorsCounts;
+  private final int[] descendantsCounts;
+
+  private RelativesCounts(
+      @NotNull FamilyGraph graph,
+      final @NotNull int[] ancestorsCounts,
+      final @NotNull int[] descendantsCounts
+  ) {
+    this.graph = graph;
+    this.ancestorsCounts = ancestorsCounts;
+    this.descendantsCounts = descendantsCounts;
+  }
+
+  /**
+   * Count the ancestors and descendants of every person of the given graph.
+   *
+   * @param graph The graph to count relatives in.
+   * @return The counts.
+   */
+  @Contract("_ -> new")
+  public static RelativesCounts compute(@NotNull FamilyGraph graph) {
+    final int n = graph.size();
+    final int[][] parents = new int[n][];
+    final int[][] children = new int[n][];
+    for (int i = 0; i < n; i++) {
+      final IntStream.Builder parentsBuilder = IntStream.builder();
+      final IntStream.Builder childrenBuilder = IntStream.builder();
+      graph.forEachParent(i, MASK, parentsBuilder);
+      graph.forEachChild(i, MASK, childrenBuilder);
+      parents[i] = parentsBuilder.build().toArray();
+      children[i] = childrenBuilder.build().toArray();
+    }
+    return new RelativesCounts(graph, countReachable(parents), countReachable(children));
+  }
+
+  /**
+   * The graph these counts were computed from.
+   */
+  public FamilyGraph graph() {
+    return this.graph;
+  }
+
+  /**
+   * The number of distinct known ancestors of a person.
+   *
+   * @param person A person of this object’s graph.
+   * @return The number of ancestors.
+   * @throws NoSuchElementException If the person is not in this object’s graph.
+   */
+  public int ancestorsCount(final @NotNull Person person) {
+    return this.ancestorsCounts[this.indexOf(person)];
+  }
+
+  /**
+   * The number of distinct known descendants of a person.
+   *
+   * @param person A person of this object’s graph.
+   * @return The number of descendants.
+   * @throws NoSuchElementException If the person is not in this object’s graph.
+   */
+  public int descendantsCount(final @NotNull Person person) {
+    return this.descendantsCounts[this.indexOf(person)];
+  }
+
+  /**
+   * Copy these counts into arrays indexed by {@link FamilyTree#personIndex(Person)}.
+   *
+   * @param ancestorsCounts   The array to copy ancestors counts into.
+   * @param descendantsCounts The array to copy descendants counts into.
+   */
+  void copyTo(@NotNull int[] ancestorsCounts, @NotNull int[] descendantsCounts) {
+    for (int i = 0; i < this.graph.size(); i++) {
+      final int index = this.graph.person(i).treeIndex();
+      ancestorsCounts[index] = this.ancestorsCounts[i];
+      descendantsCounts[index] = this.descendantsCounts[i];
+    }
+  }
+
+  private int indexOf(final @NotNull Person person) {
+    final int index = this.graph.indexOf(person);
+    if (index < 0)
+      throw new NoSuchElementException("Person %s is not in this graph".formatted(person));
+    return index;
+  }
+
+  /**
+   * Count the distinct nodes that can be reached from each node of a directed graph.
+   * Edges that close a cycle in malformed data are ignored.
+   *
+   * @param edges The targets of the edges going out of each node.
+   * @return The number of nodes reachable from each node, excluding itself.
+   */
+  static int[] countReachable(final @NotNull int[][] edges) {
+    final int n = edges.length;
+    // Sort nodes so that all targets of a node come before it
+    final int[] order = topologicalOrder(edges);
+    final int[] positions = new int[n];
+    for (int p = 0; p < n; p++)
+      positions[order[p]] = p;
+    final int[][] sortedEdges = new int[n][];
+    for (int p = 0; p < n; p++) {
+      final int node = order[p];
+      final int position = p;
+      sortedEdges[p] = Arrays.stream(edges[node])
+          .map(target -> positions[target])
+          .filter(target -> target < position)
+          .toArray();
+    }
+
+    final int blocks = (n + 63) >>> 6;
+    final int tasks = n < PARALLEL_THRESHOLD
+        ? 1
+        : Math.max(1, Math.min(blocks, ForkJoinPool.getCommonPoolParallelism()));
+    final int[] sortedCounts = IntStream.range(0, tasks)
+        .parallel()
+        .mapToObj(task -> {
+          final int[] counts = new int[n];
+          final long[] words = new long[n];
+          for (int block = task; block < blocks; block += tasks) {
+            final int start = block << 6;
+            // Nodes before the block cannot reach any node in it
+            for (int p = start; p < n; p++) {
+              long word = 0;
+              for (final int target : sortedEdges[p])
+                if (target >= start) {
+                  word |= words[target];
+                  if (target - start < 64)
+                    word |= 1L << (target - start);
+                }
+              words[p] = word;
+              counts[p] += Long.bitCount(word);
+            }
+          }
+          return counts;
+        })
+        .reduce((counts1, counts2) -> {
+          for (int p = 0; p < n; p++)
+            counts1[p] += counts2[p];
+          return counts1;
+        })
+        .orElseGet(() -> new int[n]);
+
+    final int[] counts = new int[n];
+    for (int p = 0; p < n; p++)
+      counts[order[p]] = sortedCounts[p];
+    return counts;
+  }
+
+  /**
+   * Sort the nodes of a directed graph in depth-first post-order,
+   * so that the targets of a node come before it unless the edge closes a cycle.
+   *
+   * @param edges The targets of the edges going out of each node.
+   * @return The nodes in post-order.
+   */
+  private static int[] topologicalOrder(final @NotNull int[][] edges) {
+    final int n = edges.length;
+    final int[] order = new int[n];
+    int size = 0;
+    final boolean[] visited = new boolean[n];
+    final int[] stack = new int[n];
+    final int[] nextEdge = new int[n];
+    for (int root = 0; root < n; root++) {
+      if (visited[root])
+        continue;
+      visited[root] = true;
+      int stackSize = 0;
+      stack[stackSize++] = root;
+      while (stackSize > 0) {
+        final int node = stack[stackSize - 1];
+        if (nextEdge[node] < edges[node].length) {
+          final int target = edges[node][nextEdge[node]++];
+          if (!visited[target]) {
+            visited[target] = true;
+            stack[stackSize++] = target;
+          }
+        } else {
+          stackSize--;
+          order[size++] = node;
+        }
+      }
+    }
+    return order;
+  }
+}
@@ -0,0 +1,313 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * An index of the words in the names of a {@link FamilyTree}’s members, used to search persons
+ * whose names sound like or are spelled similarly to a query.
+ * <p>
+ * Names are folded the same way as by {@link NameIndex} then split into words. Names made of several words,
+ * like “Du Pont”, are also indexed as a single word, “dupont”. Two words are similar if they have the same
+ * {@link FrenchSoundex} key or if their Levenshtein distance is small enough relative to their length.
+ * <p>
+ * Words are looked up by phonetic key in a hash map and by distance in a BK-tree, so that queries
+ * do not have to compare the query against every name.
+ * <p>
+ * The index is built on the first query then kept up to date as members are added, removed or renamed.
+ * It is rebuilt if a query uses a different locale.
+ */
+final class SimilarNameIndex {
+  private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final FamilyTree familyTree;
+  /**
+   * The locale the index was built with, null if it has not been built.
+   */
+  private Locale locale;
+  /**
+   * The distinct words of each person’s names, indexed by person index. Released indices hold null values.
+   */
+  private final List<Set<String>> words = new ArrayList<>();
+  /**
+   * The indices of the persons whose names contain a word with each phonetic key.
+   */
+  private final Map<String, Set<Integer>> phoneticKeys = new HashMap<>();
+  /**
+   * The nodes of the BK-tree, indexed by word.
+   */
+  private final Map<String, BkNode> nodes = new HashMap<>();
+  private BkNode root;
+  /**
+   * The number of nodes whose word is not used anymore by any person.
+   * Such nodes are kept to preserve the BK-tree’s structure until there are too many of them.
+   */
+  private int unusedNodes;
+
+  /**
+   * Create an empty index for the given tree.
+   *
+   * @param familyTree The tree whose members to index.
+   */
+  SimilarNameIndex(final @NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+  }
+
+  /**
+   * Return the members of the tree that have, for every word of the given query,
+   * a name that sounds like it or is spelled similarly, ignoring case and accents.
+   * If the query has several words, persons with a name similar to all words joined together also match.
+   *
+   * @param query  The query.
+   * @param locale The locale to use for case conversions.
+   * @return The matching persons.
+   */
+  Set<Person> search(@NotNull String query, @NotNull Locale locale) {
+    if (!locale.equals(this.locale))
+      this.build(locale);
+    final List<String> words = splitWords(NameIndex.fold(query, locale));
+    final Set<Person> matches = new HashSet<>();
+    if (words.isEmpty())
+      return matches;
+    Set<Integer> indices = null;
+    for (final String word : words) {
+      final Set<Integer> wordMatches = this.searchWord(word);
+      if (indices == null)
+        indices = wordMatches;
+      else
+        indices.retainAll(wordMatches);
+      if (indices.isEmpty())
+        break;
+    }
+    if (words.size() > 1)
+      indices.addAll(this.searchWord(String.join("", words)));
+    for (final int index : indices)
+      matches.add(this.familyTree.personAt(index));
+    return matches;
+  }
+
+  /**
+   * Return the indices of the persons that have a name word similar to the given one.
+   *
+   * @param word A folded word.
+   * @return The indices of the matching persons.
+   */
+  private Set<Integer> searchWord(@NotNull String word) {
+    final Set<Integer> indices = new HashSet<>(this.phoneticKeys.getOrDefault(FrenchSoundex.encode(word), Set.of()));
+    if (this.root == null)
+      return indices;
+    final int maxDistance = maxDistance(word);
+    final Deque<BkNode> stack = new ArrayDeque<>();
+    stack.push(this.root);
+    while (!stack.isEmpty()) {
+      final BkNode node = stack.pop();
+      final int distance = StringUtils.levenshteinDistance(word, node.word);
+      if (distance <= maxDistance)
+        indices.addAll(node.persons);
+      // By the triangle inequality, only the children at distance ± maxDistance may be close enough
+      for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+        final BkNode child = node.children.get(d);
+        if (child != null)
+          stack.push(child);
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * The maximum distance for a word to be similar to the given one.
+   * Short words have to be spelled exactly the same.
+   */
+  private static int maxDistance(@NotNull String word) {
+    if (word.length() <= 3)
+      return 0;
+    if (word.length() <= 7)
+      return 1;
+    return 2;
+  }
+
+  /**
+   * Index the names of a person that has just been added to the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person.
+   */
+  void add(final @NotNull Person person) {
+    if (this.locale != null)
+      this.setWords(this.familyTree.personIndex(person), nameWords(person, this.locale));
+  }
+
+  /**
+   * Remove a person that is about to be removed from the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person.
+   */
+  void remove(final @NotNull Person person) {
+    if (this.locale != null)
+      this.setWords(this.familyTree.personIndex(person), null);
+  }
+
+  /**
+   * Update the names of a member of the tree.
+   * Does nothing if the index has not been built yet.
+   *
+   * @param person The person whose names changed.
+   */
+  void update(final @NotNull Person person) {
+    this.add(person);
+  }
+
+  private void build(@NotNull Locale locale) {
+    this.locale = locale;
+    this.words.clear();
+    this.phoneticKeys.clear();
+    this.nodes.clear();
+    this.root = null;
+    this.unusedNodes = 0;
+    for (int i = 0; i < this.familyTree.personIndexCapacity(); i++) {
+      final Person person = this.familyTree.personAt(i);
+      if (person != null)
+        this.setWords(i, nameWords(person, locale));
+    }
+  }
+
+  /**
+   * Replace the name words of a person and update the phonetic keys and BK-tree accordingly.
+   *
+   * @param index The person’s index.
+   * @param words The person’s new words, null to remove the person.
+   */
+  private void setWords(int index, Set<String> words) {
+    while (this.words.size() <= index)
+      this.words.add(null);
+    final Set<String> previous = this.words.set(index, words);
+    if (Objects.equals(previous, words))
+      return;
+    if (previous != null) {
+      for (final String key : phoneticKeys(previous)) {
+        final Set<Integer> indices = this.phoneticKeys.get(key);
+        indices.remove(index);
+        if (indices.isEmpty())
+          this.phoneticKeys.remove(key);
+      }
+      for (final String word : previous) {
+        final BkNode node = this.nodes.get(word);
+        node.persons.remove(index);
+        if (node.persons.isEmpty())
+          this.unusedNodes++;
+      }
+    }
+    if (words != null) {
+      for (final String key : phoneticKeys(words))
+        this.phoneticKeys.computeIfAbsent(key, k -> new HashSet<>()).add(index);
+      for (final String word : words) {
+        BkNode node = this.nodes.get(word);
+        if (node == null)
+          node = this.insertNode(word);
+        else if (node.persons.isEmpty())
+          this.unusedNodes--;
+        node.persons.add(index);
+      }
+    }
+    if (this.unusedNodes > this.nodes.size() / 2)
+      this.rebuildBkTree();
+  }
+
+  /**
+   * Insert a new node in the BK-tree.
+   *
+   * @param word The node’s word. It must not be in the tree already.
+   * @return The new node.
+   */
+  private BkNode insertNode(@NotNull String word) {
+    final BkNode node = new BkNode(word);
+    this.nodes.put(word, node);
+    if (this.root == null) {
+      this.root = node;
+      return node;
+    }
+    BkNode parent = this.root;
+    while (true) {
+      final int distance = StringUtils.levenshteinDistance(word, parent.word);
+      final BkNode child = parent.children.get(distance);
+      if (child == null) {
+        parent.children.put(distance, node);
+        return node;
+      }
+      parent = child;
+    }
+  }
+
+  /**
+   * Rebuild the BK-tree without the nodes whose word is not used anymore.
+   */
+  private void rebuildBkTree() {
+    final List<BkNode> usedNodes = this.nodes.values().stream()
+        .filter(node -> !node.persons.isEmpty())
+        .toList();
+    this.nodes.clear();
+    this.root = null;
+    this.unusedNodes = 0;
+    for (final BkNode node : usedNodes)
+      this.insertNode(node.word).persons.addAll(node.persons);
+  }
+
+  /**
+   * The distinct words in the names of the given person.
+   *
+   * @param person The person.
+   * @param locale The locale to use for case conversions.
+   * @return The words.
+   */
+  private static Set<String> nameWords(final @NotNull Person person, @NotNull Locale locale) {
+    final Set<String> words = new HashSet<>();
+    for (final String name : NameIndex.foldNames(person, locale).split(String.valueOf(NameIndex.SEPARATOR))) {
+      final List<String> nameWords = splitWords(name);
+      words.addAll(nameWords);
+      if (nameWords.size() > 1)
+        words.add(String.join("", nameWords));
+    }
+    return words;
+  }
+
+  private static Set<String> phoneticKeys(final @NotNull Set<String> words) {
+    final Set<String> keys = new HashSet<>();
+    for (final String word : words) {
+      final String key = FrenchSoundex.encode(word);
+      if (!key.isEmpty())
+        keys.add(key);
+    }
+    return keys;
+  }
+
+  private static List<String> splitWords(@NotNull String s) {
+    final List<String> words = new ArrayList<>();
+    for (final String word : WORD_SEPARATORS.split(s))
+      if (!word.isEmpty())
+        words.add(word);
+    return words;
+  }
+
+  /**
+   * A node of the BK-tree. Each child is at a distinct Levenshtein distance from its parent’s word.
+   */
+  private static final class BkNode {
+    private final String word;
+    /**
+     * The indices of the persons whose names contain this node’s word.
+     */
+    private final Set<Integer> persons = new HashSet<>();
+    /**
+     * The children of this node, indexed by their distance to this node’s word.
+     */
+    private final Map<Integer, BkNode> children = new HashMap<>();
+
+    private BkNode(@NotNull String word) {
+      this.word = word;
+    }
+  }
+}
@@ -0,0 +1,463 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.io.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Merges the persons, life events and documents of a family tree into another one.
+ * <p>
+ * A merge is done in two steps. {@link #prepare(FamilyTree, TaskScheduler.TaskContext)} matches the persons
+ * of the merged tree to those of the target tree, using the same blocking keys and scores as {@link DuplicateFinder},
+ * and finds documents whose content is already present in the target tree. As it only works on a snapshot
+ * of the target tree, it may run outside the JavaFX thread. Once the user has reviewed the matches,
+ * {@link #apply(Map)} copies everything into the target tree in a single undoable step.
+ * <p>
+ * Data already present in the target tree is never overwritten: matched persons only get the values they lack,
+ * and life events that already exist between the same persons are skipped.
+ */
+public final class TreeMerger {
+  /**
+   * The maximum number of candidates proposed for each person.
+   */
+  private static final int MAX_CANDIDATES = 5;
+  /**
+   * Estimated memory used in the history by an edit that calls actions, in bytes.
+   */
+  private static final int EDIT_SIZE = 80;
+  /**
+   * Estimated memory used in the history by the change of a property, without its values, in bytes.
+   */
+  private static final int PROPERTY_EDIT_SIZE = 32;
+
+  private final FamilyTree target;
+  private final Locale locale;
+  private final FamilyTreeSnapshot targetSnapshot;
+  private final Map<AttachedDocument, Path> targetDocuments = new HashMap<>();
+  private FamilyTree source;
+  private final Map<AttachedDocument, AttachedDocument> duplicateDocuments = new HashMap<>();
+  private long historySize;
+
+  /**
+   * Create a merger. Must be called from the JavaFX thread.
+   *
+   * @param target The tree to merge other trees into.
+   * @param locale The locale to use for lower-case conversions of names.
+   */
+  public TreeMerger(@NotNull FamilyTree target, @NotNull Locale locale) {
+    this.target = Objects.requireNonNull(target);
+    this.locale = Objects.requireNonNull(locale);
+    this.targetSnapshot = target.snapshot();
+    for (final AttachedDocument document : target.documents())
+      this.targetDocuments.put(document, document.path());
+  }
+
+  /**
+   * Match the persons and documents of the given tree to those of the target tree.
+   *
+   * @param source  The tree to merge into the target one. It must not be edited until the merge is applied.
+   * @param context The context of the task running this method, to report progress and check for cancellation.
+   * @return The persons of the merged tree that may already be in the target tree,
+   * with their candidates sorted by decreasing score.
+   * @throws java.util.concurrent.CancellationException If the task is cancelled.
+   */
+  public synchronized List<Match> prepare(@NotNull FamilyTree source, @NotNull TaskScheduler.TaskContext context) {
+    this.source = Objects.requireNonNull(source);
+    this.duplicateDocuments.clear();
+
+    // Parents cannot be compared across trees, they are ignored
+    final Map<String, List<DuplicateFinder.Profile>> targetBlocks = new HashMap<>();
+    for (final DuplicateFinder.Profile profile : DuplicateFinder.profiles(this.targetSnapshot, this.locale).values())
+      for (final String key : DuplicateFinder.blockingKeys(profile))
+        targetBlocks.computeIfAbsent(key, k -> new ArrayList<>()).add(withoutParents(profile));
+    context.checkCancelled();
+    context.setProgress(0.1);
+
+    final List<DuplicateFinder.Profile> sourceProfiles =
+        new ArrayList<>(DuplicateFinder.profiles(source.snapshot(), this.locale).values());
+    final List<Match> matches = new ArrayList<>();
+    for (int i = 0; i < sourceProfiles.size(); i++) {
+      context.checkCancelled();
+      final DuplicateFinder.Profile profile = withoutParents(sourceProfiles.get(i));
+      final Map<Person, Double> scores = new HashMap<>();
+      for (final String key : DuplicateFinder.blockingKeys(profile))
+        for (final DuplicateFinder.Profile targetProfile : targetBlocks.getOrDefault(key, List.of()))
+          scores.computeIfAbsent(targetProfile.person(), person -> DuplicateFinder.score(profile, targetProfile));
+      final List<Candidate> candidates = scores.entrySet().stream()
+          .filter(entry -> entry.getValue() >= DuplicateFinder.DEFAULT_THRESHOLD)
+          .map(entry -> new Candidate(entry.getKey(), entry.getValue()))
+          .sorted(Comparator.comparingDouble(Candidate::score).reversed())
+          .limit(MAX_CANDIDATES)
+          .toList();
+      if (!candidates.isEmpty())
+        matches.add(new Match(profile.person(), candidates));
+      context.setProgress(0.1 + 0.6 * (i + 1) / sourceProfiles.size());
+    }
+    matches.sort((m1, m2) -> Person.lastThenFirstNamesComparator().compare(m1.person(), m2.person()));
+
+    this.findDuplicateDocuments(context);
+    this.historySize = estimateHistorySize(source);
+    return matches;
+  }
+
+  /**
+   * An upper bound of the memory the prepared merge will use in the history of the target tree, in bytes.
+   * If it is greater than the history’s budget, the merge will not be undoable and the history will be cleared.
+   *
+   * @throws IllegalStateException If this merger has not been prepared.
+   */
+  public synchronized long historySize() {
+    if (this.source == null)
+      throw new IllegalStateException("merger not prepared");
+    return this.historySize;
+  }
+
+  /**
+   * Estimate the memory used in the history by copying all the persons, life events and documents of a tree,
+   * using the same sizes as the history’s edits.
+   */
+  private static long estimateHistorySize(final @NotNull FamilyTree source) {
+    long size = EDIT_SIZE; // The step itself
+    for (final Person person : source.persons()) {
+      // Addition, then one edit per copied property
+      size += EDIT_SIZE + 12 * PROPERTY_EDIT_SIZE
+          + UndoHistory.sizeOf(person.legalFirstNames())
+          + UndoHistory.sizeOf(person.legalLastName().orElse(null))
+          + UndoHistory.sizeOf(person.publicFirstNames())
+          + UndoHistory.sizeOf(person.publicLastName().orElse(null))
+          + UndoHistory.sizeOf(person.nicknames())
+          + UndoHistory.sizeOf(person.mainOccupation().orElse(null))
+          + UndoHistory.sizeOf(person.notes().orElse(null))
+          + UndoHistory.sizeOf(person.sources().orElse(null));
+      size += EDIT_SIZE * person.parents().values().stream().mapToLong(Set::size).sum();
+    }
+    for (final LifeEvent lifeEvent : source.lifeEvents())
+      // Addition and actors, place, notes and sources, then one edit per witness
+      size += 2 * EDIT_SIZE + 3 * PROPERTY_EDIT_SIZE + EDIT_SIZE * lifeEvent.witnesses().size()
+          + UndoHistory.sizeOf(lifeEvent.notes().orElse(null))
+          + UndoHistory.sizeOf(lifeEvent.sources().orElse(null));
+    for (final AttachedDocument document : source.documents())
+      // Addition with its file operation, then one edit per author and annotation
+      size += 3 * EDIT_SIZE + UndoHistory.sizeOf(document.fileName())
+          + EDIT_SIZE * (document.authors().size() + Arrays.stream(AnnotationType.values())
+          .mapToLong(type -> document.annotatedObjects(type).size()).sum());
+    return size;
+  }
+
+  /**
+   * Find the documents of the merged tree whose content is the same as that of a document of the target tree.
+   * Only the files whose size is the same as that of a file of the other tree are hashed.
+   */
+  private void findDuplicateDocuments(@NotNull TaskScheduler.TaskContext context) {
+    final Map<Long, List<AttachedDocument>> targetBySize = new HashMap<>();
+    this.targetDocuments.forEach((document, path) -> {
+      final long size = fileSize(path);
+      if (size >= 0)
+        targetBySize.computeIfAbsent(size, s -> new ArrayList<>()).add(document);
+    });
+    final Map<AttachedDocument, String> hashes = new HashMap<>();
+    final List<AttachedDocument> sourceDocuments = new ArrayList<>(this.source.documents());
+    for (int i = 0; i < sourceDocuments.size(); i++) {
+      context.checkCancelled();
+      final AttachedDocument document = sourceDocuments.get(i);
+      final List<AttachedDocument> sameSize = targetBySize.getOrDefault(fileSize(document.path()), List.of());
+      if (!sameSize.isEmpty()) {
+        final String hash = hash(document.path());
+        for (final AttachedDocument targetDocument : sameSize) {
+          final String targetHash = hashes.computeIfAbsent(targetDocument, d -> hash(this.targetDocuments.get(d)));
+          if (hash != null && hash.equals(targetHash)) {
+            this.duplicateDocuments.put(document, targetDocument);
+            break;
+          }
+        }
+      }
+      context.setProgress(0.7 + 0.3 * (i + 1) / sourceDocuments.size());
+    }
+  }
+
+  private static long fileSize(@NotNull Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Compute the SHA-256 hash of a file.
+   *
+   * @return The hash, or null if the file could not be read.
+   */
+  private static @Nullable String hash(@NotNull Path path) {
+    try (final InputStream in = Files.newInputStream(path)) {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) > 0)
+        digest.update(buffer, 0, n);
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException e) {
+      return null;
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static DuplicateFinder.Profile withoutParents(final @NotNull DuplicateFinder.Profile profile) {
+    return new DuplicateFinder.Profile(
+        profile.person(),
+        profile.lastNames(),
+        profile.lastNameKeys(),
+        profile.firstNames(),
+        profile.gender(),
+        profile.birthYear(),
+        profile.birthPlace(),
+        Set.of()
+    );
+  }
+
+  /**
+   * Copy the prepared tree into the target tree. Must be called from the JavaFX thread,
+   * after {@link #prepare(FamilyTree, TaskScheduler.TaskContext)}.
+   * <p>
+   * The whole merge is recorded as a single step of the target tree’s history.
+   *
+   * @param matchedPersons The persons of the merged tree that are the same as persons of the target tree.
+   *                       Persons of the merged tree that are not keys of this map are added as new persons.
+   * @return A summary of the merge.
+   * @throws IllegalStateException If this merger has not been prepared.
+   */
+  public synchronized Result apply(final @NotNull Map<Person, Person> matchedPersons) {
+    if (this.source == null)
+      throw new IllegalStateException("merger not prepared");
+    this.target.history().endStep();
+    final Map<RegistryEntry, RegistryEntry> entries = new HashMap<>();
+
+    final Map<Person, Person> persons = new HashMap<>();
+    int addedPersons = 0;
+    for (final Person person : this.source.persons()) {
+      final Person match = matchedPersons.get(person);
+      if (match != null) {
+        this.fillMissingData(person, match, entries);
+        persons.put(person, match);
+      } else {
+        final Person copy = new Person();
+        this.target.addPerson(copy);
+        this.fillMissingData(person, copy, entries);
+        copy.setDisambiguationID(person.disambiguationID().orElse(null))
+            .setLifeStatus(person.lifeStatus());
+        persons.put(person, copy);
+        addedPersons++;
+      }
+    }
+
+    int skipped = 0;
+    for (final Person person : this.source.persons()) {
+      final Person child = persons.get(person);
+      for (final var entry : person.parents().entrySet()) {
+        for (final Person parent : entry.getValue()) {
+          final Person mappedParent = persons.get(parent);
+          if (child.getParentType(mappedParent).isPresent())
+            continue;
+          try {
+            child.addParent(mappedParent, entry.getKey());
+          } catch (IllegalArgumentException e) {
+            skipped++;
+          }
+        }
+      }
+    }
+
+    final Map<LifeEvent, LifeEvent> lifeEvents = new HashMap<>();
+    int addedLifeEvents = 0;
+    for (final LifeEvent lifeEvent : this.source.lifeEvents()) {
+      final LifeEventType type = this.mapEntry(lifeEvent.type(), entries);
+      final Set<Person> actors = new HashSet<>();
+      lifeEvent.actors().forEach(actor -> actors.add(persons.get(actor)));
+      // Matched persons may merge several actors into one and the type may have been mapped to a different one
+      if (actors.size() < type.minActors() || actors.size() > type.maxActors()) {
+        skipped++;
+        continue;
+      }
+      final Optional<LifeEvent> existing = actors.iterator().next().getLifeEventsAsActor().stream()
+          .filter(e -> e.type().equals(type)
+              && (type.isUnique() || e.actors().equals(actors) && e.date().equals(lifeEvent.date())))
+          .findFirst();
+      if (existing.isPresent()) {
+        lifeEvents.put(lifeEvent, existing.get());
+        continue;
+      }
+      if (type.isUnique() && actors.stream().anyMatch(
+          actor -> actor.getLifeEventsAsActor().stream().anyMatch(e -> e.type().equals(type)))) {
+        skipped++;
+        continue;
+      }
+      final LifeEvent copy = new LifeEvent(lifeEvent.date(), type)
+          .setPlace(lifeEvent.place().orElse(null));
+      copy.setNotes(lifeEvent.notes().orElse(null));
+      copy.setSources(lifeEvent.sources().orElse(null));
+      this.target.setLifeEventActors(copy, actors);
+      for (final Person witness : lifeEvent.witnesses()) {
+        final Person mappedWitness = persons.get(witness);
+        if (!actors.contains(mappedWitness))
+          this.target.addWitnessToLifeEvent(copy, mappedWitness);
+      }
+      lifeEvents.put(lifeEvent, copy);
+      addedLifeEvents++;
+    }
+
+    final Map<GenealogyObject<?>, GenealogyObject<?>> objects = new HashMap<>(persons);
+    objects.putAll(lifeEvents);
+    int addedDocuments = 0;
+    for (final AttachedDocument document : this.source.documents()) {
+      AttachedDocument copy = this.duplicateDocuments.get(document);
+      if (copy == null) {
+        copy = document instanceof Picture picture
+            ? new Picture(picture.image().orElse(null), document.path(), document.description().orElse(null),
+            document.date().orElse(null))
+            : new AttachedDocument(document.path(), document.description().orElse(null), document.date().orElse(null));
+        final String name = copy.name();
+        for (int i = 2; this.target.getDocument(copy.fileName()).isPresent(); i++)
+          copy.setName("%s (%d)".formatted(name, i));
+        this.target.addDocument(copy);
+        addedDocuments++;
+      }
+      final List<Person> authors = copy.authors();
+      for (final Person author : document.authors()) {
+        final Person mappedAuthor = persons.get(author);
+        if (!authors.contains(mappedAuthor))
+          copy.addAuthor(mappedAuthor, authors.size());
+      }
+      for (final AnnotationType annotationType : AnnotationType.values()) {
+        final var annotations = copy.annotatedObjects(annotationType);
+        for (final var entry : document.annotatedObjects(annotationType).entrySet()) {
+          final GenealogyObject<?> object = objects.get(entry.getKey());
+          if (object != null && !annotations.containsKey(object))
+            copy.annotateObject(annotationType, object, entry.getValue().orElse(null));
+        }
+      }
+      if (copy instanceof Picture picture)
+        for (final var entry : objects.entrySet())
+          if (entry.getKey().mainPicture().filter(p -> p == document).isPresent() && entry.getValue().mainPicture().isEmpty())
+            this.target.setMainPictureOfObject(picture.fileName(), entry.getValue());
+    }
+
+    this.target.history().endStep();
+    return new Result(addedPersons, persons.size() - addedPersons, addedLifeEvents, addedDocuments, skipped);
+  }
+
+  /**
+   * Copy the names, genders, occupation, notes and sources of a person of the merged tree
+   * into a person of the target tree, if that person does not have them already.
+   */
+  private void fillMissingData(
+      final @NotNull Person from,
+      @NotNull Person to,
+      final @NotNull Map<RegistryEntry, RegistryEntry> entries
+  ) {
+    if (to.legalFirstNames().isEmpty())
+      to.setLegalFirstNames(from.legalFirstNames());
+    if (to.legalLastName().isEmpty())
+      to.setLegalLastName(from.legalLastName().orElse(null));
+    if (to.publicFirstNames().isEmpty())
+      to.setPublicFirstNames(from.publicFirstNames());
+    if (to.publicLastName().isEmpty())
+      to.setPublicLastName(from.publicLastName().orElse(null));
+    if (to.nicknames().isEmpty())
+      to.setNicknames(from.nicknames());
+    if (to.assignedGenderAtBirth().isEmpty())
+      to.setAssignedGenderAtBirth(from.assignedGenderAtBirth().map(g -> this.mapEntry(g, entries)).orElse(null));
+    if (to.gender().isEmpty())
+      to.setGender(from.gender().map(g -> this.mapEntry(g, entries)).orElse(null));
+    if (to.mainOccupation().isEmpty())
+      to.setMainOccupation(from.mainOccupation().orElse(null));
+    if (to.notes().isEmpty())
+      to.setNotes(from.notes().orElse(null));
+    if (to.sources().isEmpty())
+      to.setSources(from.sources().orElse(null));
+  }
+
+  /**
+   * Get the entry of the target tree’s registries that corresponds to the given entry of the merged tree.
+   * User-defined entries are matched by key then by label. Entries without match are registered in the target tree.
+   *
+   * @param entry   An entry of the merged tree.
+   * @param entries The entries already mapped by the current merge.
+   * @return The corresponding entry of the target tree.
+   */
+  @SuppressWarnings("unchecked")
+  private <E extends RegistryEntry> E mapEntry(final @NotNull E entry, @NotNull Map<RegistryEntry, RegistryEntry> entries) {
+    final RegistryEntry mapped = entries.get(entry);
+    if (mapped != null)
+      return (E) mapped;
+    final E result;
+    if (entry instanceof Gender gender)
+      result = (E) mapEntry(gender, this.target.genderRegistry(),
+          () -> new GenderRegistry.RegistryArgs(gender.icon()));
+    else if (entry instanceof LifeEventType type)
+      result = (E) mapEntry(type, this.target.lifeEventTypeRegistry(), () -> new LifeEventTypeRegistry.RegistryArgs(
+          type.group(), type.indicatesDeath(), type.indicatesUnion(), type.minActors(), type.maxActors(), type.isUnique()));
+    else
+      throw new IllegalArgumentException("unexpected registry entry: %s".formatted(entry));
+    entries.put(entry, result);
+    return result;
+  }
+
+  private static <E extends RegistryEntry, A> E mapEntry(
+      final @NotNull E entry,
+      @NotNull Registry<E, A> registry,
+      @NotNull Supplier<A> args
+  ) {
+    final RegistryEntryKey key = entry.key();
+    if (key.isBuiltin() || registry.containsKey(key))
+      return registry.getEntry(key);
+    final String label = entry.userDefinedName();
+    final Optional<E> sameLabel = registry.entries().stream()
+        .filter(e -> !e.isBuiltin() && Objects.equals(e.userDefinedName(), label))
+        .findFirst();
+    if (sameLabel.isPresent())
+      return sameLabel.get();
+    RegistryEntryKey newKey = key;
+    for (int i = 2; registry.containsKey(newKey); i++)
+      newKey = new RegistryEntryKey(key.namespace(), key.name() + "_" + i);
+    registry.registerEntry(newKey, label, args.get());
+    return registry.getEntry(newKey);
+  }
+
+  /**
+   * A person of the merged tree that may already be in the target tree.
+   *
+   * @param person     The person of the merged tree.
+   * @param candidates The persons of the target tree that may be the same, sorted by decreasing score.
+   */
+  public record Match(@NotNull Person person, @NotNull List<Candidate> candidates) {
+  }
+
+  /**
+   * A person of the target tree that may be the same as a person of the merged tree.
+   *
+   * @param person The person of the target tree.
+   * @param score  The likelihood that both persons are the same, in [0, 1].
+   */
+  public record Candidate(@NotNull Person person, double score) {
+  }
+
+  /**
+   * A summary of a merge.
+   *
+   * @param addedPersons    The number of persons added to the target tree.
+   * @param mergedPersons   The number of persons merged into persons of the target tree.
+   * @param addedLifeEvents The number of life events added to the target tree.
+   * @param addedDocuments  The number of documents added to the target tree.
+   * @param skipped         The number of parent links and life events that could not be added
+   *                        because they conflict with the target tree.
+   */
+  public record Result(int addedPersons, int mergedPersons, int addedLifeEvents, int addedDocuments, int skipped) {
+  }
+}
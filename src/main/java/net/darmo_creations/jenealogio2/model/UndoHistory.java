@@ -0,0 +1,386 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * The history of the changes made to a {@link FamilyTree}, allowing them to be undone and redone.
+ * <p>
+ * Instead of copies of the tree, the history stores for each change only what is needed to revert it,
+ * e.g. the previous value of a property or the two ends of a removed link. Changes are recorded by the model
+ * objects themselves and are grouped into steps, each step being undone or redone at once.
+ * Successive changes of the same property of the same object within a step are merged into a single one,
+ * and changes that do not modify anything are not recorded.
+ * <p>
+ * The memory used by the steps is estimated. When it exceeds the budget, the oldest steps are dropped.
+ * If a single step exceeds the budget, recording is suspended until the step ends
+ * and the whole history is cleared, as the changes before it cannot be reverted anymore.
+ */
+public final class UndoHistory {
+  /**
+   * The default memory budget, in bytes.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 1 << 20;
+  /**
+   * Estimated size of a step without its edits, in bytes.
+   */
+  private static final int STEP_SIZE = 40;
+
+  private final Deque<Step> undoSteps = new ArrayDeque<>();
+  private final Deque<Step> redoSteps = new ArrayDeque<>();
+  private Step currentStep = new Step();
+  private long memoryUsage;
+  private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+  private boolean replaying;
+
+  /**
+   * Indicate whether there is any change to undo.
+   */
+  public boolean canUndo() {
+    return !this.currentStep.isEmpty() || !this.undoSteps.isEmpty();
+  }
+
+  /**
+   * Indicate whether there is any undone change to redo.
+   */
+  public boolean canRedo() {
+    return this.currentStep.isEmpty() && !this.redoSteps.isEmpty();
+  }
+
+  /**
+   * End the current step. All changes recorded since the previous call will be undone at once.
+   */
+  public void endStep() {
+    if (this.currentStep.overflowed)
+      this.clear();
+    else if (!this.currentStep.isEmpty()) {
+      this.undoSteps.push(this.currentStep);
+      this.currentStep = new Step();
+      this.trim();
+    }
+  }
+
+  /**
+   * Undo the last step. The current step is ended beforehand.
+   *
+   * @throws IllegalStateException If there is nothing to undo.
+   */
+  public void undo() {
+    this.endStep();
+    if (this.undoSteps.isEmpty())
+      throw new IllegalStateException("nothing to undo");
+    final Step step = this.undoSteps.pop();
+    this.memoryUsage -= step.size;
+    this.replay(() -> {
+      for (final ListIterator<Edit> it = step.edits.listIterator(step.edits.size()); it.hasPrevious(); )
+        it.previous().undo();
+    });
+    this.redoSteps.push(step);
+    this.memoryUsage += step.size;
+  }
+
+  /**
+   * Redo the last undone step.
+   *
+   * @throws IllegalStateException If there is nothing to redo.
+   */
+  public void redo() {
+    if (!this.canRedo())
+      throw new IllegalStateException("nothing to redo");
+    final Step step = this.redoSteps.pop();
+    this.memoryUsage -= step.size;
+    this.replay(() -> step.edits.forEach(Edit::redo));
+    this.undoSteps.push(step);
+    this.memoryUsage += step.size;
+  }
+
+  /**
+   * Forget all recorded changes.
+   */
+  public void clear() {
+    this.undoSteps.clear();
+    this.redoSteps.clear();
+    this.currentStep = new Step();
+    this.memoryUsage = 0;
+  }
+
+  /**
+   * The estimated memory used by the recorded changes, in bytes.
+   */
+  public long memoryUsage() {
+    return this.memoryUsage + (this.currentStep.isEmpty() ? 0 : this.currentStep.size);
+  }
+
+  /**
+   * The maximum memory the recorded changes may use, in bytes.
+   */
+  public long memoryBudget() {
+    return this.memoryBudget;
+  }
+
+  /**
+   * Set the maximum memory the recorded changes may use.
+   * The oldest steps are dropped if they do not fit in the new budget.
+   *
+   * @param memoryBudget The budget in bytes.
+   * @throws IllegalArgumentException If the budget is negative.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 0)
+      throw new IllegalArgumentException("negative memory budget: %d".formatted(memoryBudget));
+    this.memoryBudget = memoryBudget;
+    this.trim();
+  }
+
+  /**
+   * Indicate whether changes are being undone or redone.
+   * Changes made meanwhile are not recorded.
+   */
+  boolean isReplaying() {
+    return this.replaying;
+  }
+
+  /**
+   * Record a change in the current step. Undone steps are dropped.
+   * Does nothing if changes are being undone or redone.
+   *
+   * @param edit The change to record.
+   */
+  void record(@NotNull Edit edit) {
+    Objects.requireNonNull(edit);
+    if (this.replaying || this.currentStep.overflowed)
+      return;
+    if (!this.redoSteps.isEmpty()) {
+      this.redoSteps.forEach(step -> this.memoryUsage -= step.size);
+      this.redoSteps.clear();
+    }
+    final Step step = this.currentStep;
+    final Edit last = step.edits.isEmpty() ? null : step.edits.get(step.edits.size() - 1);
+    if (last != null) {
+      final int lastSize = last.size();
+      if (last.merge(edit)) {
+        step.size += last.size() - lastSize;
+        return;
+      }
+    }
+    step.edits.add(edit);
+    step.size += edit.size();
+    if (step.size > this.memoryBudget) {
+      step.edits.clear();
+      step.size = STEP_SIZE;
+      step.overflowed = true;
+    }
+  }
+
+  /**
+   * Record a change of the value of a property in the current step.
+   * Does nothing if both values are equal.
+   *
+   * @param target   The object whose property changed.
+   * @param property The name of the property.
+   * @param setter   A function that sets the property’s value.
+   * @param oldValue The previous value.
+   * @param newValue The new value.
+   * @param <O>      Type of the object.
+   * @param <V>      Type of the property’s values.
+   */
+  <O, V> void recordChange(
+      @NotNull O target,
+      @NotNull String property,
+      @NotNull BiConsumer<O, V> setter,
+      V oldValue,
+      V newValue
+  ) {
+    if (!Objects.equals(oldValue, newValue))
+      this.record(new PropertyEdit<>(target, property, setter, oldValue, newValue));
+  }
+
+  /**
+   * Record in the current step a change that is undone and redone by calling the given actions.
+   *
+   * @param undo The action that reverts the change.
+   * @param redo The action that applies the change again.
+   */
+  void record(@NotNull Runnable undo, @NotNull Runnable redo) {
+    this.record(new ActionEdit(undo, redo));
+  }
+
+  private void replay(@NotNull Runnable action) {
+    this.replaying = true;
+    try {
+      action.run();
+    } finally {
+      this.replaying = false;
+    }
+  }
+
+  /**
+   * Drop the oldest steps until the memory usage fits in the budget.
+   */
+  private void trim() {
+    // Redo steps are the furthest away from the current state, they are dropped first
+    while (this.memoryUsage() > this.memoryBudget && !this.redoSteps.isEmpty())
+      this.memoryUsage -= this.redoSteps.removeLast().size;
+    while (this.memoryUsage() > this.memoryBudget && !this.undoSteps.isEmpty())
+      this.memoryUsage -= this.undoSteps.removeLast().size;
+  }
+
+  /**
+   * Estimate the memory used by a value held by an edit, in bytes.
+   * Model objects are shared with the tree and are not counted.
+   *
+   * @param value The value.
+   * @return The estimated size.
+   */
+  static int sizeOf(Object value) {
+    if (value instanceof String s)
+      return 40 + 2 * s.length();
+    if (value instanceof Collection<?> c) {
+      int size = 16 + 8 * c.size();
+      for (final Object o : c)
+        if (o instanceof String)
+          size += sizeOf(o);
+      return size;
+    }
+    return 0;
+  }
+
+  /**
+   * A change that can be undone and redone.
+   */
+  interface Edit {
+    /**
+     * Revert the change.
+     */
+    void undo();
+
+    /**
+     * Apply the change again.
+     */
+    void redo();
+
+    /**
+     * The estimated memory used by this object, in bytes.
+     */
+    int size();
+
+    /**
+     * Merge the given edit, recorded right after this one, into this one.
+     *
+     * @param edit The following edit.
+     * @return True if the edit was merged, false otherwise.
+     */
+    default boolean merge(@NotNull Edit edit) {
+      return false;
+    }
+  }
+
+  /**
+   * An edit that is undone and redone by calling two actions.
+   *
+   * @param undoAction The action that reverts the change.
+   * @param redoAction The action that applies the change again.
+   */
+  record ActionEdit(@NotNull Runnable undoAction, @NotNull Runnable redoAction) implements Edit {
+    ActionEdit {
+      Objects.requireNonNull(undoAction);
+      Objects.requireNonNull(redoAction);
+    }
+
+    @Override
+    public void undo() {
+      this.undoAction.run();
+    }
+
+    @Override
+    public void redo() {
+      this.redoAction.run();
+    }
+
+    @Override
+    public int size() {
+      // This object and two lambdas capturing a few references
+      return 80;
+    }
+  }
+
+  /**
+   * An edit that changes the value of a property of an object.
+   * It absorbs the following changes of the same property of the same object.
+   *
+   * @param <O> Type of the object.
+   * @param <V> Type of the property’s values.
+   */
+  static final class PropertyEdit<O, V> implements Edit {
+    private final O target;
+    private final String property;
+    private final BiConsumer<O, V> setter;
+    private final V oldValue;
+    private V newValue;
+
+    /**
+     * Create an edit for a property change.
+     *
+     * @param target   The object whose property changed.
+     * @param property The name of the property.
+     * @param setter   A function that sets the property’s value.
+     * @param oldValue The previous value.
+     * @param newValue The new value.
+     */
+    PropertyEdit(
+        @NotNull O target,
+        @NotNull String property,
+        @NotNull BiConsumer<O, V> setter,
+        V oldValue,
+        V newValue
+    ) {
+      this.target = Objects.requireNonNull(target);
+      this.property = Objects.requireNonNull(property);
+      this.setter = Objects.requireNonNull(setter);
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+
+    @Override
+    public void undo() {
+      this.setter.accept(this.target, this.oldValue);
+    }
+
+    @Override
+    public void redo() {
+      this.setter.accept(this.target, this.newValue);
+    }
+
+    @Override
+    public int size() {
+      return 32 + sizeOf(this.oldValue) + sizeOf(this.newValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean merge(@NotNull Edit edit) {
+      if (!(edit instanceof PropertyEdit<?, ?> e) || e.target != this.target || !e.property.equals(this.property))
+        return false;
+      this.newValue = (V) e.newValue;
+      return true;
+    }
+  }
+
+  /**
+   * A group of edits undone and redone at once.
+   */
+  private static final class Step {
+    private final List<Edit> edits = new ArrayList<>();
+    private long size = STEP_SIZE;
+    /**
+     * Whether the step exceeded the memory budget.
+     */
+    private boolean overflowed;
+
+    private boolean isEmpty() {
+      return this.edits.isEmpty() && !this.overflowed;
+    }
+  }
+}
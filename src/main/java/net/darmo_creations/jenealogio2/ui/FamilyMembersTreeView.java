@@ -2,6 +2,7 @@ package net.darmo_creations.jenealogio2.ui;
 
 import javafx.beans.binding.*;
 import javafx.collections.*;
+import javafx.geometry.*;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import net.darmo_creations.jenealogio2.*;
@@ -22,10 +23,17 @@ import java.util.*;
 public class FamilyMembersTreeView extends FamilyTreeComponent {
   private final Config config;
   private final ErasableTextField searchField;
+  private final CheckBox similarNamesCheckBox = new CheckBox();
   private final ObservableSet<TreeItem<Object>> searchMatches = FXCollections.observableSet(new HashSet<>());
   private final TreeView<Object> treeView = new TreeView<>();
   private final TreeItem<Object> personsItem;
+  /**
+   * The children of {@link #personsItem}, indexed by person.
+   */
+  private final Map<Person, TreeItem<Object>> personItems = new HashMap<>();
   private final ToggleButton syncTreeButton;
+  private final ComboBox<NotNullComboBoxItem<SortKey>> sortCombo = new ComboBox<>();
+  private final Spinner<Integer> minCountField = new Spinner<>(0, Integer.MAX_VALUE, 0);
 
   private boolean internalSelectionChange;
 
@@ -58,6 +66,12 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
     HBox.setHgrow(this.searchField, Priority.ALWAYS);
     hBox.getChildren().add(this.searchField);
 
+    this.similarNamesCheckBox.setText(language.translate("treeview.similar_names"));
+    this.similarNamesCheckBox.setTooltip(new Tooltip(language.translate("treeview.similar_names.tooltip")));
+    this.similarNamesCheckBox.selectedProperty().addListener(
+        (observable, oldValue, newValue) -> this.onSearchFilterChange(this.searchField.textField().getText()));
+    hBox.getChildren().add(this.similarNamesCheckBox);
+
     this.syncTreeButton = new ToggleButton("", theme.getIcon(Icon.SYNC_TREE, Icon.Size.SMALL));
     this.syncTreeButton.setTooltip(new Tooltip(language.translate("treeview.sync_tree")));
     this.syncTreeButton.setSelected(this.config.shouldSyncTreeWithMainPane());
@@ -71,6 +85,33 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
           }
         });
     hBox.getChildren().add(this.syncTreeButton);
+    hBox.setAlignment(Pos.CENTER_LEFT);
+
+    // Sorting and filtering
+
+    for (final SortKey sortKey : SortKey.values())
+      this.sortCombo.getItems().add(new NotNullComboBoxItem<>(
+          sortKey, language.translate("treeview.sort." + sortKey.name().toLowerCase())));
+    this.sortCombo.getSelectionModel().select(0);
+    this.sortCombo.getSelectionModel().selectedItemProperty().addListener(
+        (observable, oldValue, newValue) -> {
+          this.minCountField.setDisable(newValue.data() == SortKey.NAME);
+          this.refresh();
+        });
+    this.minCountField.setDisable(true);
+    this.minCountField.setEditable(true);
+    this.minCountField.setPrefWidth(80);
+    this.minCountField.setTooltip(new Tooltip(language.translate("treeview.min_count.tooltip")));
+    this.minCountField.valueProperty().addListener((observable, oldValue, newValue) -> this.refresh());
+    final HBox sortBox = new HBox(
+        5,
+        new Label(language.translate("treeview.sort")),
+        this.sortCombo,
+        new Label(language.translate("treeview.min_count")),
+        this.minCountField
+    );
+    sortBox.setAlignment(Pos.CENTER_LEFT);
+    vBox.getChildren().add(sortBox);
 
     // Tree view
 
@@ -107,22 +148,115 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
     this.internalSelectionChange = true;
     final Optional<Person> selectedPerson = this.getSelectedPerson();
     this.personsItem.getChildren().clear();
+    this.personItems.clear();
     this.searchField.textField().clear();
     this.familyTree().ifPresent(familyTree -> {
+      final List<TreeItem<Object>> items = new ArrayList<>();
       familyTree.persons().stream()
-          .sorted(Person.lastThenFirstNamesComparator())
-          .forEach(person -> this.personsItem.getChildren().add(new TreeItem<>(person)));
+          .filter(person -> this.isShown(familyTree, person))
+          .sorted(this.comparator(familyTree))
+          .forEach(person -> {
+            final TreeItem<Object> item = new TreeItem<>(person);
+            this.personItems.put(person, item);
+            items.add(item);
+          });
+      this.personsItem.getChildren().setAll(items);
       this.personsItem.setExpanded(true);
     });
     // Option may have been updated from elsewhere
     this.syncTreeButton.setSelected(this.config.shouldSyncTreeWithMainPane());
     selectedPerson.ifPresent(p -> { // Keep current selection
-      if (this.familyTree().isPresent() && this.familyTree().get().persons().contains(p))
+      if (this.familyTree().isPresent() && this.familyTree().get().hasPerson(p))
         this.select(p, false);
     });
     this.internalSelectionChange = false;
   }
 
+  /**
+   * Only move, add or remove the items of the persons that changed.
+   * The whole list is only rebuilt if it is sorted by relatives counts and any parent link changed.
+   */
+  @Override
+  public void onTreeChanges(final @NotNull List<FamilyTreeChange> changes) {
+    if (this.familyTree().isEmpty())
+      return;
+    final FamilyTree familyTree = this.familyTree().get();
+    final Set<Person> changedPersons = new HashSet<>();
+    boolean countsChanged = false;
+    boolean redrawCells = false;
+    for (final FamilyTreeChange change : changes) {
+      if (change instanceof FamilyTreeChange.PersonAdded c)
+        changedPersons.add(c.person());
+      else if (change instanceof FamilyTreeChange.PersonRemoved c)
+        changedPersons.add(c.person());
+      else if (change instanceof FamilyTreeChange.PersonUpdated c)
+        changedPersons.add(c.person());
+      else if (change instanceof FamilyTreeChange.ParentsChanged)
+        countsChanged = true;
+      else if (change instanceof FamilyTreeChange.RootChanged)
+        redrawCells = true;
+      // Life events, documents and registries are not shown in this view
+    }
+    if (countsChanged && this.sortCombo.getSelectionModel().getSelectedItem().data() != SortKey.NAME) {
+      this.refresh();
+      return;
+    }
+
+    this.internalSelectionChange = true;
+    final Optional<Person> selectedPerson = this.getSelectedPerson();
+    final ObservableList<TreeItem<Object>> items = this.personsItem.getChildren();
+    final Comparator<Person> personComparator = this.comparator(familyTree);
+    final Comparator<TreeItem<Object>> comparator =
+        (item1, item2) -> personComparator.compare((Person) item1.getValue(), (Person) item2.getValue());
+    for (final Person person : changedPersons) {
+      final TreeItem<Object> item = this.personItems.remove(person);
+      if (item != null)
+        items.remove(item);
+      if (familyTree.hasPerson(person) && this.isShown(familyTree, person)) {
+        final TreeItem<Object> newItem = new TreeItem<>(person);
+        final int i = Collections.binarySearch(items, newItem, comparator);
+        items.add(i < 0 ? -i - 1 : i, newItem);
+        this.personItems.put(person, newItem);
+      }
+    }
+    if (countsChanged || redrawCells)
+      this.treeView.refresh();
+    selectedPerson.ifPresent(p -> {
+      if (this.personItems.containsKey(p))
+        this.select(p, false);
+    });
+    if (!changedPersons.isEmpty())
+      this.onSearchFilterChange(this.searchField.textField().getText());
+    this.internalSelectionChange = false;
+  }
+
+  /**
+   * The comparator for the current sort key.
+   */
+  private Comparator<Person> comparator(final @NotNull FamilyTree familyTree) {
+    return switch (this.sortCombo.getSelectionModel().getSelectedItem().data()) {
+      case NAME -> Person.lastThenFirstNamesComparator();
+      case ANCESTORS -> Comparator.<Person>comparingInt(p -> familyTree.ancestorsCount(p).orElse(0))
+          .reversed()
+          .thenComparing(Person.lastThenFirstNamesComparator());
+      case DESCENDANTS -> Comparator.<Person>comparingInt(p -> familyTree.descendantsCount(p).orElse(0))
+          .reversed()
+          .thenComparing(Person.lastThenFirstNamesComparator());
+    };
+  }
+
+  /**
+   * Indicate whether the given person passes the current filter.
+   */
+  private boolean isShown(final @NotNull FamilyTree familyTree, final @NotNull Person person) {
+    final int minCount = this.minCountField.getValue();
+    return switch (this.sortCombo.getSelectionModel().getSelectedItem().data()) {
+      case NAME -> true;
+      case ANCESTORS -> familyTree.ancestorsCount(person).orElse(0) >= minCount;
+      case DESCENDANTS -> familyTree.descendantsCount(person).orElse(0) >= minCount;
+    };
+  }
+
   @Override
   public Optional<Person> getSelectedPerson() {
     final TreeItem<Object> selectedItem = this.treeView.getSelectionModel().getSelectedItem();
@@ -141,14 +275,12 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
   @Override
   public void select(@NotNull Person person, boolean updateTarget) {
     Objects.requireNonNull(person);
-    for (int i = 0; i < this.personsItem.getChildren().size(); i++) {
-      final TreeItem<Object> item = this.personsItem.getChildren().get(i);
-      if (item.getValue() == person) {
-        this.internalSelectionChange = true;
-        this.treeView.getSelectionModel().select(item);
-        this.internalSelectionChange = false;
-        break;
-      }
+    final TreeItem<Object> item = this.personItems.get(person);
+    if (item != null) {
+      final boolean internal = this.internalSelectionChange;
+      this.internalSelectionChange = true;
+      this.treeView.getSelectionModel().select(item);
+      this.internalSelectionChange = internal;
     }
   }
 
@@ -165,28 +297,39 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
   private void onSearchFilterChange(String text) {
     this.searchMatches.clear();
     final Optional<String> filter = StringUtils.stripNullable(text);
-    if (filter.isEmpty())
+    if (filter.isEmpty() || this.familyTree().isEmpty())
       return;
+    final FamilyTree familyTree = this.familyTree().get();
+    final Locale locale = this.config.language().locale();
+    final Set<Person> persons = familyTree.searchPersons(filter.get(), locale);
+    if (this.similarNamesCheckBox.isSelected())
+      persons.addAll(familyTree.searchSimilarPersons(filter.get(), locale));
     final Set<TreeItem<Object>> matches = new HashSet<>();
-    this.searchMatchingItems(this.personsItem, matches, filter.get());
+    for (final Person person : persons) {
+      // Persons hidden by the current filter have no item
+      final TreeItem<Object> item = this.personItems.get(person);
+      if (item != null)
+        matches.add(item);
+    }
     this.searchMatches.addAll(matches);
   }
 
   /**
-   * Search for tree items matching the given search query.
-   *
-   * @param searchNode   Tree item to search children of.
-   * @param matches      Set to populate with matches.
-   * @param searchFilter Search filter.
+   * Criteria persons can be sorted and filtered by.
    */
-  private void searchMatchingItems(
-      final @NotNull TreeItem<Object> searchNode,
-      @NotNull Set<TreeItem<Object>> matches,
-      @NotNull String searchFilter
-  ) {
-    for (final TreeItem<Object> item : searchNode.getChildren())
-      if (item.getValue().toString().toLowerCase().contains(searchFilter.toLowerCase()))
-        matches.add(item);
+  private enum SortKey {
+    /**
+     * Sort persons by last then first names.
+     */
+    NAME,
+    /**
+     * Sort persons by decreasing number of known ancestors.
+     */
+    ANCESTORS,
+    /**
+     * Sort persons by decreasing number of known descendants.
+     */
+    DESCENDANTS,
   }
 
   /**
@@ -214,8 +357,16 @@ public class FamilyMembersTreeView extends FamilyTreeComponent {
     protected void updateItem(Object item, boolean empty) {
       // Update the text when the displayed item changes
       super.updateItem(item, empty);
-      this.setText(empty ? null : item.toString());
       final Optional<FamilyTree> familyTree = FamilyMembersTreeView.this.familyTree();
+      if (!empty && familyTree.isPresent() && item instanceof Person p && familyTree.get().hasRelativesCounts())
+        this.setText(FamilyMembersTreeView.this.config.language().translate(
+            "treeview.person_with_relatives",
+            new FormatArg("person", p),
+            new FormatArg("ancestors", familyTree.get().ancestorsCount(p).orElse(0)),
+            new FormatArg("descendants", familyTree.get().descendantsCount(p).orElse(0))
+        ));
+      else
+        this.setText(empty ? null : item.toString());
       if (familyTree.isPresent() && item instanceof Person p && familyTree.get().isRoot(p))
         this.setGraphic(FamilyMembersTreeView.this.config.theme().getIcon(Icon.TREE_ROOT, Icon.Size.SMALL));
       else
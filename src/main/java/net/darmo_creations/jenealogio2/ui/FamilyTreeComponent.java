@@ -38,6 +38,16 @@ public abstract class FamilyTreeComponent extends AnchorPane implements PersonCl
    */
   public abstract void refresh();
 
+  /**
+   * Update the displayed data after the family tree has changed.
+   * The default implementation refreshes the whole component.
+   *
+   * @param changes The changes made since the last update, in the order they were made.
+   */
+  public void onTreeChanges(final @NotNull List<FamilyTreeChange> changes) {
+    this.refresh();
+  }
+
   /**
    * Get the currently selected person.
    */
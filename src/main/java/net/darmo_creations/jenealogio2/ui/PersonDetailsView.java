@@ -18,6 +18,7 @@ import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -40,6 +41,7 @@ public class PersonDetailsView extends TabPane
   private final Tab eventsTab = new Tab();
   private final Tab siblingsAndChildrenTab = new Tab();
   private final Tab parentsTab = new Tab();
+  private final Tab kinshipTab = new Tab();
 
   private final ClickableImageView imageView;
   private final Label fullNameLabel = new Label();
@@ -75,6 +77,10 @@ public class PersonDetailsView extends TabPane
   private final ListView<ChildrenItem> childrenList = new ListView<>();
   private final Map<ParentalRelationType, ListView<PersonCard>> parentsLists = new HashMap<>();
 
+  private final Label inbreedingLabel = new Label();
+  private final GridPane kinshipGrid = new GridPane();
+  private TaskScheduler.Job<Kinship> kinshipJob;
+
   private final List<PersonClickListener> personClickListeners = new LinkedList<>();
   private final List<NewParentClickListener> newParentClickListeners = new LinkedList<>();
   private final List<Consumer<AttachedDocument>> documentEditedListeners = new LinkedList<>();
@@ -116,11 +122,14 @@ public class PersonDetailsView extends TabPane
     this.siblingsAndChildrenTab.setGraphic(theme.getIcon(Icon.FAMILY_TAB, Icon.Size.SMALL));
     this.parentsTab.setText(language.translate("person_details_view.parents_tab.title"));
     this.parentsTab.setGraphic(theme.getIcon(Icon.FOSTER_PARENTS_TAB, Icon.Size.SMALL));
+    this.kinshipTab.setText(language.translate("person_details_view.kinship_tab.title"));
+    this.kinshipTab.setGraphic(theme.getIcon(Icon.KINSHIP_TAB, Icon.Size.SMALL));
     this.getTabs().addAll(
         this.profileTab,
         this.eventsTab,
         this.siblingsAndChildrenTab,
-        this.parentsTab
+        this.parentsTab,
+        this.kinshipTab
     );
     this.setTabClosingPolicy(TabClosingPolicy.UNAVAILABLE);
 
@@ -130,6 +139,7 @@ public class PersonDetailsView extends TabPane
     this.setupEventsTab();
     this.setupSiblingsAndChildrenTab();
     this.setupParentsTab();
+    this.setupKinshipTab();
   }
 
   private void setupProfileTab() {
@@ -358,6 +368,28 @@ public class PersonDetailsView extends TabPane
       tabPane.setDividerPosition(i, (1 + i) * ratio);
   }
 
+  private void setupKinshipTab() {
+    final VBox inbreedingBox = new VBox(new SectionLabel("inbreeding_coefficient"), this.inbreedingLabel);
+    inbreedingBox.getStyleClass().add("person-details");
+
+    final Label descriptionLabel = new Label(
+        this.config.language().translate("person_details_view.kinship_coefficients.description"));
+    descriptionLabel.setWrapText(true);
+    this.kinshipGrid.setHgap(10);
+    this.kinshipGrid.setVgap(5);
+    final ScrollPane kinshipScroll = new ScrollPane(this.kinshipGrid);
+    VBox.setVgrow(kinshipScroll, Priority.ALWAYS);
+    final VBox kinshipBox = new VBox(
+        5,
+        new SectionLabel("kinship_coefficients"),
+        descriptionLabel,
+        kinshipScroll
+    );
+    kinshipBox.getStyleClass().add("person-details");
+
+    this.kinshipTab.setContent(new VBox(inbreedingBox, kinshipBox));
+  }
+
   /**
    * Select the main picture of the given {@link GenealogyObject} in the given document list.
    *
@@ -436,6 +468,58 @@ public class PersonDetailsView extends TabPane
       this.resetFields();
   }
 
+  /**
+   * Update this view after changes to the family tree.
+   * The view is only refreshed if any of the changes concerns the displayed person or one of its relatives.
+   *
+   * @param changes The changes made to the tree.
+   */
+  public void onTreeChanges(final @NotNull List<FamilyTreeChange> changes) {
+    if (this.person == null)
+      return;
+    if (changes.contains(new FamilyTreeChange.PersonRemoved(this.person))) {
+      this.setPerson(null, this.familyTree);
+      return;
+    }
+    final Set<Person> shownPersons = new HashSet<>();
+    shownPersons.add(this.person);
+    this.person.parents().values().forEach(shownPersons::addAll);
+    this.person.children().values().forEach(shownPersons::addAll);
+    for (final Person.FamilyUnit unit : this.person.getSiblings()) {
+      shownPersons.addAll(unit.parents());
+      shownPersons.addAll(unit.children());
+    }
+    for (final LifeEvent lifeEvent : this.person.lifeEvents()) {
+      shownPersons.addAll(lifeEvent.actors());
+      shownPersons.addAll(lifeEvent.witnesses());
+    }
+    if (changes.stream().anyMatch(change -> this.isVisible(change, shownPersons)))
+      this.refresh();
+  }
+
+  /**
+   * Indicate whether the given change may be visible in this view.
+   *
+   * @param change       A change.
+   * @param shownPersons The persons currently shown in this view.
+   */
+  private boolean isVisible(@NotNull FamilyTreeChange change, final @NotNull Set<Person> shownPersons) {
+    if (change instanceof FamilyTreeChange.PersonRemoved c)
+      return shownPersons.contains(c.person());
+    if (change instanceof FamilyTreeChange.PersonUpdated c)
+      return shownPersons.contains(c.person());
+    if (change instanceof FamilyTreeChange.ParentsChanged c)
+      return shownPersons.contains(c.child()) || shownPersons.contains(c.parent());
+    if (change instanceof FamilyTreeChange.LifeEventChanged c)
+      return c.lifeEvent().actors().stream().anyMatch(shownPersons::contains)
+          || c.lifeEvent().witnesses().stream().anyMatch(shownPersons::contains);
+    if (change instanceof FamilyTreeChange.DocumentChanged c) {
+      final Set<GenealogyObject<?>> objects = c.document().referencingObjects();
+      return objects.contains(this.person) || this.person.lifeEvents().stream().anyMatch(objects::contains);
+    }
+    return change instanceof FamilyTreeChange.RegistriesChanged;
+  }
+
   private void resetLists() {
     this.notesTextFlow.getChildren().clear();
     this.sourcesTextFlow.getChildren().clear();
@@ -449,6 +533,11 @@ public class PersonDetailsView extends TabPane
     this.parentsLists.values()
         .forEach(list -> list.getItems().clear());
 
+    if (this.kinshipJob != null)
+      this.kinshipJob.cancel();
+    this.inbreedingLabel.setText(null);
+    this.kinshipGrid.getChildren().clear();
+
     this.documentsList.getItems().clear();
 
     this.eventDocumentsList.getItems().clear();
@@ -552,6 +641,8 @@ public class PersonDetailsView extends TabPane
           .sorted(personComparator)
           .forEach(parent -> this.parentsLists.get(parentType).getItems().add(new PersonCard(parent)));
 
+    this.populateKinship(personComparator);
+
     final var annotationsStream = Arrays.stream(AnnotationType.values())
         .flatMap(t -> this.person.getAnnotatedInDocuments(t).stream());
     Stream.concat(this.person.authoredDocuments().stream(), annotationsStream)
@@ -561,6 +652,67 @@ public class PersonDetailsView extends TabPane
     this.documentsList.getItems().sort(null);
   }
 
+  /**
+   * Show the inbreeding coefficient of the current person and the kinship coefficients
+   * between them, their genetic parents and their partners.
+   * Coefficients are computed in the background as they may take a while on large trees.
+   */
+  private void populateKinship(final @NotNull Comparator<Person> personComparator) {
+    final KinshipCalculator calculator = this.familyTree.kinshipCalculator();
+    final Person person = this.person;
+    if (calculator.graph().indexOf(person) < 0)
+      return;
+
+    final List<Person> group = new ArrayList<>();
+    group.add(person);
+    Arrays.stream(ParentalRelationType.GENETIC_RELATIONS)
+        .flatMap(type -> person.parents(type).stream().sorted(personComparator))
+        .forEach(group::add);
+    person.getLifeEventsAsActor().stream()
+        .filter(lifeEvent -> lifeEvent.type().indicatesUnion())
+        .flatMap(lifeEvent -> lifeEvent.actors().stream())
+        .sorted(personComparator)
+        .forEach(group::add);
+    final List<Person> members = group.stream()
+        .distinct()
+        .filter(p -> calculator.graph().indexOf(p) >= 0)
+        .toList();
+
+    final Language language = this.config.language();
+    this.inbreedingLabel.setText(language.translate("person_details_view.kinship_computing"));
+    this.kinshipJob = App.taskScheduler().submit(
+        language.translate("task.compute_kinship", new FormatArg("person", person)),
+        TaskScheduler.Priority.LOW,
+        context -> new Kinship(calculator.inbreedingCoefficient(person), calculator.kinshipMatrix(members)),
+        kinship -> {
+          this.kinshipJob = null;
+          this.showKinship(members, kinship);
+        },
+        e -> {
+          this.kinshipJob = null;
+          if (e instanceof CancellationException)
+            return;
+          App.LOGGER.exception(e);
+          this.inbreedingLabel.setText(null);
+        }
+    );
+  }
+
+  private void showKinship(final @NotNull List<Person> members, final @NotNull Kinship kinship) {
+    final Locale locale = this.config.language().locale();
+    this.inbreedingLabel.setText(formatCoefficient(kinship.inbreedingCoefficient(), locale));
+    for (int i = 0; i < members.size(); i++) {
+      this.kinshipGrid.add(new Label(members.get(i).toString()), i + 1, 0);
+      this.kinshipGrid.add(new Label(members.get(i).toString()), 0, i + 1);
+      for (int j = 0; j < members.size(); j++)
+        this.kinshipGrid.add(new Label(formatCoefficient(kinship.matrix()[i][j], locale)), j + 1, i + 1);
+    }
+  }
+
+  private static String formatCoefficient(double coefficient, final @NotNull Locale locale) {
+    return String.format(locale, "%.5f", coefficient);
+  }
+
   private void showEvent(final @NotNull LifeEvent lifeEvent) {
     this.displayedLifeEvent = lifeEvent;
     if (this.getSelectionModel().getSelectedItem() != this.eventsTab)
@@ -936,4 +1088,13 @@ public class PersonDetailsView extends TabPane
       });
     }
   }
+
+  /**
+   * The kinship coefficients shown in the kinship tab.
+   *
+   * @param inbreedingCoefficient The inbreeding coefficient of the shown person.
+   * @param matrix                The kinship coefficients between the shown person and their relatives.
+   */
+  private record Kinship(double inbreedingCoefficient, double[][] matrix) {
+  }
 }
@@ -42,6 +42,8 @@ public abstract class PersonTreeView extends FamilyTreeComponent
   private final ScrollPane scrollPane = new ScrollPane(this.pane);
   private final Legend legend;
 
+  private final Set<Person> highlightedPersons = new HashSet<>();
+
   private Person targettedPerson;
   private boolean targetHasChanged;
   private boolean internalClick;
@@ -91,9 +93,36 @@ public abstract class PersonTreeView extends FamilyTreeComponent
   public void setFamilyTree(FamilyTree familyTree) {
     if (familyTree != null)
       this.targettedPerson = familyTree.root().orElse(null);
+    this.highlightedPersons.clear();
     super.setFamilyTree(familyTree);
   }
 
+  /**
+   * Highlight the persons along the given relationship path and center the view on its first person.
+   * The highlight is kept until another relationship is shown or {@link #clearHighlight()} is called.
+   *
+   * @param relationship The relationship to show.
+   */
+  public void showRelationship(final @NotNull Relationship relationship) {
+    this.highlightedPersons.clear();
+    this.highlightedPersons.addAll(relationship.persons());
+    this.select(relationship.from(), true);
+    this.updateHighlight();
+  }
+
+  /**
+   * Remove the highlight of all persons.
+   */
+  public void clearHighlight() {
+    this.highlightedPersons.clear();
+    this.updateHighlight();
+  }
+
+  private void updateHighlight() {
+    this.personWidgets.forEach(w -> w.setHighlighted(
+        w.person().map(this.highlightedPersons::contains).orElse(false)));
+  }
+
   @Override
   public void refresh() {
     final Optional<Person> selectedPerson = this.getSelectedPerson();
@@ -101,7 +130,7 @@ public abstract class PersonTreeView extends FamilyTreeComponent
     this.personWidgets.clear();
     if (this.familyTree().isEmpty()) return;
     final FamilyTree familyTree = this.familyTree().get();
-    if (!familyTree.persons().contains(this.targettedPerson)) {
+    if (this.targettedPerson == null || !familyTree.hasPerson(this.targettedPerson)) {
       final Optional<Person> root = familyTree.root();
       if (root.isEmpty()) return;
       this.targettedPerson = root.get();
@@ -114,7 +143,7 @@ public abstract class PersonTreeView extends FamilyTreeComponent
     // Keep current selection if it the targetted person hasn’t changed
     if (!this.targetHasChanged &&
         selectedPerson.isPresent() &&
-        familyTree.persons().contains(selectedPerson.get())) {
+        familyTree.hasPerson(selectedPerson.get())) {
       this.internalClick = true;
       this.select(selectedPerson.get(), false);
       this.internalClick = false;
@@ -124,6 +153,41 @@ public abstract class PersonTreeView extends FamilyTreeComponent
     this.centerNodeInScrollPane(root);
   }
 
+  /**
+   * Refresh this view only if any of the changes concerns a displayed person.
+   */
+  @Override
+  public void onTreeChanges(final @NotNull List<FamilyTreeChange> changes) {
+    final Set<Person> displayedPersons = new HashSet<>();
+    this.personWidgets.forEach(w -> w.person().ifPresent(displayedPersons::add));
+    if (this.targettedPerson == null
+        || changes.stream().anyMatch(change -> isVisible(change, displayedPersons)))
+      this.refresh();
+  }
+
+  /**
+   * Indicate whether the given change may be visible in this view.
+   *
+   * @param change           A change.
+   * @param displayedPersons The persons currently shown in this view.
+   */
+  private static boolean isVisible(@NotNull FamilyTreeChange change, final @NotNull Set<Person> displayedPersons) {
+    if (change instanceof FamilyTreeChange.PersonRemoved c)
+      return displayedPersons.contains(c.person());
+    if (change instanceof FamilyTreeChange.PersonUpdated c)
+      return displayedPersons.contains(c.person());
+    if (change instanceof FamilyTreeChange.ParentsChanged c)
+      return displayedPersons.contains(c.child()) || displayedPersons.contains(c.parent());
+    if (change instanceof FamilyTreeChange.LifeEventChanged c)
+      // Events give dates of persons and unions between them
+      return c.lifeEvent().actors().stream().anyMatch(displayedPersons::contains)
+          || c.lifeEvent().witnesses().stream().anyMatch(displayedPersons::contains);
+    // Persons are only shown once linked to other persons, main pictures changes are reported as person updates
+    if (change instanceof FamilyTreeChange.PersonAdded || change instanceof FamilyTreeChange.DocumentChanged)
+      return false;
+    return true;
+  }
+
   /**
    * Set the visibility of the legend.
    *
@@ -269,11 +333,15 @@ public abstract class PersonTreeView extends FamilyTreeComponent
         showMoreIcon,
         isTarget,
         familyTree.isRoot(person),
+        person != null ? familyTree.ancestorsCount(person) : OptionalInt.empty(),
+        person != null ? familyTree.descendantsCount(person) : OptionalInt.empty(),
         this.config
     );
     this.pane.getChildren().add(w);
     this.personWidgets.add(w);
     w.clickListeners().add(this::onPersonWidgetClick);
+    if (person != null && this.highlightedPersons.contains(person))
+      w.setHighlighted(true);
     return w;
   }
 
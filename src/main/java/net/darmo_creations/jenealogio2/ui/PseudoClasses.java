@@ -20,6 +20,10 @@ public final class PseudoClasses {
    * Marks a {@link PersonWidget} as being selected.
    */
   public static final PseudoClass SELECTED = PseudoClass.getPseudoClass("selected");
+  /**
+   * Marks a {@link PersonWidget} as being part of a highlighted relationship path.
+   */
+  public static final PseudoClass HIGHLIGHTED = PseudoClass.getPseudoClass("highlighted");
   /**
    * Marks a {@link TableCell} as being disabled.
    */
@@ -12,7 +12,6 @@ import net.darmo_creations.jenealogio2.config.theme.*;
 import net.darmo_creations.jenealogio2.model.*;
 import net.darmo_creations.jenealogio2.ui.*;
 import net.darmo_creations.jenealogio2.utils.*;
-import org.controlsfx.control.textfield.*;
 import org.jetbrains.annotations.*;
 
 import java.text.*;
@@ -128,7 +127,8 @@ public class LifeEventView extends TitledPane implements PersonRequester, Coordi
     });
     this.placeAutoCompletionBinding = new PlaceAutoCompletionBinding(
         this.placeAddressField,
-        this::onPlaceSuggestionRequest,
+        familyTree,
+        language.locale(),
         this::onPlaceCompletion
     );
 
@@ -260,15 +260,6 @@ public class LifeEventView extends TitledPane implements PersonRequester, Coordi
     });
   }
 
-  private Collection<Place> onPlaceSuggestionRequest(@NotNull AutoCompletionBinding.ISuggestionRequest request) {
-    final String userText = request.getUserText().toLowerCase();
-    return this.familyTree.lifeEvents().stream()
-        .filter(e -> e.place().isPresent() && e.place().get().address().toLowerCase().contains(userText))
-        .map(e -> e.place().orElseThrow())
-        .distinct()
-        .toList();
-  }
-
   private void onPlaceCompletion(@NotNull Place place) {
     place.latLon().ifPresent(this::setLatLonFields);
   }
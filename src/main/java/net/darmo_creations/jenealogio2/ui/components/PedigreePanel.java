@@ -0,0 +1,190 @@
+package net.darmo_creations.jenealogio2.ui.components;
+
+import javafx.beans.property.*;
+import javafx.geometry.*;
+import javafx.scene.chart.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.scene.text.*;
+import net.darmo_creations.jenealogio2.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * This panel shows the {@link PedigreeAnalysis} of a person: for each generation back,
+ * the number of ancestor slots, of known ancestors, and of distinct ancestors after pedigree collapse.
+ * The analysis is computed in the background.
+ */
+public class PedigreePanel extends VBox {
+  /**
+   * Default number of generations to analyze.
+   */
+  public static final int DEFAULT_GENERATIONS = 30;
+
+  private final Label titleLabel = new Label();
+  private final Spinner<Integer> generationsField =
+      new Spinner<>(1, PedigreeAnalysis.MAX_GENERATIONS, DEFAULT_GENERATIONS);
+  private final Label summaryLabel = new Label();
+  private final TableView<PedigreeAnalysis.Generation> table = new TableView<>();
+  private final BarChart<String, Number> chart;
+
+  private final Config config;
+
+  private FamilyTree familyTree;
+  private Person person;
+  // Parameters of the displayed analysis, to avoid recomputing it if nothing changed
+  private FamilyGraph analyzedGraph;
+  private Person analyzedPerson;
+  private int analyzedGenerations;
+  private TaskScheduler.Job<PedigreeAnalysis> analysisJob;
+
+  public PedigreePanel(final @NotNull Config config) {
+    super(5);
+    this.config = config;
+    final Language language = config.language();
+
+    this.titleLabel.getStyleClass().add("person-details-title");
+    this.generationsField.setEditable(true);
+    this.generationsField.valueProperty().addListener((observable, oldValue, newValue) -> this.refresh());
+    final HBox header = new HBox(
+        5,
+        this.titleLabel,
+        new Spacer(Orientation.HORIZONTAL),
+        new Label(language.translate("pedigree_panel.generations")),
+        this.generationsField
+    );
+    header.setAlignment(Pos.CENTER_LEFT);
+    this.summaryLabel.setWrapText(true);
+
+    this.table.setPlaceholder(new Text(language.translate("table.empty")));
+    this.addColumn("generation", g -> String.valueOf(g.number()));
+    this.addColumn("slots", g -> String.valueOf(g.slots()));
+    this.addColumn("known", g -> String.valueOf(g.knownAncestors()));
+    this.addColumn("distinct", g -> String.valueOf(g.distinctAncestors()));
+    this.addColumn("completeness", g -> this.formatPercentage(g.completeness()));
+    this.addColumn("collapse", g -> this.formatPercentage(g.collapse()));
+
+    final CategoryAxis xAxis = new CategoryAxis();
+    xAxis.setLabel(language.translate("pedigree_panel.chart.x_axis"));
+    final NumberAxis yAxis = new NumberAxis(0, 100, 10);
+    yAxis.setLabel(language.translate("pedigree_panel.chart.y_axis"));
+    this.chart = new BarChart<>(xAxis, yAxis);
+    this.chart.setAnimated(false);
+
+    final SplitPane splitPane = new SplitPane(this.table, this.chart);
+    splitPane.setDividerPositions(0.5);
+    VBox.setVgrow(splitPane, Priority.ALWAYS);
+
+    this.setPadding(new Insets(5));
+    this.getChildren().addAll(header, this.summaryLabel, splitPane);
+  }
+
+  private void addColumn(@NotNull String name, final @NotNull Function<PedigreeAnalysis.Generation, String> value) {
+    final TableColumn<PedigreeAnalysis.Generation, String> column =
+        new TableColumn<>(this.config.language().translate("pedigree_panel.table." + name));
+    column.setCellValueFactory(param -> new ReadOnlyStringWrapper(value.apply(param.getValue())));
+    column.setSortable(false);
+    this.table.getColumns().add(column);
+  }
+
+  /**
+   * Set the person whose pedigree should be analyzed.
+   *
+   * @param familyTree The tree the person belongs to.
+   * @param person     The person to analyze. May be null.
+   */
+  public void setPerson(final @NotNull FamilyTree familyTree, final Person person) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+    this.person = person;
+    this.refresh();
+  }
+
+  /**
+   * Update the analysis if the tree, the person or the number of generations has changed.
+   */
+  public void refresh() {
+    final FamilyGraph graph = this.familyTree != null ? this.familyTree.graph() : null;
+    final boolean hasPerson = graph != null && this.person != null && graph.indexOf(this.person) >= 0;
+    final Person person = hasPerson ? this.person : null;
+    final int generations = this.generationsField.getValue();
+    if (hasPerson && graph == this.analyzedGraph && person == this.analyzedPerson
+        && generations == this.analyzedGenerations)
+      return;
+    this.analyzedGraph = graph;
+    this.analyzedPerson = person;
+    this.analyzedGenerations = generations;
+
+    if (this.analysisJob != null)
+      this.analysisJob.cancel();
+    final Language language = this.config.language();
+    this.table.getItems().clear();
+    this.chart.getData().clear();
+    if (person == null) {
+      this.titleLabel.setText(language.translate("pedigree_panel.no_person"));
+      this.summaryLabel.setText(null);
+      return;
+    }
+
+    this.titleLabel.setText(language.translate("pedigree_panel.title", new FormatArg("person", person)));
+    this.summaryLabel.setText(language.translate("pedigree_panel.computing"));
+    this.analysisJob = App.taskScheduler().submit(
+        language.translate("task.analyze_pedigree", new FormatArg("person", person)),
+        TaskScheduler.Priority.LOW,
+        context -> PedigreeAnalysis.compute(graph, person, generations),
+        analysis -> {
+          this.analysisJob = null;
+          this.showAnalysis(analysis, generations);
+        },
+        e -> {
+          this.analysisJob = null;
+          if (e instanceof CancellationException)
+            return;
+          App.LOGGER.exception(e);
+          this.summaryLabel.setText(null);
+          // Try again on the next refresh
+          this.analyzedGraph = null;
+        }
+    );
+  }
+
+  private void showAnalysis(final @NotNull PedigreeAnalysis analysis, int generations) {
+    final Language language = this.config.language();
+    this.summaryLabel.setText(language.translate(
+        "pedigree_panel.summary",
+        new FormatArg("generations", generations),
+        new FormatArg("completeness", this.formatPercentage(analysis.completeness())),
+        new FormatArg("distinct", analysis.distinctAncestors())
+    ));
+
+    // Generations past the last known ancestors are not shown
+    final List<PedigreeAnalysis.Generation> knownGenerations = new ArrayList<>(analysis.generations());
+    while (!knownGenerations.isEmpty() && knownGenerations.get(knownGenerations.size() - 1).knownAncestors() == 0)
+      knownGenerations.remove(knownGenerations.size() - 1);
+    this.table.getItems().addAll(knownGenerations);
+
+    final XYChart.Series<String, Number> knownSeries = new XYChart.Series<>();
+    knownSeries.setName(language.translate("pedigree_panel.chart.known"));
+    final XYChart.Series<String, Number> distinctSeries = new XYChart.Series<>();
+    distinctSeries.setName(language.translate("pedigree_panel.chart.distinct"));
+    for (final PedigreeAnalysis.Generation generation : knownGenerations) {
+      final String category = String.valueOf(generation.number());
+      knownSeries.getData().add(new XYChart.Data<>(category, 100 * generation.completeness()));
+      distinctSeries.getData().add(new XYChart.Data<>(
+          category, 100.0 * generation.distinctAncestors() / generation.slots()));
+    }
+    this.chart.getData().addAll(List.of(knownSeries, distinctSeries));
+  }
+
+  private String formatPercentage(double value) {
+    final NumberFormat format = NumberFormat.getPercentInstance(this.config.language().locale());
+    format.setMaximumFractionDigits(2);
+    return format.format(value);
+  }
+}
@@ -11,6 +11,7 @@ import net.darmo_creations.jenealogio2.config.theme.*;
 import net.darmo_creations.jenealogio2.model.*;
 import net.darmo_creations.jenealogio2.model.datetime.*;
 import net.darmo_creations.jenealogio2.ui.*;
+import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
@@ -46,18 +47,21 @@ public class PersonWidget extends AnchorPane {
   private final Label lastNameLabel = new Label();
   private final Label birthDateLabel = new Label();
   private final Label deathDateLabel = new Label();
+  private final Label relativesLabel = new Label();
 
   private boolean selected;
 
   /**
    * Create a component for the given person.
    *
-   * @param person       A person object.
-   * @param childInfo    Information about the displayed children this widget is a parent of.
-   * @param showMoreIcon Whether to show the “plus” icon.
-   * @param isTarget     Whether the widget is targetted.
-   * @param isRoot       Whether the person is the tree’s root.
-   * @param config       The app’s config.
+   * @param person           A person object.
+   * @param childInfo        Information about the displayed children this widget is a parent of.
+   * @param showMoreIcon     Whether to show the “plus” icon.
+   * @param isTarget         Whether the widget is targetted.
+   * @param isRoot           Whether the person is the tree’s root.
+   * @param ancestorsCount   The number of known ancestors of the person, if available.
+   * @param descendantsCount The number of known descendants of the person, if available.
+   * @param config           The app’s config.
    */
   public PersonWidget(
       final Person person,
@@ -65,6 +69,8 @@ public class PersonWidget extends AnchorPane {
       boolean showMoreIcon,
       boolean isTarget,
       boolean isRoot,
+      final @NotNull OptionalInt ancestorsCount,
+      final @NotNull OptionalInt descendantsCount,
       final @NotNull Config config
   ) {
     this.person = person;
@@ -93,6 +99,8 @@ public class PersonWidget extends AnchorPane {
       iconsBox.setLeft(new Label("#" + person.disambiguationID().get()));
     else
       iconsBox.setLeft(new Label()); // Empty label for proper alignment
+    // Shown in the top bar to keep the widget’s height
+    iconsBox.setCenter(this.relativesLabel);
     final HBox iconsRightBox = new HBox(5);
     iconsBox.setRight(iconsRightBox);
     if (isRoot) {
@@ -128,7 +136,7 @@ public class PersonWidget extends AnchorPane {
 
     this.setOnMouseClicked(this::onClick);
 
-    this.populateFields();
+    this.populateFields(ancestorsCount, descendantsCount);
   }
 
   /**
@@ -192,6 +200,13 @@ public class PersonWidget extends AnchorPane {
     this.pseudoClassStateChanged(PseudoClasses.SELECTED, selected);
   }
 
+  /**
+   * Set whether this component is part of a highlighted relationship path.
+   */
+  public void setHighlighted(boolean highlighted) {
+    this.pseudoClassStateChanged(PseudoClasses.HIGHLIGHTED, highlighted);
+  }
+
   /**
    * List of click listeners.
    */
@@ -212,8 +227,11 @@ public class PersonWidget extends AnchorPane {
 
   /**
    * Populate labels with data from the wrapped person object.
+   *
+   * @param ancestorsCount   The number of known ancestors of the person, if available.
+   * @param descendantsCount The number of known descendants of the person, if available.
    */
-  private void populateFields() {
+  private void populateFields(final @NotNull OptionalInt ancestorsCount, final @NotNull OptionalInt descendantsCount) {
     if (this.person == null) {
       this.imageView.setImage(ADD_IMAGE);
       this.imageView.setFitHeight(MAX_IMAGE_SIZE);
@@ -253,6 +271,15 @@ public class PersonWidget extends AnchorPane {
       this.deathDateLabel.setGraphic(this.config.theme().getIcon(Icon.DEATH, Icon.Size.SMALL));
       this.deathDateLabel.setTooltip(new Tooltip(deathYear));
     }
+
+    if (ancestorsCount.isPresent() && descendantsCount.isPresent()) {
+      final Language language = this.config.language();
+      final FormatArg ancestorsArg = new FormatArg("ancestors", ancestorsCount.getAsInt());
+      final FormatArg descendantsArg = new FormatArg("descendants", descendantsCount.getAsInt());
+      this.relativesLabel.setText(language.translate("person_widget.relatives", ancestorsArg, descendantsArg));
+      this.relativesLabel.setTooltip(new Tooltip(
+          language.translate("person_widget.relatives.tooltip", ancestorsArg, descendantsArg)));
+    }
   }
 
   public static String formatDateYear(@NotNull DateTime date) {
@@ -4,13 +4,25 @@ import javafx.beans.value.*;
 import javafx.scene.control.*;
 import javafx.util.*;
 import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.utils.*;
 import org.controlsfx.control.textfield.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import java.util.function.*;
 
 class PlaceAutoCompletionBinding extends AutoCompletionBinding<Place> {
+  /**
+   * The maximum number of suggested places.
+   */
+  private static final int MAX_SUGGESTIONS = 20;
+
+  /**
+   * The places of the tree, as of the user’s last input. Suggestions are computed outside the JavaFX thread,
+   * they must not read the tree itself.
+   */
+  private final AtomicReference<PlaceSearch> placeSearch;
   private final ChangeListener<String> textChangeListener;
   private final ChangeListener<Boolean> focusChangedListener;
   private final Consumer<Place> onCompletion;
@@ -18,30 +30,53 @@ class PlaceAutoCompletionBinding extends AutoCompletionBinding<Place> {
   /**
    * Create a new binding for the given {@link TextField}.
    *
-   * @param addressField       Text field to listen to.
-   * @param suggestionProvider Function that provides a list of places that match the user’s input.
-   * @param onCompletion       A callback that is called when the user selects a suggestion.
+   * Suggestions are the places of the given tree that have a word starting with the user’s input,
+   * the most used ones first, followed by the places of the offline gazetteer whose name starts with it.
+   *
+   * @param addressField Text field to listen to.
+   * @param familyTree   Tree to suggest the places of.
+   * @param locale       The locale to use for case conversions of the user’s input.
+   * @param onCompletion A callback that is called when the user selects a suggestion.
    */
   PlaceAutoCompletionBinding(
       @NotNull TextField addressField,
-      @NotNull Callback<ISuggestionRequest, Collection<Place>> suggestionProvider,
+      @NotNull FamilyTree familyTree,
+      @NotNull Locale locale,
       @NotNull Consumer<Place> onCompletion
   ) {
-    super(addressField, suggestionProvider, new StringConverter<>() {
-      @Override
-      public String toString(Place place) {
-        return place.address();
-      }
+    this(addressField, familyTree, locale, onCompletion, new AtomicReference<>(familyTree.placeSearch(locale)));
+  }
 
-      @Override
-      public Place fromString(String s) {
-        return null; // Unused
-      }
-    });
+  private PlaceAutoCompletionBinding(
+      @NotNull TextField addressField,
+      @NotNull FamilyTree familyTree,
+      @NotNull Locale locale,
+      @NotNull Consumer<Place> onCompletion,
+      @NotNull AtomicReference<PlaceSearch> placeSearch
+  ) {
+    super(
+        addressField,
+        request -> suggestions(placeSearch.get(), request.getUserText()),
+        new StringConverter<>() {
+          @Override
+          public String toString(Place place) {
+            return place.address();
+          }
+
+          @Override
+          public Place fromString(String s) {
+            return null; // Unused
+          }
+        }
+    );
     this.onCompletion = onCompletion;
+    this.placeSearch = placeSearch;
     this.textChangeListener = (obs, oldText, newText) -> {
-      if (this.getCompletionTarget().isFocused())
+      if (this.getCompletionTarget().isFocused()) {
+        // Cached by the tree until its places change
+        this.placeSearch.set(familyTree.placeSearch(locale));
         this.setUserInput(newText);
+      }
     };
     this.focusChangedListener = (obs, oldFocused, newFocused) -> {
       if (!newFocused) this.hidePopup();
@@ -50,6 +85,22 @@ class PlaceAutoCompletionBinding extends AutoCompletionBinding<Place> {
     this.getCompletionTarget().focusedProperty().addListener(this.focusChangedListener);
   }
 
+  /**
+   * Compute the suggestions for the given input. Called outside the JavaFX thread.
+   * The gazetteer is immutable, it may be read from any thread.
+   */
+  private static List<Place> suggestions(final @NotNull PlaceSearch placeSearch, @NotNull String text) {
+    final List<Place> places = new ArrayList<>(placeSearch.search(text, MAX_SUGGESTIONS));
+    if (places.size() < MAX_SUGGESTIONS) {
+      final Set<String> addresses = new HashSet<>();
+      places.forEach(place -> addresses.add(place.address()));
+      for (final Place place : GeoCoder.placesStartingWith(text, MAX_SUGGESTIONS - places.size()))
+        if (!addresses.contains(place.address()))
+          places.add(place);
+    }
+    return places;
+  }
+
   public TextField getCompletionTarget() {
     return (TextField) super.getCompletionTarget();
   }
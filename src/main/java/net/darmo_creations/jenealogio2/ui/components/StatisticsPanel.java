@@ -1,17 +1,19 @@
 package net.darmo_creations.jenealogio2.ui.components;
 
+import javafx.application.*;
 import javafx.beans.property.*;
 import javafx.geometry.*;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.*;
+import net.darmo_creations.jenealogio2.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.model.*;
-import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * This panel shows counts of first names, last names, occupations, and places from a given {@link FamilyTree}.
@@ -24,6 +26,12 @@ public class StatisticsPanel extends GridPane {
 
   private FamilyTree familyTree;
   private final Config config;
+  private WordCounts counts = new WordCounts();
+  /**
+   * Incremented on each refresh, so that the results of outdated refreshes are ignored.
+   */
+  private int refreshId;
+  private boolean refreshing;
 
   public StatisticsPanel(final @NotNull Config config) {
     this.config = config;
@@ -90,32 +98,172 @@ public class StatisticsPanel extends GridPane {
     this.refresh();
   }
 
+  /**
+   * Count all words of the current tree again.
+   * Words are counted outside the JavaFX thread from a snapshot of the tree.
+   */
   public void refresh() {
     if (this.familyTree == null) return;
 
-    final List<String> firstNames = new LinkedList<>();
-    final List<String> lastNames = new LinkedList<>();
-    final List<String> occupations = new LinkedList<>();
-    final List<String> places = new LinkedList<>();
+    final FamilyTree familyTree = this.familyTree;
+    final FamilyTreeSnapshot snapshot = familyTree.snapshot();
+    final int refreshId = ++this.refreshId;
+    this.refreshing = true;
+    CompletableFuture.supplyAsync(() -> WordCounts.of(snapshot))
+        .whenComplete((counts, exception) -> Platform.runLater(() -> {
+          if (refreshId != this.refreshId)
+            return; // Another refresh has been started since then
+          this.refreshing = false;
+          if (exception != null) {
+            App.LOGGER.exception(exception);
+            return;
+          }
+          if (familyTree.snapshot() != snapshot)
+            this.refresh(); // The tree was modified in the meantime
+          else {
+            this.counts = counts;
+            this.updateContent();
+          }
+        }));
+  }
+
+  /**
+   * Update the counts of the words of the persons and life events that changed.
+   *
+   * @param changes The changes made to the tree.
+   */
+  public void onTreeChanges(final @NotNull List<FamilyTreeChange> changes) {
+    // Changes made during a refresh are taken into account by the refresh itself
+    if (this.familyTree == null || this.refreshing) return;
 
-    for (final Person person : this.familyTree.persons()) {
-      firstNames.addAll(person.legalFirstNames());
+    boolean updated = false;
+    for (final FamilyTreeChange change : changes) {
+      final Object object;
+      if (change instanceof FamilyTreeChange.PersonAdded c)
+        object = c.person();
+      else if (change instanceof FamilyTreeChange.PersonRemoved c)
+        object = c.person();
+      else if (change instanceof FamilyTreeChange.PersonUpdated c)
+        object = c.person();
+      else if (change instanceof FamilyTreeChange.LifeEventChanged c)
+        object = c.lifeEvent();
+      else
+        continue;
+      Words words = null;
+      if (object instanceof Person person && this.familyTree.hasPerson(person))
+        words = Words.of(person.snapshot());
+      else if (object instanceof LifeEvent lifeEvent && this.familyTree.hasLifeEvent(lifeEvent))
+        words = Words.of(lifeEvent.snapshot());
+      updated |= this.counts.update(object, words);
+    }
+    if (updated)
+      this.updateContent();
+  }
+
+  private void updateContent() {
+    this.firstNamesStatsPanel.setContent(this.counts.firstNames);
+    this.lastNamesStatsPanel.setContent(this.counts.lastNames);
+    this.occupationsStatsPanel.setContent(this.counts.occupations);
+    this.placesStatsPanel.setContent(this.counts.places);
+  }
+
+  /**
+   * The counts of the words of a tree.
+   */
+  private static final class WordCounts {
+    /**
+     * The words counted for each person and life event of the tree.
+     */
+    private final Map<Object, Words> countedWords = new HashMap<>();
+    private final Map<String, Long> firstNames = new HashMap<>();
+    private final Map<String, Long> lastNames = new HashMap<>();
+    private final Map<String, Long> occupations = new HashMap<>();
+    private final Map<String, Long> places = new HashMap<>();
+
+    /**
+     * Count the words of all persons and life events of the given snapshot.
+     *
+     * @param snapshot The snapshot of a tree.
+     * @return The counts.
+     */
+    static WordCounts of(final @NotNull FamilyTreeSnapshot snapshot) {
+      final WordCounts counts = new WordCounts();
+      for (final PersonSnapshot person : snapshot.persons())
+        counts.count(person.person(), Words.of(person));
+      for (final LifeEventSnapshot lifeEvent : snapshot.lifeEvents())
+        counts.count(lifeEvent.lifeEvent(), Words.of(lifeEvent));
+      return counts;
+    }
+
+    /**
+     * Replace the words counted for the given object.
+     *
+     * @param object The person or life event whose words changed.
+     * @param words  The object’s new words, null if it is not in the tree anymore.
+     * @return True if the counts changed, false otherwise.
+     */
+    boolean update(@NotNull Object object, Words words) {
+      final Words previousWords = this.countedWords.remove(object);
+      if (previousWords != null)
+        this.uncount(previousWords);
+      if (words != null)
+        this.count(object, words);
+      return !Objects.equals(previousWords, words);
+    }
+
+    private void count(@NotNull Object object, @NotNull Words words) {
+      this.countedWords.put(object, words);
+      words.firstNames().forEach(w -> this.firstNames.merge(w, 1L, Long::sum));
+      words.lastNames().forEach(w -> this.lastNames.merge(w, 1L, Long::sum));
+      words.occupations().forEach(w -> this.occupations.merge(w, 1L, Long::sum));
+      words.places().forEach(w -> this.places.merge(w, 1L, Long::sum));
+    }
+
+    private void uncount(@NotNull Words words) {
+      // Remove words whose count drops to 0
+      words.firstNames().forEach(w -> this.firstNames.computeIfPresent(w, (k, n) -> n > 1 ? n - 1 : null));
+      words.lastNames().forEach(w -> this.lastNames.computeIfPresent(w, (k, n) -> n > 1 ? n - 1 : null));
+      words.occupations().forEach(w -> this.occupations.computeIfPresent(w, (k, n) -> n > 1 ? n - 1 : null));
+      words.places().forEach(w -> this.places.computeIfPresent(w, (k, n) -> n > 1 ? n - 1 : null));
+    }
+  }
+
+  /**
+   * The words a person or life event contributes to the statistics.
+   *
+   * @param firstNames  First names of a person.
+   * @param lastNames   Last names of a person.
+   * @param occupations Occupation of a person, in lower case.
+   * @param places      Place of a life event.
+   */
+  private record Words(
+      @NotNull List<String> firstNames,
+      @NotNull List<String> lastNames,
+      @NotNull List<String> occupations,
+      @NotNull List<String> places
+  ) {
+    static Words of(final @NotNull PersonSnapshot person) {
+      final List<String> firstNames = new ArrayList<>(person.legalFirstNames());
       firstNames.addAll(person.publicFirstNames());
+      final List<String> lastNames = new ArrayList<>();
       person.legalLastName().ifPresent(lastNames::add);
       person.publicLastName().ifPresent(lastNames::add);
-      person.mainOccupation().ifPresent(occupations::add);
+      return new Words(
+          firstNames,
+          lastNames,
+          person.mainOccupation().map(o -> List.of(o.toLowerCase())).orElse(List.of()),
+          List.of()
+      );
+    }
+
+    static Words of(final @NotNull LifeEventSnapshot lifeEvent) {
+      return new Words(
+          List.of(),
+          List.of(),
+          List.of(),
+          lifeEvent.place().map(place -> List.of(place.address())).orElse(List.of())
+      );
     }
-    for (final LifeEvent lifeEvent : this.familyTree.lifeEvents())
-      lifeEvent.place().ifPresent(place -> places.add(place.address()));
-
-    final var firstNamesStats = StringUtils.computeWordStatistics(firstNames, true);
-    final var lastNamesStats = StringUtils.computeWordStatistics(lastNames, true);
-    final var occupationsStats = StringUtils.computeWordStatistics(occupations, false);
-    final var placesStats = StringUtils.computeWordStatistics(places, true);
-    this.firstNamesStatsPanel.setContent(firstNamesStats);
-    this.lastNamesStatsPanel.setContent(lastNamesStats);
-    this.occupationsStatsPanel.setContent(occupationsStats);
-    this.placesStatsPanel.setContent(placesStats);
   }
 
   /**
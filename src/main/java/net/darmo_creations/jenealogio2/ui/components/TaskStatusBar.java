@@ -0,0 +1,64 @@
+package net.darmo_creations.jenealogio2.ui.components;
+
+import javafx.geometry.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.config.theme.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A status bar that shows the description and progress of the oldest job of a {@link TaskScheduler},
+ * with a button to cancel it. The bar is hidden while no jobs are queued or running.
+ */
+public class TaskStatusBar extends HBox {
+  private final TaskScheduler taskScheduler;
+  private final Config config;
+  private final Label label = new Label();
+  private final ProgressBar progressBar = new ProgressBar();
+  private final Button cancelButton = new Button();
+
+  /**
+   * Create a new status bar.
+   *
+   * @param taskScheduler The scheduler whose jobs to show.
+   * @param config        The app’s config.
+   */
+  public TaskStatusBar(@NotNull TaskScheduler taskScheduler, final @NotNull Config config) {
+    super(5);
+    this.taskScheduler = Objects.requireNonNull(taskScheduler);
+    this.config = config;
+    this.setAlignment(Pos.CENTER_LEFT);
+    this.setPadding(new Insets(2, 5, 2, 5));
+    this.cancelButton.setGraphic(config.theme().getIcon(Icon.CANCEL_TASK, Icon.Size.SMALL));
+    this.cancelButton.setTooltip(new Tooltip(config.language().translate("task_status_bar.cancel_button.tooltip")));
+    this.cancelButton.setOnAction(event -> {
+      final var jobs = this.taskScheduler.jobs();
+      if (!jobs.isEmpty())
+        jobs.get(0).cancel();
+    });
+    this.getChildren().addAll(this.label, new Spacer(Orientation.HORIZONTAL), this.progressBar, this.cancelButton);
+    taskScheduler.addListener(this::update);
+    this.update();
+  }
+
+  private void update() {
+    final var jobs = this.taskScheduler.jobs();
+    final boolean visible = !jobs.isEmpty();
+    this.setVisible(visible);
+    this.setManaged(visible);
+    if (!visible)
+      return;
+    final TaskScheduler.Job<?> job = jobs.get(0);
+    final int othersCount = jobs.size() - 1;
+    this.label.setText(othersCount > 0
+        ? this.config.language().translate("task_status_bar.label.several",
+        new FormatArg("task", job.description()), new FormatArg("count", othersCount))
+        : job.description());
+    final double progress = job.progress();
+    this.progressBar.setProgress(progress < 0 ? ProgressBar.INDETERMINATE_PROGRESS : progress);
+  }
+}
@@ -0,0 +1,391 @@
+package net.darmo_creations.jenealogio2.ui.components.map_view;
+
+import com.gluonhq.maps.*;
+import javafx.collections.*;
+import javafx.geometry.*;
+import javafx.scene.*;
+import javafx.scene.canvas.*;
+import javafx.scene.image.*;
+import javafx.scene.input.*;
+import javafx.scene.layout.*;
+import javafx.scene.paint.*;
+import javafx.scene.text.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.model.*;
+import org.controlsfx.control.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Draws all the markers of a map on a single canvas.
+ * <p>
+ * Markers that are close to each other at the current zoom level are grouped into clusters,
+ * drawn as a circle showing the number of markers they contain. Markers are only grouped
+ * with markers of the same color.
+ * <p>
+ * Clusters are computed on a hierarchical grid: at each zoom level, the map is divided into cells
+ * of about {@link #CELL_SIZE} pixels, each one being split into four cells at the next level.
+ * The clusters of a level are computed the first time it is shown, then updated as markers are added
+ * or removed, so that moving the map only redraws the clusters within view.
+ */
+class ClusteredMarkerLayer extends MapLayer {
+  /**
+   * The size of the whole map in pixels at zoom level 0.
+   */
+  private static final double TILE_SIZE = 256;
+  /**
+   * The approximate size of the cells of the grid in pixels.
+   */
+  private static final int CELL_SIZE = 64;
+  private static final int MAX_LEVEL = 20;
+  /**
+   * The maximum latitude that can be shown by the Web Mercator projection.
+   */
+  private static final double MAX_LAT = 85.0511287798;
+
+  private final Config config;
+  private final ObjDoubleConsumer<LatLon> zoomAction;
+  private final Canvas canvas = new Canvas();
+  private final Map<Integer, Marker> markers = new HashMap<>();
+  /**
+   * The clusters of each computed zoom level, by cell then color.
+   */
+  private final Map<Integer, Map<Long, Map<MapMarkerColor, Cluster>>> levels = new HashMap<>();
+  /**
+   * The clusters drawn during the last layout, in drawing order.
+   */
+  private final List<DrawnCluster> drawnClusters = new ArrayList<>();
+  private final PopOver popOver = new PopOver();
+  private boolean popOverStyleInitialized = false;
+  /**
+   * The position of the top-left corner of the map and its size in pixels during the last layout.
+   */
+  private double originX, originY, worldSize;
+
+  /**
+   * Create a new marker layer.
+   *
+   * @param map        The map this layer will be added to. The layer’s canvas is resized to match it.
+   * @param zoomAction A function called with a point and a zoom level when a cluster is clicked.
+   * @param config     The app’s config.
+   */
+  ClusteredMarkerLayer(
+      final @NotNull Region map,
+      @NotNull ObjDoubleConsumer<LatLon> zoomAction,
+      final @NotNull Config config
+  ) {
+    this.config = Objects.requireNonNull(config);
+    this.zoomAction = Objects.requireNonNull(zoomAction);
+    this.canvas.widthProperty().bind(map.widthProperty());
+    this.canvas.heightProperty().bind(map.heightProperty());
+    this.canvas.widthProperty().addListener((observable, oldValue, newValue) -> this.markDirty());
+    this.canvas.heightProperty().addListener((observable, oldValue, newValue) -> this.markDirty());
+    this.canvas.setOnMouseClicked(this::onMouseClicked);
+    this.canvas.setOnMouseMoved(e -> this.canvas.setCursor(
+        this.clusterAt(e.getX(), e.getY()).filter(Cluster::isClickable).isPresent() ? Cursor.HAND : null));
+    this.getChildren().add(this.canvas);
+  }
+
+  /**
+   * Add a marker to this layer.
+   *
+   * @param id      The marker’s ID.
+   * @param latLon  The point where to show the marker.
+   * @param color   The marker’s icon.
+   * @param tooltip An optional function that creates the marker’s tooltip when it is first clicked.
+   */
+  void addMarker(int id, final @NotNull LatLon latLon, @NotNull MapMarkerColor color, Supplier<? extends Node> tooltip) {
+    final Marker marker = new Marker(latLon, color, tooltip);
+    this.markers.put(id, marker);
+    this.levels.forEach((level, clusters) -> addToLevel(marker, level, clusters));
+    this.markDirty();
+  }
+
+  /**
+   * Remove the marker with the given ID.
+   *
+   * @param id ID of the marker to remove.
+   * @return True if the marker was removed, false if there is no marker with this ID.
+   */
+  boolean removeMarker(int id) {
+    final Marker marker = this.markers.remove(id);
+    if (marker == null)
+      return false;
+    this.levels.forEach((level, clusters) -> removeFromLevel(marker, level, clusters));
+    this.markDirty();
+    return true;
+  }
+
+  /**
+   * Remove all markers.
+   */
+  void removeMarkers() {
+    this.markers.clear();
+    this.levels.clear();
+    this.popOver.hide();
+    this.markDirty();
+  }
+
+  @Override
+  protected void layoutLayer() {
+    final Point2D west = this.getMapPoint(0, -180);
+    final Point2D center = this.getMapPoint(0, 0);
+    if (west == null || center == null)
+      return;
+    final double worldSize = 2 * (center.getX() - west.getX());
+    final double originX = west.getX();
+    final double originY = center.getY() - worldSize / 2;
+    if (worldSize != this.worldSize || originX != this.originX || originY != this.originY) {
+      // The map has moved, the popover would not point to its marker anymore
+      this.popOver.hide();
+      this.worldSize = worldSize;
+      this.originX = originX;
+      this.originY = originY;
+    }
+    this.draw();
+  }
+
+  /**
+   * Draw the clusters of the current zoom level that are within view.
+   */
+  private void draw() {
+    final GraphicsContext gc = this.canvas.getGraphicsContext2D();
+    final double width = this.canvas.getWidth();
+    final double height = this.canvas.getHeight();
+    gc.clearRect(0, 0, width, height);
+    this.drawnClusters.clear();
+    if (this.markers.isEmpty() || this.worldSize <= 0)
+      return;
+
+    final int level = (int) Math.max(0, Math.min(MAX_LEVEL,
+        Math.round(Math.log(this.worldSize / TILE_SIZE) / Math.log(2))));
+    final var clusters = this.levels.computeIfAbsent(level, this::computeLevel);
+    final int cellsNb = cellsNb(level);
+    final double cellSize = this.worldSize / cellsNb;
+    // Add a cell on each side for the markers whose icon overlaps the view
+    final int minX = Math.max(0, (int) Math.floor(-this.originX / cellSize) - 1);
+    final int maxX = Math.min(cellsNb - 1, (int) Math.floor((width - this.originX) / cellSize) + 1);
+    final int minY = Math.max(0, (int) Math.floor(-this.originY / cellSize) - 1);
+    final int maxY = Math.min(cellsNb - 1, (int) Math.floor((height - this.originY) / cellSize) + 1);
+    if (minX > maxX || minY > maxY)
+      return;
+
+    final List<Cluster> visible = new ArrayList<>();
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) < clusters.size()) {
+      for (int x = minX; x <= maxX; x++)
+        for (int y = minY; y <= maxY; y++) {
+          final var cell = clusters.get((long) x * cellsNb + y);
+          if (cell != null)
+            visible.addAll(cell.values());
+        }
+    } else
+      clusters.forEach((cell, cellClusters) -> {
+        final long x = cell / cellsNb, y = cell % cellsNb;
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+          visible.addAll(cellClusters.values());
+      });
+    // Draw southern markers last so that they overlap the icons of the markers above them
+    visible.sort(Comparator.comparingDouble(Cluster::y));
+
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setTextBaseline(VPos.CENTER);
+    gc.setFont(Font.font(Font.getDefault().getFamily(), FontWeight.BOLD, 11));
+    for (final Cluster cluster : visible) {
+      final double x = this.originX + cluster.x() * this.worldSize;
+      final double y = this.originY + cluster.y() * this.worldSize;
+      final Image image = cluster.color.image();
+      if (cluster.markers.size() == 1 && image != null) {
+        final double w = image.getWidth(), h = image.getHeight();
+        gc.drawImage(image, x - w / 2, y - h);
+        this.drawnClusters.add(new DrawnCluster(x - w / 2, y - h, x + w / 2, y, cluster));
+      } else {
+        final int count = cluster.markers.size();
+        final double radius = 10 + 4 * Math.log10(count);
+        gc.setFill(cluster.color.color());
+        gc.fillOval(x - radius, y - radius, 2 * radius, 2 * radius);
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(2);
+        gc.strokeOval(x - radius, y - radius, 2 * radius, 2 * radius);
+        if (count > 1) {
+          gc.setFill(Color.BLACK);
+          gc.fillText(String.valueOf(count), x, y);
+        }
+        this.drawnClusters.add(new DrawnCluster(x - radius, y - radius, x + radius, y + radius, cluster));
+      }
+    }
+  }
+
+  /**
+   * The topmost cluster drawn at the given position.
+   */
+  private Optional<Cluster> clusterAt(double x, double y) {
+    for (int i = this.drawnClusters.size() - 1; i >= 0; i--) {
+      final DrawnCluster drawnCluster = this.drawnClusters.get(i);
+      if (drawnCluster.contains(x, y))
+        return Optional.of(drawnCluster.cluster());
+    }
+    return Optional.empty();
+  }
+
+  private void onMouseClicked(@NotNull MouseEvent event) {
+    if (!event.isStillSincePress())
+      return;
+    final Optional<Cluster> clicked = this.clusterAt(event.getX(), event.getY()).filter(Cluster::isClickable);
+    if (clicked.isEmpty())
+      return;
+    final Cluster cluster = clicked.get();
+    if (cluster.markers.size() > 1) {
+      final int level = (int) Math.round(Math.log(this.worldSize / TILE_SIZE) / Math.log(2));
+      this.zoomAction.accept(toLatLon(cluster.x(), cluster.y()), level + 2);
+    } else
+      this.togglePopOver(cluster.markers.iterator().next(), event);
+    event.consume();
+  }
+
+  private void togglePopOver(final @NotNull Marker marker, final @NotNull MouseEvent event) {
+    if (this.popOver.isShowing()) {
+      this.popOver.hide();
+      return;
+    }
+    this.popOver.setContentNode(marker.tooltip.get());
+    this.popOver.show(this.canvas, event.getScreenX(), event.getScreenY());
+    if (!this.popOverStyleInitialized) {
+      // From https://stackoverflow.com/a/36404968/3779986
+      final ObservableList<String> stylesheets = ((Parent) this.popOver.getSkin().getNode()).getStylesheets();
+      this.config.theme().getStyleSheets()
+          .forEach(path -> stylesheets.add(path.toExternalForm()));
+      this.popOverStyleInitialized = true;
+    }
+  }
+
+  private Map<Long, Map<MapMarkerColor, Cluster>> computeLevel(int level) {
+    final Map<Long, Map<MapMarkerColor, Cluster>> clusters = new HashMap<>();
+    for (final Marker marker : this.markers.values())
+      addToLevel(marker, level, clusters);
+    return clusters;
+  }
+
+  private static void addToLevel(
+      final @NotNull Marker marker,
+      int level,
+      @NotNull Map<Long, Map<MapMarkerColor, Cluster>> clusters
+  ) {
+    clusters.computeIfAbsent(cell(marker, level), c -> new EnumMap<>(MapMarkerColor.class))
+        .computeIfAbsent(marker.color, Cluster::new)
+        .add(marker);
+  }
+
+  private static void removeFromLevel(
+      final @NotNull Marker marker,
+      int level,
+      @NotNull Map<Long, Map<MapMarkerColor, Cluster>> clusters
+  ) {
+    final long cell = cell(marker, level);
+    final var cellClusters = clusters.get(cell);
+    if (cellClusters == null)
+      return;
+    final Cluster cluster = cellClusters.get(marker.color);
+    if (cluster != null && cluster.remove(marker) && cluster.markers.isEmpty()) {
+      cellClusters.remove(marker.color);
+      if (cellClusters.isEmpty())
+        clusters.remove(cell);
+    }
+  }
+
+  /**
+   * The number of cells of the grid along each axis at the given zoom level.
+   */
+  private static int cellsNb(int level) {
+    return (int) (TILE_SIZE / CELL_SIZE) << level;
+  }
+
+  /**
+   * The index of the cell that contains the given marker at the given zoom level.
+   */
+  private static long cell(final @NotNull Marker marker, int level) {
+    final int cellsNb = cellsNb(level);
+    final long x = Math.min(cellsNb - 1, (long) (marker.x * cellsNb));
+    final long y = Math.min(cellsNb - 1, (long) (marker.y * cellsNb));
+    return x * cellsNb + y;
+  }
+
+  /**
+   * Convert projected coordinates in [0, 1] back into latitude and longitude.
+   */
+  private static LatLon toLatLon(double x, double y) {
+    return new LatLon(Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y)))), x * 360 - 180);
+  }
+
+  /**
+   * A marker and its position in the Web Mercator projection, both coordinates being in [0, 1].
+   */
+  private static final class Marker {
+    private final MapMarkerColor color;
+    private final Supplier<? extends Node> tooltip;
+    private final double x, y;
+
+    private Marker(final @NotNull LatLon latLon, @NotNull MapMarkerColor color, Supplier<? extends Node> tooltip) {
+      this.color = Objects.requireNonNull(color);
+      this.tooltip = tooltip;
+      final double lat = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, latLon.lat())));
+      this.x = (latLon.lon() + 180) / 360;
+      this.y = 0.5 - Math.log(Math.tan(Math.PI / 4 + lat / 2)) / (2 * Math.PI);
+    }
+  }
+
+  /**
+   * A group of markers of the same color within a cell of the grid.
+   * It is drawn at the average position of its markers.
+   */
+  private static final class Cluster {
+    private final MapMarkerColor color;
+    private final Set<Marker> markers = new HashSet<>();
+    private double sumX, sumY;
+
+    private Cluster(@NotNull MapMarkerColor color) {
+      this.color = color;
+    }
+
+    private void add(@NotNull Marker marker) {
+      if (this.markers.add(marker)) {
+        this.sumX += marker.x;
+        this.sumY += marker.y;
+      }
+    }
+
+    private boolean remove(@NotNull Marker marker) {
+      if (!this.markers.remove(marker))
+        return false;
+      this.sumX -= marker.x;
+      this.sumY -= marker.y;
+      return true;
+    }
+
+    private double x() {
+      return this.sumX / this.markers.size();
+    }
+
+    private double y() {
+      return this.sumY / this.markers.size();
+    }
+
+    /**
+     * Indicate whether clicking this cluster does something,
+     * i.e. whether it can be zoomed into or its single marker has a tooltip.
+     */
+    private boolean isClickable() {
+      return this.markers.size() > 1 || this.markers.iterator().next().tooltip != null;
+    }
+  }
+
+  /**
+   * A cluster and the area it was drawn in.
+   */
+  private record DrawnCluster(double minX, double minY, double maxX, double maxY, @NotNull Cluster cluster) {
+    boolean contains(double x, double y) {
+      return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY;
+    }
+  }
+}
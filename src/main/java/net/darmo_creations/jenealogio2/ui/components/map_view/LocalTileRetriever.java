@@ -0,0 +1,235 @@
+package net.darmo_creations.jenealogio2.ui.components.map_view;
+
+import com.gluonhq.maps.tile.*;
+import javafx.scene.image.*;
+import net.darmo_creations.jenealogio2.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Provides the tiles of all {@link GluonHQMapView}s. It is registered as a {@link TileRetriever} service.
+ * <p>
+ * Tiles are read from the local {@link TilePack} set with {@link #setTilePack(Path)} if it has them.
+ * Otherwise, they are read from the cache of downloaded tiles if it is recent enough, else they are downloaded
+ * from OpenStreetMap and cached. Expired cached tiles are still used if the download fails,
+ * so that the areas that were already seen remain available offline.
+ * <p>
+ * The cache of downloaded tiles is limited to {@link #CACHE_MAX_SIZE} bytes. The least recently downloaded tiles
+ * are deleted in the background when the application starts and every {@link #PRUNE_INTERVAL} downloads.
+ * <p>
+ * The decoded images of the most recently used tiles are kept in memory. When a tile is read from the disk,
+ * the tiles covering the same area at the previous and next zoom levels are read in the background,
+ * so that zooming in or out does not wait for the disk. Tiles are never downloaded in advance.
+ */
+public final class LocalTileRetriever implements TileRetriever {
+  private static final String TILES_URL = "https://tile.openstreetmap.org/%d/%d/%d.png";
+  private static final String CACHE_DIR_NAME = "map_tiles";
+  /**
+   * How long downloaded tiles are used before being downloaded again.
+   */
+  private static final Duration CACHE_TTL = Duration.ofDays(7);
+  /**
+   * The maximum total size of the downloaded tiles, in bytes.
+   */
+  private static final long CACHE_MAX_SIZE = 256L * 1024 * 1024;
+  /**
+   * The number of downloaded tiles after which the cache is pruned again.
+   */
+  private static final int PRUNE_INTERVAL = 1000;
+  /**
+   * The maximum number of decoded tiles kept in memory, each one taking 256 KiB.
+   */
+  private static final int MEMORY_CACHE_SIZE = 256;
+  /**
+   * The maximum number of tiles waiting to be read in advance. The oldest requests are dropped first.
+   */
+  private static final int PREFETCH_QUEUE_SIZE = 64;
+
+  private static final LocalTileRetriever INSTANCE = new LocalTileRetriever();
+
+  /**
+   * The instance used by the {@link java.util.ServiceLoader}.
+   */
+  public static LocalTileRetriever provider() {
+    return INSTANCE;
+  }
+
+  /**
+   * Set the local tile pack to read tiles from.
+   *
+   * @param directory The pack’s directory. Null to only use downloaded tiles.
+   */
+  public static void setTilePack(Path directory) {
+    INSTANCE.tilePack = directory != null ? new TilePack(directory) : null;
+    // Forget the tiles of the previous pack
+    INSTANCE.images.clear();
+  }
+
+  private final TilePack cache = new TilePack(App.USER_DATA_DIR.resolve(CACHE_DIR_NAME));
+  private final LruCache<TilePack.Tile, Image> images = new LruCache<>(MEMORY_CACHE_SIZE);
+  private final ExecutorService loader = Executors.newFixedThreadPool(4, LocalTileRetriever::newDaemonThread);
+  private final ExecutorService prefetcher = new ThreadPoolExecutor(
+      1,
+      1,
+      0,
+      TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+      LocalTileRetriever::newDaemonThread,
+      new ThreadPoolExecutor.DiscardOldestPolicy()
+  );
+  /**
+   * Prunes the cache of downloaded tiles. Requests made while a pruning is pending are dropped.
+   */
+  private final ExecutorService pruner = new ThreadPoolExecutor(
+      1,
+      1,
+      0,
+      TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(1),
+      LocalTileRetriever::newDaemonThread,
+      new ThreadPoolExecutor.DiscardPolicy()
+  );
+  private final AtomicInteger downloads = new AtomicInteger();
+  private final HttpClient httpClient = HttpClient.newBuilder()
+      .followRedirects(HttpClient.Redirect.NORMAL)
+      .connectTimeout(Duration.ofSeconds(30))
+      .executor(this.loader)
+      .build();
+  private volatile TilePack tilePack;
+
+  private LocalTileRetriever() {
+    this.pruneCache();
+  }
+
+  @Override
+  public CompletableFuture<Image> loadTile(int zoom, long i, long j) {
+    final TilePack.Tile tile;
+    try {
+      tile = new TilePack.Tile(zoom, i, j);
+    } catch (final IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    final Image image = this.images.get(tile);
+    if (image != null)
+      return CompletableFuture.completedFuture(image);
+    return CompletableFuture.supplyAsync(() -> this.readLocal(tile, true), this.loader)
+        .thenCompose(local -> local.isPresent()
+            ? CompletableFuture.completedFuture(local.get())
+            : this.download(tile));
+  }
+
+  /**
+   * Read a tile from the tile pack or the cache of downloaded tiles, if it is recent enough,
+   * and keep its image in memory.
+   *
+   * @param tile             The tile to read.
+   * @param prefetchAdjacent Whether to read the tiles of the adjacent zoom levels in the background.
+   * @return The tile’s image, or an empty value if no local image was found.
+   */
+  private Optional<Image> readLocal(@NotNull TilePack.Tile tile, boolean prefetchAdjacent) {
+    final TilePack tilePack = this.tilePack;
+    Optional<Image> image = Optional.empty();
+    try {
+      if (tilePack != null)
+        image = tilePack.read(tile).flatMap(LocalTileRetriever::decode);
+      if (image.isEmpty() && this.cache.contains(tile, Instant.now().minus(CACHE_TTL)))
+        image = this.cache.read(tile).flatMap(LocalTileRetriever::decode);
+    } catch (final IOException e) {
+      App.LOGGER.exception(e);
+    }
+    image.ifPresent(im -> {
+      this.images.put(tile, im);
+      if (prefetchAdjacent)
+        this.prefetchAdjacent(tile);
+    });
+    return image;
+  }
+
+  private void prefetchAdjacent(@NotNull TilePack.Tile tile) {
+    for (final TilePack.Tile adjacent : tile.adjacentZoomTiles())
+      if (!this.images.contains(adjacent))
+        this.prefetcher.execute(() -> {
+          if (!this.images.contains(adjacent))
+            this.readLocal(adjacent, false);
+        });
+  }
+
+  /**
+   * Download a tile and cache it. If the download fails, the cached tile is used regardless of its age.
+   *
+   * @param tile The tile to download.
+   * @return The tile’s image.
+   */
+  private CompletableFuture<Image> download(@NotNull TilePack.Tile tile) {
+    final HttpRequest request = HttpRequest.newBuilder()
+        .uri(URI.create(TILES_URL.formatted(tile.zoom(), tile.x(), tile.y())))
+        // Required by the OpenStreetMap tile usage policy
+        .header("User-Agent", "%s/%s".formatted(App.NAME, App.VERSION))
+        .timeout(Duration.ofMinutes(1))
+        .GET()
+        .build();
+    return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+        .thenApply(response -> {
+          if (response.statusCode() != 200)
+            throw new CompletionException(new IOException(
+                "Could not download tile %s: status %d".formatted(tile, response.statusCode())));
+          final Image image = decode(response.body()).orElseThrow(() -> new CompletionException(
+              new IOException("Invalid image for tile " + tile)));
+          try {
+            this.cache.write(tile, response.body());
+          } catch (final IOException e) {
+            App.LOGGER.exception(e);
+          }
+          if (this.downloads.incrementAndGet() % PRUNE_INTERVAL == 0)
+            this.pruneCache();
+          this.images.put(tile, image);
+          return image;
+        })
+        .exceptionally(e -> {
+          try {
+            final Optional<Image> image = this.cache.read(tile).flatMap(LocalTileRetriever::decode);
+            if (image.isPresent())
+              return image.get();
+          } catch (final IOException ex) {
+            e.addSuppressed(ex);
+          }
+          throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+        });
+  }
+
+  /**
+   * Delete the least recently downloaded tiles in the background until the cache’s size
+   * is at most {@link #CACHE_MAX_SIZE}.
+   */
+  private void pruneCache() {
+    this.pruner.execute(() -> {
+      try {
+        final int deleted = this.cache.prune(CACHE_MAX_SIZE);
+        if (deleted != 0)
+          App.LOGGER.info("Deleted %d cached map tiles".formatted(deleted));
+      } catch (final IOException e) {
+        App.LOGGER.exception(e);
+      }
+    });
+  }
+
+  private static Optional<Image> decode(final @NotNull byte[] bytes) {
+    final Image image = new Image(new ByteArrayInputStream(bytes));
+    return image.isError() ? Optional.empty() : Optional.of(image);
+  }
+
+  private static Thread newDaemonThread(@NotNull Runnable runnable) {
+    final Thread thread = new Thread(runnable, "map-tiles");
+    thread.setDaemon(true);
+    return thread;
+  }
+}
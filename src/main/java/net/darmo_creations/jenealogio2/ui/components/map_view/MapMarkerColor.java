@@ -1,6 +1,7 @@
 package net.darmo_creations.jenealogio2.ui.components.map_view;
 
 import javafx.scene.image.*;
+import javafx.scene.paint.*;
 import net.darmo_creations.jenealogio2.*;
 import org.jetbrains.annotations.*;
 
@@ -11,18 +12,20 @@ import java.util.*;
  * Enumeration of all available marker colors for {@link MapView}.
  */
 public enum MapMarkerColor {
-  GREEN("green"),
-  YELLOW_GREEN("yellow_green"),
-  YELLOW("yellow"),
-  ORANGE("orange"),
-  RED("red"),
-  BLUE("blue"),
+  GREEN("green", "#3bf238"),
+  YELLOW_GREEN("yellow_green", "#98f238"),
+  YELLOW("yellow", "#f2c038"),
+  ORANGE("orange", "#f26338"),
+  RED("red", "#f24438"),
+  BLUE("blue", "#384bf2"),
   ;
 
   private final Image image;
+  private final Color color;
 
-  MapMarkerColor(@NotNull String color) {
+  MapMarkerColor(@NotNull String color, @NotNull String hexCode) {
     this.image = getMarkerIcon(color);
+    this.color = Color.web(hexCode);
   }
 
   /**
@@ -34,6 +37,13 @@ public enum MapMarkerColor {
     return this.image;
   }
 
+  /**
+   * The color of this marker’s icon, used to draw marker clusters.
+   */
+  public Color color() {
+    return this.color;
+  }
+
   /**
    * Get the marker icon for the given icon as an {@link Image}.
    */
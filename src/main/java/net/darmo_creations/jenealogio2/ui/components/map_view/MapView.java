@@ -1,9 +1,11 @@
 package net.darmo_creations.jenealogio2.ui.components.map_view;
 
 import com.gluonhq.maps.*;
+import javafx.animation.*;
 import javafx.scene.*;
 import javafx.scene.input.*;
 import javafx.scene.layout.*;
+import javafx.util.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.model.*;
 import org.jetbrains.annotations.*;
@@ -19,11 +21,16 @@ public class MapView extends AnchorPane {
   private final Config config;
 
   private final GluonHQMapView mapView = new GluonHQMapView();
-  private final Map<Integer, MapLayer> layers = new HashMap<>();
-  private int lastLayerID = 0;
+  private final ClusteredMarkerLayer markerLayer;
+  private int lastMarkerID = 0;
   private boolean dragging;
 
   private final List<Consumer<LatLon>> pointClickListeners = new LinkedList<>();
+  private final List<Runnable> viewportChangeListeners = new LinkedList<>();
+  /**
+   * Delays viewport change notifications until the user stops moving the map.
+   */
+  private final PauseTransition viewportChangeDelay = new PauseTransition(Duration.millis(200));
 
   /**
    * Create a new map view.
@@ -37,9 +44,24 @@ public class MapView extends AnchorPane {
     AnchorPane.setLeftAnchor(this.mapView, 0.0);
     AnchorPane.setRightAnchor(this.mapView, 0.0);
     this.getChildren().add(this.mapView);
+    this.markerLayer = new ClusteredMarkerLayer(this.mapView, (latLon, zoom) -> {
+      this.setCenter(latLon);
+      this.setZoom(zoom);
+    }, config);
+    this.mapView.addLayer(this.markerLayer);
 
     this.mapView.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::onDrag);
     this.mapView.setOnMouseClicked(this::onMapClicked);
+
+    this.viewportChangeDelay.setOnFinished(e -> this.viewportChangeListeners.forEach(Runnable::run));
+    this.mapView.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> this.onViewportChange());
+    this.mapView.addEventHandler(ScrollEvent.SCROLL, e -> this.onViewportChange());
+    this.widthProperty().addListener((observable, oldValue, newValue) -> this.onViewportChange());
+    this.heightProperty().addListener((observable, oldValue, newValue) -> this.onViewportChange());
+  }
+
+  private void onViewportChange() {
+    this.viewportChangeDelay.playFromStart();
   }
 
   private void onDrag(@NotNull MouseEvent mouseEvent) {
@@ -60,6 +82,44 @@ public class MapView extends AnchorPane {
     this.pointClickListeners.add(Objects.requireNonNull(consumer));
   }
 
+  /**
+   * Add a listener that is notified when the visible area of this map changes.
+   * Listeners are notified once the map has stopped moving.
+   *
+   * @param listener The listener to add.
+   */
+  public void addViewportChangeListener(@NotNull Runnable listener) {
+    this.viewportChangeListeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * The area currently visible in this map.
+   *
+   * @return The visible area, or the whole world if this map has not been laid out yet.
+   */
+  public LatLonBox getVisibleArea() {
+    final double width = this.mapView.getWidth();
+    final double height = this.mapView.getHeight();
+    if (width <= 0 || height <= 0)
+      return LatLonBox.WORLD;
+    final MapPoint topLeft = this.mapView.getMapPosition(0, 0);
+    final MapPoint bottomRight = this.mapView.getMapPosition(width, height);
+    final double south = Math.max(-90, Math.min(90, bottomRight.getLatitude()));
+    final double north = Math.max(south, Math.min(90, topLeft.getLatitude()));
+    final double west = topLeft.getLongitude();
+    final double east = bottomRight.getLongitude();
+    if (east - west >= 360)
+      return new LatLonBox(south, -180, north, 180);
+    return new LatLonBox(south, normalizeLongitude(west), north, normalizeLongitude(east));
+  }
+
+  /**
+   * Bring a longitude back into the [-180, 180] range.
+   */
+  private static double normalizeLongitude(double lon) {
+    return ((lon + 180) % 360 + 360) % 360 - 180;
+  }
+
   /**
    * Set this map’s zoom level.
    *
@@ -67,6 +127,7 @@ public class MapView extends AnchorPane {
    */
   public void setZoom(double zoom) {
     this.mapView.setZoom(zoom);
+    this.onViewportChange();
   }
 
   /**
@@ -76,21 +137,22 @@ public class MapView extends AnchorPane {
    */
   public void setCenter(@NotNull LatLon latLon) {
     this.mapView.setCenter(toMapPoint(latLon));
+    this.onViewportChange();
   }
 
   /**
    * Add a marker at the given coordinates.
+   * Markers close to each other at the current zoom level are shown as a single cluster.
    *
-   * @param latLon       Marker’s coordinates.
-   * @param color        Marker’s icon.
-   * @param layerTooltip Optional tooltip to show on mouse click.
+   * @param latLon  Marker’s coordinates.
+   * @param color   Marker’s icon.
+   * @param tooltip Optional function that creates the tooltip to show on mouse click.
+   *                It is only called when the marker is clicked.
    * @return ID of the created marker, will always be > 0.
    */
-  public int addMarker(@NotNull LatLon latLon, @NotNull MapMarkerColor color, Node layerTooltip) {
-    final MarkerLayer layer = new MarkerLayer(latLon, color, layerTooltip, this.config);
-    this.mapView.addLayer(layer);
-    final int id = ++this.lastLayerID;
-    this.layers.put(id, layer);
+  public int addMarker(@NotNull LatLon latLon, @NotNull MapMarkerColor color, Supplier<? extends Node> tooltip) {
+    final int id = ++this.lastMarkerID;
+    this.markerLayer.addMarker(id, latLon, color, tooltip);
     return id;
   }
 
@@ -101,17 +163,14 @@ public class MapView extends AnchorPane {
    * @param id ID of the marker to remove.
    */
   public void removeMarker(int id) {
-    final MapLayer removedLayer = this.layers.remove(id);
-    if (removedLayer != null)
-      this.mapView.removeLayer(removedLayer);
+    this.markerLayer.removeMarker(id);
   }
 
   /**
    * Remove all markers.
    */
   public void removeMarkers() {
-    this.layers.values().forEach(this.mapView::removeLayer);
-    this.layers.clear();
+    this.markerLayer.removeMarkers();
   }
 
   /**
@@ -1,16 +1,21 @@
 package net.darmo_creations.jenealogio2.ui.dialogs;
 
 import javafx.application.*;
+import javafx.collections.*;
 import javafx.geometry.*;
+import javafx.scene.*;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.*;
+import javafx.util.*;
 import net.darmo_creations.jenealogio2.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 /**
  * This class provides methods to open alert dialogs.
@@ -73,6 +78,28 @@ public final class Alerts {
     alert(config, AlertType.ERROR, headerKey, contentKey, titleKey, contentArgs);
   }
 
+  /**
+   * Log the exception that interrupted a background task and show it in an error alert dialog.
+   * Does nothing if the task was cancelled.
+   *
+   * @param config    The app’s config.
+   * @param e         The exception.
+   * @param alertName The name of the alert to show. Its header, content and title keys are
+   *                  {@code alert.<alertName>.header}, {@code .content} and {@code .title}.
+   */
+  public static void taskError(final @NotNull Config config, @NotNull Exception e, @NotNull String alertName) {
+    if (e instanceof CancellationException)
+      return;
+    App.LOGGER.exception(e);
+    error(
+        config,
+        "alert.%s.header".formatted(alertName),
+        "alert.%s.content".formatted(alertName),
+        "alert.%s.title".formatted(alertName),
+        new FormatArg("trace", e.getMessage())
+    );
+  }
+
   /**
    * Open an alert dialog to prompt the user for confirmation.
    *
@@ -161,6 +188,54 @@ public final class Alerts {
     return Optional.empty();
   }
 
+  /**
+   * Open an alert dialog to prompt the user to choose an item from a list.
+   *
+   * @param config      The app’s config.
+   * @param headerKey   Header text key.
+   * @param labelKey    Choice box label text key.
+   * @param titleKey    Title key.
+   * @param choices     The items to choose from.
+   * @param converter   The function that returns the text of each item.
+   * @param contentArgs Format arguments to apply to the header, label and title.
+   * @return The selected item.
+   */
+  public static <T> Optional<T> choice(
+      final @NotNull Config config,
+      @NotNull String headerKey,
+      @NotNull String labelKey,
+      String titleKey,
+      @NotNull List<T> choices,
+      @NotNull Function<T, String> converter,
+      final @NotNull FormatArg... contentArgs
+  ) {
+    final Alert alert = getAlert(config, AlertType.TEXT, headerKey, titleKey, contentArgs);
+    final ChoiceBox<T> choiceBox = new ChoiceBox<>(FXCollections.observableArrayList(choices));
+    choiceBox.setConverter(new StringConverter<>() {
+      @Override
+      public String toString(T item) {
+        return item != null ? converter.apply(item) : "";
+      }
+
+      @Override
+      public T fromString(String s) {
+        return null; // Not editable
+      }
+    });
+    final Node okButton = alert.getDialogPane().lookupButton(ButtonTypes.OK);
+    okButton.setDisable(true);
+    choiceBox.getSelectionModel().selectedItemProperty().addListener(
+        (observable, oldValue, newValue) -> okButton.setDisable(newValue == null));
+    final Label label = new Label(config.language().translate(labelKey, contentArgs));
+    final HBox hBox = new HBox(5, label, choiceBox);
+    hBox.setAlignment(Pos.CENTER);
+    alert.getDialogPane().setContent(hBox);
+    final Optional<ButtonType> buttonType = alert.showAndWait();
+    if (buttonType.isPresent() && !buttonType.get().getButtonData().isCancelButton())
+      return Optional.ofNullable(choiceBox.getValue());
+    return Optional.empty();
+  }
+
   private static Optional<ButtonType> alert(
       final @NotNull Config config,
       @NotNull AlertType type,
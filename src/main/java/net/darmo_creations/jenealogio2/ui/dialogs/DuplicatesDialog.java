@@ -0,0 +1,172 @@
+package net.darmo_creations.jenealogio2.ui.dialogs;
+
+import javafx.geometry.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.*;
+import net.darmo_creations.jenealogio2.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.config.theme.*;
+import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.ui.components.*;
+import net.darmo_creations.jenealogio2.ui.events.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Dialog that lists pairs of persons of a family tree that may be duplicates, by decreasing likelihood.
+ * <p>
+ * The search runs in the background. Pairs may be dismissed, they are then hidden until the dialog is shown
+ * for another tree.
+ */
+public class DuplicatesDialog extends DialogBase<ButtonType> implements PersonClickObservable {
+  private final Label statusLabel = new Label();
+  private final ListView<CandidateItem> candidatesList = new ListView<>();
+
+  private final List<PersonClickListener> personClickListeners = new LinkedList<>();
+  private FamilyTree familyTree;
+  private DuplicateFinder finder;
+  private TaskScheduler.Job<List<DuplicateFinder.Candidate>> searchJob;
+  /**
+   * Pairs the user dismissed, as sets of two persons.
+   */
+  private final Set<Set<Person>> dismissedPairs = new HashSet<>();
+
+  /**
+   * Create a dialog that lists possible duplicates in a family tree.
+   *
+   * @param config The app’s config.
+   */
+  public DuplicatesDialog(final @NotNull Config config) {
+    super(
+        config,
+        "duplicates",
+        true,
+        false,
+        ButtonTypes.CLOSE
+    );
+
+    this.candidatesList.setSelectionModel(new NoSelectionModel<>());
+    VBox.setVgrow(this.candidatesList, Priority.ALWAYS);
+    final VBox content = new VBox(
+        5,
+        this.statusLabel,
+        this.candidatesList
+    );
+    content.setPrefWidth(700);
+    content.setPrefHeight(500);
+    this.getDialogPane().setContent(content);
+
+    final Stage stage = this.stage();
+    stage.setMinWidth(400);
+    stage.setMinHeight(300);
+    // The search is only useful while the dialog is showing
+    this.setOnHidden(event -> {
+      if (this.searchJob != null)
+        this.searchJob.cancel();
+    });
+  }
+
+  /**
+   * Search the given tree for duplicates in the background, then refresh the list.
+   * Only the persons that changed since the last search of the same tree are compared again.
+   *
+   * @param familyTree Tree to search.
+   */
+  public void refresh(final @NotNull FamilyTree familyTree) {
+    final Language language = this.config.language();
+    if (familyTree != this.familyTree) {
+      this.familyTree = Objects.requireNonNull(familyTree);
+      this.finder = new DuplicateFinder(language.locale());
+      this.dismissedPairs.clear();
+      this.candidatesList.getItems().clear();
+    }
+    if (this.searchJob != null)
+      this.searchJob.cancel();
+    this.statusLabel.setText(language.translate("dialog.duplicates.searching"));
+    final DuplicateFinder finder = this.finder;
+    final FamilyTreeSnapshot snapshot = familyTree.snapshot();
+    this.searchJob = App.taskScheduler().submit(
+        language.translate("task.find_duplicates"),
+        TaskScheduler.Priority.NORMAL,
+        context -> finder.find(snapshot, DuplicateFinder.DEFAULT_THRESHOLD, context),
+        candidates -> {
+          this.searchJob = null;
+          if (finder == this.finder)
+            this.setCandidates(candidates);
+        },
+        e -> {
+          if (e instanceof CancellationException)
+            return;
+          this.searchJob = null;
+          App.LOGGER.exception(e);
+          this.statusLabel.setText(language.translate("dialog.duplicates.error"));
+        }
+    );
+  }
+
+  private void setCandidates(final @NotNull List<DuplicateFinder.Candidate> candidates) {
+    this.candidatesList.getItems().clear();
+    candidates.stream()
+        .filter(candidate -> !this.dismissedPairs.contains(Set.of(candidate.person1(), candidate.person2())))
+        .forEach(candidate -> this.candidatesList.getItems().add(new CandidateItem(candidate)));
+    this.updateStatus();
+  }
+
+  private void updateStatus() {
+    final int nb = this.candidatesList.getItems().size();
+    this.statusLabel.setText(this.config.language().translate(
+        "dialog.duplicates.count",
+        nb,
+        new FormatArg("count", nb)
+    ));
+  }
+
+  private void dismiss(@NotNull CandidateItem item) {
+    this.dismissedPairs.add(Set.of(item.candidate.person1(), item.candidate.person2()));
+    this.candidatesList.getItems().remove(item);
+    this.updateStatus();
+  }
+
+  @Override
+  public List<PersonClickListener> personClickListeners() {
+    return this.personClickListeners;
+  }
+
+  @Override
+  public List<NewParentClickListener> newParentClickListeners() {
+    throw new UnsupportedOperationException();
+  }
+
+  private void firePersonClickEvent(final @NotNull Person person) {
+    this.firePersonClickEvent(new PersonClickedEvent(person, PersonClickedEvent.Action.SET_AS_TARGET));
+  }
+
+  private class CandidateItem extends HBox {
+    private final DuplicateFinder.Candidate candidate;
+
+    public CandidateItem(final @NotNull DuplicateFinder.Candidate candidate) {
+      super(5);
+      this.candidate = candidate;
+      this.setAlignment(Pos.CENTER_LEFT);
+      final Config config = DuplicatesDialog.this.config;
+      final Theme theme = config.theme();
+      final Label scoreLabel = new Label(config.language().translate(
+          "dialog.duplicates.score",
+          new FormatArg("score", Math.round(candidate.score() * 100))
+      ));
+      scoreLabel.setPrefWidth(50);
+      final Button button1 = new Button(candidate.person1().toString(), theme.getIcon(Icon.GO_TO, Icon.Size.SMALL));
+      button1.setOnAction(event -> DuplicatesDialog.this.firePersonClickEvent(candidate.person1()));
+      final Button button2 = new Button(candidate.person2().toString(), theme.getIcon(Icon.GO_TO, Icon.Size.SMALL));
+      button2.setOnAction(event -> DuplicatesDialog.this.firePersonClickEvent(candidate.person2()));
+      final Button dismissButton = new Button(null, theme.getIcon(Icon.DISMISS_DUPLICATE, Icon.Size.SMALL));
+      dismissButton.setTooltip(new Tooltip(config.language().translate("dialog.duplicates.dismiss.tooltip")));
+      dismissButton.setOnAction(event -> DuplicatesDialog.this.dismiss(this));
+      this.getChildren().addAll(scoreLabel, button1, button2, new Spacer(Orientation.HORIZONTAL), dismissButton);
+    }
+  }
+}
@@ -87,6 +87,7 @@ public class EditDocumentDialog extends DocumentViewDialogBase<ButtonType>
           for (final var annotation : this.annotationsLists.get(annotationType).getAnnotations())
             this.document.annotateObject(
                 annotationType, annotation.object(), annotation.note().orElse(null));
+        this.familyTree.fireChange(new FamilyTreeChange.DocumentChanged(this.document));
       }
       return buttonType;
     });
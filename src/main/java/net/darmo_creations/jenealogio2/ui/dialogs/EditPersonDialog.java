@@ -663,6 +663,18 @@ public class EditPersonDialog extends DialogBase<Person>
       }
     }
 
+    // Check that no parent is the person itself or one of its descendants
+    if (!this.creating) {
+      final Set<ParentalRelationType> allRelations = EnumSet.allOf(ParentalRelationType.class);
+      for (final ParentsListView listView : entries) {
+        if (listView.getPersons().stream()
+            .anyMatch(p -> p == this.person || this.familyTree.isAncestor(this.person, p, allRelations))) {
+          listView.pseudoClassStateChanged(PseudoClasses.INVALID, true);
+          invalid = true;
+        }
+      }
+    }
+
     this.getDialogPane().lookupButton(ButtonTypes.OK).setDisable(invalid);
   }
 
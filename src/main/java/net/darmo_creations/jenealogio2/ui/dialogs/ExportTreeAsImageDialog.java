@@ -2,7 +2,9 @@ package net.darmo_creations.jenealogio2.ui.dialogs;
 
 import javafx.embed.swing.*;
 import javafx.scene.control.*;
+import javafx.scene.image.*;
 import javafx.scene.layout.*;
+import net.darmo_creations.jenealogio2.*;
 import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.model.*;
 import net.darmo_creations.jenealogio2.ui.components.*;
@@ -10,7 +12,6 @@ import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import javax.imageio.*;
-import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 
@@ -108,23 +109,17 @@ public class ExportTreeAsImageDialog extends DialogBase<Void> {
     );
     if (file.isEmpty()) return false;
 
-    try {
-      ImageIO.write(
-          SwingFXUtils.fromFXImage(imageProvider.exportAsImage(), null),
-          "png",
-          file.get().toFile()
-      );
-      return true;
-    } catch (final IOException e) {
-      Alerts.error(
-          this.config,
-          "dialog.save_error.header",
-          null,
-          null,
-          new FormatArg("trace", e.getMessage())
-      );
-      return false;
-    }
+    // The image has to be rendered on the JavaFX thread, only its encoding is done in the background
+    final Image image = imageProvider.exportAsImage();
+    App.taskScheduler().submit(
+        this.config.language().translate("task.export_image", new FormatArg("file", file.get().getFileName())),
+        TaskScheduler.Priority.NORMAL,
+        context -> ImageIO.write(SwingFXUtils.fromFXImage(image, null), "png", file.get().toFile()),
+        written -> {
+        },
+        e -> Alerts.taskError(this.config, e, "save_error")
+    );
+    return true;
   }
 
   private enum ExportSelection {
@@ -109,6 +109,45 @@ public final class FileChoosers {
     );
   }
 
+  /**
+   * Open a dialog to choose a GeoNames-style gazetteer dump file.
+   *
+   * @param config The app’s config.
+   * @param stage  The parent stage object.
+   * @return The selected file.
+   */
+  public static Optional<Path> showGazetteerFileChooser(
+      final @NotNull Config config,
+      final @NotNull Window stage
+  ) {
+    return showFileChooser(
+        config,
+        stage,
+        "gazetteer_file_chooser",
+        false,
+        "gazetteer_file",
+        null,
+        ".txt",
+        ".tsv"
+    );
+  }
+
+  /**
+   * Open a dialog to choose the directory of a map tile pack.
+   *
+   * @param config The app’s config.
+   * @param stage  The parent stage object.
+   * @return The selected directory.
+   */
+  public static Optional<Path> showMapTilePackChooser(
+      final @NotNull Config config,
+      final @NotNull Window stage
+  ) {
+    final DirectoryChooser directoryChooser = new DirectoryChooser();
+    directoryChooser.setTitle(config.language().translate("dialog.map_tile_pack_chooser.title") + " – " + App.NAME);
+    return Optional.ofNullable(directoryChooser.showDialog(stage)).map(File::toPath);
+  }
+
   /**
    * Open a dialog to save a file.
    *
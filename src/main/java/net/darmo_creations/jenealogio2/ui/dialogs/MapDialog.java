@@ -19,16 +19,29 @@ import java.util.stream.*;
 
 /**
  * This dialog shows markers relating to a family tree’s persons.
+ * <p>
+ * The list shows the places within the visible area of the map. When an address has been searched,
+ * it shows the places within a chosen distance of it instead, or the places closest to it if there are none.
+ * Only the events of the selected type are counted, e.g. the list shows where the persons born
+ * in the visible area were born when the birth type is selected.
  */
 public class MapDialog extends DialogBase<ButtonType> {
+  /**
+   * The number of places to list when there are none within the chosen distance of the searched address.
+   */
+  private static final int NEAREST_PLACES = 5;
+
   private final MapView mapView;
   private final ComboBox<ComboBoxItem<LifeEventType>> eventTypeCombo = new ComboBox<>();
   private final ErasableTextField searchField;
   private final Button searchButton = new Button();
+  private final Spinner<Integer> radiusSpinner = new Spinner<>(1, 1000, 20);
   private final ListView<PlaceView> placesList = new ListView<>();
+  private final Label nearestPlacesLabel = new Label();
 
   private boolean internalUpdate;
   private final IntegerProperty resultMarkerId = new SimpleIntegerProperty(0);
+  private LatLon searchResult;
 
   private FamilyTree familyTree;
 
@@ -64,24 +77,44 @@ public class MapDialog extends DialogBase<ButtonType> {
     this.searchButton.setGraphic(theme.getIcon(Icon.SEARCH, Icon.Size.SMALL));
     this.searchButton.setTooltip(new Tooltip(language.translate("dialog.map.search.button")));
     this.searchButton.setOnAction(e -> this.onSearchAddress());
+    this.radiusSpinner.setEditable(true);
+    this.radiusSpinner.setPrefWidth(80);
+    this.radiusSpinner.setDisable(true);
+    this.radiusSpinner.valueProperty().addListener((observable, oldValue, newValue) -> this.updatePlacesList());
 
     this.placesList.setOnMouseClicked(e -> this.onPlaceClick());
+    VBox.setVgrow(this.placesList, Priority.ALWAYS);
+    this.nearestPlacesLabel.setText(language.translate("dialog.map.nearest_places"));
+    this.nearestPlacesLabel.setVisible(false);
+    this.nearestPlacesLabel.managedProperty().bind(this.nearestPlacesLabel.visibleProperty());
 
     this.mapView = new MapView(config);
+    this.mapView.addViewportChangeListener(() -> {
+      if (this.searchResult == null)
+        this.updatePlacesList();
+    });
     final HBox filterBox = new HBox(
         5,
         new Label(language.translate("dialog.map.event_type")),
         this.eventTypeCombo
     );
     filterBox.setAlignment(Pos.CENTER_LEFT);
+    final HBox searchBox = new HBox(
+        5,
+        this.searchField,
+        this.searchButton,
+        new Label(language.translate("dialog.map.radius")),
+        this.radiusSpinner
+    );
+    searchBox.setAlignment(Pos.CENTER_LEFT);
     final SplitPane content = new SplitPane(
         new VBox(
             5,
             filterBox,
-            new HBox(5, this.searchField, this.searchButton),
+            searchBox,
             this.mapView
         ),
-        this.placesList
+        new VBox(5, this.nearestPlacesLabel, this.placesList)
     );
     content.setPadding(new Insets(5));
     content.setOrientation(Orientation.VERTICAL);
@@ -121,6 +154,9 @@ public class MapDialog extends DialogBase<ButtonType> {
               this.mapView.setZoom(15);
               final int id = this.mapView.addMarker(ll, MapMarkerColor.BLUE, null);
               this.resultMarkerId.set(id);
+              this.searchResult = ll;
+              this.radiusSpinner.setDisable(false);
+              this.updatePlacesList();
             });
           }));
     });
@@ -132,6 +168,11 @@ public class MapDialog extends DialogBase<ButtonType> {
       this.mapView.removeMarker(id);
       this.resultMarkerId.set(-1);
     }
+    if (this.searchResult != null) {
+      this.searchResult = null;
+      this.radiusSpinner.setDisable(true);
+      this.updatePlacesList();
+    }
   }
 
   private void updateButtons() {
@@ -150,65 +191,91 @@ public class MapDialog extends DialogBase<ButtonType> {
   }
 
   /**
-   * Refresh the map markers.
+   * Refresh the markers and the places list.
    */
   private void updateMap() {
+    if (this.familyTree == null)
+      return;
     this.mapView.removeMarkers();
-    this.placesList.getItems().clear();
+    if (this.searchResult != null)
+      this.resultMarkerId.set(this.mapView.addMarker(this.searchResult, MapMarkerColor.BLUE, null));
+    this.groupEvents(this.familyTree.lifeEventsIn(LatLonBox.WORLD)).forEach(events -> {
+      final int nb = events.size();
+      final MapMarkerColor color;
+      if (nb <= 5)
+        color = MapMarkerColor.GREEN;
+      else if (nb <= 10)
+        color = MapMarkerColor.YELLOW_GREEN;
+      else if (nb <= 15)
+        color = MapMarkerColor.YELLOW;
+      else if (nb <= 20)
+        color = MapMarkerColor.ORANGE;
+      else
+        color = MapMarkerColor.RED;
+      final Place place = events.get(0).place().orElseThrow();
+      this.mapView.addMarker(place.latLon().orElseThrow(), color, () -> {
+        final Map<LifeEventType, Integer> typeCounts = events.stream()
+            .collect(Collectors.groupingBy(
+                LifeEvent::type,
+                Collectors.reducing(0, i -> 1, Integer::sum)
+            ));
+        return new EventTypesTooltip(place.address(), typeCounts, this.config);
+      });
+    });
+    this.updatePlacesList();
+  }
+
+  /**
+   * Refresh the places list. It shows the places around the searched address if any,
+   * the places within the visible area otherwise.
+   */
+  private void updatePlacesList() {
+    if (this.familyTree == null)
+      return;
+    List<List<LifeEvent>> groups;
+    boolean nearest = false;
+    if (this.searchResult != null) {
+      groups = this.groupEvents(this.familyTree.lifeEventsWithin(this.searchResult, this.radiusSpinner.getValue()));
+      if (groups.isEmpty()) {
+        final Set<LifeEvent> lifeEvents = new HashSet<>();
+        this.familyTree.nearestPlaces(this.searchResult, NEAREST_PLACES)
+            .forEach(place -> lifeEvents.addAll(this.familyTree.lifeEventsAt(place)));
+        groups = this.groupEvents(lifeEvents);
+        nearest = !groups.isEmpty();
+      }
+    } else
+      groups = this.groupEvents(this.familyTree.lifeEventsIn(this.mapView.getVisibleArea()));
+    this.nearestPlacesLabel.setVisible(nearest);
+    this.placesList.getItems().setAll(groups.stream()
+        .map(events -> new PlaceView(events.get(0).place().orElseThrow(), events.size()))
+        .toList());
+  }
 
+  /**
+   * Group the given events that match the selected type by coordinates.
+   *
+   * @param lifeEvents The events to group. All must have a place with coordinates.
+   * @return The groups of events, sorted by size then by address.
+   */
+  private List<List<LifeEvent>> groupEvents(final @NotNull Collection<LifeEvent> lifeEvents) {
     final LifeEventType type = this.eventTypeCombo.getSelectionModel().getSelectedItem().data();
     final Map<LatLon, List<LifeEvent>> groupedEvents = new HashMap<>();
 
-    for (final LifeEvent lifeEvent : this.familyTree.lifeEvents()) {
-      if (type != null && !lifeEvent.type().equals(type))
-        continue;
-      final Optional<Place> place = lifeEvent.place();
-      if (place.isPresent()) {
-        final Optional<LatLon> latLon = place.get().latLon();
-        if (latLon.isPresent()) {
-          final LatLon ll = latLon.get();
-          if (!groupedEvents.containsKey(ll))
-            groupedEvents.put(ll, new LinkedList<>());
-          groupedEvents.get(ll).add(lifeEvent);
-        }
-      }
-    }
+    for (final LifeEvent lifeEvent : lifeEvents)
+      if (type == null || lifeEvent.type().equals(type))
+        groupedEvents.computeIfAbsent(lifeEvent.place().orElseThrow().latLon().orElseThrow(), ll -> new LinkedList<>())
+            .add(lifeEvent);
 
-    groupedEvents.entrySet().stream()
-        .sorted((e1, e2) -> { // Sort by list size then place address
-          final List<LifeEvent> events1 = e1.getValue();
-          final List<LifeEvent> events2 = e2.getValue();
+    return groupedEvents.values().stream()
+        .sorted((events1, events2) -> { // Sort by list size then place address
           final int compare = -Integer.compare(events1.size(), events2.size());
           if (compare != 0)
             return compare;
-          // place() will always return a non-empty value because we filtered events above
+          // place() will always return a non-empty value because all given events have a place
           return events1.get(0).place().orElseThrow().address()
               .compareToIgnoreCase(events2.get(0).place().orElseThrow().address());
         })
-        .forEach(e -> {
-          final LatLon latLon = e.getKey();
-          final List<LifeEvent> events = e.getValue();
-          final int nb = events.size();
-          final MapMarkerColor color;
-          if (nb <= 5)
-            color = MapMarkerColor.GREEN;
-          else if (nb <= 10)
-            color = MapMarkerColor.YELLOW_GREEN;
-          else if (nb <= 15)
-            color = MapMarkerColor.YELLOW;
-          else if (nb <= 20)
-            color = MapMarkerColor.ORANGE;
-          else
-            color = MapMarkerColor.RED;
-          final Place place = events.get(0).place().orElseThrow();
-          final Map<LifeEventType, Integer> typeCounts = events.stream()
-              .collect(Collectors.groupingBy(
-                  LifeEvent::type,
-                  Collectors.reducing(0, i -> 1, Integer::sum)
-              ));
-          this.mapView.addMarker(latLon, color, new EventTypesTooltip(place.address(), typeCounts, this.config));
-          this.placesList.getItems().add(new PlaceView(place, nb));
-        });
+        .toList();
   }
 
   /**
@@ -0,0 +1,133 @@
+package net.darmo_creations.jenealogio2.ui.dialogs;
+
+import javafx.geometry.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.ui.components.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Dialog that lets users review the persons of a tree being merged that may already be in the current tree.
+ * For each one, users choose the person of the current tree to merge it with, or to add it as a new person.
+ * <p>
+ * The result is the map of persons of the merged tree to the persons of the current tree they should be merged with.
+ */
+public class MergeTreeDialog extends DialogBase<Map<Person, Person>> {
+  private final Label descriptionLabel = new Label();
+  private final ListView<TreeMerger.Match> matchesList = new ListView<>();
+
+  /**
+   * The person chosen for each match, null to add the merged person as a new person.
+   */
+  private final Map<TreeMerger.Match, Person> choices = new HashMap<>();
+
+  /**
+   * Create a dialog to review the matches of a tree merge.
+   *
+   * @param config The app’s config.
+   */
+  public MergeTreeDialog(final @NotNull Config config) {
+    super(
+        config,
+        "merge_tree",
+        true,
+        ButtonTypes.OK,
+        ButtonTypes.CANCEL
+    );
+
+    this.descriptionLabel.setWrapText(true);
+    this.matchesList.setSelectionModel(new NoSelectionModel<>());
+    // Cells are recycled, only the visible matches have a combobox
+    this.matchesList.setCellFactory(listView -> new MatchCell());
+    VBox.setVgrow(this.matchesList, Priority.ALWAYS);
+    final VBox content = new VBox(
+        5,
+        this.descriptionLabel,
+        this.matchesList
+    );
+    content.setPrefWidth(700);
+    content.setPrefHeight(500);
+    this.getDialogPane().setContent(content);
+
+    final Stage stage = this.stage();
+    stage.setMinWidth(400);
+    stage.setMinHeight(300);
+
+    this.setResultConverter(buttonType -> {
+      if (buttonType.getButtonData().isCancelButton())
+        return null;
+      final Map<Person, Person> matchedPersons = new HashMap<>();
+      this.choices.forEach((match, person) -> {
+        if (person != null)
+          matchedPersons.put(match.person(), person);
+      });
+      return matchedPersons;
+    });
+  }
+
+  /**
+   * Set the matches to review. The best candidate of each match is selected by default.
+   *
+   * @param fileName The name of the merged file.
+   * @param matches  The matches of the merged tree’s persons.
+   */
+  public void setMatches(@NotNull String fileName, final @NotNull List<TreeMerger.Match> matches) {
+    this.choices.clear();
+    for (final TreeMerger.Match match : matches)
+      this.choices.put(match, match.candidates().get(0).person());
+    this.matchesList.getItems().setAll(matches);
+    final int nb = matches.size();
+    this.descriptionLabel.setText(this.config.language().translate(
+        "dialog.merge_tree.description",
+        nb,
+        new FormatArg("file", fileName),
+        new FormatArg("count", nb)
+    ));
+  }
+
+  private class MatchCell extends ListCell<TreeMerger.Match> {
+    private final Label personLabel = new Label();
+    private final ComboBox<ComboBoxItem<Person>> candidatesCombo = new ComboBox<>();
+    private final HBox hBox = new HBox(5, this.personLabel, new Spacer(Orientation.HORIZONTAL), this.candidatesCombo);
+
+    public MatchCell() {
+      this.hBox.setAlignment(Pos.CENTER_LEFT);
+      this.candidatesCombo.setPrefWidth(300);
+      this.candidatesCombo.setOnAction(event -> {
+        final TreeMerger.Match match = this.getItem();
+        final ComboBoxItem<Person> selected = this.candidatesCombo.getSelectionModel().getSelectedItem();
+        if (match != null && selected != null)
+          MergeTreeDialog.this.choices.put(match, selected.data());
+      });
+    }
+
+    @Override
+    protected void updateItem(TreeMerger.Match match, boolean empty) {
+      super.updateItem(match, empty);
+      this.setText(null);
+      if (empty || match == null) {
+        this.setGraphic(null);
+        return;
+      }
+      final Language language = MergeTreeDialog.this.config.language();
+      this.personLabel.setText(match.person().toString());
+      final List<ComboBoxItem<Person>> items = new ArrayList<>();
+      items.add(new ComboBoxItem<>(null, language.translate("dialog.merge_tree.new_person")));
+      for (final TreeMerger.Candidate candidate : match.candidates())
+        items.add(new ComboBoxItem<>(candidate.person(), language.translate(
+            "dialog.merge_tree.candidate",
+            new FormatArg("person", candidate.person()),
+            new FormatArg("score", Math.round(candidate.score() * 100))
+        )));
+      this.candidatesCombo.getItems().setAll(items);
+      this.candidatesCombo.getSelectionModel().select(new ComboBoxItem<>(MergeTreeDialog.this.choices.get(match)));
+      this.setGraphic(this.hBox);
+    }
+  }
+}
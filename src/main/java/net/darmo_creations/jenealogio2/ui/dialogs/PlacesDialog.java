@@ -0,0 +1,197 @@
+package net.darmo_creations.jenealogio2.ui.dialogs;
+
+import javafx.collections.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.config.theme.*;
+import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.ui.*;
+import net.darmo_creations.jenealogio2.ui.components.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Dialog to edit the places of a tree for all the life events that use them.
+ * <p>
+ * Editing the address or coordinates of a selected place updates all its events.
+ * Applying an address and coordinates to several selected places merges them into a single place.
+ */
+public class PlacesDialog extends DialogBase<ButtonType> {
+  private final ErasableTextField filterTextInput;
+  private final ListView<Place> placesList = new ListView<>();
+  private final TextField addressField = new TextField();
+  private final TextField latField = new TextField();
+  private final TextField lonField = new TextField();
+  private final Button applyButton = new Button();
+
+  private FamilyTree familyTree;
+
+  /**
+   * Create a dialog to edit places.
+   *
+   * @param config The app’s config.
+   */
+  public PlacesDialog(final @NotNull Config config) {
+    super(
+        config,
+        "edit_places",
+        true,
+        ButtonTypes.CLOSE
+    );
+    final Language language = config.language();
+
+    this.filterTextInput = new ErasableTextField(config);
+    this.filterTextInput.textField().setPromptText(language.translate("dialog.edit_places.filter"));
+    this.filterTextInput.textField().textProperty().addListener(
+        (observable, oldValue, newValue) -> this.updateList());
+
+    this.placesList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+    this.placesList.setCellFactory(listView -> new PlaceCell());
+    this.placesList.getSelectionModel().getSelectedItems().addListener(
+        (ListChangeListener<? super Place>) c -> this.onSelectionChange());
+    VBox.setVgrow(this.placesList, Priority.ALWAYS);
+
+    this.addressField.setPromptText(language.translate("dialog.edit_places.address"));
+    HBox.setHgrow(this.addressField, Priority.ALWAYS);
+    this.addressField.textProperty().addListener((observable, oldValue, newValue) -> this.updateApplyButton());
+    this.latField.setPromptText(language.translate("dialog.edit_places.latitude"));
+    this.latField.setPrefWidth(100);
+    this.latField.textProperty().addListener((observable, oldValue, newValue) -> this.updateApplyButton());
+    this.lonField.setPromptText(language.translate("dialog.edit_places.longitude"));
+    this.lonField.setPrefWidth(100);
+    this.lonField.textProperty().addListener((observable, oldValue, newValue) -> this.updateApplyButton());
+    this.applyButton.setGraphic(config.theme().getIcon(Icon.EDIT_PLACES, Icon.Size.SMALL));
+    this.applyButton.setOnAction(event -> this.onApply());
+
+    final VBox content = new VBox(
+        5,
+        this.filterTextInput,
+        this.placesList,
+        new HBox(5, this.addressField, this.latField, this.lonField, this.applyButton)
+    );
+    content.setPrefWidth(600);
+    content.setPrefHeight(500);
+    this.getDialogPane().setContent(content);
+
+    final Stage stage = this.stage();
+    stage.setMinWidth(400);
+    stage.setMinHeight(300);
+  }
+
+  /**
+   * Show the places of the given tree.
+   *
+   * @param familyTree The tree whose places to edit.
+   */
+  public void refresh(final @NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+    this.filterTextInput.textField().setText(null);
+    this.updateList();
+  }
+
+  private void updateList() {
+    if (this.familyTree == null)
+      return;
+    final String filter = this.filterTextInput.textField().getText();
+    this.placesList.getItems().setAll(this.familyTree.searchPlaces(
+        filter != null ? filter : "",
+        this.config.language().locale(),
+        Integer.MAX_VALUE
+    ));
+  }
+
+  private void onSelectionChange() {
+    final List<Place> selection = this.placesList.getSelectionModel().getSelectedItems();
+    final Language language = this.config.language();
+    if (selection.isEmpty()) {
+      this.addressField.setText(null);
+      this.latField.setText(null);
+      this.lonField.setText(null);
+    } else {
+      final Place place = selection.get(0);
+      this.addressField.setText(place.address());
+      this.latField.setText(place.latLon().map(latLon -> String.valueOf(latLon.lat())).orElse(null));
+      this.lonField.setText(place.latLon().map(latLon -> String.valueOf(latLon.lon())).orElse(null));
+    }
+    this.applyButton.setText(language.translate(
+        selection.size() > 1 ? "dialog.edit_places.merge" : "dialog.edit_places.apply"));
+    this.updateApplyButton();
+  }
+
+  private void updateApplyButton() {
+    final boolean validCoordinates = this.checkCoordinates();
+    this.applyButton.setDisable(this.placesList.getSelectionModel().getSelectedItems().isEmpty()
+        || StringUtils.stripNullable(this.addressField.getText()).isEmpty()
+        || !validCoordinates);
+  }
+
+  /**
+   * Check whether the coordinates fields are either both empty or both valid coordinates,
+   * and flag the invalid ones.
+   *
+   * @return True if the coordinates are valid.
+   */
+  private boolean checkCoordinates() {
+    final Optional<String> lat = StringUtils.stripNullable(this.latField.getText());
+    final Optional<String> lon = StringUtils.stripNullable(this.lonField.getText());
+    final boolean validLat = lat.isEmpty() ? lon.isEmpty() : isCoordinate(lat.get(), 90);
+    final boolean validLon = lon.isEmpty() ? lat.isEmpty() : isCoordinate(lon.get(), 180);
+    this.latField.pseudoClassStateChanged(PseudoClasses.INVALID, !validLat);
+    this.lonField.pseudoClassStateChanged(PseudoClasses.INVALID, !validLon);
+    return validLat && validLon;
+  }
+
+  /**
+   * Indicate whether the given text is a number between -bound and bound.
+   */
+  private static boolean isCoordinate(@NotNull String text, double bound) {
+    try {
+      return Math.abs(Double.parseDouble(text)) <= bound;
+    } catch (final NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Replace all selected places by the place described by the address and coordinates fields.
+   */
+  private void onApply() {
+    final Optional<String> address = StringUtils.stripNullable(this.addressField.getText());
+    if (address.isEmpty() || !this.checkCoordinates())
+      return;
+    // Both fields are either empty or valid
+    final Optional<String> lat = StringUtils.stripNullable(this.latField.getText());
+    final LatLon latLon = lat.isEmpty() ? null : new LatLon(
+        Double.parseDouble(lat.get()),
+        Double.parseDouble(this.lonField.getText().strip())
+    );
+    final Place replacement = new Place(address.get(), latLon);
+    for (final Place place : new ArrayList<>(this.placesList.getSelectionModel().getSelectedItems()))
+      if (!place.equals(replacement))
+        this.familyTree.replacePlace(place, replacement);
+    this.updateList();
+    this.placesList.getSelectionModel().select(replacement);
+  }
+
+  private class PlaceCell extends ListCell<Place> {
+    @Override
+    protected void updateItem(Place place, boolean empty) {
+      super.updateItem(place, empty);
+      if (empty || place == null) {
+        this.setText(null);
+        return;
+      }
+      final int nb = PlacesDialog.this.familyTree.lifeEventsAt(place).size();
+      this.setText(PlacesDialog.this.config.language().translate(
+          "dialog.edit_places.place",
+          nb,
+          new FormatArg("address", place.address()),
+          new FormatArg("count", nb)
+      ));
+    }
+  }
+}
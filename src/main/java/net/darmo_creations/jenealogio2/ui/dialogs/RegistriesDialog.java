@@ -24,8 +24,6 @@ import org.jetbrains.annotations.*;
 
 import java.io.*;
 import java.util.*;
-import java.util.function.*;
-import java.util.stream.*;
 
 /**
  * Dialog that allows editing registries.
@@ -121,21 +119,17 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
     final var file = FileChoosers.showRegistriesFileChooser(this.config, this.getOwner(), null);
     if (file.isEmpty())
       return;
-    final RegistriesValues registries;
-    try {
-      registries = this.treeXMLReader.loadRegistriesFile(file.get());
-    } catch (final IOException e) {
-      App.LOGGER.exception(e);
-      Alerts.error(
-          this.config,
-          "alert.load_error.header",
-          "alert.load_error.content",
-          "alert.load_error.title",
-          new FormatArg("trace", e.getMessage())
-      );
-      return;
-    }
-    this.load(registries.lifeEventTypes(), registries.genders());
+    App.taskScheduler().submit(
+        this.config.language().translate("task.import_registries", new FormatArg("file", file.get().getFileName())),
+        TaskScheduler.Priority.HIGH,
+        context -> this.treeXMLReader.loadRegistriesFile(file.get()),
+        registries -> {
+          // The dialog may have been closed in the meantime
+          if (this.isShowing())
+            this.load(registries.lifeEventTypes(), registries.genders());
+        },
+        e -> Alerts.taskError(this.config, e, "load_error")
+    );
   }
 
   private void load(@NotNull List<LifeEventType> eventTypes, @NotNull List<Gender> genders) {
@@ -230,6 +224,8 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
   }
 
   private void updateButtons() {
+    this.eventTypesView.onSelectionChange();
+    this.gendersView.onSelectionChange();
     final boolean invalid = !this.eventTypesView.isValid() || !this.gendersView.isValid();
     this.exportButton.setDisable(invalid || this.changes);
     this.applyButton.setDisable(invalid || !this.changes);
@@ -245,6 +241,7 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
   private abstract class RegistryView<TI extends TableItem<RE, A>, RE extends RegistryEntry, A>
       extends VBox {
     private final Button removeButton;
+    private final Button replaceButton;
     protected final TableView<TI> entriesTable = new TableView<>();
     protected final HBox buttonsBox;
 
@@ -267,11 +264,17 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
           theme.getIcon(Icon.DELETE_ENTRY, Icon.Size.SMALL));
       this.removeButton.setOnAction(event -> this.onRemoveSelectedItems());
       this.removeButton.setDisable(true);
+      this.replaceButton = new Button(language.translate("dialog.edit_registries.replace_entry"),
+          theme.getIcon(Icon.REPLACE_ENTRY, Icon.Size.SMALL));
+      this.replaceButton.setTooltip(new Tooltip(language.translate("dialog.edit_registries.replace_entry.tooltip")));
+      this.replaceButton.setOnAction(event -> this.onReplaceSelectedEntry());
+      this.replaceButton.setDisable(true);
       this.buttonsBox = new HBox(
           5,
           new Spacer(Orientation.HORIZONTAL),
           addButton,
-          this.removeButton
+          this.removeButton,
+          this.replaceButton
       );
 
       // Table
@@ -400,6 +403,55 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
       RegistriesDialog.this.updateButtons();
     }
 
+    /**
+     * Replace the selected entry with another one of the registry in the whole tree, after asking the user which one.
+     * Once replaced, the entry is not used anymore and can be deleted.
+     */
+    private void onReplaceSelectedEntry() {
+      final TI selectedItem = this.entriesTable.getSelectionModel().getSelectedItem();
+      if (selectedItem == null || selectedItem.entry() == null)
+        return;
+      final RE entry = selectedItem.entry();
+      final Language language = RegistriesDialog.this.config.language();
+      final String entryName = selectedItem.getName();
+      final List<RE> choices = this.registry.entries().stream()
+          .filter(e -> e != entry)
+          .sorted(Comparator.comparing(e -> this.entryName(e, language)))
+          .toList();
+      final Optional<RE> replacement = Alerts.choice(
+          RegistriesDialog.this.config,
+          "alert.replace_registry_entry.header",
+          "alert.replace_registry_entry.label",
+          "alert.replace_registry_entry.title",
+          choices,
+          e -> this.entryName(e, language),
+          new FormatArg("name", entryName)
+      );
+      if (replacement.isEmpty())
+        return;
+      if (this.replaceEntry(entry, replacement.get())) {
+        RegistriesDialog.this.familyTree.history().endStep();
+        RegistriesDialog.this.refresh(RegistriesDialog.this.familyTree);
+      }
+    }
+
+    /**
+     * Replace the given entry with another one in the whole tree.
+     *
+     * @param entry       The entry to replace.
+     * @param replacement The entry to replace it with.
+     * @return True if the entry was replaced, false if the replacement was rejected.
+     */
+    protected abstract boolean replaceEntry(@NotNull RE entry, @NotNull RE replacement);
+
+    /**
+     * The name of an entry as shown to the user.
+     *
+     * @param entry    The entry.
+     * @param language The language to translate the names of builtin entries with.
+     */
+    protected abstract String entryName(@NotNull RE entry, @NotNull Language language);
+
     /**
      * Called when the selection of {@link #entriesTable} changes.
      */
@@ -409,6 +461,9 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
       final boolean disable = selectedItems.isEmpty() || selectedItems.stream()
           .anyMatch(i -> i.entry() != null && i.entry().isBuiltin() || i.usage() != 0);
       this.removeButton.setDisable(disable);
+      // Replacements are applied to the tree at once, pending changes must be applied first
+      this.replaceButton.setDisable(RegistriesDialog.this.changes || selectedItems.size() != 1
+          || selectedItems.get(0).entry() == null || selectedItems.get(0).usage() == 0);
     }
   }
 
@@ -515,18 +570,37 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
     public void refresh(final @NotNull FamilyTree familyTree) {
       super.refresh(familyTree);
       this.registry = familyTree.lifeEventTypeRegistry();
-      final Map<LifeEventType, List<LifeEvent>> eventTypesUsage = familyTree.lifeEvents().stream()
-          .collect(Collectors.groupingBy(LifeEvent::type));
-      for (final LifeEventType entry : this.registry.serializableEntries()) {
-        final int usage = eventTypesUsage.getOrDefault(entry, List.of()).size();
-        this.entriesTable.getItems().add(new LifeEventTypeTableItem(entry, usage, false));
-      }
+      for (final LifeEventType entry : this.registry.serializableEntries())
+        this.entriesTable.getItems().add(new LifeEventTypeTableItem(entry, entry.usage(), false));
     }
 
     @Override
     protected LifeEventTypeTableItem newEntry(LifeEventType entry, int usage) {
       return new LifeEventTypeTableItem(entry, usage, true);
     }
+
+    @Override
+    protected boolean replaceEntry(@NotNull LifeEventType entry, @NotNull LifeEventType replacement) {
+      try {
+        RegistriesDialog.this.familyTree.replaceLifeEventType(entry, replacement);
+      } catch (final IllegalArgumentException e) {
+        Alerts.warning(
+            RegistriesDialog.this.config,
+            "alert.invalid_replacement_life_event_type.header",
+            null,
+            null
+        );
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    protected String entryName(@NotNull LifeEventType entry, @NotNull Language language) {
+      return entry.isBuiltin()
+          ? language.translate("life_event_types." + entry.key().name())
+          : entry.userDefinedName();
+    }
   }
 
   /**
@@ -574,21 +648,8 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
     public void refresh(final @NotNull FamilyTree familyTree) {
       super.refresh(familyTree);
       this.registry = familyTree.genderRegistry();
-      final Map<Gender, Set<Person>> gendersUsage = new HashMap<>();
-      final BiConsumer<Person, Optional<Gender>> updateMap = (person, gender) ->
-          gender.ifPresent(g -> {
-            if (!gendersUsage.containsKey(g))
-              gendersUsage.put(g, new HashSet<>());
-            gendersUsage.get(g).add(person);
-          });
-      for (final Person person : familyTree.persons()) {
-        updateMap.accept(person, person.assignedGenderAtBirth());
-        updateMap.accept(person, person.gender());
-      }
-      for (final Gender entry : this.registry.serializableEntries()) {
-        final int usage = gendersUsage.getOrDefault(entry, Set.of()).size();
-        this.entriesTable.getItems().add(new GenderTableItem(entry, usage, false));
-      }
+      for (final Gender entry : this.registry.serializableEntries())
+        this.entriesTable.getItems().add(new GenderTableItem(entry, entry.usage(), false));
     }
 
     @Override
@@ -596,6 +657,19 @@ public class RegistriesDialog extends DialogBase<ButtonType> {
       return new GenderTableItem(entry, usage, true);
     }
 
+    @Override
+    protected boolean replaceEntry(@NotNull Gender entry, @NotNull Gender replacement) {
+      RegistriesDialog.this.familyTree.replaceGender(entry, replacement);
+      return true;
+    }
+
+    @Override
+    protected String entryName(@NotNull Gender entry, @NotNull Language language) {
+      return entry.isBuiltin()
+          ? language.translate("genders." + entry.key().name())
+          : entry.userDefinedName();
+    }
+
     @Override
     public void importEntry(@NotNull Gender entry) {
       if (entry.isBuiltin())
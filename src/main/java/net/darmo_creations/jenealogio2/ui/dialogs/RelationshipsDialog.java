@@ -0,0 +1,199 @@
+package net.darmo_creations.jenealogio2.ui.dialogs;
+
+import javafx.geometry.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.config.theme.*;
+import net.darmo_creations.jenealogio2.model.*;
+import net.darmo_creations.jenealogio2.ui.components.*;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Dialog that computes and shows how two persons of a family tree are related.
+ * <p>
+ * Each found relationship can be shown in the main view by highlighting its path.
+ */
+public class RelationshipsDialog extends DialogBase<ButtonType> {
+  private final Button person1Button = new Button();
+  private final Button person2Button = new Button();
+  private final CheckBox nonGeneticCheckBox = new CheckBox();
+  private final CheckBox unionsCheckBox = new CheckBox();
+  private final Label resultLabel = new Label();
+  private final ListView<RelationshipItem> relationshipsList = new ListView<>();
+
+  private final SelectPersonDialog selectPersonDialog;
+
+  private final List<Consumer<Relationship>> showRelationshipListeners = new LinkedList<>();
+
+  private FamilyTree familyTree;
+  private Person person1;
+  private Person person2;
+
+  /**
+   * Create a dialog to calculate relationships between persons.
+   *
+   * @param config The app’s config.
+   */
+  public RelationshipsDialog(final @NotNull Config config) {
+    super(
+        config,
+        "relationships",
+        true,
+        false,
+        ButtonTypes.CLOSE
+    );
+    final Language language = config.language();
+    final Theme theme = config.theme();
+
+    this.selectPersonDialog = new SelectPersonDialog(config);
+
+    this.person1Button.setGraphic(theme.getIcon(Icon.SELECT_PERSON, Icon.Size.SMALL));
+    this.person1Button.setOnAction(event -> this.onSelectPerson(true));
+    this.person2Button.setGraphic(theme.getIcon(Icon.SELECT_PERSON, Icon.Size.SMALL));
+    this.person2Button.setOnAction(event -> this.onSelectPerson(false));
+
+    this.nonGeneticCheckBox.setText(language.translate("dialog.relationships.non_genetic"));
+    this.nonGeneticCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> this.update());
+    this.unionsCheckBox.setText(language.translate("dialog.relationships.unions"));
+    this.unionsCheckBox.setSelected(true);
+    this.unionsCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> this.update());
+
+    final GridPane gridPane = new GridPane();
+    gridPane.setHgap(5);
+    gridPane.setVgap(5);
+    gridPane.addRow(0, new Label(language.translate("dialog.relationships.person1")), this.person1Button);
+    gridPane.addRow(1, new Label(language.translate("dialog.relationships.person2")), this.person2Button);
+
+    this.resultLabel.setWrapText(true);
+    this.relationshipsList.setSelectionModel(new NoSelectionModel<>());
+    VBox.setVgrow(this.relationshipsList, Priority.ALWAYS);
+
+    final VBox content = new VBox(
+        5,
+        gridPane,
+        new HBox(10, this.nonGeneticCheckBox, this.unionsCheckBox),
+        this.resultLabel,
+        this.relationshipsList
+    );
+    content.setPrefWidth(600);
+    content.setPrefHeight(400);
+    this.getDialogPane().setContent(content);
+
+    final Stage stage = this.stage();
+    stage.setMinWidth(400);
+    stage.setMinHeight(300);
+  }
+
+  /**
+   * Refresh displayed information from the given tree.
+   * Selected persons that are not in the tree anymore are deselected.
+   *
+   * @param familyTree Tree to get persons from.
+   */
+  public void refresh(final @NotNull FamilyTree familyTree) {
+    this.familyTree = Objects.requireNonNull(familyTree);
+    if (this.person1 != null && !familyTree.persons().contains(this.person1))
+      this.person1 = null;
+    if (this.person2 != null && !familyTree.persons().contains(this.person2))
+      this.person2 = null;
+    this.update();
+  }
+
+  /**
+   * Set the first person to compute relationships from.
+   *
+   * @param person A person of the current tree. May be null.
+   */
+  public void setPerson1(Person person) {
+    this.person1 = person;
+    this.update();
+  }
+
+  /**
+   * The list of listeners notified when the user asks for a relationship to be shown.
+   */
+  public List<Consumer<Relationship>> showRelationshipListeners() {
+    return this.showRelationshipListeners;
+  }
+
+  private void onSelectPerson(boolean first) {
+    final List<Person> exclusionList = new LinkedList<>();
+    final Person other = first ? this.person2 : this.person1;
+    if (other != null)
+      exclusionList.add(other);
+    this.selectPersonDialog.updatePersonList(this.familyTree, exclusionList);
+    this.selectPersonDialog.showAndWait().ifPresent(person -> {
+      if (first) this.person1 = person;
+      else this.person2 = person;
+      this.update();
+    });
+  }
+
+  /**
+   * Update the buttons and recompute the relationships between the selected persons.
+   */
+  private void update() {
+    final Language language = this.config.language();
+    final String noPerson = language.translate("dialog.relationships.no_person");
+    this.person1Button.setText(this.person1 != null ? this.person1.toString() : noPerson);
+    this.person2Button.setText(this.person2 != null ? this.person2.toString() : noPerson);
+    this.relationshipsList.getItems().clear();
+
+    if (this.familyTree == null || this.person1 == null || this.person2 == null) {
+      this.resultLabel.setText(null);
+      return;
+    }
+
+    final Set<ParentalRelationType> relationTypes = this.nonGeneticCheckBox.isSelected()
+        ? EnumSet.allOf(ParentalRelationType.class)
+        : EnumSet.copyOf(Arrays.asList(ParentalRelationType.GENETIC_RELATIONS));
+    final List<Relationship> relationships = this.familyTree.findRelationships(
+        this.person1, this.person2, relationTypes, this.unionsCheckBox.isSelected());
+    if (relationships.isEmpty()) {
+      this.resultLabel.setText(language.translate("dialog.relationships.not_related"));
+      return;
+    }
+
+    final Map<String, List<Relationship>> byName = relationships.stream()
+        .collect(Collectors.groupingBy(r -> r.name(language), TreeMap::new, Collectors.toList()));
+    this.resultLabel.setText(language.translate(
+        "dialog.relationships.result",
+        new FormatArg("person1", this.person1),
+        new FormatArg("person2", this.person2),
+        new FormatArg("relationships", language.makeList(new ArrayList<>(byName.keySet()), false))
+    ));
+    byName.forEach((name, rels) ->
+        rels.forEach(r -> this.relationshipsList.getItems().add(new RelationshipItem(name, r))));
+  }
+
+  /**
+   * An item that shows a relationship’s name and path, with a button to show it in the main view.
+   */
+  private class RelationshipItem extends HBox {
+    public RelationshipItem(@NotNull String name, final @NotNull Relationship relationship) {
+      super(5);
+      this.setAlignment(Pos.CENTER_LEFT);
+      final Button button = new Button(
+          null,
+          RelationshipsDialog.this.config.theme().getIcon(Icon.SHOW_RELATIONSHIP_PATH, Icon.Size.SMALL)
+      );
+      button.setTooltip(new Tooltip(
+          RelationshipsDialog.this.config.language().translate("dialog.relationships.show_path")));
+      button.setOnAction(event -> RelationshipsDialog.this.showRelationshipListeners
+          .forEach(listener -> listener.accept(relationship)));
+      final Label nameLabel = new Label(name);
+      final Label pathLabel = new Label(relationship.persons().stream()
+          .map(Person::toString)
+          .collect(Collectors.joining(" → ")));
+      pathLabel.setWrapText(true);
+      this.getChildren().addAll(button, new VBox(2, nameLabel, pathLabel));
+    }
+  }
+}
@@ -24,6 +24,7 @@ public class SelectLifeEventDialog extends DialogBase<LifeEvent> {
   private final ErasableTextField personFilterTextInput;
   private final ListView<SelectPersonDialog.PersonView> personListView = new ListView<>();
   private final ObservableList<SelectPersonDialog.PersonView> personList = FXCollections.observableArrayList();
+  private FamilyTree familyTree;
 
   private final ErasableTextField eventFilterTextInput;
   private final ListView<LifeEventView> eventListView = new ListView<>();
@@ -84,12 +85,15 @@ public class SelectLifeEventDialog extends DialogBase<LifeEvent> {
     final FilteredList<SelectPersonDialog.PersonView> filteredList = new FilteredList<>(this.personList, data -> true);
     this.personListView.setItems(filteredList);
     this.personFilterTextInput.textField().textProperty().addListener(
-        (observable, oldValue, newValue) ->
-            filteredList.setPredicate(pictureView -> {
-              if (newValue == null || newValue.isEmpty())
-                return true;
-              return pictureView.person().matchesName(newValue, language);
-            })
+        (observable, oldValue, newValue) -> {
+          if (newValue == null || newValue.isBlank() || this.familyTree == null) {
+            filteredList.setPredicate(data -> true);
+            return;
+          }
+          // Search the tree’s index once instead of matching each person against the query
+          final Set<Person> matches = this.familyTree.searchPersons(newValue, language.locale());
+          filteredList.setPredicate(pictureView -> matches.contains(pictureView.person()));
+        }
     );
 
     this.personListView.getSelectionModel().selectedItemProperty().addListener(
@@ -147,6 +151,7 @@ public class SelectLifeEventDialog extends DialogBase<LifeEvent> {
    * @param exclusionList List of life events to exclude from the list.
    */
   public void updatePersonList(final @NotNull FamilyTree tree, final @NotNull Collection<LifeEvent> exclusionList) {
+    this.familyTree = tree;
     this.exclusionList = exclusionList;
     this.personFilterTextInput.textField().setText(null);
     this.eventFilterTextInput.textField().setText(null);
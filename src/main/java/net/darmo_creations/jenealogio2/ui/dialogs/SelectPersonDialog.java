@@ -20,8 +20,10 @@ import java.util.*;
  */
 public class SelectPersonDialog extends DialogBase<Person> {
   private final ErasableTextField filterTextInput;
+  private final CheckBox similarNamesCheckBox = new CheckBox();
   private final ListView<PersonView> personListView = new ListView<>();
   private final ObservableList<PersonView> personList = FXCollections.observableArrayList();
+  private FamilyTree familyTree;
 
   /**
    * Create a new dialog to select a person.
@@ -44,13 +46,11 @@ public class SelectPersonDialog extends DialogBase<Person> {
     final FilteredList<PersonView> filteredList = new FilteredList<>(this.personList, data -> true);
     this.personListView.setItems(filteredList);
     this.filterTextInput.textField().textProperty().addListener(
-        (observable, oldValue, newValue) ->
-            filteredList.setPredicate(pictureView -> {
-              if (newValue == null || newValue.isEmpty())
-                return true;
-              return pictureView.person().matchesName(newValue, language);
-            })
-    );
+        (observable, oldValue, newValue) -> this.updateFilter(filteredList));
+    this.similarNamesCheckBox.setText(language.translate("dialog.select_person.similar_names"));
+    this.similarNamesCheckBox.setTooltip(new Tooltip(language.translate("dialog.select_person.similar_names.tooltip")));
+    this.similarNamesCheckBox.selectedProperty().addListener(
+        (observable, oldValue, newValue) -> this.updateFilter(filteredList));
 
     this.personListView.getSelectionModel().selectedItemProperty().addListener(
         (observable, oldValue, newValue) -> this.updateButtons());
@@ -62,7 +62,8 @@ public class SelectPersonDialog extends DialogBase<Person> {
         new HBox(
             5,
             new Label(language.translate("dialog.select_person.persons_list")),
-            this.filterTextInput
+            this.filterTextInput,
+            this.similarNamesCheckBox
         ),
         this.personListView
     );
@@ -99,6 +100,7 @@ public class SelectPersonDialog extends DialogBase<Person> {
    * @param exclusionList List of persons to NOT add to the list view.
    */
   public void updatePersonList(final @NotNull FamilyTree tree, final @NotNull Collection<Person> exclusionList) {
+    this.familyTree = tree;
     this.filterTextInput.textField().setText(null);
     this.personList.clear();
     tree.persons().stream()
@@ -116,6 +118,25 @@ public class SelectPersonDialog extends DialogBase<Person> {
       ((Button) this.getDialogPane().lookupButton(ButtonTypes.OK)).fire();
   }
 
+  /**
+   * Show only the persons matching the current filter text.
+   *
+   * @param filteredList The list to filter.
+   */
+  private void updateFilter(@NotNull FilteredList<PersonView> filteredList) {
+    final String filter = this.filterTextInput.textField().getText();
+    if (filter == null || filter.isBlank() || this.familyTree == null) {
+      filteredList.setPredicate(data -> true);
+      return;
+    }
+    // Search the tree’s indices once instead of matching each person against the query
+    final Locale locale = this.config.language().locale();
+    final Set<Person> matches = this.familyTree.searchPersons(filter, locale);
+    if (this.similarNamesCheckBox.isSelected())
+      matches.addAll(this.familyTree.searchSimilarPersons(filter, locale));
+    filteredList.setPredicate(personView -> matches.contains(personView.person()));
+  }
+
   private void updateButtons() {
     final boolean noSelection = this.personListView.getSelectionModel().getSelectedItems().isEmpty();
     this.getDialogPane().lookupButton(ButtonTypes.OK).setDisable(noSelection);
@@ -12,6 +12,7 @@ import net.darmo_creations.jenealogio2.utils.*;
 import org.jetbrains.annotations.*;
 
 import java.io.*;
+import java.nio.file.*;
 import java.time.*;
 import java.util.*;
 
@@ -24,6 +25,10 @@ public class SettingsDialog extends DialogBase<ButtonType> {
   private final ComboBox<NotNullComboBoxItem<DateFormat>> dateFormatCombo = new ComboBox<>();
   private final ComboBox<NotNullComboBoxItem<TimeFormat>> timeFormatCombo = new ComboBox<>();
   private final Spinner<Integer> maxTreeHeightField = new Spinner<>(1, 7, 1);
+  private final Spinner<Integer> undoHistorySizeField =
+      new Spinner<>(Config.MIN_UNDO_HISTORY_SIZE, Config.MAX_UNDO_HISTORY_SIZE, Config.MIN_UNDO_HISTORY_SIZE, 64);
+  private final ComboBox<NotNullComboBoxItem<GeoCodingStrategy>> geoCodingStrategyCombo = new ComboBox<>();
+  private final ErasableTextField mapTilePackField;
 
   private Config localConfig;
 
@@ -41,7 +46,19 @@ public class SettingsDialog extends DialogBase<ButtonType> {
         ButtonTypes.CANCEL
     );
 
-    final VBox content = new VBox(this.createInterfaceForm(), new Separator(), this.createTreeForm());
+    this.mapTilePackField = new ErasableTextField(config);
+
+    final VBox content = new VBox(
+        this.createInterfaceForm(),
+        new Separator(),
+        this.createTreeForm(),
+        new Separator(),
+        this.createEditingForm(),
+        new Separator(),
+        this.createGeoCodingForm(),
+        new Separator(),
+        this.createMapForm()
+    );
     content.setPrefWidth(500);
     this.getDialogPane().setContent(content);
 
@@ -130,10 +147,57 @@ public class SettingsDialog extends DialogBase<ButtonType> {
     );
   }
 
+  private BorderPane createEditingForm() {
+    this.undoHistorySizeField.setEditable(true);
+    this.undoHistorySizeField.valueProperty().addListener(
+        (observable, oldValue, newValue) -> this.onUndoHistorySizeUpdate(newValue));
+
+    //noinspection unchecked
+    return this.getBorderPane(
+        "dialog.settings.editing_box.title",
+        new Pair<>("dialog.settings.editing_box.undo_history_size.label", this.undoHistorySizeField)
+    );
+  }
+
+  private BorderPane createGeoCodingForm() {
+    final Language language = this.config.language();
+    for (final GeoCodingStrategy strategy : GeoCodingStrategy.values())
+      this.geoCodingStrategyCombo.getItems().add(new NotNullComboBoxItem<>(strategy, language.translate(
+          "dialog.settings.geocoding_box.strategy." + strategy.name().toLowerCase())));
+    this.geoCodingStrategyCombo.getSelectionModel().selectedItemProperty().addListener(
+        (observable, oldValue, newValue) ->
+            this.onGeoCodingStrategySelect(newValue));
+
+    //noinspection unchecked
+    return this.getBorderPane(
+        "dialog.settings.geocoding_box.title",
+        new Pair<>("dialog.settings.geocoding_box.strategy.label", this.geoCodingStrategyCombo)
+    );
+  }
+
+  private BorderPane createMapForm() {
+    final Language language = this.config.language();
+    this.mapTilePackField.textField().setEditable(false);
+    this.mapTilePackField.textField().setPromptText(
+        language.translate("dialog.settings.map_box.tile_pack.online"));
+    this.mapTilePackField.addEraseListener(() -> this.onMapTilePackSelect(null));
+    final Button browseButton = new Button(language.translate("dialog.settings.map_box.tile_pack.browse"));
+    browseButton.setOnAction(event -> FileChoosers.showMapTilePackChooser(this.config, this.stage())
+        .ifPresent(this::onMapTilePackSelect));
+    HBox.setHgrow(this.mapTilePackField, Priority.ALWAYS);
+    final HBox tilePackBox = new HBox(5, this.mapTilePackField, browseButton);
+
+    //noinspection unchecked
+    return this.getBorderPane(
+        "dialog.settings.map_box.title",
+        new Pair<>("dialog.settings.map_box.tile_pack.label", tilePackBox)
+    );
+  }
+
   @SuppressWarnings("unchecked")
   private BorderPane getBorderPane(
       @NotNull String title,
-      final @NotNull Pair<String, ? extends Control>... rows
+      final @NotNull Pair<String, ? extends Node>... rows
   ) {
     final Label titleLabel = new Label(this.config.language().translate(title));
     BorderPane.setAlignment(titleLabel, Pos.CENTER);
@@ -177,8 +241,12 @@ public class SettingsDialog extends DialogBase<ButtonType> {
     this.languageCombo.getSelectionModel().select(new NotNullComboBoxItem<>(this.localConfig.languageSetting()));
     this.themeCombo.getSelectionModel().select(new NotNullComboBoxItem<>(this.localConfig.themeSetting()));
     this.maxTreeHeightField.getValueFactory().setValue(this.localConfig.maxTreeHeight());
+    this.undoHistorySizeField.getValueFactory().setValue(this.localConfig.undoHistorySize());
     this.dateFormatCombo.getSelectionModel().select(new NotNullComboBoxItem<>(this.localConfig.dateFormat()));
     this.timeFormatCombo.getSelectionModel().select(new NotNullComboBoxItem<>(this.localConfig.timeFormat()));
+    this.geoCodingStrategyCombo.getSelectionModel().select(
+        new NotNullComboBoxItem<>(this.localConfig.geoCodingStrategy()));
+    this.mapTilePackField.textField().setText(this.localConfig.mapTilePack().map(Path::toString).orElse(""));
 
     this.updateState();
   }
@@ -218,6 +286,11 @@ public class SettingsDialog extends DialogBase<ButtonType> {
     this.updateState();
   }
 
+  private void onUndoHistorySizeUpdate(int newValue) {
+    this.localConfig.setUndoHistorySize(newValue);
+    this.updateState();
+  }
+
   private void onDateFormatSelect(@NotNull NotNullComboBoxItem<DateFormat> newValue) {
     this.localConfig.setDateFormat(newValue.data());
     this.updateState();
@@ -228,6 +301,17 @@ public class SettingsDialog extends DialogBase<ButtonType> {
     this.updateState();
   }
 
+  private void onGeoCodingStrategySelect(@NotNull NotNullComboBoxItem<GeoCodingStrategy> newValue) {
+    this.localConfig.setGeoCodingStrategy(newValue.data());
+    this.updateState();
+  }
+
+  private void onMapTilePackSelect(Path directory) {
+    this.localConfig.setMapTilePack(directory);
+    this.mapTilePackField.textField().setText(directory != null ? directory.toString() : "");
+    this.updateState();
+  }
+
   /**
    * Enumeration of the differente types of config changes.
    */
@@ -0,0 +1,120 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import net.darmo_creations.jenealogio2.model.*;
+import org.jetbrains.annotations.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Looks up the coordinates of many addresses with a {@link GeoCoder}, without sending requests
+ * more often than a given interval nor more than a given number at a time.
+ * <p>
+ * The default limits follow the Nominatim usage policy: one request per second at most, one at a time.
+ * Addresses that can be looked up without any request (cached results, offline gazetteer) are not subject
+ * to the limits. As results are cached as they arrive, an interrupted batch can be run again without sending
+ * the requests that had completed.
+ */
+public final class BatchGeoCoder {
+  /**
+   * The default minimum interval between two requests.
+   */
+  public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+  /**
+   * The default maximum number of concurrent requests.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 1;
+
+  private final GeoCoder geoCoder;
+  private final Duration interval;
+  private final int maxConcurrentRequests;
+
+  /**
+   * Create a batch geocoder with the default limits.
+   */
+  public BatchGeoCoder() {
+    this(GeoCoder.instance(), DEFAULT_INTERVAL, DEFAULT_MAX_CONCURRENT_REQUESTS);
+  }
+
+  /**
+   * Create a batch geocoder.
+   *
+   * @param geoCoder              The geocoder to use.
+   * @param interval              The minimum interval between the start of two requests.
+   * @param maxConcurrentRequests The maximum number of requests waiting for a response at the same time.
+   * @throws IllegalArgumentException If the interval is negative or the number of requests is not strictly positive.
+   */
+  BatchGeoCoder(@NotNull GeoCoder geoCoder, @NotNull Duration interval, int maxConcurrentRequests) {
+    if (interval.isNegative())
+      throw new IllegalArgumentException("interval must be >= 0, got %s".formatted(interval));
+    if (maxConcurrentRequests <= 0)
+      throw new IllegalArgumentException(
+          "max concurrent requests must be > 0, got %d".formatted(maxConcurrentRequests));
+    this.geoCoder = Objects.requireNonNull(geoCoder);
+    this.interval = interval;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  /**
+   * Look up the coordinates of the given addresses. Blocks until all lookups have completed.
+   *
+   * @param addresses The addresses to look up. Duplicates are only looked up once.
+   * @param context   The context to report progress to and check for cancellation.
+   * @return The coordinates of the addresses that were found.
+   * @throws CancellationException If the task is cancelled.
+   * @throws InterruptedException  If the thread is interrupted while waiting.
+   * @throws ExecutionException    If a lookup failed unexpectedly.
+   */
+  public Map<String, LatLon> geoCode(
+      final @NotNull Collection<String> addresses,
+      final @NotNull TaskScheduler.TaskContext context
+  ) throws InterruptedException, ExecutionException {
+    final List<String> distinctAddresses = new ArrayList<>(new LinkedHashSet<>(addresses));
+    final int total = distinctAddresses.size();
+    final Map<String, LatLon> coordinates = new ConcurrentHashMap<>();
+    final AtomicInteger done = new AtomicInteger();
+    final Semaphore requestSlots = new Semaphore(this.maxConcurrentRequests);
+    final List<CompletableFuture<Void>> lookups = new ArrayList<>(total);
+    long nextRequestTime = System.nanoTime();
+    context.setProgress(0);
+
+    try {
+      for (final String address : distinctAddresses) {
+        context.checkCancelled();
+        final CompletableFuture<Optional<LatLon>> lookup;
+        if (this.geoCoder.isAvailableLocally(address))
+          lookup = this.geoCoder.lookUp(address);
+        else {
+          while (!requestSlots.tryAcquire(100, TimeUnit.MILLISECONDS))
+            context.checkCancelled();
+          final long delay = nextRequestTime - System.nanoTime();
+          if (delay > 0)
+            TimeUnit.NANOSECONDS.sleep(delay);
+          context.checkCancelled();
+          nextRequestTime = System.nanoTime() + this.interval.toNanos();
+          lookup = this.geoCoder.lookUp(address).whenComplete((latLon, e) -> requestSlots.release());
+        }
+        lookups.add(lookup.thenAccept(latLon -> {
+          latLon.ifPresent(ll -> coordinates.put(address, ll));
+          context.setProgress((double) done.incrementAndGet() / total);
+        }));
+      }
+
+      final CompletableFuture<Void> all = CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new));
+      while (true)
+        try {
+          all.get(100, TimeUnit.MILLISECONDS);
+          // Lookups may have reported their progress out of order
+          context.setProgress(1);
+          return coordinates;
+        } catch (final TimeoutException e) {
+          context.checkCancelled();
+        }
+    } finally {
+      // Save the results right away so that a cancelled batch can be resumed
+      this.geoCoder.flush();
+    }
+  }
+}
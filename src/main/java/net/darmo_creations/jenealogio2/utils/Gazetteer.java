@@ -0,0 +1,402 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import net.darmo_creations.jenealogio2.model.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * An offline index of place names and their coordinates, built from a GeoNames-style dump.
+ * <p>
+ * Dumps are tab-separated files with one place per line. The columns are those of GeoNames’ dumps:
+ * identifier, name, ASCII name, comma-separated alternate names, latitude, longitude, feature class,
+ * feature code, country code, other country codes, admin codes and population. Only the names,
+ * coordinates, country code and population are used; missing trailing columns are ignored.
+ * <p>
+ * Each name is folded (lower-cased and stripped from its accents) and the folded names are sorted
+ * in a file that is memory-mapped when opened. Lookups are binary searches over the mapped file
+ * and do not load it in memory. Places that share a name are sorted by decreasing population.
+ * <p>
+ * The index file is laid out as follows, all integers being big-endian:
+ * <ul>
+ *   <li>a header: magic number, number of records, size of the keys area, size of the names area;</li>
+ *   <li>the records, sorted by key: offset of the key, offset of the name, latitude and longitude
+ *   in 10<sup>-7</sup> degrees;</li>
+ *   <li>the keys area: the folded names, in UTF-8, each preceded by its length on 2 bytes;</li>
+ *   <li>the names area: the places’ names, in UTF-8, each preceded by its length on 2 bytes
+ *   and followed by the place’s country code on 2 bytes.</li>
+ * </ul>
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class Gazetteer {
+  private static final int MAGIC = 0x4A475A31; // "JGZ1"
+  private static final int HEADER_SIZE = 16;
+  private static final int RECORD_SIZE = 16;
+  private static final double COORDINATE_SCALE = 1e7;
+  private static final int MAX_STRING_LENGTH = 0xFFFF;
+  private static final byte[] NO_COUNTRY = {' ', ' '};
+
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final ByteBuffer buffer;
+  private final int count;
+  private final int keysStart;
+  private final int namesStart;
+
+  /**
+   * Open an index file.
+   *
+   * @param indexFile The file to open.
+   * @return The gazetteer stored in the file.
+   * @throws IOException If the file could not be read or is not a gazetteer index.
+   */
+  public static Gazetteer open(@NotNull Path indexFile) throws IOException {
+    try (final FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+        throw new IOException("Invalid gazetteer index size: " + size);
+      // The mapping remains valid after the channel is closed
+      return new Gazetteer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  /**
+   * Build the index of a dump file then open it.
+   * <p>
+   * The dump’s places are sorted in memory before being written to the index file.
+   * The index file is only replaced once fully written.
+   *
+   * @param dumpFile  The dump file to read.
+   * @param indexFile The index file to write.
+   * @param context   The context to report progress to and check for cancellation.
+   * @return The gazetteer stored in the index file.
+   * @throws IOException If the dump could not be read or the index could not be written.
+   */
+  public static Gazetteer build(
+      @NotNull Path dumpFile,
+      @NotNull Path indexFile,
+      final @NotNull TaskScheduler.TaskContext context
+  ) throws IOException {
+    final long dumpSize = Math.max(1, Files.size(dumpFile));
+    final Map<String, Integer> keyIds = new HashMap<>();
+    final List<byte[]> keys = new ArrayList<>();
+    final ByteArrayOutputStream names = new ByteArrayOutputStream();
+    final List<Entry> entries = new ArrayList<>();
+
+    context.setProgress(0);
+    try (final var reader = Files.newBufferedReader(dumpFile, StandardCharsets.UTF_8)) {
+      long readChars = 0;
+      int lineNumber = 0;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        readChars += line.length() + 1;
+        if (++lineNumber % 10_000 == 0) {
+          context.checkCancelled();
+          // Reading the dump takes most of the time
+          context.setProgress(0.9 * Math.min(1, (double) readChars / dumpSize));
+        }
+        if (line.isBlank() || line.startsWith("#"))
+          continue;
+        final String[] columns = line.split("\t", -1);
+        if (columns.length < 6)
+          throw new IOException("Missing columns on line %d of %s".formatted(lineNumber, dumpFile));
+        final int latE7, lonE7;
+        try {
+          latE7 = toFixedPoint(Double.parseDouble(columns[4]), 90);
+          lonE7 = toFixedPoint(Double.parseDouble(columns[5]), 180);
+        } catch (final IllegalArgumentException e) {
+          throw new IOException("Invalid coordinates on line %d of %s".formatted(lineNumber, dumpFile), e);
+        }
+        final byte[] name = columns[1].strip().getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > MAX_STRING_LENGTH)
+          continue;
+        final int nameOffset = names.size();
+        if (nameOffset < 0 || nameOffset > Integer.MAX_VALUE - MAX_STRING_LENGTH - 4)
+          throw new IOException("Too many places in " + dumpFile);
+        writeString(names, name);
+        final String countryCode = columns.length > 8 ? columns[8].strip() : "";
+        names.write(countryCode.length() == 2 ? countryCode.getBytes(StandardCharsets.US_ASCII) : NO_COUNTRY);
+        long population = 0;
+        if (columns.length > 14 && !columns[14].isBlank())
+          try {
+            population = Long.parseLong(columns[14].strip());
+          } catch (final NumberFormatException e) {
+            // Ignore invalid populations
+          }
+
+        final Set<String> placeKeys = new HashSet<>();
+        placeKeys.add(fold(columns[1]));
+        placeKeys.add(fold(columns[2]));
+        for (final String alternateName : columns[3].split(","))
+          placeKeys.add(fold(alternateName));
+        for (final String key : placeKeys) {
+          if (key.isEmpty() || key.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_LENGTH)
+            continue;
+          final int keyId = keyIds.computeIfAbsent(key, k -> {
+            keys.add(k.getBytes(StandardCharsets.UTF_8));
+            return keys.size() - 1;
+          });
+          entries.add(new Entry(keyId, nameOffset, latE7, lonE7, population));
+        }
+      }
+    }
+
+    context.checkCancelled();
+    final Comparator<Entry> byKey = (e1, e2) -> Arrays.compareUnsigned(keys.get(e1.keyId()), keys.get(e2.keyId()));
+    entries.sort(byKey.thenComparing(Comparator.comparingLong(Entry::population).reversed()));
+    write(indexFile, entries, keys, names);
+    context.setProgress(1);
+    return open(indexFile);
+  }
+
+  private static void write(
+      @NotNull Path indexFile,
+      final @NotNull List<Entry> entries,
+      final @NotNull List<byte[]> keys,
+      @NotNull ByteArrayOutputStream names
+  ) throws IOException {
+    // Lay out the keys in the order of the records that use them
+    final int[] keyOffsets = new int[keys.size()];
+    Arrays.fill(keyOffsets, -1);
+    long keysSize = 0;
+    for (final Entry entry : entries)
+      if (keyOffsets[entry.keyId()] < 0) {
+        keyOffsets[entry.keyId()] = (int) keysSize;
+        keysSize += 2 + keys.get(entry.keyId()).length;
+        if (keysSize > Integer.MAX_VALUE)
+          throw new IOException("Too many place names");
+      }
+    final long fileSize = HEADER_SIZE + (long) entries.size() * RECORD_SIZE + keysSize + names.size();
+    if (fileSize > Integer.MAX_VALUE)
+      throw new IOException("Gazetteer index would be too large: %d bytes".formatted(fileSize));
+
+    Files.createDirectories(indexFile.toAbsolutePath().getParent());
+    // Write to a temporary file first so that the index is never left half-written
+    final Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try {
+      try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(entries.size());
+        out.writeInt((int) keysSize);
+        out.writeInt(names.size());
+        for (final Entry entry : entries) {
+          out.writeInt(keyOffsets[entry.keyId()]);
+          out.writeInt(entry.nameOffset());
+          out.writeInt(entry.latE7());
+          out.writeInt(entry.lonE7());
+        }
+        final boolean[] written = new boolean[keys.size()];
+        for (final Entry entry : entries)
+          if (!written[entry.keyId()]) {
+            written[entry.keyId()] = true;
+            writeString(out, keys.get(entry.keyId()));
+          }
+        names.writeTo(out);
+      }
+      Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static void writeString(@NotNull OutputStream out, final @NotNull byte[] bytes) throws IOException {
+    out.write(bytes.length >> 8);
+    out.write(bytes.length);
+    out.write(bytes);
+  }
+
+  private static int toFixedPoint(double value, double bound) {
+    if (!(Math.abs(value) <= bound))
+      throw new IllegalArgumentException("coordinate out of range: " + value);
+    return (int) Math.round(value * COORDINATE_SCALE);
+  }
+
+  private Gazetteer(@NotNull ByteBuffer buffer) throws IOException {
+    if (buffer.getInt(0) != MAGIC)
+      throw new IOException("Not a gazetteer index");
+    this.buffer = buffer;
+    this.count = buffer.getInt(4);
+    final int keysSize = buffer.getInt(8);
+    final int namesSize = buffer.getInt(12);
+    final long keysStart = HEADER_SIZE + (long) this.count * RECORD_SIZE;
+    if (this.count < 0 || keysSize < 0 || namesSize < 0 || keysStart + keysSize + namesSize != buffer.capacity())
+      throw new IOException("Corrupted gazetteer index");
+    this.keysStart = (int) keysStart;
+    this.namesStart = this.keysStart + keysSize;
+  }
+
+  /**
+   * The number of indexed names. A place has as many names as it has distinct folded names.
+   */
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * Look up the coordinates of the given address.
+   * <p>
+   * The whole address is looked up first. If it is not found, each of its comma-separated parts
+   * is looked up in order until one is found. If several places share the found name, the most populated one
+   * whose country code appears as another part of the address is picked, or the most populated one if none does.
+   *
+   * @param address The address to look up.
+   * @return The coordinates of the address, or an empty value if it is not in this gazetteer.
+   */
+  public Optional<LatLon> lookUp(@NotNull String address) {
+    final int whole = this.find(fold(address), Set.of());
+    if (whole >= 0)
+      return Optional.of(this.latLon(whole));
+    final String[] parts = address.split(",");
+    final Set<String> countryCodes = new HashSet<>();
+    for (final String part : parts)
+      if (part.strip().length() == 2)
+        countryCodes.add(part.strip().toUpperCase(Locale.ROOT));
+    for (final String part : parts) {
+      final int i = this.find(fold(part), countryCodes);
+      if (i >= 0)
+        return Optional.of(this.latLon(i));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Get the names of the places that have a name starting with the given prefix.
+   *
+   * @param prefix The prefix to search for. It is folded like indexed names.
+   * @param limit  The maximum number of names to return.
+   * @return The distinct names of the matching places, sorted by matching name.
+   */
+  public List<String> namesStartingWith(@NotNull String prefix, int limit) {
+    final byte[] folded = fold(prefix).getBytes(StandardCharsets.UTF_8);
+    final Set<String> names = new LinkedHashSet<>();
+    for (int i = this.lowerBound(folded); i < this.count && names.size() < limit; i++) {
+      if (!this.keyStartsWith(i, folded))
+        break;
+      names.add(this.name(i));
+    }
+    return new ArrayList<>(names);
+  }
+
+  /**
+   * Find the record of the most populated place with the given folded name,
+   * preferring places from the given countries.
+   *
+   * @return The record’s index, or -1 if the name is not in this gazetteer.
+   */
+  private int find(@NotNull String key, final @NotNull Set<String> countryCodes) {
+    if (key.isEmpty())
+      return -1;
+    final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    final int first = this.lowerBound(bytes);
+    if (first == this.count || this.compareKey(first, bytes) != 0)
+      return -1;
+    if (!countryCodes.isEmpty())
+      for (int i = first; i < this.count && this.compareKey(i, bytes) == 0; i++)
+        if (countryCodes.contains(this.countryCode(i)))
+          return i;
+    return first;
+  }
+
+  /**
+   * The index of the first record whose key is not less than the given one.
+   */
+  private int lowerBound(final @NotNull byte[] key) {
+    int low = 0, high = this.count;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (this.compareKey(middle, key) < 0)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Compare the key of a record to the given one, byte by byte.
+   */
+  private int compareKey(int record, final @NotNull byte[] key) {
+    final int offset = this.keyOffset(record);
+    final int length = this.stringLength(offset);
+    for (int i = 0; i < Math.min(length, key.length); i++) {
+      final int c = Byte.compareUnsigned(this.buffer.get(offset + 2 + i), key[i]);
+      if (c != 0)
+        return c;
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  private boolean keyStartsWith(int record, final @NotNull byte[] prefix) {
+    final int offset = this.keyOffset(record);
+    if (this.stringLength(offset) < prefix.length)
+      return false;
+    for (int i = 0; i < prefix.length; i++)
+      if (this.buffer.get(offset + 2 + i) != prefix[i])
+        return false;
+    return true;
+  }
+
+  private int keyOffset(int record) {
+    return this.keysStart + this.buffer.getInt(HEADER_SIZE + record * RECORD_SIZE);
+  }
+
+  private int nameOffset(int record) {
+    return this.namesStart + this.buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + 4);
+  }
+
+  private int stringLength(int offset) {
+    return Short.toUnsignedInt(this.buffer.getShort(offset));
+  }
+
+  private String name(int record) {
+    final int offset = this.nameOffset(record);
+    final byte[] bytes = new byte[this.stringLength(offset)];
+    // Absolute bulk get keeps the buffer’s position untouched for concurrent readers
+    this.buffer.get(offset + 2, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private String countryCode(int record) {
+    final int offset = this.nameOffset(record);
+    final int codeOffset = offset + 2 + this.stringLength(offset);
+    return new String(new byte[] {this.buffer.get(codeOffset), this.buffer.get(codeOffset + 1)},
+        StandardCharsets.US_ASCII);
+  }
+
+  private LatLon latLon(int record) {
+    final int offset = HEADER_SIZE + record * RECORD_SIZE;
+    return new LatLon(
+        this.buffer.getInt(offset + 8) / COORDINATE_SCALE,
+        this.buffer.getInt(offset + 12) / COORDINATE_SCALE
+    );
+  }
+
+  /**
+   * Lower-case the given name, strip its accents and repeated whitespace.
+   */
+  static String fold(@NotNull String name) {
+    final String decomposed = Normalizer.normalize(name.strip().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+    return WHITESPACE.matcher(COMBINING_MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ");
+  }
+
+  /**
+   * A name of a place read from a dump.
+   *
+   * @param keyId      The index of the folded name.
+   * @param nameOffset The offset of the place’s name in the names area.
+   * @param latE7      The place’s latitude in 10<sup>-7</sup> degrees.
+   * @param lonE7      The place’s longitude in 10<sup>-7</sup> degrees.
+   * @param population The place’s population.
+   */
+  private record Entry(int keyId, int nameOffset, int latE7, int lonE7, long population) {
+  }
+}
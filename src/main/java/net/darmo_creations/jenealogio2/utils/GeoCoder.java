@@ -1,6 +1,8 @@
 package net.darmo_creations.jenealogio2.utils;
 
 import com.google.gson.*;
+import net.darmo_creations.jenealogio2.*;
+import net.darmo_creations.jenealogio2.config.*;
 import net.darmo_creations.jenealogio2.model.*;
 import org.jetbrains.annotations.*;
 
@@ -8,6 +10,7 @@ import java.io.*;
 import java.net.*;
 import java.net.http.*;
 import java.nio.charset.*;
+import java.nio.file.*;
 import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -15,16 +18,83 @@ import java.util.concurrent.*;
 /**
  * This class provides a {@link #geoCode(String)} method that returns the coordinates of any address.
  * <p>
- * Coordinates are cached.
+ * Results are cached and saved in {@link App#USER_DATA_DIR}, including the addresses that could not be found,
+ * so that an address is only looked up once. Coordinates expire after {@link #FOUND_TTL}
+ * and unknown addresses after {@link #NOT_FOUND_TTL}. Network and server errors are only remembered
+ * for {@link #ERROR_TTL} and are not saved. Concurrent lookups of the same address share a single request.
+ * The cache file is written in the background {@link #SAVE_DELAY} after a new result,
+ * so that the results of a batch of lookups are written at once.
+ * <p>
+ * Addresses may also be looked up in an offline {@link Gazetteer}, imported with {@link #importGazetteer(Path,
+ * TaskScheduler.TaskContext)}, depending on the {@link GeoCodingStrategy}. Offline results are not cached.
+ * Each import is written to a new file, as the current one is memory-mapped and cannot be replaced
+ * on some systems. Previous files are deleted once they are no longer used, at the latest on the next startup.
+ * <p>
+ * This class is thread-safe.
  */
 public final class GeoCoder {
-  private static final String BASE_URL = "https://nominatim.openstreetmap.org/search?q=%s&format=json";
-  private static final HashMap<String, LatLon> LAT_LON_CACHE = new HashMap<>();
-  private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+  private static final String BASE_URL = "https://nominatim.openstreetmap.org/search";
+  private static final String CACHE_FILE_NAME = "geocoding_cache.json";
+  private static final String GAZETTEER_FILE_NAME = "gazetteer-%d.idx";
+  private static final String GAZETTEER_FILES_GLOB = "gazetteer-*.idx";
+
+  /**
+   * How long the coordinates of an address are cached.
+   */
+  static final Duration FOUND_TTL = Duration.ofDays(180);
+  /**
+   * How long an address without coordinates is cached.
+   */
+  static final Duration NOT_FOUND_TTL = Duration.ofDays(7);
+  /**
+   * How long an address is not looked up again after an error.
+   */
+  static final Duration ERROR_TTL = Duration.ofMinutes(5);
+  /**
+   * How long after a new result the cache file is written.
+   */
+  static final Duration SAVE_DELAY = Duration.ofSeconds(5);
+
+  private static final String LAT_KEY = "lat";
+  private static final String LON_KEY = "lon";
+  private static final String EXPIRY_KEY = "expiry";
+
+  private static GeoCoder instance;
+
+  private final URI baseUri;
+  private final Path cacheFile;
+  private final Clock clock;
+  private final HttpClient httpClient = HttpClient.newBuilder()
       .version(HttpClient.Version.HTTP_1_1)
       .followRedirects(HttpClient.Redirect.NORMAL)
       .connectTimeout(Duration.ofSeconds(30))
       .build();
+  /**
+   * The results of past lookups, by normalized address.
+   */
+  private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  /**
+   * The lookups waiting for a response, by normalized address.
+   */
+  private final Map<String, CompletableFuture<Optional<LatLon>>> pending = new ConcurrentHashMap<>();
+  /**
+   * Prevents concurrent writes to the cache file and guards {@link #scheduledSave}.
+   */
+  private final Object fileLock = new Object();
+  private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "geocoding-cache");
+    thread.setDaemon(true);
+    return thread;
+  });
+  /**
+   * The pending write of the cache file, null if all results are saved.
+   */
+  private ScheduledFuture<?> scheduledSave;
+  private volatile GeoCodingStrategy strategy = GeoCodingStrategy.ONLINE;
+  /**
+   * The offline gazetteer, null if none was imported.
+   */
+  private volatile Gazetteer gazetteer;
 
   /**
    * Get the latitude and longitude of the given address.
@@ -34,51 +104,350 @@ public final class GeoCoder {
    * @param address The address to get the coordinates of.
    * @return A {@link CompletableFuture} that upon completion provides the address’ coordinates,
    * or an empty value if none were found or a network error occured.
+   * The future may be shared with concurrent callers and should not be completed or cancelled.
    */
-  @SuppressWarnings("unchecked")
   public static CompletableFuture<Optional<LatLon>> geoCode(@NotNull String address) {
-    final String strippedAddress = address.strip();
-    if (LAT_LON_CACHE.containsKey(strippedAddress))
-      return CompletableFuture.completedFuture(Optional.of(LAT_LON_CACHE.get(strippedAddress)));
+    return instance().lookUp(address);
+  }
+
+  /**
+   * Set where {@link #geoCode(String)} looks up addresses.
+   *
+   * @param strategy The strategy to use.
+   */
+  public static void setStrategy(@NotNull GeoCodingStrategy strategy) {
+    instance().useStrategy(strategy);
+  }
+
+  /**
+   * Build the offline gazetteer from a GeoNames-style dump, replacing the previous one.
+   *
+   * @param dumpFile The dump file to read.
+   * @param context  The context to report progress to and check for cancellation.
+   * @return The number of indexed place names.
+   * @throws IOException If the dump could not be read or the gazetteer could not be saved.
+   */
+  public static int importGazetteer(@NotNull Path dumpFile, final @NotNull TaskScheduler.TaskContext context)
+      throws IOException {
+    final Path gazetteerFile = App.USER_DATA_DIR.resolve(GAZETTEER_FILE_NAME.formatted(System.currentTimeMillis()));
+    final Gazetteer gazetteer = Gazetteer.build(dumpFile, gazetteerFile, context);
+    instance().useGazetteer(gazetteer);
+    deleteGazetteerFiles(gazetteerFile);
+    return gazetteer.size();
+  }
+
+  /**
+   * Get the places of the offline gazetteer that have a name starting with the given prefix.
+   *
+   * @param prefix The prefix to search for.
+   * @param limit  The maximum number of places to return.
+   * @return The matching places, or an empty list if the prefix is blank or no gazetteer was imported.
+   */
+  public static List<Place> placesStartingWith(@NotNull String prefix, int limit) {
+    final Gazetteer gazetteer = instance().gazetteer;
+    if (gazetteer == null || prefix.isBlank())
+      return List.of();
+    return gazetteer.namesStartingWith(prefix, limit).stream()
+        .map(name -> new Place(name, gazetteer.lookUp(name).orElse(null)))
+        .toList();
+  }
+
+  /**
+   * Write the results that have not been saved yet to the cache file. Should be called before the app exits.
+   */
+  public static synchronized void saveCache() {
+    if (instance != null)
+      instance.flush();
+  }
+
+  /**
+   * The geocoder used by {@link #geoCode(String)}. The offline gazetteer is opened if it exists.
+   */
+  static synchronized GeoCoder instance() {
+    if (instance == null) {
+      instance = new GeoCoder(URI.create(BASE_URL), App.USER_DATA_DIR.resolve(CACHE_FILE_NAME), Clock.systemUTC());
+      try {
+        final Optional<Path> gazetteerFile = gazetteerFiles().stream().max(Comparator.naturalOrder());
+        if (gazetteerFile.isPresent()) {
+          instance.useGazetteer(Gazetteer.open(gazetteerFile.get()));
+          deleteGazetteerFiles(gazetteerFile.get());
+        }
+      } catch (final IOException e) {
+        App.LOGGER.exception(e);
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * The gazetteer files in {@link App#USER_DATA_DIR}. Their names only differ by their creation timestamp.
+   */
+  private static List<Path> gazetteerFiles() throws IOException {
+    if (!Files.isDirectory(App.USER_DATA_DIR))
+      return List.of();
+    final List<Path> files = new ArrayList<>();
+    try (final var stream = Files.newDirectoryStream(App.USER_DATA_DIR, GAZETTEER_FILES_GLOB)) {
+      stream.forEach(files::add);
+    }
+    return files;
+  }
 
-    final CompletableFuture<HttpResponse<String>> future;
+  /**
+   * Delete the gazetteer files other than the given one.
+   * Files that are still mapped may not be deletable yet, they are deleted on the next startup.
+   *
+   * @param current The file of the gazetteer in use.
+   */
+  private static void deleteGazetteerFiles(@NotNull Path current) {
     try {
-      future = getHttp(new URL(BASE_URL.formatted(URLEncoder.encode(strippedAddress, StandardCharsets.UTF_8))));
+      for (final Path file : gazetteerFiles())
+        if (!file.equals(current))
+          try {
+            Files.deleteIfExists(file);
+          } catch (final IOException e) {
+            App.LOGGER.debug("Could not delete previous gazetteer file %s: %s".formatted(file, e.getMessage()));
+          }
     } catch (final IOException e) {
-      return CompletableFuture.completedFuture(Optional.empty());
+      App.LOGGER.exception(e);
     }
+  }
 
-    return future.thenApply(resp -> {
-      if (resp.statusCode() != 200)
-        return Optional.empty();
-      final Gson gson = new Gson();
-      final List<Map<String, ?>> data = gson.fromJson(resp.body(), List.class);
-      for (final var entry : data)
-        if (entry.containsKey("lat") && entry.containsKey("lon")) {
-          final double lat = Double.parseDouble(String.valueOf(entry.get("lat")));
-          final double lon = Double.parseDouble(String.valueOf(entry.get("lon")));
-          final LatLon latLon = new LatLon(lat, lon);
-          LAT_LON_CACHE.put(strippedAddress, latLon);
-          return Optional.of(latLon);
-        }
-      return Optional.empty();
+  /**
+   * Create a geocoder. The cache file is read if it exists.
+   *
+   * @param baseUri   The URI of the Nominatim search endpoint.
+   * @param cacheFile The file to save the cache to.
+   * @param clock     The clock to use to expire cached results.
+   */
+  GeoCoder(@NotNull URI baseUri, @NotNull Path cacheFile, @NotNull Clock clock) {
+    this.baseUri = Objects.requireNonNull(baseUri);
+    this.cacheFile = Objects.requireNonNull(cacheFile);
+    this.clock = Objects.requireNonNull(clock);
+    this.load();
+  }
+
+  /**
+   * Set where this geocoder looks up addresses.
+   */
+  void useStrategy(@NotNull GeoCodingStrategy strategy) {
+    this.strategy = Objects.requireNonNull(strategy);
+  }
+
+  /**
+   * Set the offline gazetteer of this geocoder.
+   *
+   * @param gazetteer The gazetteer to use, null to remove it.
+   */
+  void useGazetteer(Gazetteer gazetteer) {
+    this.gazetteer = gazetteer;
+  }
+
+  /**
+   * Get the latitude and longitude of the given address.
+   *
+   * @param address The address to get the coordinates of.
+   * @return A {@link CompletableFuture} that upon completion provides the address’ coordinates,
+   * or an empty value if none were found or an error occured.
+   */
+  CompletableFuture<Optional<LatLon>> lookUp(@NotNull String address) {
+    final GeoCodingStrategy strategy = this.strategy;
+    if (strategy != GeoCodingStrategy.ONLINE) {
+      final Optional<LatLon> latLon = this.lookUpOffline(address);
+      if (latLon.isPresent() || strategy == GeoCodingStrategy.OFFLINE)
+        return CompletableFuture.completedFuture(latLon);
+    }
+
+    final String key = normalize(address);
+    final CacheEntry cached = this.getCached(key);
+    if (cached != null)
+      return CompletableFuture.completedFuture(cached.latLon());
+
+    final CompletableFuture<Optional<LatLon>> future = new CompletableFuture<>();
+    final CompletableFuture<Optional<LatLon>> pendingFuture = this.pending.putIfAbsent(key, future);
+    if (pendingFuture != null)
+      return pendingFuture;
+    // Another lookup may have completed since the cache was checked
+    final CacheEntry completed = this.getCached(key);
+    if (completed != null) {
+      this.pending.remove(key, future);
+      future.complete(completed.latLon());
+      return future;
+    }
+
+    this.request(address.strip()).whenComplete((entry, error) -> {
+      final CacheEntry result = error != null ? this.newEntry(null, ERROR_TTL, false) : entry;
+      // Cache the result before removing the pending future so that no lookup can miss both
+      this.cache.put(key, result);
+      this.pending.remove(key, future);
+      if (result.persistent())
+        this.scheduleSave();
+      future.complete(result.latLon());
     });
+    return future;
+  }
+
+  /**
+   * Indicate whether the given address can be looked up without sending any request,
+   * i.e. it is in the offline gazetteer or its result is cached and has not expired,
+   * or the online service is not used.
+   *
+   * @param address An address.
+   * @return True if looking up the address would not send any request.
+   */
+  boolean isAvailableLocally(@NotNull String address) {
+    final GeoCodingStrategy strategy = this.strategy;
+    if (strategy == GeoCodingStrategy.OFFLINE)
+      return true;
+    if (strategy == GeoCodingStrategy.BOTH && this.lookUpOffline(address).isPresent())
+      return true;
+    return this.getCached(normalize(address)) != null;
+  }
+
+  private Optional<LatLon> lookUpOffline(@NotNull String address) {
+    final Gazetteer gazetteer = this.gazetteer;
+    return gazetteer != null ? gazetteer.lookUp(address) : Optional.empty();
   }
 
-  private static CompletableFuture<HttpResponse<String>> getHttp(@NotNull URL url) throws IOException {
+  private @Nullable CacheEntry getCached(@NotNull String key) {
+    final CacheEntry entry = this.cache.get(key);
+    if (entry == null)
+      return null;
+    if (entry.isExpired(this.clock.instant())) {
+      this.cache.remove(key, entry);
+      return null;
+    }
+    return entry;
+  }
+
+  private CompletableFuture<CacheEntry> request(@NotNull String address) {
     final HttpRequest request;
     try {
       request = HttpRequest.newBuilder()
-          .uri(url.toURI())
+          .uri(new URI("%s?q=%s&format=json".formatted(
+              this.baseUri, URLEncoder.encode(address, StandardCharsets.UTF_8))))
+          // Required by Nominatim’s usage policy
+          .header("User-Agent", "%s/%s".formatted(App.NAME, App.VERSION))
           .timeout(Duration.ofMinutes(1))
           .GET()
           .build();
     } catch (final URISyntaxException e) {
-      throw new IOException(e);
+      return CompletableFuture.failedFuture(e);
+    }
+    return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        .thenApply(this::parseResponse);
+  }
+
+  private CacheEntry parseResponse(@NotNull HttpResponse<String> response) {
+    if (response.statusCode() != 200)
+      return this.newEntry(null, ERROR_TTL, false);
+    for (final JsonElement element : JsonParser.parseString(response.body()).getAsJsonArray()) {
+      final JsonObject place = element.getAsJsonObject();
+      if (place.has(LAT_KEY) && place.has(LON_KEY)) {
+        final LatLon latLon = new LatLon(place.get(LAT_KEY).getAsDouble(), place.get(LON_KEY).getAsDouble());
+        return this.newEntry(latLon, FOUND_TTL, true);
+      }
+    }
+    return this.newEntry(null, NOT_FOUND_TTL, true);
+  }
+
+  private CacheEntry newEntry(LatLon latLon, @NotNull Duration ttl, boolean persistent) {
+    return new CacheEntry(Optional.ofNullable(latLon), this.clock.instant().plus(ttl), persistent);
+  }
+
+  /**
+   * Load the entries of the cache file that have not expired.
+   */
+  private void load() {
+    if (!Files.exists(this.cacheFile))
+      return;
+    final Instant now = this.clock.instant();
+    try (final var reader = Files.newBufferedReader(this.cacheFile)) {
+      for (final var e : JsonParser.parseReader(reader).getAsJsonObject().entrySet()) {
+        final JsonObject value = e.getValue().getAsJsonObject();
+        final Instant expiry = Instant.parse(value.get(EXPIRY_KEY).getAsString());
+        final LatLon latLon = value.has(LAT_KEY)
+            ? new LatLon(value.get(LAT_KEY).getAsDouble(), value.get(LON_KEY).getAsDouble())
+            : null;
+        final CacheEntry entry = new CacheEntry(Optional.ofNullable(latLon), expiry, true);
+        if (!entry.isExpired(now))
+          this.cache.put(e.getKey(), entry);
+      }
+    } catch (final IOException | RuntimeException e) {
+      App.LOGGER.exception(e);
+    }
+  }
+
+  /**
+   * Write the cache file after {@link #SAVE_DELAY} unless a write is already pending.
+   */
+  private void scheduleSave() {
+    synchronized (this.fileLock) {
+      if (this.scheduledSave == null)
+        this.scheduledSave = this.saver.schedule(this::flush, SAVE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Write the cache file now if a write is pending.
+   */
+  void flush() {
+    synchronized (this.fileLock) {
+      if (this.scheduledSave == null)
+        return;
+      this.scheduledSave.cancel(false);
+      this.scheduledSave = null;
+      this.save();
+    }
+  }
+
+  /**
+   * Write the entries of the cache that have to be saved to the cache file.
+   */
+  private void save() {
+    // Take the snapshot within the lock so that an older one cannot overwrite a newer one
+    synchronized (this.fileLock) {
+      final Instant now = this.clock.instant();
+      final JsonObject json = new JsonObject();
+      this.cache.forEach((key, entry) -> {
+        if (!entry.persistent() || entry.isExpired(now))
+          return;
+        final JsonObject value = new JsonObject();
+        entry.latLon().ifPresent(latLon -> {
+          value.addProperty(LAT_KEY, latLon.lat());
+          value.addProperty(LON_KEY, latLon.lon());
+        });
+        value.addProperty(EXPIRY_KEY, entry.expiry().toString());
+        json.add(key, value);
+      });
+      try {
+        Files.createDirectories(this.cacheFile.toAbsolutePath().getParent());
+        // Write to a temporary file first so that the cache is never left half-written
+        final Path tempFile = this.cacheFile.resolveSibling(this.cacheFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, json.toString());
+        Files.move(tempFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (final IOException e) {
+        App.LOGGER.exception(e);
+      }
     }
-    return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString());
   }
 
-  private GeoCoder() {
+  /**
+   * Addresses are case-insensitive and ignore repeated whitespace.
+   */
+  private static String normalize(@NotNull String address) {
+    return address.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The result of a lookup.
+   *
+   * @param latLon     The address’ coordinates, empty if none were found or an error occured.
+   * @param expiry     The instant after which the address has to be looked up again.
+   * @param persistent Whether this entry should be saved to the cache file.
+   */
+  private record CacheEntry(@NotNull Optional<LatLon> latLon, @NotNull Instant expiry, boolean persistent) {
+    boolean isExpired(@NotNull Instant now) {
+      return !now.isBefore(this.expiry);
+    }
   }
 }
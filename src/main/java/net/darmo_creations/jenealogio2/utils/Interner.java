@@ -0,0 +1,39 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Deduplicates equal immutable values, such as the names and addresses read from a file,
+ * so that a single instance of each distinct value is kept in memory.
+ * <p>
+ * Unlike {@link String#intern()}, values are only kept as long as this object is reachable.
+ *
+ * @param <T> Type of values.
+ */
+public final class Interner<T> {
+  private final Map<T, T> values = new HashMap<>();
+
+  /**
+   * Return the canonical instance of the given value.
+   *
+   * @param value A value. May be null.
+   * @return The first value equal to the given one that was passed to this method,
+   * or the value itself if there was none. Null if the value is null.
+   */
+  @Contract("null -> null; !null -> !null")
+  public T intern(T value) {
+    if (value == null)
+      return null;
+    final T canonical = this.values.putIfAbsent(value, value);
+    return canonical != null ? canonical : value;
+  }
+
+  /**
+   * The number of distinct values passed to {@link #intern(Object)}.
+   */
+  public int size() {
+    return this.values.size();
+  }
+}
@@ -0,0 +1,81 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A map of bounded size that evicts its least recently used entry when full.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <K> Type of keys.
+ * @param <V> Type of values.
+ */
+public final class LruCache<K, V> {
+  private final int capacity;
+  private final LinkedHashMap<K, V> entries;
+
+  /**
+   * Create an empty cache.
+   *
+   * @param capacity The maximum number of entries.
+   * @throws IllegalArgumentException If the capacity is not strictly positive.
+   */
+  public LruCache(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity must be > 0, got %d".formatted(capacity));
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return this.size() > LruCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Get the value of a key and mark it as the most recently used.
+   *
+   * @param key A key.
+   * @return The key’s value, or null if it is not in this cache.
+   */
+  public synchronized V get(@NotNull K key) {
+    return this.entries.get(key);
+  }
+
+  /**
+   * Indicate whether a key is in this cache, without marking it as used.
+   *
+   * @param key A key.
+   * @return True if the key has a value in this cache.
+   */
+  public synchronized boolean contains(@NotNull K key) {
+    return this.entries.containsKey(key);
+  }
+
+  /**
+   * Set the value of a key and mark it as the most recently used.
+   * The least recently used entry is evicted if this cache is full.
+   *
+   * @param key   A key.
+   * @param value The key’s value.
+   */
+  public synchronized void put(@NotNull K key, @NotNull V value) {
+    this.entries.put(Objects.requireNonNull(key), Objects.requireNonNull(value));
+  }
+
+  /**
+   * Remove all entries from this cache.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+  }
+
+  /**
+   * The number of entries in this cache.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+}
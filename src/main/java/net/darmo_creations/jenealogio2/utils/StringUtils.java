@@ -9,7 +9,6 @@ import org.jetbrains.annotations.*;
 
 import java.util.*;
 import java.util.function.*;
-import java.util.stream.*;
 
 /**
  * Class providing methods to handle strings.
@@ -102,19 +101,29 @@ public final class StringUtils {
   }
 
   /**
-   * Counts the number of occurrences of each item of the given collection.
+   * Compute the Levenshtein distance between two strings, i.e. the minimum number of
+   * single-character insertions, deletions or substitutions needed to turn one into the other.
    *
-   * @param words         A collection of strings to count.
-   * @param caseSensitive Whether the check should be case-sensitive or not.
-   * @return A map association each distinct string to its number of occurences.
+   * @param s1 A string.
+   * @param s2 Another string.
+   * @return The distance between both strings.
    */
-  public static Map<String, Long> computeWordStatistics(
-      final @NotNull Collection<String> words,
-      boolean caseSensitive
-  ) {
-    final Function<String, String> classifier =
-        caseSensitive ? Function.identity() : String::toLowerCase;
-    return words.stream().collect(Collectors.groupingBy(classifier, Collectors.counting()));
+  public static int levenshteinDistance(@NotNull String s1, @NotNull String s2) {
+    int[] previous = new int[s2.length() + 1];
+    int[] current = new int[s2.length() + 1];
+    for (int j = 0; j <= s2.length(); j++)
+      previous[j] = j;
+    for (int i = 1; i <= s1.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= s2.length(); j++) {
+        final int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+      }
+      final int[] tmp = previous;
+      previous = current;
+      current = tmp;
+    }
+    return previous[s2.length()];
   }
 
   private StringUtils() {
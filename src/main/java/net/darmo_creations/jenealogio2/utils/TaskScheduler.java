@@ -0,0 +1,357 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import javafx.application.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * This class runs long tasks, such as I/O operations, on a bounded pool of background threads
+ * so that the UI does not freeze while they execute.
+ * <p>
+ * Tasks are run by order of {@link Priority} then of submission. Each task gets a {@link TaskContext}
+ * through which it reports its progress and checks whether it has been cancelled.
+ * Results, errors and progress updates are delivered on the JavaFX thread. Deliveries are batched
+ * so that tasks reporting their progress often do not flood the JavaFX event queue.
+ * <p>
+ * Apart from {@link TaskContext} methods, all methods of this class and of {@link Job}
+ * have to be called from the JavaFX thread.
+ */
+public final class TaskScheduler {
+  private final ThreadPoolExecutor executor;
+  private final List<Job<?>> jobs = new LinkedList<>();
+  private final List<Runnable> listeners = new LinkedList<>();
+  private final AtomicLong submissionCounter = new AtomicLong();
+  private final Queue<Runnable> deliveries = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final AtomicBoolean listenersUpdateScheduled = new AtomicBoolean();
+
+  /**
+   * Create a scheduler with as many threads as half the available processors, with a minimum of 2.
+   */
+  public TaskScheduler() {
+    this(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  /**
+   * Create a scheduler.
+   *
+   * @param threadsNumber The maximum number of tasks that can run at the same time.
+   * @throws IllegalArgumentException If the number of threads is not strictly positive.
+   */
+  public TaskScheduler(int threadsNumber) {
+    if (threadsNumber <= 0)
+      throw new IllegalArgumentException("threads number must be > 0, got %d".formatted(threadsNumber));
+    final AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+        threadsNumber,
+        threadsNumber,
+        30, TimeUnit.SECONDS,
+        // Jobs are comparable, ordered by priority then submission
+        new PriorityBlockingQueue<>(),
+        runnable -> {
+          final Thread thread = new Thread(runnable, "task-scheduler-" + threadCounter.incrementAndGet());
+          // Do not prevent the app from exiting
+          thread.setDaemon(true);
+          return thread;
+        }
+    );
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Submit a task to be run in the background.
+   *
+   * @param description A description of the task, shown to the user.
+   * @param priority    The task’s priority.
+   * @param task        The task to run.
+   * @param onSuccess   A callback invoked on the JavaFX thread with the task’s result.
+   * @param onFailure   A callback invoked on the JavaFX thread with the exception that interrupted the task.
+   *                    It receives a {@link CancellationException} if the task was cancelled.
+   * @param <T>         Type of the task’s result.
+   * @return The job for the submitted task.
+   */
+  public <T> Job<T> submit(
+      @NotNull String description,
+      @NotNull Priority priority,
+      @NotNull Task<T> task,
+      @NotNull Consumer<T> onSuccess,
+      @NotNull Consumer<Exception> onFailure
+  ) {
+    final Job<T> job = new Job<>(
+        Objects.requireNonNull(description),
+        Objects.requireNonNull(priority),
+        this.submissionCounter.getAndIncrement(),
+        Objects.requireNonNull(task),
+        Objects.requireNonNull(onSuccess),
+        Objects.requireNonNull(onFailure)
+    );
+    this.jobs.add(job);
+    this.executor.execute(job);
+    this.notifyListeners();
+    return job;
+  }
+
+  /**
+   * The jobs that are queued or running, by order of submission.
+   */
+  public @UnmodifiableView List<Job<?>> jobs() {
+    return Collections.unmodifiableList(this.jobs);
+  }
+
+  /**
+   * Add a listener that is notified on the JavaFX thread whenever a job is submitted, ends or reports progress.
+   *
+   * @param listener The listener to add.
+   */
+  public void addListener(@NotNull Runnable listener) {
+    this.listeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Remove a listener.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeListener(@NotNull Runnable listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Cancel all jobs and stop the background threads. No tasks can be submitted afterwards.
+   */
+  public void shutdown() {
+    new ArrayList<>(this.jobs).forEach(Job::cancel);
+    this.executor.shutdownNow();
+  }
+
+  private void notifyListeners() {
+    this.listeners.forEach(Runnable::run);
+  }
+
+  /**
+   * Schedule a notification of listeners, merged with any other pending one.
+   * May be called from any thread.
+   */
+  private void scheduleListenersUpdate() {
+    if (this.listenersUpdateScheduled.compareAndSet(false, true))
+      this.deliver(() -> {
+        this.listenersUpdateScheduled.set(false);
+        this.notifyListeners();
+      });
+  }
+
+  /**
+   * Run the given action on the JavaFX thread. All actions delivered before the JavaFX thread
+   * gets to run them are run at once. May be called from any thread.
+   *
+   * @param action The action to run.
+   */
+  private void deliver(@NotNull Runnable action) {
+    this.deliveries.add(action);
+    if (this.flushScheduled.compareAndSet(false, true))
+      Platform.runLater(this::flushDeliveries);
+  }
+
+  private void flushDeliveries() {
+    this.flushScheduled.set(false);
+    Runnable action;
+    while ((action = this.deliveries.poll()) != null)
+      action.run();
+  }
+
+  /**
+   * Enumeration of task priorities. Queued tasks with a higher priority are run first.
+   */
+  public enum Priority {
+    /**
+     * For tasks the user is waiting for, like loading a tree.
+     */
+    HIGH,
+    /**
+     * For tasks the user started but can keep working during, like exports.
+     */
+    NORMAL,
+    /**
+     * For tasks the user did not directly ask for.
+     */
+    LOW,
+  }
+
+  /**
+   * A task to run in the background.
+   *
+   * @param <T> Type of the task’s result.
+   */
+  @FunctionalInterface
+  public interface Task<T> {
+    /**
+     * Run this task.
+     *
+     * @param context The context to report progress to and check for cancellation.
+     * @return The task’s result.
+     * @throws Exception If any error occurs.
+     */
+    T run(@NotNull TaskContext context) throws Exception;
+  }
+
+  /**
+   * The context of a running task. Its methods may be called from any thread.
+   */
+  public interface TaskContext {
+    /**
+     * Report the progress of the task.
+     *
+     * @param progress The progress, in [0, 1], or a negative value if it cannot be determined.
+     */
+    void setProgress(double progress);
+
+    /**
+     * Indicate whether the task has been cancelled. Cancelled tasks should stop as soon as possible.
+     */
+    boolean isCancelled();
+
+    /**
+     * Throw a {@link CancellationException} if the task has been cancelled.
+     *
+     * @throws CancellationException If the task has been cancelled.
+     */
+    default void checkCancelled() {
+      if (this.isCancelled())
+        throw new CancellationException();
+    }
+  }
+
+  /**
+   * A task submitted to a {@link TaskScheduler}.
+   *
+   * @param <T> Type of the task’s result.
+   */
+  public final class Job<T> implements Runnable, Comparable<Job<?>>, TaskContext {
+    private final String description;
+    private final Priority priority;
+    private final long submissionIndex;
+    private final Task<T> task;
+    private final Consumer<T> onSuccess;
+    private final Consumer<Exception> onFailure;
+    private volatile double progress = -1;
+    private volatile boolean cancelled;
+    private volatile boolean running;
+    /**
+     * Whether the job’s outcome has been delivered. Only accessed from the JavaFX thread.
+     */
+    private boolean done;
+
+    private Job(
+        @NotNull String description,
+        @NotNull Priority priority,
+        long submissionIndex,
+        @NotNull Task<T> task,
+        @NotNull Consumer<T> onSuccess,
+        @NotNull Consumer<Exception> onFailure
+    ) {
+      this.description = description;
+      this.priority = priority;
+      this.submissionIndex = submissionIndex;
+      this.task = task;
+      this.onSuccess = onSuccess;
+      this.onFailure = onFailure;
+    }
+
+    /**
+     * This job’s description.
+     */
+    public String description() {
+      return this.description;
+    }
+
+    /**
+     * This job’s priority.
+     */
+    public Priority priority() {
+      return this.priority;
+    }
+
+    /**
+     * This job’s last reported progress, in [0, 1], or a negative value if it cannot be determined.
+     */
+    public double progress() {
+      return this.progress;
+    }
+
+    /**
+     * Indicate whether this job’s task has started.
+     */
+    public boolean isRunning() {
+      return this.running;
+    }
+
+    /**
+     * Cancel this job. If the task has not started yet, it will not be run.
+     * Otherwise, it is up to the task to stop, but its result will be discarded anyway.
+     * The job’s failure callback is immediately invoked with a {@link CancellationException}.
+     * Does nothing if this job has already ended.
+     */
+    public void cancel() {
+      if (this.done)
+        return;
+      this.cancelled = true;
+      TaskScheduler.this.executor.remove(this);
+      this.complete(null, new CancellationException());
+    }
+
+    @Override
+    public void setProgress(double progress) {
+      this.progress = Math.min(progress, 1);
+      TaskScheduler.this.scheduleListenersUpdate();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.cancelled;
+    }
+
+    @Override
+    public void run() {
+      if (this.cancelled)
+        return;
+      this.running = true;
+      TaskScheduler.this.scheduleListenersUpdate();
+      try {
+        final T result = this.task.run(this);
+        TaskScheduler.this.deliver(() -> this.complete(result, null));
+      } catch (final Exception e) {
+        TaskScheduler.this.deliver(() -> this.complete(null, e));
+      }
+    }
+
+    /**
+     * Deliver this job’s outcome. Must be called on the JavaFX thread.
+     *
+     * @param result    The task’s result.
+     * @param exception The exception raised by the task, null if it succeeded.
+     */
+    private void complete(T result, Exception exception) {
+      if (this.done)
+        return;
+      this.done = true;
+      TaskScheduler.this.jobs.remove(this);
+      TaskScheduler.this.notifyListeners();
+      if (this.cancelled && !(exception instanceof CancellationException))
+        this.onFailure.accept(new CancellationException());
+      else if (exception != null)
+        this.onFailure.accept(exception);
+      else
+        this.onSuccess.accept(result);
+    }
+
+    @Override
+    public int compareTo(final @NotNull Job<?> job) {
+      final int c = this.priority.compareTo(job.priority);
+      return c != 0 ? c : Long.compare(this.submissionIndex, job.submissionIndex);
+    }
+  }
+}
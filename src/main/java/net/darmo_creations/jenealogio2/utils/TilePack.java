@@ -0,0 +1,207 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * A directory of map tiles laid out as {@code <zoom>/<x>/<y>.<ext>}, as exported by most tile tools.
+ * Rows are numbered from the north, as in OpenStreetMap’s tile URLs.
+ * <p>
+ * Tiles may be PNG or JPEG images. New tiles are always written as PNG images.
+ */
+public final class TilePack {
+  /**
+   * The maximum zoom level of tiles.
+   */
+  public static final int MAX_ZOOM = 19;
+
+  private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+  private final Path directory;
+
+  /**
+   * Create a tile pack backed by the given directory. The directory does not have to exist.
+   *
+   * @param directory The pack’s root directory.
+   */
+  public TilePack(@NotNull Path directory) {
+    this.directory = Objects.requireNonNull(directory);
+  }
+
+  /**
+   * This pack’s root directory.
+   */
+  public Path directory() {
+    return this.directory;
+  }
+
+  /**
+   * Get the file of a tile.
+   *
+   * @param tile The tile to get the file of.
+   * @return The tile’s file, or an empty value if it is not in this pack.
+   */
+  public Optional<Path> file(@NotNull Tile tile) {
+    final Path column = this.columnDirectory(tile);
+    for (final String extension : EXTENSIONS) {
+      final Path file = column.resolve(tile.y() + extension);
+      if (Files.isRegularFile(file))
+        return Optional.of(file);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Indicate whether a tile is in this pack and was written after the given instant.
+   *
+   * @param tile  A tile.
+   * @param after An instant. May be null to accept any tile.
+   * @return True if the tile is in this pack and is recent enough.
+   */
+  public boolean contains(@NotNull Tile tile, Instant after) {
+    final Optional<Path> file = this.file(tile);
+    if (file.isEmpty())
+      return false;
+    if (after == null)
+      return true;
+    try {
+      return Files.getLastModifiedTime(file.get()).toInstant().isAfter(after);
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Read the image of a tile.
+   *
+   * @param tile The tile to read.
+   * @return The encoded image, or an empty value if the tile is not in this pack.
+   * @throws IOException If the tile’s file could not be read.
+   */
+  public Optional<byte[]> read(@NotNull Tile tile) throws IOException {
+    final Optional<Path> file = this.file(tile);
+    return file.isPresent() ? Optional.of(Files.readAllBytes(file.get())) : Optional.empty();
+  }
+
+  /**
+   * Write the image of a tile, replacing any previous one.
+   *
+   * @param tile  The tile to write.
+   * @param image The PNG image of the tile.
+   * @throws IOException If the tile could not be written.
+   */
+  public void write(@NotNull Tile tile, final @NotNull byte[] image) throws IOException {
+    final Path column = this.columnDirectory(tile);
+    Files.createDirectories(column);
+    // Write to a temporary file first so that readers never see a half-written tile
+    final Path tempFile = Files.createTempFile(column, tile.y() + "-", ".tmp");
+    try {
+      Files.write(tempFile, image);
+      Files.move(tempFile, column.resolve(tile.y() + EXTENSIONS[0]),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Delete the least recently written files of this pack until their total size is at most the given size.
+   * Directories left empty are deleted too. Files that cannot be read or deleted are skipped.
+   *
+   * @param maxSize The maximum total size of this pack’s files, in bytes.
+   * @return The number of deleted files.
+   * @throws IOException If this pack’s directory could not be listed.
+   */
+  public int prune(long maxSize) throws IOException {
+    if (!Files.isDirectory(this.directory))
+      return 0;
+    record Entry(Path file, FileTime lastModified, long size) {
+    }
+    final List<Entry> entries = new ArrayList<>();
+    final List<Path> directories = new ArrayList<>();
+    Files.walkFileTree(this.directory, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+        if (attributes.isRegularFile())
+          entries.add(new Entry(file, attributes.lastModifiedTime(), attributes.size()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e) {
+        // The file may have been replaced or deleted by a concurrent write
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+        if (!dir.equals(TilePack.this.directory))
+          directories.add(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    long totalSize = entries.stream().mapToLong(Entry::size).sum();
+    entries.sort(Comparator.comparing(Entry::lastModified));
+    int deleted = 0;
+    for (int i = 0; i < entries.size() && totalSize > maxSize; i++) {
+      final Entry entry = entries.get(i);
+      try {
+        if (Files.deleteIfExists(entry.file()))
+          deleted++;
+        totalSize -= entry.size();
+      } catch (final IOException e) {
+        // Skip files that are in use, the next ones are deleted instead
+      }
+    }
+    if (deleted != 0)
+      // Directories are listed after their content, so a column is deleted before its zoom level
+      for (final Path dir : directories)
+        try {
+          Files.deleteIfExists(dir);
+        } catch (final IOException e) {
+          // Not empty
+        }
+    return deleted;
+  }
+
+  private Path columnDirectory(@NotNull Tile tile) {
+    return this.directory.resolve(String.valueOf(tile.zoom())).resolve(String.valueOf(tile.x()));
+  }
+
+  /**
+   * The coordinates of a map tile.
+   *
+   * @param zoom The tile’s zoom level, between 0 and {@link #MAX_ZOOM}.
+   * @param x    The tile’s column, from the west.
+   * @param y    The tile’s row, from the north.
+   */
+  public record Tile(int zoom, long x, long y) {
+    public Tile {
+      if (zoom < 0 || zoom > MAX_ZOOM)
+        throw new IllegalArgumentException("invalid zoom level: %d".formatted(zoom));
+      final long size = 1L << zoom;
+      if (x < 0 || x >= size || y < 0 || y >= size)
+        throw new IllegalArgumentException("invalid tile %d/%d/%d".formatted(zoom, x, y));
+    }
+
+    /**
+     * The tiles that cover the same area as this one at the previous and next zoom levels:
+     * the tile containing this one, then the 4 tiles it contains.
+     */
+    public List<Tile> adjacentZoomTiles() {
+      final List<Tile> tiles = new ArrayList<>(5);
+      if (this.zoom > 0)
+        tiles.add(new Tile(this.zoom - 1, this.x / 2, this.y / 2));
+      if (this.zoom < MAX_ZOOM)
+        for (int dx = 0; dx < 2; dx++)
+          for (int dy = 0; dy < 2; dy++)
+            tiles.add(new Tile(this.zoom + 1, 2 * this.x + dx, 2 * this.y + dy));
+      return tiles;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactSetTest {
+  @Test
+  void addAndContains() {
+    final Set<String> set = new CompactSet<>();
+    assertTrue(set.add("a"));
+    assertTrue(set.add("b"));
+    assertFalse(set.add("a"));
+    assertEquals(2, set.size());
+    assertTrue(set.contains("a"));
+    assertFalse(set.contains("c"));
+  }
+
+  @Test
+  void addNullThrows() {
+    assertThrows(NullPointerException.class, () -> new CompactSet<String>().add(null));
+  }
+
+  @Test
+  void remove() {
+    final Set<String> set = new CompactSet<>();
+    set.addAll(List.of("a", "b", "c"));
+    assertTrue(set.remove("b"));
+    assertFalse(set.remove("b"));
+    assertEquals(Set.of("a", "c"), set);
+  }
+
+  @Test
+  void iteratorRemove() {
+    final Set<Integer> set = new CompactSet<>();
+    set.addAll(List.of(1, 2, 3, 4));
+    set.removeIf(i -> i % 2 == 0);
+    assertEquals(Set.of(1, 3), set);
+  }
+
+  @Test
+  void iteratorRemoveWithoutNextThrows() {
+    final Set<Integer> set = new CompactSet<>();
+    set.add(1);
+    assertThrows(IllegalStateException.class, () -> set.iterator().remove());
+  }
+
+  @Test
+  void switchesToHashSetWhenLarge() {
+    final Set<Integer> set = new CompactSet<>();
+    final Set<Integer> expected = new HashSet<>();
+    for (int i = 0; i < 3 * CompactSet.MAX_ARRAY_SIZE; i++) {
+      set.add(i);
+      expected.add(i);
+    }
+    assertEquals(expected, set);
+    set.remove(5);
+    expected.remove(5);
+    assertEquals(expected, set);
+  }
+
+  @Test
+  void clear() {
+    final Set<Integer> set = new CompactSet<>();
+    set.addAll(List.of(1, 2, 3));
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(1));
+  }
+
+  @Test
+  void addToSharedEmptySetCreatesNewSet() {
+    final Set<String> empty = Collections.emptySet();
+    final Set<String> set = CompactSet.add(empty, "a");
+    assertNotSame(empty, set);
+    assertTrue(empty.isEmpty());
+    assertEquals(Set.of("a"), set);
+    assertSame(set, CompactSet.add(set, "b"));
+    assertEquals(Set.of("a", "b"), set);
+  }
+}
@@ -0,0 +1,133 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class DuplicateFinderTest {
+  private FamilyTree tree;
+  private DuplicateFinder finder;
+  private Person dupont1;
+  private Person dupont2;
+  private Person martin;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.finder = new DuplicateFinder(Locale.ENGLISH);
+    this.dupont1 = this.addPerson("Jean", "Dupont", 1850);
+    this.dupont2 = this.addPerson("Jean", "Dupond", 1851);
+    this.martin = this.addPerson("Paul", "Martin", 1850);
+  }
+
+  private Person addPerson(String firstName, String lastName, int birthYear) {
+    final Person person = new Person().setLegalFirstNames(List.of(firstName)).setLegalLastName(lastName);
+    this.tree.addPerson(person);
+    final LifeEvent birth = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, birthYear, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+    this.tree.setLifeEventActors(birth, Set.of(person));
+    return person;
+  }
+
+  private List<DuplicateFinder.Candidate> find() {
+    return this.finder.find(this.tree.snapshot(), DuplicateFinder.DEFAULT_THRESHOLD, new Context(false));
+  }
+
+  private static boolean hasPair(final List<DuplicateFinder.Candidate> candidates, Person p1, Person p2) {
+    return candidates.stream().anyMatch(c -> c.person1() == p1 && c.person2() == p2 || c.person1() == p2 && c.person2() == p1);
+  }
+
+  @Test
+  void findsSimilarPersons() {
+    final List<DuplicateFinder.Candidate> candidates = this.find();
+    assertEquals(1, candidates.size());
+    assertTrue(hasPair(candidates, this.dupont1, this.dupont2));
+  }
+
+  @Test
+  void sortedByDecreasingScore() {
+    final Person person = this.addPerson("Jean", "Dupont", 1850);
+    final List<DuplicateFinder.Candidate> candidates = this.find();
+    assertTrue(hasPair(candidates.subList(0, 1), this.dupont1, person));
+    for (int i = 1; i < candidates.size(); i++)
+      assertTrue(candidates.get(i - 1).score() >= candidates.get(i).score());
+  }
+
+  @Test
+  void distantBirthYearsExcluded() {
+    final Person person = this.addPerson("Jean", "Dupont", 1900);
+    assertFalse(hasPair(this.find(), this.dupont1, person));
+  }
+
+  @Test
+  void neighboringDecadesCompared() {
+    final Person person1 = this.addPerson("Luc", "Durand", 1849);
+    final Person person2 = this.addPerson("Luc", "Durand", 1850);
+    assertTrue(hasPair(this.find(), person1, person2));
+  }
+
+  @Test
+  void differentParentsLowerScore() {
+    final Person parent1 = this.addPerson("Pierre", "Dupont", 1820);
+    final Person parent2 = this.addPerson("Marc", "Lefebvre", 1820);
+    final double score = this.find().get(0).score();
+    this.dupont1.addParent(parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.dupont2.addParent(parent2, ParentalRelationType.BIOLOGICAL_PARENT);
+    final List<DuplicateFinder.Candidate> candidates = this.finder.find(this.tree.snapshot(), 0, new Context(false));
+    assertTrue(candidates.stream()
+        .filter(c -> hasPair(List.of(c), this.dupont1, this.dupont2))
+        .allMatch(c -> c.score() < score));
+  }
+
+  @Test
+  void updatedAfterRename() {
+    this.find();
+    this.martin.setLegalFirstNames(List.of("Jean")).setLegalLastName("Dupont");
+    assertTrue(hasPair(this.find(), this.dupont1, this.martin));
+    this.martin.setLegalLastName("Martin");
+    assertFalse(hasPair(this.find(), this.dupont1, this.martin));
+  }
+
+  @Test
+  void updatedAfterRemove() {
+    this.find();
+    this.tree.removePerson(this.dupont2);
+    assertTrue(this.find().isEmpty());
+  }
+
+  @Test
+  void restartableAfterCancel() {
+    this.find();
+    this.martin.setLegalFirstNames(List.of("Jean")).setLegalLastName("Dupont");
+    assertThrows(CancellationException.class,
+        () -> this.finder.find(this.tree.snapshot(), DuplicateFinder.DEFAULT_THRESHOLD, new Context(true)));
+    assertTrue(hasPair(this.find(), this.dupont1, this.martin));
+  }
+
+  @Test
+  void blockingKeysUsePhoneticLastNameAndDecade() {
+    final DuplicateFinder.Profile profile1 = new DuplicateFinder.Profile(
+        this.dupont1, "dupont", Set.of("dpn"), "jean", null, 1855, null, Set.of());
+    final DuplicateFinder.Profile profile2 = new DuplicateFinder.Profile(
+        this.dupont2, "dupond", Set.of("dpn"), "jean", null, 1856, "paris", Set.of());
+    final Set<String> keys = new HashSet<>(DuplicateFinder.blockingKeys(profile1));
+    keys.retainAll(DuplicateFinder.blockingKeys(profile2));
+    assertFalse(keys.isEmpty());
+  }
+
+  private record Context(boolean isCancelled) implements TaskScheduler.TaskContext {
+    @Override
+    public void setProgress(double progress) {
+    }
+  }
+}
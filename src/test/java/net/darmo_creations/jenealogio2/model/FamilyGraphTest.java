@@ -0,0 +1,175 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class FamilyGraphTest {
+  private FamilyTree tree;
+  private Person parent1;
+  private Person parent2;
+  private Person child;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.parent1 = this.newPerson();
+    this.parent2 = this.newPerson();
+    this.child = this.newPerson();
+    this.child.addParent(this.parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.child.addParent(this.parent2, ParentalRelationType.ADOPTIVE_PARENT);
+  }
+
+  private Person newPerson() {
+    final Person person = new Person();
+    this.tree.addPerson(person);
+    return person;
+  }
+
+  @Test
+  void indicesAreDense() {
+    final Person p = this.newPerson();
+    this.tree.removePerson(this.parent2);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(3, graph.size());
+    final Set<Person> persons = new HashSet<>();
+    for (int i = 0; i < graph.size(); i++) {
+      assertEquals(i, graph.indexOf(graph.person(i)));
+      persons.add(graph.person(i));
+    }
+    assertEquals(Set.of(this.parent1, this.child, p), persons);
+  }
+
+  @Test
+  void indexOfNotMember() {
+    assertEquals(-1, this.tree.graph().indexOf(new Person()));
+  }
+
+  @Test
+  void parentsArePartitionedByType() {
+    final FamilyGraph graph = this.tree.graph();
+    final int c = graph.indexOf(this.child);
+    assertEquals(1, graph.parentsCount(c, ParentalRelationType.BIOLOGICAL_PARENT));
+    assertEquals(graph.indexOf(this.parent1), graph.parent(c, ParentalRelationType.BIOLOGICAL_PARENT, 0));
+    assertEquals(1, graph.parentsCount(c, ParentalRelationType.ADOPTIVE_PARENT));
+    assertEquals(graph.indexOf(this.parent2), graph.parent(c, ParentalRelationType.ADOPTIVE_PARENT, 0));
+    assertEquals(0, graph.parentsCount(c, ParentalRelationType.GODPARENT));
+  }
+
+  @Test
+  void childrenArePartitionedByType() {
+    final FamilyGraph graph = this.tree.graph();
+    final int p = graph.indexOf(this.parent2);
+    assertEquals(0, graph.childrenCount(p, ParentalRelationType.BIOLOGICAL_PARENT));
+    assertEquals(1, graph.childrenCount(p, ParentalRelationType.ADOPTIVE_PARENT));
+    assertEquals(graph.indexOf(this.child), graph.child(p, ParentalRelationType.ADOPTIVE_PARENT, 0));
+  }
+
+  @Test
+  void forEachParentFollowsMask() {
+    final FamilyGraph graph = this.tree.graph();
+    final List<Integer> parents = new ArrayList<>();
+    graph.forEachParent(graph.indexOf(this.child), FamilyGraph.mask(ParentalRelationType.GENETIC_RELATIONS), parents::add);
+    assertEquals(List.of(graph.indexOf(this.parent1)), parents);
+    parents.clear();
+    graph.forEachParent(graph.indexOf(this.child), FamilyGraph.mask(EnumSet.allOf(ParentalRelationType.class)), parents::add);
+    assertEquals(Set.of(graph.indexOf(this.parent1), graph.indexOf(this.parent2)), new HashSet<>(parents));
+  }
+
+  @Test
+  void partners() {
+    this.marry(this.parent1, this.parent2);
+    this.marry(this.parent1, this.parent2);
+    final FamilyGraph graph = this.tree.graph();
+    final int p1 = graph.indexOf(this.parent1);
+    assertEquals(1, graph.partnersCount(p1));
+    assertEquals(graph.indexOf(this.parent2), graph.partner(p1, 0));
+    assertEquals(0, graph.partnersCount(graph.indexOf(this.child)));
+  }
+
+  @Test
+  void graphIsCached() {
+    assertSame(this.tree.graph(), this.tree.graph());
+  }
+
+  @Test
+  void graphRebuiltWhenParentAdded() {
+    final FamilyGraph graph = this.tree.graph();
+    this.child.addParent(this.newPerson(), ParentalRelationType.GODPARENT);
+    final FamilyGraph newGraph = this.tree.graph();
+    assertNotSame(graph, newGraph);
+    assertEquals(1, newGraph.parentsCount(newGraph.indexOf(this.child), ParentalRelationType.GODPARENT));
+    // Previous snapshots are not modified
+    assertEquals(0, graph.parentsCount(graph.indexOf(this.child), ParentalRelationType.GODPARENT));
+  }
+
+  @Test
+  void graphRebuiltWhenParentRemoved() {
+    this.tree.graph();
+    this.child.removeParent(this.parent1);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(0, graph.parentsCount(graph.indexOf(this.child), ParentalRelationType.BIOLOGICAL_PARENT));
+  }
+
+  @Test
+  void graphRebuiltWhenUnionAdded() {
+    this.tree.graph();
+    this.marry(this.parent1, this.parent2);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(1, graph.partnersCount(graph.indexOf(this.parent2)));
+  }
+
+  @Test
+  void graphRebuiltWhenUnionRemoved() {
+    final LifeEvent event = this.marry(this.parent1, this.parent2);
+    this.tree.graph();
+    this.tree.removeActorFromLifeEvent(event, this.parent1);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(0, graph.partnersCount(graph.indexOf(this.parent2)));
+  }
+
+  @Test
+  void graphUpdatedWhenPersonAdded() {
+    final FamilyGraph graph = this.tree.graph();
+    final Person p = this.newPerson();
+    final FamilyGraph newGraph = this.tree.graph();
+    assertEquals(4, newGraph.size());
+    assertEquals(p, newGraph.person(newGraph.indexOf(p)));
+    assertEquals(0, newGraph.parentsCount(newGraph.indexOf(p), ParentalRelationType.BIOLOGICAL_PARENT));
+    assertEquals(-1, graph.indexOf(p));
+  }
+
+  @Test
+  void graphUpdatedWhenPersonRemoved() {
+    this.tree.graph();
+    this.tree.removePerson(this.parent1);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(2, graph.size());
+    assertEquals(-1, graph.indexOf(this.parent1));
+    final int c = graph.indexOf(this.child);
+    assertEquals(0, graph.parentsCount(c, ParentalRelationType.BIOLOGICAL_PARENT));
+    assertEquals(graph.indexOf(this.parent2), graph.parent(c, ParentalRelationType.ADOPTIVE_PARENT, 0));
+  }
+
+  @Test
+  void graphIgnoresNonMembers() {
+    this.child.addParent(new Person(), ParentalRelationType.GODPARENT);
+    final FamilyGraph graph = this.tree.graph();
+    assertEquals(0, graph.parentsCount(graph.indexOf(this.child), ParentalRelationType.GODPARENT));
+  }
+
+  private LifeEvent marry(Person person1, Person person2) {
+    final LifeEvent event = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 2000, 1, 1, null, null), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:marriage"))
+    );
+    this.tree.setLifeEventActors(event, Set.of(person1, person2));
+    return event;
+  }
+}
@@ -0,0 +1,119 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class FamilyTreeChangeTest {
+  private FamilyTree tree;
+  private Person root;
+  private final List<FamilyTreeChange> changes = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.root = new Person();
+    this.tree.addPerson(this.root);
+    this.tree.addChangeListener(this.changes::add);
+  }
+
+  private LifeEvent newBirth(Person actor) {
+    final LifeEvent event = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+    this.tree.setLifeEventActors(event, Set.of(actor));
+    return event;
+  }
+
+  @Test
+  void addPersonFiresPersonAdded() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    assertEquals(List.of(new FamilyTreeChange.PersonAdded(p)), this.changes);
+  }
+
+  @Test
+  void removePersonFiresPersonRemoved() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.changes.clear();
+    this.tree.removePerson(p);
+    assertEquals(List.of(new FamilyTreeChange.PersonRemoved(p)), this.changes);
+  }
+
+  @Test
+  void settersFirePersonUpdated() {
+    this.root.setLegalLastName("Doe");
+    this.root.setNotes("notes");
+    assertEquals(List.of(
+        new FamilyTreeChange.PersonUpdated(this.root),
+        new FamilyTreeChange.PersonUpdated(this.root)
+    ), this.changes);
+  }
+
+  @Test
+  void settersOfNonMembersFireNothing() {
+    final Person p = new Person();
+    p.setLegalLastName("Doe");
+    this.tree.addPerson(p);
+    this.tree.removePerson(p);
+    this.changes.clear();
+    p.setLegalLastName("Smith");
+    assertTrue(this.changes.isEmpty());
+  }
+
+  @Test
+  void addParentFiresParentsChanged() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.changes.clear();
+    p.addParent(this.root, ParentalRelationType.BIOLOGICAL_PARENT);
+    p.removeParent(this.root);
+    final var change = new FamilyTreeChange.ParentsChanged(p, this.root);
+    assertEquals(List.of(change, change), this.changes);
+  }
+
+  @Test
+  void lifeEventChangesFireLifeEventChanged() {
+    final LifeEvent event = this.newBirth(this.root);
+    event.setPlace(new Place("Paris", null));
+    final var change = new FamilyTreeChange.LifeEventChanged(event);
+    assertEquals(List.of(change, change), this.changes);
+  }
+
+  @Test
+  void lifeEventNotInTreeFiresNothing() {
+    final LifeEvent event = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+    event.setPlace(new Place("Paris", null));
+    assertTrue(this.changes.isEmpty());
+  }
+
+  @Test
+  void setRootFiresRootChanged() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.changes.clear();
+    this.tree.setRoot(p);
+    assertEquals(List.of(new FamilyTreeChange.RootChanged(p)), this.changes);
+  }
+
+  @Test
+  void removedListenerNotNotified() {
+    final List<FamilyTreeChange> otherChanges = new ArrayList<>();
+    final FamilyTreeChangeListener listener = otherChanges::add;
+    this.tree.addChangeListener(listener);
+    this.tree.removeChangeListener(listener);
+    this.root.setLegalLastName("Doe");
+    assertTrue(otherChanges.isEmpty());
+  }
+}
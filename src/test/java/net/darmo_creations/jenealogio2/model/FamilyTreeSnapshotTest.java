@@ -0,0 +1,137 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.io.*;
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class FamilyTreeSnapshotTest {
+  private FamilyTree tree;
+  private Person parent;
+  private Person child;
+  private LifeEvent birth;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.parent = new Person().setLegalLastName("A");
+    this.tree.addPerson(this.parent);
+    this.child = new Person();
+    this.tree.addPerson(this.child);
+    this.child.addParent(this.parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.birth = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+    this.tree.setLifeEventActors(this.birth, Set.of(this.child));
+  }
+
+  @Test
+  void snapshotHasTreeState() {
+    final FamilyTreeSnapshot snapshot = this.tree.snapshot();
+    assertEquals("tree", snapshot.name());
+    assertEquals(2, snapshot.size());
+    assertEquals("A", snapshot.person(this.parent).orElseThrow().legalLastName().orElseThrow());
+    assertSame(this.parent, snapshot.root().orElseThrow().person());
+    assertEquals(1, snapshot.lifeEvents().size());
+    assertTrue(snapshot.lifeEvents().get(0).hasActor(this.child));
+    final int childIndex = snapshot.graph().indexOf(this.child);
+    assertSame(this.child, snapshot.person(childIndex).person());
+    assertEquals(1, snapshot.graph().parentsCount(childIndex, ParentalRelationType.BIOLOGICAL_PARENT));
+  }
+
+  @Test
+  void snapshotCachedWhileTreeUnchanged() {
+    assertSame(this.tree.snapshot(), this.tree.snapshot());
+  }
+
+  @Test
+  void snapshotNotUpdatedByChanges() {
+    final FamilyTreeSnapshot snapshot = this.tree.snapshot();
+    this.parent.setLegalLastName("B");
+    this.tree.removePerson(this.child);
+    assertEquals("A", snapshot.person(this.parent).orElseThrow().legalLastName().orElseThrow());
+    assertEquals(2, snapshot.size());
+    assertEquals(1, snapshot.lifeEvents().size());
+    final FamilyTreeSnapshot newSnapshot = this.tree.snapshot();
+    assertNotSame(snapshot, newSnapshot);
+    assertEquals("B", newSnapshot.person(this.parent).orElseThrow().legalLastName().orElseThrow());
+    assertTrue(newSnapshot.person(this.child).isEmpty());
+    assertTrue(newSnapshot.lifeEvents().isEmpty());
+  }
+
+  @Test
+  void unchangedObjectsShared() {
+    final FamilyTreeSnapshot snapshot = this.tree.snapshot();
+    this.parent.setLegalLastName("B");
+    final FamilyTreeSnapshot newSnapshot = this.tree.snapshot();
+    assertSame(snapshot.person(this.child).orElseThrow(), newSnapshot.person(this.child).orElseThrow());
+    assertSame(snapshot.lifeEvents().get(0), newSnapshot.lifeEvents().get(0));
+    assertNotSame(snapshot.person(this.parent).orElseThrow(), newSnapshot.person(this.parent).orElseThrow());
+  }
+
+  @Test
+  void lifeEventSnapshotUpdatedWhenWitnessAdded() {
+    final LifeEventSnapshot snapshot = this.birth.snapshot();
+    this.tree.addWitnessToLifeEvent(this.birth, this.parent);
+    assertFalse(snapshot.hasWitness(this.parent));
+    assertTrue(this.birth.snapshot().hasWitness(this.parent));
+  }
+
+  @Test
+  void personSnapshotUpdatedOutsideTree() {
+    final Person person = new Person();
+    final PersonSnapshot snapshot = person.snapshot();
+    person.setMainOccupation("job");
+    assertTrue(snapshot.mainOccupation().isEmpty());
+    assertEquals("job", person.snapshot().mainOccupation().orElseThrow());
+  }
+
+  @Test
+  void snapshotHasDocuments() {
+    final AttachedDocument doc = new AttachedDocument(Path.of("doc.pdf"), "desc", null);
+    this.tree.addDocument(doc);
+    doc.addAuthor(this.parent, 0);
+    doc.annotateObject(AnnotationType.MENTION, this.birth, "p. 1");
+    final DocumentSnapshot snapshot = this.tree.snapshot().document(doc).orElseThrow();
+    assertEquals("doc.pdf", snapshot.fileName());
+    assertEquals("desc", snapshot.description().orElseThrow());
+    assertEquals(List.of(this.parent), snapshot.authors());
+    assertEquals(Map.of(this.birth, Optional.of("p. 1")), snapshot.annotatedObjects(AnnotationType.MENTION));
+    assertTrue(snapshot.annotatedObjects(AnnotationType.VISIBLE).isEmpty());
+  }
+
+  @Test
+  void documentSnapshotNotUpdatedByChanges() {
+    final AttachedDocument doc = new AttachedDocument(Path.of("doc.pdf"), "desc", null);
+    this.tree.addDocument(doc);
+    final FamilyTreeSnapshot snapshot = this.tree.snapshot();
+    this.tree.renameDocument("doc.pdf", "other");
+    doc.addAuthor(this.parent, 0);
+    assertEquals("doc.pdf", snapshot.document(doc).orElseThrow().fileName());
+    assertTrue(snapshot.document(doc).orElseThrow().authors().isEmpty());
+    assertEquals("other.pdf", this.tree.snapshot().document(doc).orElseThrow().fileName());
+  }
+
+  @Test
+  void snapshotHasUserRegistryEntries() {
+    final RegistryEntryKey key = new RegistryEntryKey("user:test");
+    this.tree.lifeEventTypeRegistry().registerEntry(
+        key, "Test", new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    this.tree.fireChange(new FamilyTreeChange.RegistriesChanged());
+    final FamilyTreeSnapshot snapshot = this.tree.snapshot();
+    this.tree.lifeEventTypeRegistry().getEntry(key).setUserDefinedName("Other");
+    final var types = snapshot.registries().lifeEventTypes();
+    assertEquals(1, types.size());
+    assertEquals(key, types.get(0).key());
+    assertEquals("Test", types.get(0).name());
+    assertEquals(LifeEventType.Group.OTHER, types.get(0).group());
+  }
+}
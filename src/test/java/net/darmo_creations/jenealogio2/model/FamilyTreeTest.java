@@ -393,6 +393,31 @@ class FamilyTreeTest {
     assertTrue(l.getAnnotatedInDocuments(annotationType).isEmpty());
   }
 
+  @Test
+  void removeDocumentRemovesMainPicture() throws IOException {
+    final Picture pic = new Picture(PictureTest.getImage(IMG_PATH), Path.of("app_icon.png"), null, null);
+    this.tree.addDocument(pic);
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.tree.setMainPictureOfObject(pic.fileName(), p);
+    this.tree.removeDocument(pic.fileName());
+    assertTrue(p.mainPicture().isEmpty());
+    assertTrue(pic.mainPictureOf().isEmpty());
+  }
+
+  @Test
+  void removePersonRemovesDocumentReferences() throws IOException {
+    final Picture pic = new Picture(PictureTest.getImage(IMG_PATH), Path.of("app_icon.png"), null, null);
+    this.tree.addDocument(pic);
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    pic.addAuthor(p, 0);
+    pic.annotateObject(AnnotationType.MENTION, p, null);
+    this.tree.setMainPictureOfObject(pic.fileName(), p);
+    this.tree.removePerson(p);
+    assertTrue(pic.referencingObjects().isEmpty());
+  }
+
   @Test
   void renameDocumentRenamesDocument() throws IOException {
     final Picture pic = new Picture(PictureTest.getImage(IMG_PATH), Path.of("test.png"), null, null);
@@ -466,4 +491,230 @@ class FamilyTreeTest {
     this.tree.addPerson(new Person());
     assertThrows(NoSuchElementException.class, () -> this.tree.setRoot(new Person()));
   }
+
+  @Test
+  void isAncestorDirectParent() {
+    final Person child = new Person();
+    final Person parent = new Person();
+    this.tree.addPerson(child);
+    this.tree.addPerson(parent);
+    child.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertTrue(this.tree.isAncestor(parent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+    assertFalse(this.tree.isAncestor(child, parent, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+  }
+
+  @Test
+  void isAncestorFollowsOnlyGivenRelationTypes() {
+    final Person child = new Person();
+    final Person parent = new Person();
+    this.tree.addPerson(child);
+    this.tree.addPerson(parent);
+    child.addParent(parent, ParentalRelationType.ADOPTIVE_PARENT);
+    assertFalse(this.tree.isAncestor(parent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+  }
+
+  @Test
+  void isAncestorUpdatedWhenParentAdded() {
+    final Person child = new Person();
+    final Person parent = new Person();
+    final Person grandparent = new Person();
+    this.tree.addPerson(child);
+    this.tree.addPerson(parent);
+    this.tree.addPerson(grandparent);
+    child.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertFalse(this.tree.isAncestor(grandparent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+    parent.addParent(grandparent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertTrue(this.tree.isAncestor(grandparent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+  }
+
+  @Test
+  void isAncestorUpdatedWhenParentRemoved() {
+    final Person child = new Person();
+    final Person parent = new Person();
+    final Person grandparent = new Person();
+    this.tree.addPerson(child);
+    this.tree.addPerson(parent);
+    this.tree.addPerson(grandparent);
+    child.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    parent.addParent(grandparent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertTrue(this.tree.isAncestor(grandparent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+    parent.removeParent(grandparent);
+    assertFalse(this.tree.isAncestor(grandparent, child, Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+  }
+
+  @Test
+  void isAncestorThrowsIfPersonNotInTree() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    assertThrows(NoSuchElementException.class,
+        () -> this.tree.isAncestor(p, new Person(), Set.of(ParentalRelationType.BIOLOGICAL_PARENT)));
+  }
+
+  @Test
+  void ancestorsLimitedGenerations() {
+    final Person child = new Person();
+    final Person parent = new Person();
+    final Person grandparent = new Person();
+    this.tree.addPerson(child);
+    this.tree.addPerson(parent);
+    this.tree.addPerson(grandparent);
+    child.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    parent.addParent(grandparent, ParentalRelationType.BIOLOGICAL_PARENT);
+    final var types = Set.of(ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(Set.of(parent), this.tree.ancestors(child, 1, types));
+    assertEquals(Set.of(parent, grandparent), this.tree.ancestors(child, 2, types));
+    assertEquals(Set.of(parent, grandparent), this.tree.ancestors(child, -1, types));
+  }
+
+  @Test
+  void ancestorsAndDescendantsOfLongLine() {
+    final Person child = new Person();
+    this.tree.addPerson(child);
+    Person top = child;
+    for (int i = 0; i < 10_000; i++) {
+      final Person parent = new Person();
+      this.tree.addPerson(parent);
+      top.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+      top = parent;
+    }
+    final var types = Set.of(ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(10_000, this.tree.ancestors(child, -1, types).size());
+    assertEquals(10_000, this.tree.descendants(top, -1, types).size());
+    assertTrue(this.tree.isAncestor(top, child, types));
+  }
+
+  @Test
+  void descendantsUpdatedWhenChildAdded() {
+    final Person parent = new Person();
+    final Person child1 = new Person();
+    final Person child2 = new Person();
+    this.tree.addPerson(parent);
+    this.tree.addPerson(child1);
+    this.tree.addPerson(child2);
+    final var types = Set.of(ParentalRelationType.BIOLOGICAL_PARENT);
+    child1.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(Set.of(child1), this.tree.descendants(parent, -1, types));
+    child2.addParent(child1, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(Set.of(child1, child2), this.tree.descendants(parent, -1, types));
+  }
+
+  @Test
+  void descendantsUpdatedWhenPersonRemoved() {
+    final Person parent = new Person();
+    final Person child = new Person();
+    this.tree.addPerson(parent);
+    this.tree.addPerson(child);
+    final var types = Set.of(ParentalRelationType.BIOLOGICAL_PARENT);
+    child.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(Set.of(child), this.tree.descendants(parent, -1, types));
+    this.tree.removePerson(child);
+    assertTrue(this.tree.descendants(parent, -1, types).isEmpty());
+  }
+
+  private LifeEvent newLifeEvent(String typeKey, Person... actors) {
+    final LifeEventType type = this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey(typeKey));
+    final LifeEvent event = new LifeEvent(new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT), type);
+    this.tree.setLifeEventActors(event, Set.of(actors));
+    return event;
+  }
+
+  @Test
+  void lifeEventTypeUsageUpdated() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    final var typeReg = this.tree.lifeEventTypeRegistry();
+    final LifeEventType birth = typeReg.getEntry(new RegistryEntryKey("builtin:birth"));
+    final LifeEventType death = typeReg.getEntry(new RegistryEntryKey("builtin:death"));
+    final LifeEvent event = this.newLifeEvent("builtin:birth", p);
+    assertEquals(Set.of(event), birth.users());
+    event.setType(death);
+    assertEquals(0, birth.usage());
+    assertEquals(Set.of(event), death.users());
+    this.tree.removeActorFromLifeEvent(event, p);
+    assertEquals(0, death.usage());
+  }
+
+  @Test
+  void lifeEventTypeUsageIgnoresEventsNotInTree() {
+    final LifeEventType birth = this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"));
+    final LifeEvent event = new LifeEvent(new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT), birth);
+    event.setType(this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:death")));
+    event.setType(birth);
+    assertEquals(0, birth.usage());
+  }
+
+  @Test
+  void genderUsageUpdated() {
+    final var genderReg = this.tree.genderRegistry();
+    final Gender female = genderReg.getEntry(new RegistryEntryKey("builtin:female"));
+    final Gender agender = genderReg.getEntry(new RegistryEntryKey("builtin:agender"));
+    final Person root = new Person();
+    final Person p = new Person().setAssignedGenderAtBirth(female);
+    this.tree.addPerson(root);
+    this.tree.addPerson(p);
+    assertEquals(Set.of(p), female.users());
+    p.setGender(female);
+    assertEquals(1, female.usage());
+    p.setAssignedGenderAtBirth(agender);
+    // Still used as the gender
+    assertEquals(Set.of(p), female.users());
+    assertEquals(Set.of(p), agender.users());
+    this.tree.removePerson(p);
+    assertEquals(0, female.usage());
+    assertEquals(0, agender.usage());
+  }
+
+  @Test
+  void replaceLifeEventTypeReplacesType() {
+    final Person p1 = new Person();
+    final Person p2 = new Person();
+    this.tree.addPerson(p1);
+    this.tree.addPerson(p2);
+    final var typeReg = this.tree.lifeEventTypeRegistry();
+    final LifeEventType birth = typeReg.getEntry(new RegistryEntryKey("builtin:birth"));
+    final LifeEventType death = typeReg.getEntry(new RegistryEntryKey("builtin:death"));
+    final LifeEvent event1 = this.newLifeEvent("builtin:birth", p1);
+    final LifeEvent event2 = this.newLifeEvent("builtin:birth", p2);
+    this.tree.replaceLifeEventType(birth, death);
+    assertSame(death, event1.type());
+    assertSame(death, event2.type());
+    assertEquals(0, birth.usage());
+    assertEquals(2, death.usage());
+  }
+
+  @Test
+  void replaceLifeEventTypeThrowsIfActorsNumberNotAllowed() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    final var typeReg = this.tree.lifeEventTypeRegistry();
+    final LifeEvent event = this.newLifeEvent("builtin:birth", p);
+    assertThrows(IllegalArgumentException.class, () -> this.tree.replaceLifeEventType(
+        event.type(), typeReg.getEntry(new RegistryEntryKey("builtin:marriage"))));
+    assertEquals(1, event.type().usage());
+  }
+
+  @Test
+  void replaceGenderReplacesGender() {
+    final var genderReg = this.tree.genderRegistry();
+    final Gender female = genderReg.getEntry(new RegistryEntryKey("builtin:female"));
+    final Gender agender = genderReg.getEntry(new RegistryEntryKey("builtin:agender"));
+    final Person p = new Person().setAssignedGenderAtBirth(female).setGender(female);
+    this.tree.addPerson(p);
+    this.tree.replaceGender(female, agender);
+    assertSame(agender, p.assignedGenderAtBirth().orElseThrow());
+    assertSame(agender, p.gender().orElseThrow());
+    assertEquals(0, female.usage());
+    assertEquals(Set.of(p), agender.users());
+  }
+
+  @Test
+  void removeUsedRegistryEntryThrows() {
+    final var reg = this.tree.lifeEventTypeRegistry();
+    reg.registerEntry(new RegistryEntryKey("user:test"), "Test", new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    final LifeEventType type = reg.getEntry(new RegistryEntryKey("user:test"));
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.newLifeEvent("builtin:birth", p).setType(type);
+    assertThrows(IllegalArgumentException.class, () -> reg.removeEntry(type));
+  }
 }
@@ -0,0 +1,107 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class GeoIndexTest {
+  private static final Place PARIS = new Place("Paris, France", new LatLon(48.8566, 2.3522));
+  private static final Place VERSAILLES = new Place("Versailles, France", new LatLon(48.8049, 2.1204));
+  private static final Place LYON = new Place("Lyon, France", new LatLon(45.764, 4.8357));
+  private static final Place SUVA = new Place("Suva, Fiji", new LatLon(-18.1416, 178.4419));
+  private static final Place APIA = new Place("Apia, Samoa", new LatLon(-13.8333, -171.75));
+  private static final Place UNKNOWN = new Place("Unknown", null);
+
+  private FamilyTree tree;
+  private Person person;
+  private LifeEvent birth;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.person = new Person();
+    this.tree.addPerson(this.person);
+    this.birth = this.addEvent("birth", PARIS);
+    this.addEvent("occupation", VERSAILLES);
+    this.addEvent("occupation", LYON);
+    this.addEvent("occupation", SUVA);
+    this.addEvent("occupation", APIA);
+    this.addEvent("death", UNKNOWN);
+  }
+
+  private LifeEvent addEvent(String type, Place place) {
+    final LifeEvent lifeEvent = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1900, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:" + type))
+    ).setPlace(place);
+    this.tree.setLifeEventActors(lifeEvent, Set.of(this.person));
+    return lifeEvent;
+  }
+
+  @Test
+  void distance() {
+    assertEquals(392, PARIS.latLon().get().distanceTo(LYON.latLon().get()), 1);
+  }
+
+  @Test
+  void placesInBox() {
+    assertEquals(Set.of(PARIS, VERSAILLES), new HashSet<>(this.tree.placesIn(new LatLonBox(48, 1, 49, 3))));
+  }
+
+  @Test
+  void placesInBoxCrossingAntimeridian() {
+    assertEquals(Set.of(SUVA, APIA), new HashSet<>(this.tree.placesIn(new LatLonBox(-20, 170, -10, -170))));
+  }
+
+  @Test
+  void placesInWorld() {
+    assertEquals(5, this.tree.placesIn(LatLonBox.WORLD).size());
+  }
+
+  @Test
+  void placesWithinClosestFirst() {
+    assertEquals(List.of(PARIS, VERSAILLES), this.tree.placesWithin(new LatLon(48.86, 2.35), 20));
+    assertEquals(List.of(PARIS, VERSAILLES, LYON), this.tree.placesWithin(new LatLon(48.86, 2.35), 400));
+  }
+
+  @Test
+  void placesWithinAcrossAntimeridian() {
+    assertEquals(List.of(SUVA, APIA), this.tree.placesWithin(new LatLon(-18, 179.9), 1200));
+  }
+
+  @Test
+  void nearestPlaces() {
+    assertEquals(List.of(LYON, PARIS), this.tree.nearestPlaces(new LatLon(46, 5), 2));
+    assertEquals(5, this.tree.nearestPlaces(new LatLon(0, 0), 10).size());
+  }
+
+  @Test
+  void lifeEventsWithin() {
+    assertEquals(Set.of(this.birth), this.tree.lifeEventsWithin(new LatLon(48.86, 2.35), 5));
+  }
+
+  @Test
+  void movedPlaceReindexed() {
+    this.birth.setPlace(LYON);
+    assertEquals(List.of(VERSAILLES), this.tree.placesWithin(new LatLon(48.86, 2.35), 20));
+  }
+
+  @Test
+  void removedPlaceUnindexed() {
+    this.tree.removeActorFromLifeEvent(this.birth, this.person);
+    assertEquals(List.of(VERSAILLES), this.tree.placesWithin(new LatLon(48.86, 2.35), 20));
+  }
+
+  @Test
+  void replacedPlaceReindexed() {
+    this.tree.replacePlace(PARIS, new Place("Paris, France", new LatLon(45.75, 4.85)));
+    assertEquals(List.of(VERSAILLES), this.tree.placesWithin(new LatLon(48.86, 2.35), 20));
+    assertEquals(2, this.tree.placesWithin(new LatLon(45.76, 4.84), 5).size());
+  }
+}
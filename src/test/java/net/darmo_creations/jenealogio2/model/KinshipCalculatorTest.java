@@ -0,0 +1,156 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class KinshipCalculatorTest {
+  private static final double DELTA = 1e-12;
+
+  private TestFamily family;
+  private Person grandparent1;
+  private Person grandparent2;
+  private Person parent1;
+  private Person parent2;
+  private Person child1;
+  private Person child2;
+
+  @BeforeEach
+  void setUp() {
+    this.family = new TestFamily();
+    this.grandparent1 = this.family.newPerson();
+    this.grandparent2 = this.family.newPerson();
+    this.parent1 = this.family.newChild(this.grandparent1, this.grandparent2);
+    this.parent2 = this.family.newChild(this.grandparent1, this.grandparent2);
+    // child1 and child2 are first cousins
+    this.child1 = this.family.newChild(this.parent1, this.family.newPerson());
+    this.child2 = this.family.newChild(this.parent2, this.family.newPerson());
+  }
+
+  private double kinship(Person person1, Person person2) {
+    return this.family.tree.kinshipCalculator().kinshipCoefficient(person1, person2);
+  }
+
+  private double inbreeding(Person person) {
+    return this.family.tree.kinshipCalculator().inbreedingCoefficient(person);
+  }
+
+  @Test
+  void kinshipSelf() {
+    assertEquals(0.5, this.kinship(this.grandparent1, this.grandparent1), DELTA);
+  }
+
+  @Test
+  void kinshipUnrelated() {
+    assertEquals(0, this.kinship(this.grandparent1, this.grandparent2), DELTA);
+  }
+
+  @Test
+  void kinshipParentChild() {
+    assertEquals(0.25, this.kinship(this.parent1, this.grandparent1), DELTA);
+    assertEquals(0.25, this.kinship(this.grandparent1, this.parent1), DELTA);
+  }
+
+  @Test
+  void kinshipFullSiblings() {
+    assertEquals(0.25, this.kinship(this.parent1, this.parent2), DELTA);
+  }
+
+  @Test
+  void kinshipHalfSiblings() {
+    final Person p = this.family.newChild(this.grandparent1, this.family.newPerson());
+    assertEquals(0.125, this.kinship(this.parent1, p), DELTA);
+  }
+
+  @Test
+  void kinshipFirstCousins() {
+    assertEquals(0.0625, this.kinship(this.child1, this.child2), DELTA);
+  }
+
+  @Test
+  void kinshipIgnoresNonGeneticRelations() {
+    final Person p = this.family.newPerson();
+    p.addParent(this.parent1, ParentalRelationType.ADOPTIVE_PARENT);
+    assertEquals(0, this.kinship(this.parent1, p), DELTA);
+  }
+
+  @Test
+  void kinshipThroughDonor() {
+    final Person p = this.family.newPerson();
+    p.addParent(this.parent1, ParentalRelationType.SPERM_DONOR);
+    assertEquals(0.25, this.kinship(this.parent1, p), DELTA);
+  }
+
+  @Test
+  void inbreedingFounder() {
+    assertEquals(0, this.inbreeding(this.grandparent1), DELTA);
+  }
+
+  @Test
+  void inbreedingOneUnknownParent() {
+    final Person p = this.family.newPerson();
+    p.addParent(this.parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(0, this.inbreeding(p), DELTA);
+  }
+
+  @Test
+  void inbreedingChildOfSiblings() {
+    assertEquals(0.25, this.inbreeding(this.family.newChild(this.parent1, this.parent2)), DELTA);
+  }
+
+  @Test
+  void inbreedingChildOfFirstCousins() {
+    assertEquals(0.0625, this.inbreeding(this.family.newChild(this.child1, this.child2)), DELTA);
+  }
+
+  @Test
+  void inbreedingRepeatedSiblingMating() {
+    final int generations = 30;
+    final Person[] firstSiblings = this.family.newSiblingMatings(generations);
+    // F(t) = 1/4 + F(t-1)/2 + F(t-2)/4
+    double f2 = 0, f1 = 0;
+    for (int i = 2; i <= generations; i++) {
+      final double f = 0.25 + f1 / 2 + f2 / 4;
+      assertEquals(f, this.inbreeding(firstSiblings[i]), DELTA);
+      f2 = f1;
+      f1 = f;
+    }
+  }
+
+  @Test
+  void kinshipMatrix() {
+    // Line of single parents: kinship between persons i and j is 1/2^(|i - j| + 1)
+    final List<Person> line = new ArrayList<>();
+    line.add(this.family.newPerson());
+    for (int i = 1; i < 40; i++) {
+      final Person p = this.family.newPerson();
+      p.addParent(line.get(i - 1), ParentalRelationType.BIOLOGICAL_PARENT);
+      line.add(p);
+    }
+    final double[][] matrix = this.family.tree.kinshipCalculator().kinshipMatrix(line);
+    for (int i = 0; i < line.size(); i++)
+      for (int j = 0; j < line.size(); j++)
+        assertEquals(Math.pow(0.5, Math.abs(i - j) + 1), matrix[i][j], DELTA);
+  }
+
+  @Test
+  void kinshipThrowsIfPersonNotInTree() {
+    assertThrows(NoSuchElementException.class, () -> this.kinship(this.child1, new Person()));
+  }
+
+  @Test
+  void kinshipCalculatorIsCached() {
+    assertSame(this.family.tree.kinshipCalculator(), this.family.tree.kinshipCalculator());
+  }
+
+  @Test
+  void kinshipCalculatorRebuiltWhenParentAdded() {
+    final Person p = this.family.newPerson();
+    assertEquals(0, this.kinship(this.child1, p), DELTA);
+    p.addParent(this.child1, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(0.25, this.kinship(this.child1, p), DELTA);
+  }
+}
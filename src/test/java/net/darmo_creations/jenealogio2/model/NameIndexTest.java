@@ -0,0 +1,122 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class NameIndexTest {
+  private FamilyTree tree;
+  private Person jean;
+  private Person jeanne;
+  private Person paul;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.jean = new Person().setLegalFirstNames(List.of("Jean", "Émile")).setLegalLastName("Dupont");
+    this.tree.addPerson(this.jean);
+    this.jeanne = new Person().setPublicFirstNames(List.of("Jeanne")).setPublicLastName("Martin");
+    this.tree.addPerson(this.jeanne);
+    this.paul = new Person().setLegalLastName("Dupond").setNicknames(List.of("Polo"));
+    this.tree.addPerson(this.paul);
+  }
+
+  @Test
+  void searchSubstring() {
+    assertEquals(Set.of(this.jean, this.jeanne), this.tree.searchPersons("EAN", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchIgnoresAccents() {
+    assertEquals(Set.of(this.jean), this.tree.searchPersons("emil", Locale.ENGLISH));
+    assertEquals(Set.of(this.jeanne), this.tree.searchPersons("mártin", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchAllWords() {
+    assertEquals(Set.of(this.jean), this.tree.searchPersons("jean dupon", Locale.ENGLISH));
+    assertEquals(Set.of(this.jean, this.paul), this.tree.searchPersons(" dupon ", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchDoesNotSpanNames() {
+    assertTrue(this.tree.searchPersons("neem", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchShortWords() {
+    assertEquals(Set.of(this.paul), this.tree.searchPersons("po", Locale.ENGLISH));
+    assertEquals(Set.of(this.jean, this.jeanne), this.tree.searchPersons("j e", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchBlankQuery() {
+    assertTrue(this.tree.searchPersons("  ", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchUnknownName() {
+    assertTrue(this.tree.searchPersons("durand", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchAfterRename() {
+    this.tree.searchPersons("x", Locale.ENGLISH);
+    this.paul.setLegalLastName("Durand");
+    assertEquals(Set.of(this.paul), this.tree.searchPersons("durand", Locale.ENGLISH));
+    assertEquals(Set.of(this.jean), this.tree.searchPersons("dupon", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchAfterAdd() {
+    this.tree.searchPersons("x", Locale.ENGLISH);
+    final Person person = new Person().setLegalLastName("Dupontel");
+    this.tree.addPerson(person);
+    assertEquals(Set.of(this.jean, person), this.tree.searchPersons("dupont", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchAfterRemove() {
+    this.tree.searchPersons("x", Locale.ENGLISH);
+    this.tree.removePerson(this.paul);
+    assertEquals(Set.of(this.jean), this.tree.searchPersons("dupon", Locale.ENGLISH));
+    assertTrue(this.tree.searchPersons("po", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchAfterIndexReused() {
+    this.tree.searchPersons("x", Locale.ENGLISH);
+    this.tree.removePerson(this.paul);
+    final Person person = new Person().setLegalLastName("Durand");
+    this.tree.addPerson(person);
+    assertTrue(this.tree.searchPersons("dupond", Locale.ENGLISH).isEmpty());
+    assertEquals(Set.of(person), this.tree.searchPersons("durand", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchAfterUndo() {
+    this.tree.searchPersons("x", Locale.ENGLISH);
+    this.paul.setLegalLastName("Durand");
+    this.tree.history().undo();
+    assertEquals(Set.of(this.paul), this.tree.searchPersons("dupond", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchWithOtherLocale() {
+    final Person person = new Person().setLegalLastName("IŞIK");
+    this.tree.addPerson(person);
+    assertTrue(this.tree.searchPersons("ışık", Locale.ENGLISH).isEmpty());
+    assertEquals(Set.of(person), this.tree.searchPersons("ışık", Locale.forLanguageTag("tr")));
+  }
+
+  @Test
+  void matchesNameOutsideTree() {
+    final Person person = new Person().setLegalFirstNames(List.of("Hélène")).setLegalLastName("Dupont");
+    final Locale locale = Locale.ENGLISH;
+    assertTrue(NameIndex.matches(person, "helene dup", locale));
+    assertFalse(NameIndex.matches(person, "helene martin", locale));
+  }
+}
@@ -0,0 +1,130 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class PedigreeAnalysisTest {
+  private static final double DELTA = 1e-12;
+
+  private TestFamily family;
+
+  @BeforeEach
+  void setUp() {
+    this.family = new TestFamily();
+  }
+
+  private PedigreeAnalysis analyze(Person person, int generations) {
+    return this.family.tree.analyzePedigree(person, generations);
+  }
+
+  private static void assertGeneration(
+      PedigreeAnalysis.Generation generation, int number, long known, int distinct) {
+    assertEquals(number, generation.number());
+    assertEquals(1L << number, generation.slots());
+    assertEquals(known, generation.knownAncestors());
+    assertEquals(distinct, generation.distinctAncestors());
+  }
+
+  @Test
+  void noParents() {
+    final Person person = this.family.newPerson();
+    final PedigreeAnalysis analysis = this.analyze(person, 3);
+    assertSame(person, analysis.person());
+    assertEquals(3, analysis.generations().size());
+    for (int g = 0; g < 3; g++)
+      assertGeneration(analysis.generations().get(g), g + 1, 0, 0);
+    assertEquals(0, analysis.distinctAncestors());
+    assertEquals(0, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void completePedigree() {
+    final PedigreeAnalysis analysis = this.analyze(this.family.newCompletePedigree(8), 8);
+    for (int g = 1; g <= 8; g++) {
+      assertGeneration(analysis.generations().get(g - 1), g, 1L << g, 1 << g);
+      assertEquals(0, analysis.generations().get(g - 1).collapse(), DELTA);
+    }
+    assertEquals(510, analysis.distinctAncestors());
+    assertEquals(1, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void generationsBeyondKnownAncestors() {
+    final PedigreeAnalysis analysis = this.analyze(this.family.newCompletePedigree(8), 10);
+    assertGeneration(analysis.generations().get(8), 9, 0, 0);
+    assertGeneration(analysis.generations().get(9), 10, 0, 0);
+    assertEquals(510, analysis.distinctAncestors());
+    assertEquals(510.0 / 2046, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void partialPedigree() {
+    final Person person = this.family.newPerson();
+    person.addParent(this.family.newCompletePedigree(2), ParentalRelationType.BIOLOGICAL_PARENT);
+    final PedigreeAnalysis analysis = this.analyze(person, 3);
+    assertGeneration(analysis.generations().get(0), 1, 1, 1);
+    assertGeneration(analysis.generations().get(1), 2, 2, 2);
+    assertGeneration(analysis.generations().get(2), 3, 4, 4);
+    assertEquals(0.5, analysis.generations().get(0).completeness(), DELTA);
+    assertEquals(0.5, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void childOfFirstCousins() {
+    final Person grandparent1 = this.family.newPerson();
+    final Person grandparent2 = this.family.newPerson();
+    final Person cousin1 = this.family.newChild(
+        this.family.newChild(grandparent1, grandparent2), this.family.newPerson());
+    final Person cousin2 = this.family.newChild(
+        this.family.newChild(grandparent1, grandparent2), this.family.newPerson());
+    final PedigreeAnalysis analysis = this.analyze(this.family.newChild(cousin1, cousin2), 3);
+    assertGeneration(analysis.generations().get(0), 1, 2, 2);
+    assertGeneration(analysis.generations().get(1), 2, 4, 4);
+    // Both cousins descend from the same two grandparents
+    assertGeneration(analysis.generations().get(2), 3, 4, 2);
+    assertEquals(0, analysis.generations().get(1).collapse(), DELTA);
+    assertEquals(0.5, analysis.generations().get(2).collapse(), DELTA);
+    assertEquals(8, analysis.distinctAncestors());
+    assertEquals(10.0 / 14, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void maximallyCollapsedPedigree() {
+    // Slots double at each generation while the same two siblings fill them
+    final int generations = PedigreeAnalysis.MAX_GENERATIONS;
+    final Person[] firstSiblings = this.family.newSiblingMatings(generations);
+    final PedigreeAnalysis analysis = this.analyze(firstSiblings[generations], generations);
+    assertEquals(generations, analysis.generations().size());
+    for (int g = 1; g <= generations; g++) {
+      assertGeneration(analysis.generations().get(g - 1), g, 1L << g, 2);
+      assertEquals(1 - 2.0 / (1L << g), analysis.generations().get(g - 1).collapse(), DELTA);
+    }
+    assertEquals(2 * generations, analysis.distinctAncestors());
+    assertEquals(1, analysis.completeness(), DELTA);
+  }
+
+  @Test
+  void nonGeneticParentsIgnored() {
+    final Person person = this.family.newPerson();
+    person.addParent(this.family.newPerson(), ParentalRelationType.ADOPTIVE_PARENT);
+    person.addParent(this.family.newPerson(), ParentalRelationType.SPERM_DONOR);
+    final PedigreeAnalysis analysis = this.analyze(person, 1);
+    assertGeneration(analysis.generations().get(0), 1, 1, 1);
+  }
+
+  @Test
+  void generationsOutOfBoundsThrows() {
+    final Person person = this.family.newPerson();
+    assertThrows(IllegalArgumentException.class, () -> this.analyze(person, 0));
+    assertThrows(IllegalArgumentException.class, () -> this.analyze(person, PedigreeAnalysis.MAX_GENERATIONS + 1));
+  }
+
+  @Test
+  void personNotInTreeThrows() {
+    assertThrows(NoSuchElementException.class, () -> this.analyze(new Person(), 1));
+  }
+}
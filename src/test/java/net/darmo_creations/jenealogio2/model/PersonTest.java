@@ -299,6 +299,20 @@ class PersonTest {
     );
   }
 
+  @Test
+  void addParentFailsIfSelf() {
+    assertThrows(IllegalArgumentException.class,
+        () -> this.person.addParent(this.person, ParentalRelationType.ADOPTIVE_PARENT));
+  }
+
+  @ParameterizedTest
+  @EnumSource(ParentalRelationType.class)
+  void addParentFailsIfDescendant(ParentalRelationType type) {
+    this.person.addParent(this.parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.parent1.addParent(this.parent2, ParentalRelationType.ADOPTIVE_PARENT);
+    assertThrows(IllegalArgumentException.class, () -> this.parent2.addParent(this.person, type));
+  }
+
   @ParameterizedTest
   @EnumSource(ParentalRelationType.class)
   void addParentUpdatesParent(ParentalRelationType type) {
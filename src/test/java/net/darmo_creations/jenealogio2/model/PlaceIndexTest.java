@@ -0,0 +1,162 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class PlaceIndexTest {
+  private static final Place PARIS = new Place("Paris, France", null);
+  private static final Place SAINT_ETIENNE = new Place("Saint-Étienne, France", null);
+  private static final Place PARIS_TEXAS = new Place("Paris, Texas", null);
+
+  private FamilyTree tree;
+  private Person person;
+  private LifeEvent birth;
+  private LifeEvent occupation;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.person = new Person();
+    this.tree.addPerson(this.person);
+    this.birth = this.addEvent("birth", PARIS);
+    this.addEvent("death", PARIS);
+    this.occupation = this.addEvent("occupation", SAINT_ETIENNE);
+    this.addEvent("occupation", PARIS_TEXAS);
+  }
+
+  private LifeEvent addEvent(String type, Place place) {
+    final LifeEvent lifeEvent = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1900, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:" + type))
+    ).setPlace(place);
+    this.tree.setLifeEventActors(lifeEvent, Set.of(this.person));
+    return lifeEvent;
+  }
+
+  @Test
+  void searchByPrefixMostUsedFirst() {
+    assertEquals(List.of(PARIS, PARIS_TEXAS), this.tree.searchPlaces("par", Locale.ENGLISH, 10));
+  }
+
+  @Test
+  void searchAnyWordIgnoringAccents() {
+    assertEquals(List.of(SAINT_ETIENNE), this.tree.searchPlaces("etienne", Locale.ENGLISH, 10));
+    assertEquals(List.of(PARIS, SAINT_ETIENNE), this.tree.searchPlaces("Fr", Locale.ENGLISH, 10));
+  }
+
+  @Test
+  void searchNotInsideWords() {
+    assertTrue(this.tree.searchPlaces("aris", Locale.ENGLISH, 10).isEmpty());
+  }
+
+  @Test
+  void searchBlankReturnsAll() {
+    assertEquals(3, this.tree.searchPlaces(" ", Locale.ENGLISH, 10).size());
+  }
+
+  @Test
+  void searchLimit() {
+    assertEquals(List.of(PARIS), this.tree.searchPlaces("", Locale.ENGLISH, 1));
+  }
+
+  @Test
+  void searchAfterPlaceChange() {
+    this.tree.searchPlaces("", Locale.ENGLISH, 10);
+    this.birth.setPlace(PARIS_TEXAS);
+    assertEquals(List.of(PARIS_TEXAS, PARIS), this.tree.searchPlaces("paris", Locale.ENGLISH, 10));
+    this.birth.setPlace(SAINT_ETIENNE);
+    assertEquals(List.of(SAINT_ETIENNE, PARIS, PARIS_TEXAS), this.tree.searchPlaces("", Locale.ENGLISH, 10));
+  }
+
+  @Test
+  void searchAfterEventRemoved() {
+    this.tree.searchPlaces("", Locale.ENGLISH, 10);
+    this.tree.removeActorFromLifeEvent(this.occupation, this.person);
+    assertEquals(List.of(PARIS), this.tree.searchPlaces("fr", Locale.ENGLISH, 10));
+    this.tree.history().undo();
+    assertEquals(List.of(PARIS, SAINT_ETIENNE), this.tree.searchPlaces("fr", Locale.ENGLISH, 10));
+  }
+
+  @Test
+  void placeSearchCachedWhilePlacesUnchanged() {
+    final PlaceSearch placeSearch = this.tree.placeSearch(Locale.ENGLISH);
+    this.person.setLegalLastName("name");
+    assertSame(placeSearch, this.tree.placeSearch(Locale.ENGLISH));
+  }
+
+  @Test
+  void placeSearchNotUpdatedByChanges() {
+    final PlaceSearch placeSearch = this.tree.placeSearch(Locale.ENGLISH);
+    this.birth.setPlace(PARIS_TEXAS);
+    this.tree.removeActorFromLifeEvent(this.occupation, this.person);
+    assertEquals(List.of(PARIS, PARIS_TEXAS), placeSearch.search("paris", 10));
+    assertEquals(List.of(PARIS, SAINT_ETIENNE), placeSearch.search("fr", 10));
+    assertEquals(List.of(PARIS_TEXAS, PARIS), this.tree.placeSearch(Locale.ENGLISH).search("paris", 10));
+  }
+
+  @Test
+  void equalPlacesShared() {
+    final LifeEvent lifeEvent = this.addEvent("occupation", new Place("Paris, France", null));
+    assertSame(this.birth.place().orElseThrow(), lifeEvent.place().orElseThrow());
+  }
+
+  @Test
+  void lifeEventsAt() {
+    assertEquals(Set.of(this.occupation), this.tree.lifeEventsAt(SAINT_ETIENNE));
+    assertEquals(2, this.tree.lifeEventsAt(PARIS).size());
+    assertTrue(this.tree.lifeEventsAt(new Place("Lyon", null)).isEmpty());
+  }
+
+  @Test
+  void replacePlaceUpdatesAllEvents() {
+    final Place lyon = new Place("Lyon, France", new LatLon(45.76, 4.84));
+    this.tree.replacePlace(PARIS, lyon);
+    assertEquals(Set.of(lyon, SAINT_ETIENNE, PARIS_TEXAS), this.tree.places());
+    assertEquals(lyon, this.birth.place().orElseThrow());
+    assertEquals(2, this.tree.lifeEventsAt(lyon).size());
+  }
+
+  @Test
+  void replacePlaceMerges() {
+    this.tree.replacePlace(PARIS_TEXAS, PARIS);
+    assertEquals(Set.of(PARIS, SAINT_ETIENNE), this.tree.places());
+    assertEquals(3, this.tree.lifeEventsAt(PARIS).size());
+  }
+
+  @Test
+  void replacePlaceUndone() {
+    this.tree.history().endStep();
+    this.tree.replacePlace(PARIS_TEXAS, PARIS);
+    this.tree.history().undo();
+    assertEquals(Set.of(PARIS, SAINT_ETIENNE, PARIS_TEXAS), this.tree.places());
+  }
+
+  @Test
+  void addressesWithoutCoordinates() {
+    this.tree.replacePlace(PARIS_TEXAS, new Place("Paris, Texas", new LatLon(33.66, -95.55)));
+    assertEquals(Set.of("Paris, France", "Saint-Étienne, France"), this.tree.addressesWithoutCoordinates());
+  }
+
+  @Test
+  void setPlacesCoordinates() {
+    final LatLon latLon = new LatLon(48.86, 2.32);
+    assertEquals(1, this.tree.setPlacesCoordinates(Map.of("Paris, France", latLon, "Lyon, France", latLon)));
+    assertEquals(Optional.of(latLon), this.birth.place().orElseThrow().latLon());
+    assertEquals(2, this.tree.lifeEventsAt(new Place("Paris, France", latLon)).size());
+  }
+
+  @Test
+  void setPlacesCoordinatesUndoneAtOnce() {
+    final LatLon latLon = new LatLon(45.43, 4.39);
+    this.tree.setPlacesCoordinates(Map.of("Paris, France", latLon, "Saint-Étienne, France", latLon));
+    this.tree.history().undo();
+    assertEquals(Set.of(PARIS, SAINT_ETIENNE, PARIS_TEXAS), this.tree.places());
+  }
+}
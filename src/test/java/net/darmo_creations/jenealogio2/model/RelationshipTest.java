@@ -0,0 +1,291 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class RelationshipTest {
+  private static final Set<ParentalRelationType> GENETIC =
+      EnumSet.copyOf(Arrays.asList(ParentalRelationType.GENETIC_RELATIONS));
+  private static Language language;
+
+  private FamilyTree tree;
+  private Person grandparent1;
+  private Person grandparent2;
+  private Person parent1;
+  private Person parent2;
+  private Person child1;
+  private Person child2;
+
+  @BeforeAll
+  static void setUpClass() {
+    language = new Language("test", "Test", Locale.ENGLISH, new ListResourceBundle() {
+      @Override
+      protected Object[][] getContents() {
+        return new Object[][] {
+            {"relationship.self", "self"},
+            {"relationship.chain", "{owner}’s {relationship}"},
+            {"relationship.non_genetic", "{relationship} (non-genetic)"},
+            {"relationship.partner", "partner"},
+            {"relationship.parent_in_law", "parent-in-law"},
+            {"relationship.sibling_in_law", "sibling-in-law"},
+            {"relationship.child_in_law", "child-in-law"},
+            {"relationship.stepparent", "stepparent"},
+            {"relationship.stepchild", "stepchild"},
+            {"relationship.stepsibling", "stepsibling"},
+            {"relationship.coparent", "co-parent"},
+            {"relationship.sibling", "sibling"},
+            {"relationship.ancestor.1", "parent"},
+            {"relationship.ancestor.2", "grandparent"},
+            {"relationship.ancestor.n", "{n}× great-grandparent"},
+            {"relationship.descendant.1", "child"},
+            {"relationship.descendant.2", "grandchild"},
+            {"relationship.descendant.n", "{n}× great-grandchild"},
+            {"relationship.pibling.1", "uncle/aunt"},
+            {"relationship.pibling.n", "{n}× great-uncle/aunt"},
+            {"relationship.nibling.1", "nephew/niece"},
+            {"relationship.nibling.n", "{n}× great-nephew/niece"},
+            {"relationship.cousin.1", "first cousin"},
+            {"relationship.cousin.n", "cousin {n}"},
+            {"relationship.cousin_removed.1", "{relationship} once removed"},
+            {"relationship.cousin_removed.n", "{relationship} {n} times removed"},
+            {"relationship.parent.godparent", "godparent"},
+            {"relationship.child.godparent", "godchild"},
+        };
+      }
+    });
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.grandparent1 = this.newPerson();
+    this.grandparent2 = this.newPerson();
+    this.parent1 = this.newPerson();
+    this.parent2 = this.newPerson();
+    this.child1 = this.newPerson();
+    this.child2 = this.newPerson();
+    // parent1 and parent2 are siblings, child1 and child2 are first cousins
+    this.parent1.addParent(this.grandparent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.parent1.addParent(this.grandparent2, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.parent2.addParent(this.grandparent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.parent2.addParent(this.grandparent2, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.child1.addParent(this.parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.child2.addParent(this.parent2, ParentalRelationType.BIOLOGICAL_PARENT);
+  }
+
+  private Person newPerson() {
+    final Person person = new Person();
+    this.tree.addPerson(person);
+    return person;
+  }
+
+  private String name(Person from, Person to) {
+    final var relationships = this.tree.findRelationships(from, to, GENETIC, true);
+    assertFalse(relationships.isEmpty());
+    return relationships.get(0).name(language);
+  }
+
+  @Test
+  void findRelationshipsSelf() {
+    final var relationships = this.tree.findRelationships(this.child1, this.child1, GENETIC, true);
+    assertEquals(List.of(new Relationship(List.of(this.child1), List.of())), relationships);
+  }
+
+  @Test
+  void findRelationshipsReturnsAllShortestPaths() {
+    final var relationships = this.tree.findRelationships(this.child1, this.child2, GENETIC, true);
+    assertEquals(2, relationships.size());
+    final Set<Person> viaGrandparents = new HashSet<>();
+    for (final Relationship relationship : relationships) {
+      assertEquals(5, relationship.persons().size());
+      assertSame(this.child1, relationship.from());
+      assertSame(this.child2, relationship.to());
+      viaGrandparents.add(relationship.persons().get(2));
+    }
+    assertEquals(Set.of(this.grandparent1, this.grandparent2), viaGrandparents);
+  }
+
+  @Test
+  void findRelationshipsSteps() {
+    final var relationship = this.tree.findRelationships(this.child1, this.parent2, GENETIC, true).get(0);
+    assertEquals(List.of(
+        new Relationship.Step(Relationship.Step.Kind.PARENT, ParentalRelationType.BIOLOGICAL_PARENT),
+        new Relationship.Step(Relationship.Step.Kind.PARENT, ParentalRelationType.BIOLOGICAL_PARENT),
+        new Relationship.Step(Relationship.Step.Kind.CHILD, ParentalRelationType.BIOLOGICAL_PARENT)
+    ), relationship.steps());
+  }
+
+  @Test
+  void findRelationshipsEmptyIfNotRelated() {
+    final Person p = this.newPerson();
+    assertTrue(this.tree.findRelationships(this.child1, p, GENETIC, true).isEmpty());
+  }
+
+  @Test
+  void findRelationshipsIgnoresOtherRelationTypes() {
+    final Person p = this.newPerson();
+    p.addParent(this.child1, ParentalRelationType.GODPARENT);
+    assertTrue(this.tree.findRelationships(this.child1, p, GENETIC, true).isEmpty());
+    assertEquals(1, this.tree.findRelationships(this.child1, p, Set.of(ParentalRelationType.GODPARENT), true).size());
+  }
+
+  @Test
+  void findRelationshipsFollowsUnionsOnlyIfRequested() {
+    final Person partner = this.newPerson();
+    this.marry(this.parent1, partner);
+    assertTrue(this.tree.findRelationships(this.parent1, partner, GENETIC, false).isEmpty());
+    assertEquals(1, this.tree.findRelationships(this.parent1, partner, GENETIC, true).size());
+  }
+
+  @Test
+  void findRelationshipsThrowsIfPersonNotInTree() {
+    assertThrows(NoSuchElementException.class,
+        () -> this.tree.findRelationships(this.child1, new Person(), GENETIC, true));
+  }
+
+  @Test
+  void nameSelf() {
+    assertEquals("self", this.name(this.child1, this.child1));
+  }
+
+  @Test
+  void nameParentAndChild() {
+    assertEquals("parent", this.name(this.child1, this.parent1));
+    assertEquals("child", this.name(this.parent1, this.child1));
+  }
+
+  @Test
+  void nameGrandparentAndGrandchild() {
+    assertEquals("grandparent", this.name(this.child1, this.grandparent1));
+    assertEquals("grandchild", this.name(this.grandparent1, this.child1));
+  }
+
+  @Test
+  void nameGreatGrandparent() {
+    final Person p = this.newPerson();
+    this.grandparent1.addParent(p, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals("1× great-grandparent", this.name(this.child1, p));
+  }
+
+  @Test
+  void nameSibling() {
+    assertEquals("sibling", this.name(this.parent1, this.parent2));
+  }
+
+  @Test
+  void nameUncleAndNephew() {
+    assertEquals("uncle/aunt", this.name(this.child1, this.parent2));
+    assertEquals("nephew/niece", this.name(this.parent2, this.child1));
+  }
+
+  @Test
+  void nameFirstCousin() {
+    assertEquals("first cousin", this.name(this.child1, this.child2));
+  }
+
+  @Test
+  void nameCousinRemoved() {
+    final Person p = this.newPerson();
+    p.addParent(this.child2, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals("first cousin once removed", this.name(this.child1, p));
+  }
+
+  @Test
+  void nameSecondCousinOnceRemoved() {
+    final Person p1 = this.newPerson();
+    p1.addParent(this.child1, ParentalRelationType.BIOLOGICAL_PARENT);
+    final Person p2 = this.newPerson();
+    p2.addParent(this.child2, ParentalRelationType.BIOLOGICAL_PARENT);
+    final Person p3 = this.newPerson();
+    p3.addParent(p2, ParentalRelationType.BIOLOGICAL_PARENT);
+    final Person p4 = this.newPerson();
+    p4.addParent(p3, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals("cousin 2 once removed", this.name(p1, p4));
+  }
+
+  @Test
+  void namePartner() {
+    final Person partner = this.newPerson();
+    this.marry(this.parent1, partner);
+    assertEquals("partner", this.name(this.parent1, partner));
+  }
+
+  @Test
+  void nameInLaws() {
+    final Person partner = this.newPerson();
+    this.marry(this.parent1, partner);
+    assertEquals("parent-in-law", this.name(partner, this.grandparent1));
+    assertEquals("sibling-in-law", this.name(partner, this.parent2));
+    assertEquals("child-in-law", this.name(this.grandparent1, partner));
+  }
+
+  @Test
+  void nameStepRelatives() {
+    final Person partner = this.newPerson();
+    this.marry(this.parent1, partner);
+    final Person stepsibling = this.newPerson();
+    stepsibling.addParent(partner, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals("stepparent", this.name(this.child1, partner));
+    assertEquals("stepchild", this.name(this.parent1, stepsibling));
+    assertEquals("stepsibling", this.name(this.child1, stepsibling));
+  }
+
+  @Test
+  void nameChain() {
+    final Person partner = this.newPerson();
+    this.marry(this.parent2, partner);
+    assertEquals("uncle/aunt’s partner", this.name(this.child1, partner));
+  }
+
+  @Test
+  void nameNonGeneticDirectRelation() {
+    final Person godchild = this.newPerson();
+    godchild.addParent(this.child1, ParentalRelationType.GODPARENT);
+    final var relationships = this.tree.findRelationships(
+        godchild, this.child1, EnumSet.allOf(ParentalRelationType.class), true);
+    assertEquals("godparent", relationships.get(0).name(language));
+  }
+
+  @Test
+  void nameNonGeneticRelation() {
+    final Person godchild = this.newPerson();
+    godchild.addParent(this.child1, ParentalRelationType.GODPARENT);
+    final var relationships = this.tree.findRelationships(
+        godchild, this.parent1, EnumSet.allOf(ParentalRelationType.class), true);
+    assertEquals("grandparent (non-genetic)", relationships.get(0).name(language));
+  }
+
+  @Test
+  void relationshipThrowsIfStepsCountMismatch() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new Relationship(List.of(this.child1, this.parent1), List.of()));
+  }
+
+  @Test
+  void partnerStepThrowsIfRelationType() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new Relationship.Step(Relationship.Step.Kind.PARTNER, ParentalRelationType.BIOLOGICAL_PARENT));
+  }
+
+  @Test
+  void parentStepThrowsIfNoRelationType() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new Relationship.Step(Relationship.Step.Kind.PARENT, null));
+  }
+
+  private void marry(Person person1, Person person2) {
+    final LifeEvent event = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 2000, 1, 1, null, null), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:marriage"))
+    );
+    this.tree.setLifeEventActors(event, Set.of(person1, person2));
+  }
+}
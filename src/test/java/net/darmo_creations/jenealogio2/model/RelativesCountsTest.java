@@ -0,0 +1,178 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class RelativesCountsTest {
+  private TestFamily family;
+  private FamilyTree tree;
+  private Person grandparent1;
+  private Person grandparent2;
+  private Person parent1;
+  private Person parent2;
+  private Person child;
+
+  @BeforeEach
+  void setUp() {
+    this.family = new TestFamily();
+    this.tree = this.family.tree;
+    this.grandparent1 = this.family.newPerson();
+    this.grandparent2 = this.family.newPerson();
+    this.parent1 = this.family.newChild(this.grandparent1, this.grandparent2);
+    this.parent2 = this.family.newChild(this.grandparent1, this.grandparent2);
+    // Both lines lead to the same grandparents
+    this.child = this.family.newChild(this.parent1, this.parent2);
+  }
+
+  private int ancestors(Person person) {
+    return this.tree.ancestorsCount(person).getAsInt();
+  }
+
+  private int descendants(Person person) {
+    return this.tree.descendantsCount(person).getAsInt();
+  }
+
+  /**
+   * Check that the incrementally maintained counts are those computed on the whole tree.
+   */
+  private void assertCountsUpToDate() {
+    final RelativesCounts counts = RelativesCounts.compute(this.tree.graph());
+    for (final Person person : this.tree.persons()) {
+      assertEquals(counts.ancestorsCount(person), this.ancestors(person));
+      assertEquals(counts.descendantsCount(person), this.descendants(person));
+    }
+  }
+
+  @Test
+  void countsEmptyBeforeSet() {
+    assertFalse(this.tree.hasRelativesCounts());
+    assertTrue(this.tree.ancestorsCount(this.child).isEmpty());
+    assertTrue(this.tree.descendantsCount(this.child).isEmpty());
+  }
+
+  @Test
+  void countsDistinctPersons() {
+    this.tree.computeRelativesCounts();
+    assertTrue(this.tree.hasRelativesCounts());
+    assertEquals(4, this.ancestors(this.child));
+    assertEquals(0, this.descendants(this.child));
+    assertEquals(2, this.ancestors(this.parent1));
+    assertEquals(1, this.descendants(this.parent1));
+    assertEquals(0, this.ancestors(this.grandparent1));
+    assertEquals(3, this.descendants(this.grandparent1));
+  }
+
+  @Test
+  void countsIgnoreNonGeneticRelations() {
+    final Person p = this.family.newPerson();
+    p.addParent(this.child, ParentalRelationType.ADOPTIVE_PARENT);
+    this.tree.computeRelativesCounts();
+    assertEquals(0, this.ancestors(p));
+    assertEquals(0, this.descendants(this.child));
+  }
+
+  @Test
+  void countsUpdatedWhenParentAdded() {
+    this.tree.computeRelativesCounts();
+    final Person p = this.family.newPerson();
+    this.grandparent1.addParent(p, ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(5, this.ancestors(this.child));
+    assertEquals(1, this.ancestors(this.grandparent1));
+    assertEquals(4, this.descendants(p));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsUpdatedWhenAlreadyKnownAncestorAdded() {
+    this.tree.computeRelativesCounts();
+    // The grandparent was already an ancestor of the child through its parents
+    this.child.removeParent(this.parent2);
+    this.child.addParent(this.grandparent2, ParentalRelationType.EGG_DONOR);
+    assertEquals(3, this.ancestors(this.child));
+    assertEquals(3, this.descendants(this.grandparent2));
+    assertEquals(0, this.descendants(this.parent2));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsUpdatedWhenParentRemoved() {
+    this.tree.computeRelativesCounts();
+    this.child.removeParent(this.parent2);
+    assertEquals(3, this.ancestors(this.child));
+    assertEquals(0, this.descendants(this.parent2));
+    // The child is still a descendant through the other parent
+    assertEquals(3, this.descendants(this.grandparent1));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsUpdatedWhenLastPathRemoved() {
+    this.tree.computeRelativesCounts();
+    final Person grandchild = this.family.newChild(this.child, this.family.newPerson());
+    this.parent1.removeParent(this.grandparent1);
+    this.parent2.removeParent(this.grandparent1);
+    assertEquals(0, this.descendants(this.grandparent1));
+    assertEquals(4, this.descendants(this.grandparent2));
+    assertEquals(5, this.ancestors(grandchild));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsUpdatedWhenPersonRemoved() {
+    this.tree.computeRelativesCounts();
+    this.tree.removePerson(this.parent1);
+    assertEquals(3, this.ancestors(this.child));
+    assertEquals(2, this.descendants(this.grandparent1));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsOfPersonsAddedAfterLoading() {
+    this.tree.computeRelativesCounts();
+    final Person p = this.family.newPerson();
+    assertEquals(0, this.ancestors(p));
+    assertEquals(0, this.descendants(p));
+    final Person grandchild = this.family.newChild(this.child, p);
+    assertEquals(6, this.ancestors(grandchild));
+    assertEquals(1, this.descendants(p));
+    assertEquals(4, this.descendants(this.grandparent1));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsUpdatedOnDeepPedigree() {
+    this.tree.computeRelativesCounts();
+    final Person person = this.family.newCompletePedigree(6);
+    assertEquals(126, this.ancestors(person));
+    // Join the pedigree and the existing family through a common child
+    this.family.newChild(person, this.child);
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void countsNotChangedWhenNonGeneticParentAdded() {
+    this.tree.computeRelativesCounts();
+    this.child.addParent(this.family.newPerson(), ParentalRelationType.ADOPTIVE_PARENT);
+    assertEquals(4, this.ancestors(this.child));
+    assertCountsUpToDate();
+  }
+
+  @Test
+  void outdatedCountsRejected() {
+    final RelativesCounts counts = RelativesCounts.compute(this.tree.graph());
+    this.family.newChild(this.child, this.family.newPerson());
+    assertFalse(this.tree.setRelativesCounts(counts));
+    assertFalse(this.tree.hasRelativesCounts());
+  }
+
+  @Test
+  void countsThrowIfPersonNotInTree() {
+    assertThrows(NoSuchElementException.class, () -> this.tree.ancestorsCount(new Person()));
+    assertThrows(NoSuchElementException.class,
+        () -> RelativesCounts.compute(this.tree.graph()).descendantsCount(new Person()));
+  }
+}
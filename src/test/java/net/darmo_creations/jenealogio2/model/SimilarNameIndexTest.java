@@ -0,0 +1,101 @@
+package net.darmo_creations.jenealogio2.model;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class SimilarNameIndexTest {
+  private FamilyTree tree;
+  private Person dupont;
+  private Person dupond;
+  private Person duPont;
+  private Person lefebvre;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.dupont = new Person().setLegalFirstNames(List.of("Jean")).setLegalLastName("Dupont");
+    this.tree.addPerson(this.dupont);
+    this.dupond = new Person().setLegalFirstNames(List.of("Jeanne")).setLegalLastName("Dupond");
+    this.tree.addPerson(this.dupond);
+    this.duPont = new Person().setLegalFirstNames(List.of("Pierre")).setLegalLastName("Du Pont");
+    this.tree.addPerson(this.duPont);
+    this.lefebvre = new Person().setPublicLastName("Lefebvre");
+    this.tree.addPerson(this.lefebvre);
+  }
+
+  @Test
+  void soundexSameKeyForHomophones() {
+    assertEquals(FrenchSoundex.encode("dupont"), FrenchSoundex.encode("dupond"));
+    assertEquals(FrenchSoundex.encode("philippe"), FrenchSoundex.encode("filipe"));
+    assertEquals(FrenchSoundex.encode("thomas"), FrenchSoundex.encode("tomas"));
+    assertNotEquals(FrenchSoundex.encode("dupont"), FrenchSoundex.encode("martin"));
+  }
+
+  @Test
+  void soundexEmptyForNoLetters() {
+    assertEquals("", FrenchSoundex.encode("-"));
+  }
+
+  @Test
+  void searchPhonetic() {
+    assertEquals(Set.of(this.dupont, this.dupond, this.duPont), this.tree.searchSimilarPersons("Dupon", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchEditDistance() {
+    assertEquals(Set.of(this.lefebvre), this.tree.searchSimilarPersons("lefevre", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchIgnoresAccents() {
+    assertEquals(Set.of(this.lefebvre), this.tree.searchSimilarPersons("Lefèbvre", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchAllWords() {
+    assertEquals(Set.of(this.duPont), this.tree.searchSimilarPersons("pierre dupond", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchJoinedWords() {
+    assertEquals(Set.of(this.dupont, this.dupond, this.duPont), this.tree.searchSimilarPersons("du pond", Locale.ENGLISH));
+  }
+
+  @Test
+  void searchShortWordsNotByDistance() {
+    assertTrue(this.tree.searchSimilarPersons("jem", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchBlankQuery() {
+    assertTrue(this.tree.searchSimilarPersons(" ", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchAfterRename() {
+    this.tree.searchSimilarPersons("x", Locale.ENGLISH);
+    this.lefebvre.setPublicLastName("Dupons");
+    assertTrue(this.tree.searchSimilarPersons("lefevre", Locale.ENGLISH).isEmpty());
+    assertTrue(this.tree.searchSimilarPersons("dupont", Locale.ENGLISH).contains(this.lefebvre));
+  }
+
+  @Test
+  void searchAfterRemove() {
+    this.tree.searchSimilarPersons("x", Locale.ENGLISH);
+    this.tree.removePerson(this.lefebvre);
+    assertTrue(this.tree.searchSimilarPersons("lefevre", Locale.ENGLISH).isEmpty());
+  }
+
+  @Test
+  void searchAfterManyRenames() {
+    this.tree.searchSimilarPersons("x", Locale.ENGLISH);
+    for (int i = 0; i < 20; i++)
+      this.lefebvre.setPublicLastName("Name" + i);
+    assertEquals(Set.of(this.lefebvre), this.tree.searchSimilarPersons("name19", Locale.ENGLISH));
+    assertEquals(Set.of(this.dupont, this.dupond, this.duPont), this.tree.searchSimilarPersons("dupon", Locale.ENGLISH));
+  }
+}
@@ -0,0 +1,69 @@
+package net.darmo_creations.jenealogio2.model;
+
+import java.util.*;
+
+/**
+ * Builds genetically related persons in a tree for the tests of relatives computations.
+ */
+class TestFamily {
+  final FamilyTree tree = new FamilyTree("tree");
+
+  /**
+   * Add a person without parents to the tree.
+   */
+  Person newPerson() {
+    final Person person = new Person();
+    this.tree.addPerson(person);
+    return person;
+  }
+
+  /**
+   * Add a person with the given biological parents to the tree.
+   */
+  Person newChild(Person parent1, Person parent2) {
+    final Person child = this.newPerson();
+    child.addParent(parent1, ParentalRelationType.BIOLOGICAL_PARENT);
+    child.addParent(parent2, ParentalRelationType.BIOLOGICAL_PARENT);
+    return child;
+  }
+
+  /**
+   * Add a person whose ancestors are all distinct and known over the given number of generations.
+   *
+   * @param generations The number of generations of ancestors.
+   * @return The person.
+   */
+  Person newCompletePedigree(int generations) {
+    List<Person> persons = new ArrayList<>();
+    for (int i = 0; i < 1 << generations; i++)
+      persons.add(this.newPerson());
+    while (persons.size() > 1) {
+      final List<Person> children = new ArrayList<>();
+      for (int i = 0; i < persons.size(); i += 2)
+        children.add(this.newChild(persons.get(i), persons.get(i + 1)));
+      persons = children;
+    }
+    return persons.get(0);
+  }
+
+  /**
+   * Add generations made of two siblings whose parents are the siblings of the previous generation,
+   * starting from two persons without parents.
+   *
+   * @param generations The number of generations after the first one.
+   * @return The first sibling of each generation, the first one being a person without parents.
+   */
+  Person[] newSiblingMatings(int generations) {
+    Person a = this.newPerson();
+    Person b = this.newPerson();
+    final Person[] firstSiblings = new Person[generations + 1];
+    firstSiblings[0] = a;
+    for (int i = 1; i <= generations; i++) {
+      final Person newA = this.newChild(a, b);
+      b = this.newChild(a, b);
+      a = newA;
+      firstSiblings[i] = a;
+    }
+    return firstSiblings;
+  }
+}
@@ -0,0 +1,172 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import net.darmo_creations.jenealogio2.utils.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class TreeMergerTest {
+  private FamilyTree target;
+  private FamilyTree source;
+  private TreeMerger merger;
+  private Person targetJean;
+  private Person sourceJean;
+  private Person sourcePierre;
+
+  @BeforeEach
+  void setUp() {
+    this.target = new FamilyTree("target");
+    this.targetJean = addPerson(this.target, "Jean", "Dupont", 1850);
+    this.source = new FamilyTree("source");
+    this.sourceJean = addPerson(this.source, "Jean", "Dupond", 1851);
+    this.sourceJean.setMainOccupation("Farmer");
+    this.sourcePierre = addPerson(this.source, "Pierre", "Dupont", 1820);
+    this.sourceJean.addParent(this.sourcePierre, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.merger = new TreeMerger(this.target, Locale.ENGLISH);
+  }
+
+  private static Person addPerson(FamilyTree tree, String firstName, String lastName, int birthYear) {
+    final Person person = new Person().setLegalFirstNames(List.of(firstName)).setLegalLastName(lastName);
+    tree.addPerson(person);
+    final LifeEvent birth = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, birthYear, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+    tree.setLifeEventActors(birth, Set.of(person));
+    return person;
+  }
+
+  private TreeMerger.Result mergeJean() {
+    this.merger.prepare(this.source, new Context(false));
+    return this.merger.apply(Map.of(this.sourceJean, this.targetJean));
+  }
+
+  @Test
+  void prepareMatchesSimilarPersons() {
+    final List<TreeMerger.Match> matches = this.merger.prepare(this.source, new Context(false));
+    assertEquals(1, matches.size());
+    assertSame(this.sourceJean, matches.get(0).person());
+    assertSame(this.targetJean, matches.get(0).candidates().get(0).person());
+  }
+
+  @Test
+  void prepareCancellable() {
+    assertThrows(CancellationException.class, () -> this.merger.prepare(this.source, new Context(true)));
+  }
+
+  @Test
+  void applyWithoutPrepareThrows() {
+    assertThrows(IllegalStateException.class, () -> this.merger.apply(Map.of()));
+  }
+
+  @Test
+  void applyAddsUnmatchedPersons() {
+    final TreeMerger.Result result = this.mergeJean();
+    assertEquals(1, result.addedPersons());
+    assertEquals(1, result.mergedPersons());
+    assertEquals(2, this.target.persons().size());
+  }
+
+  @Test
+  void applyAddsParentLinks() {
+    this.mergeJean();
+    final Set<Person> parents = this.targetJean.parents(ParentalRelationType.BIOLOGICAL_PARENT);
+    assertEquals(1, parents.size());
+    assertEquals("Pierre", parents.iterator().next().legalFirstNames().get(0));
+  }
+
+  @Test
+  void applyKeepsExistingData() {
+    this.mergeJean();
+    assertEquals("Dupont", this.targetJean.legalLastName().orElseThrow());
+    assertEquals("Farmer", this.targetJean.mainOccupation().orElseThrow());
+  }
+
+  @Test
+  void applySkipsExistingUniqueEvents() {
+    final TreeMerger.Result result = this.mergeJean();
+    assertEquals(1, result.addedLifeEvents());
+    assertEquals(1, this.targetJean.getLifeEventsAsActor().size());
+  }
+
+  @Test
+  void applyAllAsNewPersons() {
+    this.merger.prepare(this.source, new Context(false));
+    final TreeMerger.Result result = this.merger.apply(Map.of());
+    assertEquals(2, result.addedPersons());
+    assertEquals(3, this.target.persons().size());
+    assertEquals(2, result.addedLifeEvents());
+  }
+
+  @Test
+  void applyMapsUserDefinedTypesByLabel() {
+    final RegistryEntryKey sourceKey = new RegistryEntryKey("user:baptism");
+    this.source.lifeEventTypeRegistry().registerEntry(sourceKey, "Baptism",
+        new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    final RegistryEntryKey targetKey = new RegistryEntryKey("user:christening");
+    this.target.lifeEventTypeRegistry().registerEntry(targetKey, "Baptism",
+        new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    final LifeEvent baptism = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1851, 2, 1, 1, 0), DateTimePrecision.EXACT),
+        this.source.lifeEventTypeRegistry().getEntry(sourceKey)
+    );
+    this.source.setLifeEventActors(baptism, Set.of(this.sourceJean));
+    this.mergeJean();
+    assertFalse(this.target.lifeEventTypeRegistry().containsKey(sourceKey));
+    assertTrue(this.targetJean.getLifeEventsAsActor().stream().anyMatch(e -> e.type().key().equals(targetKey)));
+  }
+
+  @Test
+  void applySkipsEventsWithInvalidActorsNumber() {
+    final RegistryEntryKey sourceKey = new RegistryEntryKey("user:apprenticeship");
+    this.source.lifeEventTypeRegistry().registerEntry(sourceKey, "Apprenticeship",
+        new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false, 2, 2, false));
+    // Same label but a single actor
+    this.target.lifeEventTypeRegistry().registerEntry(new RegistryEntryKey("user:training"), "Apprenticeship",
+        new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    final LifeEvent apprenticeship = new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1865, 2, 1, 1, 0), DateTimePrecision.EXACT),
+        this.source.lifeEventTypeRegistry().getEntry(sourceKey)
+    );
+    this.source.setLifeEventActors(apprenticeship, Set.of(this.sourceJean, this.sourcePierre));
+    final TreeMerger.Result result = this.mergeJean();
+    assertEquals(1, result.skipped());
+    assertEquals(1, this.targetJean.getLifeEventsAsActor().size());
+    assertEquals(2, this.target.lifeEvents().size());
+  }
+
+  @Test
+  void historySizeBoundsHistoryUsage() {
+    this.merger.prepare(this.source, new Context(false));
+    final long historySize = this.merger.historySize();
+    this.target.history().clear();
+    this.merger.apply(Map.of());
+    assertTrue(this.target.history().memoryUsage() <= historySize);
+  }
+
+  @Test
+  void historySizeWithoutPrepareThrows() {
+    assertThrows(IllegalStateException.class, () -> this.merger.historySize());
+  }
+
+  @Test
+  void undoneAtOnce() {
+    this.mergeJean();
+    this.target.history().undo();
+    assertEquals(Set.of(this.targetJean), this.target.persons());
+    assertTrue(this.targetJean.mainOccupation().isEmpty());
+  }
+
+  private record Context(boolean isCancelled) implements TaskScheduler.TaskContext {
+    @Override
+    public void setProgress(double progress) {
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package net.darmo_creations.jenealogio2.model;
+
+import net.darmo_creations.jenealogio2.io.file_ops.*;
+import net.darmo_creations.jenealogio2.model.datetime.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.*;
+import net.darmo_creations.jenealogio2.model.datetime.calendar.Calendar;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("DataFlowIssue")
+class UndoHistoryTest {
+  private FamilyTree tree;
+  private UndoHistory history;
+  private Person person;
+
+  @BeforeEach
+  void setUp() {
+    this.tree = new FamilyTree("tree");
+    this.history = this.tree.history();
+    this.person = new Person();
+    this.tree.addPerson(this.person);
+    this.history.clear();
+  }
+
+  private LifeEvent newBirth() {
+    return new LifeEvent(
+        new DateTimeWithPrecision(Calendar.forName("gregorian").getDate(null, 1970, 1, 1, 1, 0), DateTimePrecision.EXACT),
+        this.tree.lifeEventTypeRegistry().getEntry(new RegistryEntryKey("builtin:birth"))
+    );
+  }
+
+  @Test
+  void emptyHistoryCannotUndoNorRedo() {
+    assertFalse(this.history.canUndo());
+    assertFalse(this.history.canRedo());
+    assertThrows(IllegalStateException.class, () -> this.history.undo());
+    assertThrows(IllegalStateException.class, () -> this.history.redo());
+  }
+
+  @Test
+  void undoRestoresProperty() {
+    this.person.setLegalLastName("A");
+    this.history.undo();
+    assertTrue(this.person.legalLastName().isEmpty());
+    assertFalse(this.history.canUndo());
+    assertTrue(this.history.canRedo());
+  }
+
+  @Test
+  void redoAppliesPropertyAgain() {
+    this.person.setLegalLastName("A");
+    this.history.undo();
+    this.history.redo();
+    assertEquals("A", this.person.legalLastName().orElseThrow());
+    assertTrue(this.history.canUndo());
+    assertFalse(this.history.canRedo());
+  }
+
+  @Test
+  void changesOfSameStepUndoneAtOnce() {
+    this.person.setLegalLastName("A");
+    this.person.setPublicLastName("B");
+    this.history.endStep();
+    this.person.setLegalLastName("C");
+    this.history.undo();
+    assertEquals("A", this.person.legalLastName().orElseThrow());
+    this.history.undo();
+    assertTrue(this.person.legalLastName().isEmpty());
+    assertTrue(this.person.publicLastName().isEmpty());
+  }
+
+  @Test
+  void successiveChangesOfPropertyMerged() {
+    this.person.setLegalLastName("A");
+    final long usage = this.history.memoryUsage();
+    this.person.setLegalLastName("B");
+    this.person.setLegalLastName("C");
+    assertTrue(this.history.memoryUsage() - usage < 10);
+    this.history.undo();
+    assertTrue(this.person.legalLastName().isEmpty());
+    this.history.redo();
+    assertEquals("C", this.person.legalLastName().orElseThrow());
+  }
+
+  @Test
+  void unchangedValuesNotRecorded() {
+    this.person.setLegalLastName(null);
+    this.person.setLifeStatus(this.person.lifeStatus());
+    assertFalse(this.history.canUndo());
+  }
+
+  @Test
+  void objectsOutsideTreeNotRecorded() {
+    new Person().setLegalLastName("A");
+    assertFalse(this.history.canUndo());
+  }
+
+  @Test
+  void newChangeDropsRedoSteps() {
+    this.person.setLegalLastName("A");
+    this.history.undo();
+    this.person.setPublicLastName("B");
+    assertFalse(this.history.canRedo());
+  }
+
+  @Test
+  void undoAddPersonRemovesIt() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.history.undo();
+    assertFalse(this.tree.hasPerson(p));
+    this.history.redo();
+    assertTrue(this.tree.hasPerson(p));
+  }
+
+  @Test
+  void undoAddParentRemovesIt() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.history.endStep();
+    this.person.addParent(p, ParentalRelationType.BIOLOGICAL_PARENT);
+    this.history.undo();
+    assertFalse(this.person.hasAnyParents());
+    assertTrue(this.tree.hasPerson(p));
+  }
+
+  @Test
+  void undoRemovePersonRestoresLinksAndEvents() {
+    final Person parent = new Person();
+    this.tree.addPerson(parent);
+    this.person.addParent(parent, ParentalRelationType.BIOLOGICAL_PARENT);
+    final LifeEvent birth = this.newBirth();
+    this.tree.setLifeEventActors(birth, Set.of(parent));
+    this.tree.addWitnessToLifeEvent(birth, this.person);
+    this.history.endStep();
+
+    this.tree.removePerson(parent);
+    assertFalse(this.tree.hasLifeEvent(birth));
+    this.history.undo();
+    assertTrue(this.tree.hasPerson(parent));
+    assertEquals(Set.of(parent), this.person.parents(ParentalRelationType.BIOLOGICAL_PARENT));
+    assertTrue(this.tree.hasLifeEvent(birth));
+    assertEquals(Set.of(parent), birth.actors());
+    assertEquals(Set.of(this.person), birth.witnesses());
+    assertTrue(parent.lifeEvents().contains(birth));
+  }
+
+  @Test
+  void undoSetLifeEventActorsRemovesEvent() {
+    final LifeEvent birth = this.newBirth();
+    this.tree.setLifeEventActors(birth, Set.of(this.person));
+    this.history.undo();
+    assertFalse(this.tree.hasLifeEvent(birth));
+    assertTrue(this.person.lifeEvents().isEmpty());
+    this.history.redo();
+    assertTrue(this.tree.hasLifeEvent(birth));
+    assertEquals(Set.of(this.person), birth.actors());
+  }
+
+  @Test
+  void undoRemoveWitnessRestoresIt() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    final LifeEvent birth = this.newBirth();
+    this.tree.setLifeEventActors(birth, Set.of(p));
+    this.tree.addWitnessToLifeEvent(birth, this.person);
+    this.history.endStep();
+    this.tree.removeWitnessFromLifeEvent(birth, this.person);
+    this.history.undo();
+    assertTrue(birth.hasWitness(this.person));
+  }
+
+  @Test
+  void undoSetRootRestoresPreviousRoot() {
+    final Person p = new Person();
+    this.tree.addPerson(p);
+    this.history.endStep();
+    this.tree.setRoot(p);
+    this.history.undo();
+    assertSame(this.person, this.tree.root().orElseThrow());
+  }
+
+  @Test
+  void undoRegisterEntryRemovesIt() {
+    final RegistryEntryKey key = new RegistryEntryKey("user:test");
+    this.tree.lifeEventTypeRegistry().registerEntry(key, "Test",
+        new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    this.history.undo();
+    assertFalse(this.tree.lifeEventTypeRegistry().containsKey(key));
+    this.history.redo();
+    assertTrue(this.tree.lifeEventTypeRegistry().containsKey(key));
+  }
+
+  @Test
+  void undoRenameEntryRestoresName() {
+    final RegistryEntryKey key = new RegistryEntryKey("user:test");
+    final LifeEventTypeRegistry registry = this.tree.lifeEventTypeRegistry();
+    registry.registerEntry(key, "Test", new LifeEventTypeRegistry.RegistryArgs(LifeEventType.Group.OTHER, false, false));
+    this.history.endStep();
+    registry.getEntry(key).setUserDefinedName("Other");
+    this.history.undo();
+    assertEquals("Test", registry.getEntry(key).userDefinedName());
+  }
+
+  @Test
+  void undoAddDocumentCancelsImport() {
+    final AttachedDocument doc = new AttachedDocument(Path.of("doc.pdf"), null, null);
+    this.tree.addDocument(doc);
+    assertEquals(1, this.tree.pendingFileOperations().size());
+    this.history.undo();
+    assertTrue(this.tree.documents().isEmpty());
+    assertTrue(this.tree.pendingFileOperations().isEmpty());
+    this.history.redo();
+    assertSame(doc, this.tree.getDocument("doc.pdf").orElseThrow());
+    assertInstanceOf(ImportFileOperation.class, this.tree.pendingFileOperations().get(0));
+  }
+
+  @Test
+  void undoRemoveDocumentRestoresAnnotations() {
+    final AttachedDocument doc = new AttachedDocument(Path.of("doc.pdf"), null, null);
+    this.tree.addDocument(doc);
+    doc.addAuthor(this.person, 0);
+    this.tree.clearPendingFileOperations();
+    this.history.endStep();
+    this.tree.removeDocument("doc.pdf");
+    this.history.undo();
+    assertSame(doc, this.tree.getDocument("doc.pdf").orElseThrow());
+    assertTrue(doc.authors().contains(this.person));
+    assertTrue(this.tree.pendingFileOperations().isEmpty());
+  }
+
+  @Test
+  void clearingPendingDeletionsClearsHistory() {
+    final AttachedDocument doc = new AttachedDocument(Path.of("doc.pdf"), null, null);
+    this.tree.addDocument(doc);
+    this.tree.clearPendingFileOperations();
+    this.history.endStep();
+    this.tree.removeDocument("doc.pdf");
+    this.tree.clearPendingFileOperations();
+    assertFalse(this.history.canUndo());
+  }
+
+  @Test
+  void removingPerformedOperationsKeepsNewOnes() {
+    this.tree.addDocument(new AttachedDocument(Path.of("doc1.pdf"), null, null));
+    final var performed = List.copyOf(this.tree.pendingFileOperations());
+    this.tree.addDocument(new AttachedDocument(Path.of("doc2.pdf"), null, null));
+    this.tree.removePendingFileOperations(performed);
+    assertEquals(1, this.tree.pendingFileOperations().size());
+    assertEquals("doc2.pdf", this.tree.pendingFileOperations().get(0).fileName());
+    assertTrue(this.history.canUndo());
+  }
+
+  @Test
+  void oldestStepsDroppedWhenBudgetExceeded() {
+    for (int i = 0; i < 10; i++) {
+      this.person.setLegalLastName("name" + i);
+      this.history.endStep();
+    }
+    final long usage = this.history.memoryUsage();
+    this.history.setMemoryBudget(usage / 2);
+    assertTrue(this.history.memoryUsage() <= usage / 2);
+    int steps = 0;
+    while (this.history.canUndo()) {
+      this.history.undo();
+      steps++;
+    }
+    assertTrue(steps > 0 && steps < 10);
+    assertTrue(this.person.legalLastName().isPresent());
+  }
+
+  @Test
+  void stepExceedingBudgetClearsHistory() {
+    this.person.setLegalLastName("A");
+    this.history.endStep();
+    this.history.setMemoryBudget(this.history.memoryUsage() + 10);
+    this.person.setLegalLastName("a much longer name than the previous one");
+    this.history.endStep();
+    assertFalse(this.history.canUndo());
+    assertEquals(0, this.history.memoryUsage());
+  }
+
+  @Test
+  void negativeBudgetThrows() {
+    assertThrows(IllegalArgumentException.class, () -> this.history.setMemoryBudget(-1));
+  }
+}
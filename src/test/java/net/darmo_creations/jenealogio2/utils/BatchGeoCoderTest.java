@@ -0,0 +1,115 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import net.darmo_creations.jenealogio2.model.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchGeoCoderTest {
+  private static final List<String> ADDRESSES = List.of("Paris", "Lyon", "Nowhere", "Lille");
+
+  @TempDir
+  Path tempDir;
+  private NominatimStandIn nominatim;
+  private GeoCoder geoCoder;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.nominatim = new NominatimStandIn();
+    this.nominatim.respond("Paris", "[{\"lat\":\"48.85\",\"lon\":\"2.35\"}]");
+    this.nominatim.respond("Lyon", "[{\"lat\":\"45.76\",\"lon\":\"4.84\"}]");
+    this.nominatim.respond("Lille", "[{\"lat\":\"50.63\",\"lon\":\"3.06\"}]");
+    this.geoCoder = this.newGeoCoder();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    this.nominatim.close();
+  }
+
+  private GeoCoder newGeoCoder() {
+    return new GeoCoder(this.nominatim.uri(), this.tempDir.resolve("cache.json"), Clock.systemUTC());
+  }
+
+  @Test
+  void returnsFoundCoordinates() throws Exception {
+    final var coordinates = new BatchGeoCoder(this.geoCoder, Duration.ZERO, 4).geoCode(ADDRESSES, new TestTaskContext());
+    assertEquals(Map.of(
+        "Paris", new LatLon(48.85, 2.35),
+        "Lyon", new LatLon(45.76, 4.84),
+        "Lille", new LatLon(50.63, 3.06)
+    ), coordinates);
+  }
+
+  @Test
+  void duplicatesLookedUpOnce() throws Exception {
+    new BatchGeoCoder(this.geoCoder, Duration.ZERO, 4).geoCode(List.of("Paris", "Paris", "Lyon"), new TestTaskContext());
+    assertEquals(2, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void reportsProgress() throws Exception {
+    final TestTaskContext context = new TestTaskContext();
+    new BatchGeoCoder(this.geoCoder, Duration.ZERO, 4).geoCode(ADDRESSES, context);
+    assertEquals(1, context.progress);
+  }
+
+  @Test
+  void respectsInterval() throws Exception {
+    final long start = System.nanoTime();
+    new BatchGeoCoder(this.geoCoder, Duration.ofMillis(200), 4).geoCode(ADDRESSES, new TestTaskContext());
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(600).toNanos());
+  }
+
+  @Test
+  void respectsConcurrencyCap() throws Exception {
+    this.nominatim.delay(200);
+    new BatchGeoCoder(this.geoCoder, Duration.ZERO, 2).geoCode(ADDRESSES, new TestTaskContext());
+    assertEquals(4, this.nominatim.requestsCount());
+    assertEquals(2, this.nominatim.maxPendingCount());
+  }
+
+  @Test
+  void cachedAddressesNotLimited() throws Exception {
+    this.geoCoder.lookUp("Paris").get(10, TimeUnit.SECONDS);
+    this.geoCoder.lookUp("Lyon").get(10, TimeUnit.SECONDS);
+    final long start = System.nanoTime();
+    new BatchGeoCoder(this.geoCoder, Duration.ofSeconds(5), 1).geoCode(List.of("Paris", "Lyon", "Lille"), new TestTaskContext());
+    assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    assertEquals(3, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void resumesFromCache() throws Exception {
+    new BatchGeoCoder(this.geoCoder, Duration.ZERO, 4).geoCode(ADDRESSES, new TestTaskContext());
+    final var coordinates = new BatchGeoCoder(this.newGeoCoder(), Duration.ZERO, 4).geoCode(ADDRESSES, new TestTaskContext());
+    assertEquals(3, coordinates.size());
+    assertEquals(4, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void cancellable() {
+    final TestTaskContext context = new TestTaskContext();
+    context.cancelled = true;
+    assertThrows(CancellationException.class,
+        () -> new BatchGeoCoder(this.geoCoder, Duration.ZERO, 4).geoCode(ADDRESSES, context));
+    assertEquals(0, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void invalidIntervalThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new BatchGeoCoder(this.geoCoder, Duration.ofSeconds(-1), 1));
+  }
+
+  @Test
+  void invalidConcurrencyThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new BatchGeoCoder(this.geoCoder, Duration.ZERO, 0));
+  }
+}
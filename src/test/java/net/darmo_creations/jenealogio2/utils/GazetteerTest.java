@@ -0,0 +1,150 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import net.darmo_creations.jenealogio2.model.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GazetteerTest {
+  private static final String DUMP = """
+      2988507\tParis\tParis\tLutece,Lutetia,Parigi,Paräis\t48.85341\t2.3488\tP\tPPLC\tFR\t\t11\t75\t751\t75056\t2138551
+      4717560\tParis\tParis\t\t39.61115\t-87.69614\tP\tPPLA2\tUS\t\tIL\t045\t\t\t8386
+      4402452\tParis\tParis\t\t39.48087\t-92.00128\tP\tPPLA2\tUS\t\tMO\t137\t\t\t1175
+      2996944\tLyon\tLyon\tLione,Lyons\t45.74846\t4.84671\tP\tPPLA\tFR\t\t84\t69\t691\t69123\t522969
+      2980291\tSaint-Étienne\tSaint-Etienne\t\t45.43389\t4.39\tP\tPPLA2\tFR\t\t84\t42\t421\t42218\t172565
+      3000000\tParisot\tParisot\t\t44.2\t1.8
+      """;
+
+  @TempDir
+  Path tempDir;
+  private Path dumpFile;
+  private Path indexFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.dumpFile = this.tempDir.resolve("dump.txt");
+    this.indexFile = this.tempDir.resolve("gazetteer.idx");
+    Files.writeString(this.dumpFile, DUMP);
+  }
+
+  private Gazetteer build() throws IOException {
+    return Gazetteer.build(this.dumpFile, this.indexFile, new TestTaskContext());
+  }
+
+  @Test
+  void lookUpName() throws IOException {
+    assertEquals(Optional.of(new LatLon(45.74846, 4.84671)), this.build().lookUp("Lyon"));
+  }
+
+  @Test
+  void lookUpIgnoresCaseAndAccents() throws IOException {
+    final Gazetteer gazetteer = this.build();
+    assertEquals(Optional.of(new LatLon(45.43389, 4.39)), gazetteer.lookUp("  SAINT-ÉTIENNE "));
+    assertEquals(Optional.of(new LatLon(45.43389, 4.39)), gazetteer.lookUp("saint-etienne"));
+  }
+
+  @Test
+  void lookUpAlternateName() throws IOException {
+    assertEquals(Optional.of(new LatLon(48.85341, 2.3488)), this.build().lookUp("Lutetia"));
+  }
+
+  @Test
+  void lookUpPrefersMostPopulated() throws IOException {
+    assertEquals(Optional.of(new LatLon(48.85341, 2.3488)), this.build().lookUp("Paris"));
+  }
+
+  @Test
+  void lookUpPrefersCountryCode() throws IOException {
+    assertEquals(Optional.of(new LatLon(39.61115, -87.69614)), this.build().lookUp("Paris, Illinois, US"));
+  }
+
+  @Test
+  void lookUpAddressParts() throws IOException {
+    assertEquals(Optional.of(new LatLon(45.74846, 4.84671)), this.build().lookUp("Place Bellecour, Lyon, France"));
+  }
+
+  @Test
+  void lookUpUnknown() throws IOException {
+    assertTrue(this.build().lookUp("Atlantis").isEmpty());
+    assertTrue(this.build().lookUp("").isEmpty());
+  }
+
+  @Test
+  void namesStartingWith() throws IOException {
+    assertEquals(List.of("Paris", "Parisot"), this.build().namesStartingWith("pari", 10));
+  }
+
+  @Test
+  void namesStartingWithLimit() throws IOException {
+    assertEquals(List.of("Paris"), this.build().namesStartingWith("Par", 1));
+  }
+
+  @Test
+  void namesStartingWithUnknown() throws IOException {
+    assertEquals(List.of(), this.build().namesStartingWith("Atl", 10));
+  }
+
+  @Test
+  void size() throws IOException {
+    // Paris (FR): paris, lutece, lutetia, parigi, parais; Lyon: lyon, lione, lyons
+    assertEquals(5 + 1 + 1 + 3 + 1 + 1, this.build().size());
+  }
+
+  @Test
+  void openBuiltIndex() throws IOException {
+    this.build();
+    assertEquals(Optional.of(new LatLon(45.74846, 4.84671)), Gazetteer.open(this.indexFile).lookUp("Lyons"));
+  }
+
+  @Test
+  void buildReportsProgress() throws IOException {
+    final TestTaskContext context = new TestTaskContext();
+    Gazetteer.build(this.dumpFile, this.indexFile, context);
+    assertEquals(1, context.progress);
+  }
+
+  @Test
+  void buildCancellable() throws IOException {
+    final StringBuilder dump = new StringBuilder();
+    for (int i = 0; i < 20_000; i++)
+      dump.append(i).append("\tPlace ").append(i).append("\tPlace ").append(i).append("\t\t0\t0\n");
+    Files.writeString(this.dumpFile, dump);
+    final TestTaskContext context = new TestTaskContext();
+    context.cancelled = true;
+    assertThrows(CancellationException.class, () -> Gazetteer.build(this.dumpFile, this.indexFile, context));
+    assertFalse(Files.exists(this.indexFile));
+  }
+
+  @Test
+  void buildInvalidCoordinatesThrows() throws IOException {
+    Files.writeString(this.dumpFile, "1\tNowhere\tNowhere\t\t91\t0\n");
+    assertThrows(IOException.class, this::build);
+  }
+
+  @Test
+  void buildMissingColumnsThrows() throws IOException {
+    Files.writeString(this.dumpFile, "1\tNowhere\tNowhere\n");
+    assertThrows(IOException.class, this::build);
+  }
+
+  @Test
+  void buildFailedMoveDeletesTempFile() throws IOException {
+    // A non-empty directory cannot be replaced by the index
+    Files.createDirectories(this.indexFile);
+    Files.writeString(this.indexFile.resolve("file"), "");
+    assertThrows(IOException.class, this::build);
+    assertFalse(Files.exists(this.tempDir.resolve("gazetteer.idx.tmp")));
+  }
+
+  @Test
+  void openInvalidFileThrows() throws IOException {
+    Files.writeString(this.indexFile, "not an index file");
+    assertThrows(IOException.class, () -> Gazetteer.open(this.indexFile));
+  }
+}
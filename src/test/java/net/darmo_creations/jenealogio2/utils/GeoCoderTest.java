@@ -0,0 +1,242 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import net.darmo_creations.jenealogio2.*;
+import net.darmo_creations.jenealogio2.config.*;
+import net.darmo_creations.jenealogio2.model.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoCoderTest {
+  private static final String PARIS_JSON = "[{\"place_id\":1,\"lat\":\"48.8588897\",\"lon\":\"2.3200410\"}]";
+  private static final LatLon PARIS = new LatLon(48.8588897, 2.3200410);
+
+  @TempDir
+  Path tempDir;
+  private Path cacheFile;
+  private NominatimStandIn nominatim;
+  private TestClock clock;
+  private GeoCoder geoCoder;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.cacheFile = this.tempDir.resolve("cache.json");
+    this.nominatim = new NominatimStandIn();
+    this.clock = new TestClock();
+    this.geoCoder = new GeoCoder(this.nominatim.uri(), this.cacheFile, this.clock);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    this.nominatim.close();
+  }
+
+  private Optional<LatLon> lookUp(GeoCoder geoCoder, String address) throws Exception {
+    return geoCoder.lookUp(address).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void found() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    assertEquals(Optional.of(PARIS), this.lookUp(this.geoCoder, "Paris"));
+  }
+
+  @Test
+  void foundCached() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    assertEquals(Optional.of(PARIS), this.lookUp(this.geoCoder, "  paris "));
+    assertEquals(1, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void foundExpires() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    this.clock.advance(GeoCoder.FOUND_TTL);
+    this.lookUp(this.geoCoder, "Paris");
+    assertEquals(2, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void notFoundCached() throws Exception {
+    this.nominatim.respond(200, "[]");
+    assertTrue(this.lookUp(this.geoCoder, "Nowhere").isEmpty());
+    assertTrue(this.lookUp(this.geoCoder, "Nowhere").isEmpty());
+    assertEquals(1, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void notFoundExpires() throws Exception {
+    this.nominatim.respond(200, "[]");
+    this.lookUp(this.geoCoder, "Nowhere");
+    this.clock.advance(GeoCoder.NOT_FOUND_TTL);
+    this.lookUp(this.geoCoder, "Nowhere");
+    assertEquals(2, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void errorCachedBriefly() throws Exception {
+    this.nominatim.respond(503, "");
+    assertTrue(this.lookUp(this.geoCoder, "Paris").isEmpty());
+    this.lookUp(this.geoCoder, "Paris");
+    assertEquals(1, this.nominatim.requestsCount());
+    this.nominatim.respond(200, PARIS_JSON);
+    this.clock.advance(GeoCoder.ERROR_TTL);
+    assertEquals(Optional.of(PARIS), this.lookUp(this.geoCoder, "Paris"));
+  }
+
+  @Test
+  void invalidResponseIsError() throws Exception {
+    this.nominatim.respond(200, "<html></html>");
+    assertTrue(this.lookUp(this.geoCoder, "Paris").isEmpty());
+    assertFalse(Files.exists(this.cacheFile));
+  }
+
+  @Test
+  void concurrentLookupsShareRequest() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.nominatim.hold();
+    final var future1 = this.geoCoder.lookUp("Paris");
+    final var future2 = this.geoCoder.lookUp("PARIS");
+    assertSame(future1, future2);
+    this.nominatim.release();
+    assertEquals(Optional.of(PARIS), future1.get(10, TimeUnit.SECONDS));
+    assertEquals(1, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void savedToFile() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    this.nominatim.respond(200, "[]");
+    this.lookUp(this.geoCoder, "Nowhere");
+    this.geoCoder.flush();
+    final GeoCoder reloaded = new GeoCoder(this.nominatim.uri(), this.cacheFile, this.clock);
+    assertEquals(Optional.of(PARIS), this.lookUp(reloaded, "Paris"));
+    assertTrue(this.lookUp(reloaded, "Nowhere").isEmpty());
+    assertEquals(2, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void saveDelayed() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    assertFalse(Files.exists(this.cacheFile));
+    this.geoCoder.flush();
+    assertTrue(Files.exists(this.cacheFile));
+  }
+
+  @Test
+  void sendsUserAgent() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    assertTrue(this.nominatim.lastUserAgent().startsWith(App.NAME + "/"));
+  }
+
+  @Test
+  void errorsNotSaved() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    this.nominatim.respond(500, "");
+    this.lookUp(this.geoCoder, "Lyon");
+    this.geoCoder.flush();
+    final GeoCoder reloaded = new GeoCoder(this.nominatim.uri(), this.cacheFile, this.clock);
+    this.lookUp(reloaded, "Lyon");
+    assertEquals(3, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void expiredEntriesNotLoaded() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.lookUp(this.geoCoder, "Paris");
+    this.geoCoder.flush();
+    this.clock.advance(GeoCoder.FOUND_TTL);
+    final GeoCoder reloaded = new GeoCoder(this.nominatim.uri(), this.cacheFile, this.clock);
+    this.lookUp(reloaded, "Paris");
+    assertEquals(2, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void corruptFileIgnored() throws Exception {
+    Files.writeString(this.cacheFile, "{not json");
+    this.nominatim.respond(200, PARIS_JSON);
+    final GeoCoder geoCoder = new GeoCoder(this.nominatim.uri(), this.cacheFile, this.clock);
+    assertEquals(Optional.of(PARIS), this.lookUp(geoCoder, "Paris"));
+  }
+
+  private Gazetteer buildGazetteer() throws IOException {
+    final Path dumpFile = this.tempDir.resolve("dump.txt");
+    Files.writeString(dumpFile, "1\tLyon\tLyon\t\t45.75\t4.85\n");
+    return Gazetteer.build(dumpFile, this.tempDir.resolve("gazetteer.idx"), new TestTaskContext());
+  }
+
+  @Test
+  void onlineStrategyIgnoresGazetteer() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.geoCoder.useGazetteer(this.buildGazetteer());
+    assertEquals(Optional.of(PARIS), this.lookUp(this.geoCoder, "Lyon"));
+    assertEquals(1, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void offlineStrategyNeverSendsRequests() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.geoCoder.useGazetteer(this.buildGazetteer());
+    this.geoCoder.useStrategy(GeoCodingStrategy.OFFLINE);
+    assertEquals(Optional.of(new LatLon(45.75, 4.85)), this.lookUp(this.geoCoder, "Lyon"));
+    assertTrue(this.lookUp(this.geoCoder, "Paris").isEmpty());
+    assertTrue(this.geoCoder.isAvailableLocally("Paris"));
+    assertEquals(0, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void offlineStrategyWithoutGazetteer() throws Exception {
+    this.geoCoder.useStrategy(GeoCodingStrategy.OFFLINE);
+    assertTrue(this.lookUp(this.geoCoder, "Lyon").isEmpty());
+    assertEquals(0, this.nominatim.requestsCount());
+  }
+
+  @Test
+  void bothStrategyFallsBackOnline() throws Exception {
+    this.nominatim.respond(200, PARIS_JSON);
+    this.geoCoder.useGazetteer(this.buildGazetteer());
+    this.geoCoder.useStrategy(GeoCodingStrategy.BOTH);
+    assertEquals(Optional.of(new LatLon(45.75, 4.85)), this.lookUp(this.geoCoder, "Lyon"));
+    assertTrue(this.geoCoder.isAvailableLocally("Lyon"));
+    assertEquals(0, this.nominatim.requestsCount());
+    assertFalse(this.geoCoder.isAvailableLocally("Paris"));
+    assertEquals(Optional.of(PARIS), this.lookUp(this.geoCoder, "Paris"));
+    assertEquals(1, this.nominatim.requestsCount());
+  }
+
+  private static final class TestClock extends Clock {
+    private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      this.now = this.now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InternerTest {
+  @Test
+  void internReturnsFirstEqualValue() {
+    final Interner<String> interner = new Interner<>();
+    final String s1 = new String("name");
+    final String s2 = new String("name");
+    assertSame(s1, interner.intern(s1));
+    assertSame(s1, interner.intern(s2));
+    assertEquals(1, interner.size());
+  }
+
+  @Test
+  void internDistinctValues() {
+    final Interner<String> interner = new Interner<>();
+    interner.intern("a");
+    interner.intern("b");
+    assertEquals(2, interner.size());
+  }
+
+  @Test
+  void internNull() {
+    assertNull(new Interner<String>().intern(null));
+  }
+}
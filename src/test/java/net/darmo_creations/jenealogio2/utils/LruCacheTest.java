@@ -0,0 +1,66 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+  private LruCache<String, Integer> cache;
+
+  @BeforeEach
+  void setUp() {
+    this.cache = new LruCache<>(2);
+  }
+
+  @Test
+  void get() {
+    this.cache.put("a", 1);
+    assertEquals(1, this.cache.get("a"));
+  }
+
+  @Test
+  void getMissing() {
+    assertNull(this.cache.get("a"));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    this.cache.put("a", 1);
+    this.cache.put("b", 2);
+    this.cache.get("a");
+    this.cache.put("c", 3);
+    assertTrue(this.cache.contains("a"));
+    assertFalse(this.cache.contains("b"));
+    assertTrue(this.cache.contains("c"));
+    assertEquals(2, this.cache.size());
+  }
+
+  @Test
+  void containsDoesNotMarkAsUsed() {
+    this.cache.put("a", 1);
+    this.cache.put("b", 2);
+    this.cache.contains("a");
+    this.cache.put("c", 3);
+    assertFalse(this.cache.contains("a"));
+  }
+
+  @Test
+  void putReplaces() {
+    this.cache.put("a", 1);
+    this.cache.put("a", 2);
+    assertEquals(2, this.cache.get("a"));
+    assertEquals(1, this.cache.size());
+  }
+
+  @Test
+  void clear() {
+    this.cache.put("a", 1);
+    this.cache.clear();
+    assertEquals(0, this.cache.size());
+  }
+
+  @Test
+  void invalidCapacityThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new LruCache<>(0));
+  }
+}
@@ -0,0 +1,154 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A minimal local stand-in for the Nominatim search endpoint.
+ * Each request is handled in its own thread.
+ */
+class NominatimStandIn implements Closeable {
+  private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  private final AtomicInteger requestsCount = new AtomicInteger();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final AtomicInteger maxPendingCount = new AtomicInteger();
+  private final Map<String, String> bodies = new ConcurrentHashMap<>();
+  private volatile int status = 200;
+  private volatile String defaultBody = "[]";
+  private volatile long delay;
+  private volatile CountDownLatch gate = new CountDownLatch(0);
+  private volatile String lastUserAgent;
+
+  NominatimStandIn() throws IOException {
+    final Thread thread = new Thread(this::serve);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  URI uri() {
+    return URI.create("http://127.0.0.1:%d/search".formatted(this.serverSocket.getLocalPort()));
+  }
+
+  /**
+   * Set the response to send to requests for addresses without a specific response.
+   */
+  void respond(int status, String body) {
+    this.status = status;
+    this.defaultBody = body;
+  }
+
+  /**
+   * Set the body of successful responses to requests for the given address.
+   */
+  void respond(String address, String body) {
+    this.bodies.put(address, body);
+  }
+
+  /**
+   * Wait for the given number of milliseconds before sending each response.
+   */
+  void delay(long millis) {
+    this.delay = millis;
+  }
+
+  /**
+   * Delay responses until {@link #release()} is called.
+   */
+  void hold() {
+    this.gate = new CountDownLatch(1);
+  }
+
+  void release() {
+    this.gate.countDown();
+  }
+
+  /**
+   * The number of requests received so far.
+   */
+  int requestsCount() {
+    return this.requestsCount.get();
+  }
+
+  /**
+   * The User-Agent header of the last request, null if it had none.
+   */
+  String lastUserAgent() {
+    return this.lastUserAgent;
+  }
+
+  /**
+   * The maximum number of requests that have been waiting for a response at the same time.
+   */
+  int maxPendingCount() {
+    return this.maxPendingCount.get();
+  }
+
+  private void serve() {
+    while (!this.serverSocket.isClosed())
+      try {
+        final Socket socket = this.serverSocket.accept();
+        final Thread thread = new Thread(() -> this.handle(socket));
+        thread.setDaemon(true);
+        thread.start();
+      } catch (final IOException e) {
+        // Server closed
+      }
+  }
+
+  private void handle(Socket socket) {
+    try (socket) {
+      final var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      final String requestLine = reader.readLine();
+      String line;
+      String userAgent = null;
+      do {
+        line = reader.readLine();
+        if (line != null && line.toLowerCase(Locale.ROOT).startsWith("user-agent:"))
+          userAgent = line.substring("user-agent:".length()).strip();
+      } while (line != null && !line.isEmpty());
+      this.lastUserAgent = userAgent;
+      this.requestsCount.incrementAndGet();
+      this.maxPendingCount.accumulateAndGet(this.pendingCount.incrementAndGet(), Math::max);
+      try {
+        this.gate.await();
+        Thread.sleep(this.delay);
+      } finally {
+        this.pendingCount.decrementAndGet();
+      }
+      final String address = query(requestLine);
+      final String specificBody = address != null ? this.bodies.get(address) : null;
+      final int status = specificBody != null ? 200 : this.status;
+      final byte[] bytes = (specificBody != null ? specificBody : this.defaultBody).getBytes(StandardCharsets.UTF_8);
+      final OutputStream out = socket.getOutputStream();
+      out.write(("HTTP/1.1 %d Status\r\nContent-Type: application/json\r\nContent-Length: %d\r\n"
+                 + "Connection: close\r\n\r\n").formatted(status, bytes.length).getBytes(StandardCharsets.UTF_8));
+      out.write(bytes);
+      out.flush();
+    } catch (final IOException | InterruptedException e) {
+      // Server closed
+    }
+  }
+
+  /**
+   * Extract the value of the q parameter from a request line.
+   */
+  private static String query(String requestLine) {
+    if (requestLine == null)
+      return null;
+    final String target = requestLine.split(" ")[1];
+    final int start = target.indexOf("?q=");
+    if (start < 0)
+      return null;
+    final int end = target.indexOf('&', start);
+    return URLDecoder.decode(target.substring(start + 3, end < 0 ? target.length() : end), StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.serverSocket.close();
+  }
+}
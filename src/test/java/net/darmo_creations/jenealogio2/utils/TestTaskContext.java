@@ -0,0 +1,19 @@
+package net.darmo_creations.jenealogio2.utils;
+
+/**
+ * A task context that records the last reported progress and can be cancelled by tests.
+ */
+class TestTaskContext implements TaskScheduler.TaskContext {
+  volatile double progress = -1;
+  volatile boolean cancelled;
+
+  @Override
+  public void setProgress(double progress) {
+    this.progress = progress;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+}
@@ -0,0 +1,131 @@
+package net.darmo_creations.jenealogio2.utils;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilePackTest {
+  private static final byte[] IMAGE = {1, 2, 3};
+
+  @TempDir
+  Path tempDir;
+  private TilePack tilePack;
+
+  @BeforeEach
+  void setUp() {
+    this.tilePack = new TilePack(this.tempDir);
+  }
+
+  @Test
+  void readPng() throws IOException {
+    Files.createDirectories(this.tempDir.resolve("3/2"));
+    Files.write(this.tempDir.resolve("3/2/5.png"), IMAGE);
+    assertArrayEquals(IMAGE, this.tilePack.read(new TilePack.Tile(3, 2, 5)).orElseThrow());
+  }
+
+  @Test
+  void readJpeg() throws IOException {
+    Files.createDirectories(this.tempDir.resolve("3/2"));
+    Files.write(this.tempDir.resolve("3/2/5.jpg"), IMAGE);
+    assertArrayEquals(IMAGE, this.tilePack.read(new TilePack.Tile(3, 2, 5)).orElseThrow());
+  }
+
+  @Test
+  void readMissing() throws IOException {
+    assertTrue(this.tilePack.read(new TilePack.Tile(3, 2, 5)).isEmpty());
+  }
+
+  @Test
+  void write() throws IOException {
+    final TilePack.Tile tile = new TilePack.Tile(3, 2, 5);
+    this.tilePack.write(tile, IMAGE);
+    assertEquals(Optional.of(this.tempDir.resolve("3/2/5.png")), this.tilePack.file(tile));
+    assertArrayEquals(IMAGE, this.tilePack.read(tile).orElseThrow());
+    try (final var files = Files.list(this.tempDir.resolve("3/2"))) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  void containsRecent() throws IOException {
+    final TilePack.Tile tile = new TilePack.Tile(3, 2, 5);
+    this.tilePack.write(tile, IMAGE);
+    final Instant now = Instant.now();
+    Files.setLastModifiedTime(this.tilePack.file(tile).orElseThrow(), FileTime.from(now.minusSeconds(60)));
+    assertTrue(this.tilePack.contains(tile, null));
+    assertTrue(this.tilePack.contains(tile, now.minusSeconds(120)));
+    assertFalse(this.tilePack.contains(tile, now));
+    assertFalse(this.tilePack.contains(new TilePack.Tile(3, 2, 4), null));
+  }
+
+  @Test
+  void pruneDeletesOldestTiles() throws IOException {
+    final Instant now = Instant.now();
+    for (int y = 0; y < 4; y++) {
+      final TilePack.Tile tile = new TilePack.Tile(3, y, 5);
+      this.tilePack.write(tile, IMAGE);
+      Files.setLastModifiedTime(this.tilePack.file(tile).orElseThrow(), FileTime.from(now.minusSeconds(60 - y)));
+    }
+    assertEquals(2, this.tilePack.prune(2 * IMAGE.length));
+    assertFalse(this.tilePack.contains(new TilePack.Tile(3, 0, 5), null));
+    assertFalse(this.tilePack.contains(new TilePack.Tile(3, 1, 5), null));
+    assertTrue(this.tilePack.contains(new TilePack.Tile(3, 2, 5), null));
+    assertTrue(this.tilePack.contains(new TilePack.Tile(3, 3, 5), null));
+    // Empty columns are deleted
+    assertFalse(Files.exists(this.tempDir.resolve("3/0")));
+    assertTrue(Files.exists(this.tempDir.resolve("3/2")));
+  }
+
+  @Test
+  void pruneUnderLimitDeletesNothing() throws IOException {
+    this.tilePack.write(new TilePack.Tile(3, 2, 5), IMAGE);
+    assertEquals(0, this.tilePack.prune(IMAGE.length));
+    assertTrue(this.tilePack.contains(new TilePack.Tile(3, 2, 5), null));
+  }
+
+  @Test
+  void pruneMissingDirectory() throws IOException {
+    assertEquals(0, new TilePack(this.tempDir.resolve("missing")).prune(0));
+  }
+
+  @Test
+  void adjacentZoomTiles() {
+    assertEquals(List.of(
+        new TilePack.Tile(2, 1, 2),
+        new TilePack.Tile(4, 4, 10),
+        new TilePack.Tile(4, 4, 11),
+        new TilePack.Tile(4, 5, 10),
+        new TilePack.Tile(4, 5, 11)
+    ), new TilePack.Tile(3, 2, 5).adjacentZoomTiles());
+  }
+
+  @Test
+  void adjacentZoomTilesAtMinZoom() {
+    assertEquals(4, new TilePack.Tile(0, 0, 0).adjacentZoomTiles().size());
+  }
+
+  @Test
+  void adjacentZoomTilesAtMaxZoom() {
+    assertEquals(List.of(new TilePack.Tile(TilePack.MAX_ZOOM - 1, 0, 0)),
+        new TilePack.Tile(TilePack.MAX_ZOOM, 0, 0).adjacentZoomTiles());
+  }
+
+  @Test
+  void invalidZoomThrows() {
+    assertThrows(IllegalArgumentException.class, () -> new TilePack.Tile(-1, 0, 0));
+    assertThrows(IllegalArgumentException.class, () -> new TilePack.Tile(TilePack.MAX_ZOOM + 1, 0, 0));
+  }
+
+  @Test
+  void invalidCoordinatesThrow() {
+    assertThrows(IllegalArgumentException.class, () -> new TilePack.Tile(3, 8, 0));
+    assertThrows(IllegalArgumentException.class, () -> new TilePack.Tile(3, 0, -1));
+  }
+}